@@ -0,0 +1,108 @@
+package treap.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import treap.Treap;
+
+/**
+ * Compares {@link Treap#addBatch} and {@link Treap#removeBatch} to adding or
+ * removing the same keys one by one. The treap holds the even keys 0, 2, ...,
+ * 2(n - 1) and is rebuilt before every call. Added batches consist of missing
+ * odd keys and removed batches of present even keys, both in random order.
+ *
+ * Every call is a single shot, so many warmup iterations are needed before the
+ * merge code is compiled.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 40)
+@Measurement(iterations = 15)
+@Fork(2)
+@State(Scope.Thread)
+public class BatchBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int size;
+
+    @Param({"10000", "100000"})
+    public int batchSize;
+
+    private List<Long> elements;
+    private List<Long> missing;
+    private List<Long> present;
+    private Treap<Long> treap;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        elements = new ArrayList<Long>(size);
+
+        for (int i = 0; i < size; i++) {
+            elements.add(2L * i);
+        }
+
+        Random random = new Random(42);
+        missing = new ArrayList<Long>(batchSize);
+        present = new ArrayList<Long>(batchSize);
+
+        for (int i = 0; i < batchSize; i++) {
+            long rank = random.nextInt(size);
+            missing.add(2 * rank + 1);
+            present.add(2 * rank);
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpInvocation() {
+        treap = new Treap<Long>(elements);
+    }
+
+    @Benchmark
+    public int addLoop() {
+        int added = 0;
+
+        for (Long key : missing) {
+            if (treap.add(key)) {
+                added++;
+            }
+        }
+
+        return added;
+    }
+
+    @Benchmark
+    public int addBatch() {
+        return treap.addBatch(missing);
+    }
+
+    @Benchmark
+    public int removeLoop() {
+        int removed = 0;
+
+        for (Long key : present) {
+            if (treap.remove(key)) {
+                removed++;
+            }
+        }
+
+        return removed;
+    }
+
+    @Benchmark
+    public int removeBatch() {
+        return treap.removeBatch(present);
+    }
+}
@@ -0,0 +1,90 @@
+package treap.benchmark;
+
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import treap.ConcurrentTreap;
+
+/**
+ * Compares ConcurrentTreap to ConcurrentSkipListSet under a mixed workload,
+ * with all threads sharing one set. Run it with -t to vary the number of
+ * threads; it defaults to one thread per core.
+ *
+ * The set holds about half of the keys 0, ..., 2n - 1. Each operation picks a
+ * uniformly random key. It is an update with the given probability, and a
+ * contains otherwise. An update removes the key if it is present and adds it
+ * otherwise, so that the size of the set stays about the same.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@Threads(Threads.MAX)
+@State(Scope.Benchmark)
+public class ConcurrentBenchmark {
+
+    public enum Implementation {
+
+        CONCURRENT_TREAP {
+            @Override
+            NavigableSet<Long> create() {
+                return new ConcurrentTreap<Long>();
+            }
+        },
+        CONCURRENT_SKIP_LIST_SET {
+            @Override
+            NavigableSet<Long> create() {
+                return new ConcurrentSkipListSet<Long>();
+            }
+        };
+
+        abstract NavigableSet<Long> create();
+    }
+
+    @Param({"CONCURRENT_TREAP", "CONCURRENT_SKIP_LIST_SET"})
+    public Implementation implementation;
+
+    @Param({"1000000"})
+    public int size;
+
+    @Param({"0", "10", "50"})
+    public int updatePercentage;
+
+    private NavigableSet<Long> set;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        set = implementation.create();
+
+        for (int i = 0; i < size; i++) {
+            set.add(2L * KeyDistribution.scatter(i, size));
+        }
+    }
+
+    @Benchmark
+    public boolean mixed() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Long key = random.nextLong(2L * size);
+
+        if (random.nextInt(100) < updatePercentage) {
+            return set.add(key) || set.remove(key);
+        } else {
+            return set.contains(key);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package treap.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import treap.Cursor;
+import treap.Treap;
+
+/**
+ * Compares searches from the root to searches from a {@link Cursor} on
+ * near-sequential workloads: appending increasing keys to an empty treap, and
+ * probing a treap with the keys 0, 2, ..., 2(n - 1) in ascending order with a
+ * fixed stride, as in a merge join. The stride only applies to the probes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class CursorBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int size;
+
+    @Param({"1", "16"})
+    public int stride;
+
+    private Treap<Long> treap;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        treap = new Treap<Long>();
+        Cursor<Long> cursor = treap.cursor();
+
+        for (long i = 0; i < size; i++) {
+            cursor.add(2 * i);
+        }
+    }
+
+    @Benchmark
+    public Treap<Long> append() {
+        Treap<Long> appended = new Treap<Long>();
+
+        for (long i = 0; i < size; i++) {
+            appended.add(i);
+        }
+
+        return appended;
+    }
+
+    @Benchmark
+    public Treap<Long> appendWithCursor() {
+        Treap<Long> appended = new Treap<Long>();
+        Cursor<Long> cursor = appended.cursor();
+
+        for (long i = 0; i < size; i++) {
+            cursor.add(i);
+        }
+
+        return appended;
+    }
+
+    @Benchmark
+    public int probe() {
+        int found = 0;
+
+        for (long key = 0; key < 2L * size; key += stride) {
+            if (treap.contains(key)) {
+                found++;
+            }
+        }
+
+        return found;
+    }
+
+    @Benchmark
+    public int probeWithCursor() {
+        Cursor<Long> cursor = treap.cursor();
+        int found = 0;
+
+        for (long key = 0; key < 2L * size; key += stride) {
+            if (cursor.contains(key)) {
+                found++;
+            }
+        }
+
+        return found;
+    }
+}
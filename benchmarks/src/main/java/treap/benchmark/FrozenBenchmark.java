@@ -0,0 +1,101 @@
+package treap.benchmark;
+
+import java.util.NavigableSet;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import treap.Treap;
+
+/**
+ * Compares read-only searches in a live Treap, a frozen copy of it and a
+ * TreeSet with the same elements, for uniformly distributed keys.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class FrozenBenchmark {
+
+    private static final int KEY_COUNT = 1 << 16;
+    private static final int KEY_MASK = KEY_COUNT - 1;
+
+    public enum Implementation {
+
+        TREAP, FROZEN_TREAP, TREE_SET
+    }
+
+    @Param({"TREAP", "FROZEN_TREAP", "TREE_SET"})
+    public Implementation implementation;
+
+    @Param({"10000", "1000000"})
+    public int size;
+
+    private NavigableSet<Long> set;
+    private Long[] hits;
+    private Long[] misses;
+    private int index = 0;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Treap<Long> treap = new Treap<Long>();
+
+        for (int i = 0; i < size; i++) {
+            treap.add(2L * KeyDistribution.scatter(i, size));
+        }
+
+        switch (implementation) {
+            case TREAP:
+                set = treap;
+                break;
+            case FROZEN_TREAP:
+                set = treap.freeze();
+                break;
+            default:
+                set = new TreeSet<Long>(treap);
+                break;
+        }
+
+        int[] ranks = KeyDistribution.UNIFORM.ranks(size, KEY_COUNT, new Random(42));
+        hits = new Long[KEY_COUNT];
+        misses = new Long[KEY_COUNT];
+
+        for (int i = 0; i < KEY_COUNT; i++) {
+            hits[i] = 2L * ranks[i];
+            misses[i] = 2L * ranks[i] + 1;
+        }
+    }
+
+    private int nextIndex() {
+        index = (index + 1) & KEY_MASK;
+        return index;
+    }
+
+    @Benchmark
+    public boolean containsHit() {
+        return set.contains(hits[nextIndex()]);
+    }
+
+    @Benchmark
+    public boolean containsMiss() {
+        return set.contains(misses[nextIndex()]);
+    }
+
+    @Benchmark
+    public Long floor() {
+        return set.floor(misses[nextIndex()]);
+    }
+}
@@ -0,0 +1,88 @@
+package treap.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import treap.FrozenLongTreap;
+import treap.LongTreap;
+
+/**
+ * Compares read-only searches in a live LongTreap and a frozen copy of it, for
+ * uniformly distributed keys.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class FrozenLongBenchmark {
+
+    private static final int KEY_COUNT = 1 << 16;
+    private static final int KEY_MASK = KEY_COUNT - 1;
+
+    @Param({"10000", "1000000"})
+    public int size;
+
+    private LongTreap treap;
+    private FrozenLongTreap frozen;
+    private long[] hits;
+    private long[] misses;
+    private int index = 0;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        treap = new LongTreap();
+
+        for (int i = 0; i < size; i++) {
+            treap.add(2L * KeyDistribution.scatter(i, size));
+        }
+
+        frozen = treap.freeze();
+
+        int[] ranks = KeyDistribution.UNIFORM.ranks(size, KEY_COUNT, new Random(42));
+        hits = new long[KEY_COUNT];
+        misses = new long[KEY_COUNT];
+
+        for (int i = 0; i < KEY_COUNT; i++) {
+            hits[i] = 2L * ranks[i];
+            misses[i] = 2L * ranks[i] + 1;
+        }
+    }
+
+    private int nextIndex() {
+        index = (index + 1) & KEY_MASK;
+        return index;
+    }
+
+    @Benchmark
+    public boolean containsHit() {
+        return treap.contains(hits[nextIndex()]);
+    }
+
+    @Benchmark
+    public boolean containsHitFrozen() {
+        return frozen.contains(hits[nextIndex()]);
+    }
+
+    @Benchmark
+    public long floor() {
+        return treap.floor(misses[nextIndex()]);
+    }
+
+    @Benchmark
+    public long floorFrozen() {
+        return frozen.floor(misses[nextIndex()]);
+    }
+}
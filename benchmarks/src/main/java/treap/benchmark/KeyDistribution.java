@@ -0,0 +1,115 @@
+package treap.benchmark;
+
+import java.util.Random;
+
+/**
+ * The order in which benchmark operations visit the elements of a set. Each
+ * distribution produces ranks between 0 and n - 1; the benchmarks turn these
+ * into keys that are either present in the set or just missing from it.
+ */
+public enum KeyDistribution {
+
+    /**
+     * Every element is equally likely to be visited.
+     */
+    UNIFORM {
+        @Override
+        int[] ranks(int n, int count, Random random) {
+            int[] ranks = new int[count];
+
+            for (int i = 0; i < count; i++) {
+                ranks[i] = random.nextInt(n);
+            }
+
+            return ranks;
+        }
+    },
+    /**
+     * Elements are visited in ascending order, as in a time series, wrapping
+     * around at the end of the set.
+     */
+    SEQUENTIAL {
+        @Override
+        int[] ranks(int n, int count, Random random) {
+            int[] ranks = new int[count];
+
+            for (int i = 0; i < count; i++) {
+                ranks[i] = i % n;
+            }
+
+            return ranks;
+        }
+    },
+    /**
+     * A few hot elements are visited most of the time, following a Zipf
+     * distribution with exponent 0.99, as in YCSB. The hot elements are
+     * scattered over the set rather than clustered at its start.
+     */
+    ZIPFIAN {
+        @Override
+        int[] ranks(int n, int count, Random random) {
+            final double theta = 0.99;
+            double zetaN = zeta(n, theta);
+            double alpha = 1 / (1 - theta);
+            double eta = (1 - Math.pow(2.0 / n, 1 - theta)) / (1 - zeta(2, theta) / zetaN);
+
+            int[] ranks = new int[count];
+
+            for (int i = 0; i < count; i++) {
+                double u = random.nextDouble();
+                double uz = u * zetaN;
+                long rank;
+
+                if (uz < 1) {
+                    rank = 0;
+                } else if (uz < 1 + Math.pow(0.5, theta)) {
+                    rank = 1;
+                } else {
+                    rank = Math.min(n - 1, (long) (n * Math.pow(eta * u - eta + 1, alpha)));
+                }
+
+                ranks[i] = scatter(rank, n);
+            }
+
+            return ranks;
+        }
+    };
+
+    /**
+     * Returns count ranks between 0 and n - 1, drawn from this distribution.
+     *
+     * @param n
+     * @param count
+     * @param random
+     * @return
+     */
+    abstract int[] ranks(int n, int count, Random random);
+
+    /**
+     * A prime that does not divide any of the benchmarked sizes, so that
+     * multiplying by it modulo n is a permutation of the ranks.
+     */
+    private static final long SCATTER_PRIME = 1_000_000_007L;
+
+    /**
+     * Maps the given rank to another one in a way that is a bijection on 0 to
+     * n - 1 whenever n is not a multiple of SCATTER_PRIME.
+     *
+     * @param rank
+     * @param n
+     * @return
+     */
+    static int scatter(long rank, int n) {
+        return (int) ((rank * SCATTER_PRIME) % n);
+    }
+
+    private static double zeta(long n, double theta) {
+        double sum = 0;
+
+        for (long i = 1; i <= n; i++) {
+            sum += 1 / Math.pow(i, theta);
+        }
+
+        return sum;
+    }
+}
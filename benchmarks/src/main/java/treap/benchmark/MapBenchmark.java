@@ -0,0 +1,117 @@
+package treap.benchmark;
+
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import treap.TreapMap;
+
+/**
+ * Compares TreapMap to TreeMap. The map holds the even keys 0, 2, ...,
+ * 2(n - 1), each mapped to a counter, and keys are taken from a precomputed,
+ * boxed sequence as in {@link SetBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class MapBenchmark {
+
+    private static final int KEY_COUNT = 1 << 16;
+    private static final int KEY_MASK = KEY_COUNT - 1;
+    private static final Long ONE = 1L;
+
+    public enum Implementation {
+
+        TREAP_MAP, TREE_MAP
+    }
+
+    @Param({"TREAP_MAP", "TREE_MAP"})
+    public Implementation implementation;
+
+    @Param({"1000", "100000", "10000000"})
+    public int size;
+
+    @Param({"UNIFORM", "SEQUENTIAL", "ZIPFIAN"})
+    public KeyDistribution distribution;
+
+    private NavigableMap<Long, Long> map;
+    private Long[] hits;
+    private Long[] misses;
+    private int index = 0;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        map = (implementation == Implementation.TREAP_MAP ? new TreapMap<Long, Long>() : new TreeMap<Long, Long>());
+
+        for (int i = 0; i < size; i++) {
+            map.put(2L * KeyDistribution.scatter(i, size), 0L);
+        }
+
+        int[] ranks = distribution.ranks(size, KEY_COUNT, new Random(42));
+        hits = new Long[KEY_COUNT];
+        misses = new Long[KEY_COUNT];
+
+        for (int i = 0; i < KEY_COUNT; i++) {
+            hits[i] = 2L * ranks[i];
+            misses[i] = 2L * ranks[i] + 1;
+        }
+    }
+
+    private int nextIndex() {
+        index = (index + 1) & KEY_MASK;
+        return index;
+    }
+
+    @Benchmark
+    public Long get() {
+        return map.get(hits[nextIndex()]);
+    }
+
+    @Benchmark
+    public Long put() {
+        return map.put(hits[nextIndex()], ONE);
+    }
+
+    /**
+     * Increments the counter of a present key, the typical use of merge.
+     *
+     * @return
+     */
+    @Benchmark
+    public Long merge() {
+        return map.merge(hits[nextIndex()], ONE, Long::sum);
+    }
+
+    /**
+     * Adds a missing key with computeIfAbsent and removes it again.
+     *
+     * @return
+     */
+    @Benchmark
+    public Long computeIfAbsent() {
+        Long key = misses[nextIndex()];
+        Long value = map.computeIfAbsent(key, k -> ONE);
+        map.remove(key);
+        return value;
+    }
+
+    @Benchmark
+    public Object floorEntry() {
+        return map.floorEntry(misses[nextIndex()]);
+    }
+}
@@ -0,0 +1,243 @@
+package treap.benchmark;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import treap.BTreap;
+import treap.CompactTreap;
+import treap.ConcurrentTreap;
+import treap.Treap;
+
+/**
+ * Compares the basic operations of the treaps to those of TreeSet and
+ * ConcurrentSkipListSet.
+ *
+ * The set holds the even keys 0, 2, ..., 2(n - 1), inserted in scattered order.
+ * Operations take their keys from a precomputed, boxed sequence, so that
+ * neither generating nor boxing keys is measured: key 2r is the element of rank
+ * r, and key 2r + 1 is missing from the set and lies just after it.
+ *
+ * Benchmarks that modify the set undo their change in the same call, so that
+ * the size of the set stays fixed. Their time includes the undo.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class SetBenchmark {
+
+    private static final int KEY_COUNT = 1 << 16;
+    private static final int KEY_MASK = KEY_COUNT - 1;
+
+    public enum Implementation {
+
+        TREAP {
+            @Override
+            NavigableSet<Long> create(Comparator<Long> comparator) {
+                return new Treap<Long>(comparator);
+            }
+        },
+        /**
+         * A treap with priorities derived from the keys, so that every run
+         * builds the same shape.
+         */
+        HASHED_TREAP {
+            @Override
+            NavigableSet<Long> create(Comparator<Long> comparator) {
+                return new Treap<Long>(comparator, 42L);
+            }
+        },
+        COMPACT_TREAP {
+            @Override
+            NavigableSet<Long> create(Comparator<Long> comparator) {
+                return new CompactTreap<Long>(comparator);
+            }
+        },
+        B_TREAP {
+            @Override
+            NavigableSet<Long> create(Comparator<Long> comparator) {
+                return new BTreap<Long>(comparator);
+            }
+        },
+        CONCURRENT_TREAP {
+            @Override
+            NavigableSet<Long> create(Comparator<Long> comparator) {
+                return new ConcurrentTreap<Long>(comparator);
+            }
+        },
+        TREE_SET {
+            @Override
+            NavigableSet<Long> create(Comparator<Long> comparator) {
+                return new TreeSet<Long>(comparator);
+            }
+        },
+        CONCURRENT_SKIP_LIST_SET {
+            @Override
+            NavigableSet<Long> create(Comparator<Long> comparator) {
+                return new ConcurrentSkipListSet<Long>(comparator);
+            }
+        };
+
+        abstract NavigableSet<Long> create(Comparator<Long> comparator);
+    }
+
+    public enum Ordering {
+
+        /**
+         * The natural ordering of Long, used when the comparator is null.
+         */
+        NATURAL {
+            @Override
+            Comparator<Long> comparator() {
+                return null;
+            }
+        },
+        /**
+         * An explicit comparator, which adds a virtual call to every
+         * comparison.
+         */
+        COMPARATOR {
+            @Override
+            Comparator<Long> comparator() {
+                return new Comparator<Long>() {
+                    @Override
+                    public int compare(Long a, Long b) {
+                        return Long.compare(a, b);
+                    }
+                };
+            }
+        };
+
+        abstract Comparator<Long> comparator();
+    }
+
+    @Param({"TREAP", "HASHED_TREAP", "COMPACT_TREAP", "B_TREAP", "CONCURRENT_TREAP", "TREE_SET", "CONCURRENT_SKIP_LIST_SET"})
+    public Implementation implementation;
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000", "100000000"})
+    public int size;
+
+    @Param({"UNIFORM", "SEQUENTIAL", "ZIPFIAN"})
+    public KeyDistribution distribution;
+
+    @Param({"NATURAL", "COMPARATOR"})
+    public Ordering ordering;
+
+    private NavigableSet<Long> set;
+    private Long[] hits;
+    private Long[] misses;
+    private int index = 0;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        set = implementation.create(ordering.comparator());
+
+        for (int i = 0; i < size; i++) {
+            set.add(2L * KeyDistribution.scatter(i, size));
+        }
+
+        int[] ranks = distribution.ranks(size, KEY_COUNT, new Random(42));
+        hits = new Long[KEY_COUNT];
+        misses = new Long[KEY_COUNT];
+
+        for (int i = 0; i < KEY_COUNT; i++) {
+            hits[i] = 2L * ranks[i];
+            misses[i] = 2L * ranks[i] + 1;
+        }
+    }
+
+    private int nextIndex() {
+        index = (index + 1) & KEY_MASK;
+        return index;
+    }
+
+    /**
+     * Adds a missing key and removes it again.
+     *
+     * @return
+     */
+    @Benchmark
+    public boolean add() {
+        Long key = misses[nextIndex()];
+        boolean added = set.add(key);
+        set.remove(key);
+        return added;
+    }
+
+    /**
+     * Removes a present key and adds it back.
+     *
+     * @return
+     */
+    @Benchmark
+    public boolean remove() {
+        Long key = hits[nextIndex()];
+        boolean removed = set.remove(key);
+        set.add(key);
+        return removed;
+    }
+
+    @Benchmark
+    public boolean containsHit() {
+        return set.contains(hits[nextIndex()]);
+    }
+
+    @Benchmark
+    public boolean containsMiss() {
+        return set.contains(misses[nextIndex()]);
+    }
+
+    @Benchmark
+    public Long floor() {
+        return set.floor(misses[nextIndex()]);
+    }
+
+    @Benchmark
+    public Long ceiling() {
+        return set.ceiling(misses[nextIndex()]);
+    }
+
+    /**
+     * Iterates over the whole set; divide by the size for the cost per
+     * element.
+     *
+     * @param blackhole
+     */
+    @Benchmark
+    public void iterate(Blackhole blackhole) {
+        for (Iterator<Long> it = set.iterator(); it.hasNext();) {
+            blackhole.consume(it.next());
+        }
+    }
+
+    /**
+     * Removes the smallest element and adds it back.
+     *
+     * @return
+     */
+    @Benchmark
+    public Long pollFirst() {
+        Long first = set.pollFirst();
+        set.add(first);
+        return first;
+    }
+}
@@ -0,0 +1,64 @@
+package treap.benchmark;
+
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import treap.Treap;
+
+/**
+ * Compares sequential and parallel reductions over a Treap and a TreeSet. The
+ * parallel speedup depends on the number of cores, which JMH reports in the
+ * run header.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class StreamBenchmark {
+
+    public enum Implementation {
+
+        TREAP, TREE_SET
+    }
+
+    @Param({"TREAP", "TREE_SET"})
+    public Implementation implementation;
+
+    @Param({"10000", "1000000"})
+    public int size;
+
+    private NavigableSet<Long> set;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        set = (implementation == Implementation.TREAP ? new Treap<Long>() : new TreeSet<Long>());
+
+        for (int i = 0; i < size; i++) {
+            set.add(2L * KeyDistribution.scatter(i, size));
+        }
+    }
+
+    @Benchmark
+    public long sequentialSum() {
+        return set.stream().mapToLong(Long::longValue).sum();
+    }
+
+    @Benchmark
+    public long parallelSum() {
+        return set.parallelStream().mapToLong(Long::longValue).sum();
+    }
+}
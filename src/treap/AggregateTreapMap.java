@@ -0,0 +1,276 @@
+package treap;
+
+import java.util.Comparator;
+import java.util.Objects;
+import java.util.function.Predicate;
+
+/**
+ * A {@link TreapMap} that maintains an aggregate of the values in every
+ * subtree, as defined by a {@link Monoid}. This makes it possible to aggregate
+ * the values of any range of keys in O(log n) time, instead of iterating over
+ * the range, and to find the first key at which the aggregate of all values up
+ * to it meets a condition.
+ *
+ * The aggregate of a node summarizes its left subtree, its own value and its
+ * right subtree, in that order. It is recomputed for the node and its
+ * ancestors whenever a mapping is added, removed or given a new value, and for
+ * the two nodes involved in every rotation. Each modification therefore
+ * performs O(log n) monoid operations in expectation.
+ *
+ * @param <K>
+ * @param <V>
+ * @param <A> the type of the aggregates
+ */
+public class AggregateTreapMap<K, V, A> extends TreapMap<K, V> {
+
+    private final Monoid<? super V, A> monoid;
+
+    /**
+     * Constructs a new, empty map, sorted according to the natural ordering of
+     * its keys, that aggregates its values with the given monoid.
+     *
+     * @param monoid
+     */
+    public AggregateTreapMap(Monoid<? super V, A> monoid) {
+        this.monoid = Objects.requireNonNull(monoid);
+    }
+
+    /**
+     * Constructs a new, empty map, sorted according to the specified
+     * comparator, that aggregates its values with the given monoid.
+     *
+     * @param comparator
+     * @param monoid
+     */
+    public AggregateTreapMap(Comparator<? super K> comparator, Monoid<? super V, A> monoid) {
+        super(comparator);
+        this.monoid = Objects.requireNonNull(monoid);
+    }
+
+    public Monoid<? super V, A> monoid() {
+        return monoid;
+    }
+
+    /**
+     * Returns the aggregate of all values in this map, in constant time.
+     *
+     * @return
+     */
+    public A aggregate() {
+        return aggregateOf(root());
+    }
+
+    /**
+     * Returns the aggregate of the values with keys ranging from fromKey,
+     * inclusive, to toKey, exclusive.
+     *
+     * @param fromKey
+     * @param toKey
+     * @return
+     */
+    public A aggregate(K fromKey, K toKey) {
+        return aggregate(fromKey, true, toKey, false);
+    }
+
+    /**
+     * Returns the aggregate of the values with keys ranging from fromKey to
+     * toKey. This equals the aggregate of the values of
+     * {@code subMap(fromKey, fromInclusive, toKey, toInclusive)}, but takes
+     * O(log n) time.
+     *
+     * @param fromKey
+     * @param fromInclusive
+     * @param toKey
+     * @param toInclusive
+     * @return
+     */
+    public A aggregate(K fromKey, boolean fromInclusive, K toKey, boolean toInclusive) {
+        if (compare(fromKey, toKey) > 0) {
+            throw new IllegalArgumentException("fromKey > toKey");
+        }
+
+        return rangeAggregate(false, fromKey, fromInclusive, false, toKey, toInclusive);
+    }
+
+    /**
+     * Returns the aggregate of the values with keys less than (or equal to, if
+     * inclusive is true) toKey.
+     *
+     * @param toKey
+     * @param inclusive
+     * @return
+     */
+    public A headAggregate(K toKey, boolean inclusive) {
+        compare(toKey, toKey); // Type and null check
+        return rangeAggregate(true, null, true, false, toKey, inclusive);
+    }
+
+    /**
+     * Returns the aggregate of the values with keys greater than (or equal to,
+     * if inclusive is true) fromKey.
+     *
+     * @param fromKey
+     * @param inclusive
+     * @return
+     */
+    public A tailAggregate(K fromKey, boolean inclusive) {
+        compare(fromKey, fromKey); // Type and null check
+        return rangeAggregate(false, fromKey, inclusive, true, null, true);
+    }
+
+    /**
+     * Returns the least key for which the aggregate of the values with keys up
+     * to and including it satisfies the condition, or null if there is no such
+     * key. The condition must be monotone: once it holds for the aggregate of
+     * a prefix, it must hold for the aggregates of all longer prefixes. For
+     * example, with {@link Monoid#longSum()} and the condition
+     * {@code sum -> sum > x}, this returns the first key at which the running
+     * total exceeds x. Takes O(log n) time.
+     *
+     * @param condition
+     * @return
+     */
+    public K firstKeyWhere(Predicate<? super A> condition) {
+        Objects.requireNonNull(condition);
+
+        // The condition does not hold for the aggregate of all values before node
+        A prefix = monoid.identity();
+        TreapNode<K, V> node = root();
+
+        while (node != null) {
+            A withLeft = monoid.combine(prefix, aggregateOf(node.left));
+
+            if (node.left != null && condition.test(withLeft)) {
+                node = node.left;
+            } else {
+                prefix = monoid.combine(withLeft, monoid.lift(node.value));
+
+                if (condition.test(prefix)) {
+                    return node.key;
+                }
+
+                node = node.right;
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    TreapNode<K, V> newNode(K key, V value) {
+        return new AggregateNode(key, value);
+    }
+
+    @Override
+    void subtreeChanged(TreapNode<K, V> node) {
+        while (node != null) {
+            update(node);
+            node = node.parent;
+        }
+    }
+
+    @Override
+    void rotated(TreapNode<K, V> node, TreapNode<K, V> child) {
+        // The node is now a child of the child, so it has to be updated first
+        update(node);
+        update(child);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void update(TreapNode<K, V> node) {
+        A aggregate = monoid.combine(monoid.combine(aggregateOf(node.left), monoid.lift(node.value)), aggregateOf(node.right));
+        ((AggregateNode) node).aggregate = aggregate;
+    }
+
+    @SuppressWarnings("unchecked")
+    private A aggregateOf(TreapNode<K, V> node) {
+        return (node == null ? monoid.identity() : ((AggregateNode) node).aggregate);
+    }
+
+    /**
+     * Aggregates the values with keys in the given range. The bounds are
+     * interpreted as in
+     * {@link #entryRangeIterator(boolean, Object, boolean, boolean, Object, boolean)}.
+     *
+     * @param fromStart
+     * @param lo
+     * @param loInclusive
+     * @param toEnd
+     * @param hi
+     * @param hiInclusive
+     * @return
+     */
+    private A rangeAggregate(boolean fromStart, K lo, boolean loInclusive, boolean toEnd, K hi, boolean hiInclusive) {
+        // Find the highest node in the range; the rest of the range lies in its subtrees
+        TreapNode<K, V> top = root();
+
+        while (top != null) {
+            if (!fromStart && tooLow(top.key, lo, loInclusive)) {
+                top = top.right;
+            } else if (!toEnd && tooHigh(top.key, hi, hiInclusive)) {
+                top = top.left;
+            } else {
+                break;
+            }
+        }
+
+        if (top == null) {
+            return monoid.identity();
+        }
+
+        // The part of the left subtree in range is a suffix of it. Every node in
+        // range on the way down contributes itself and its right subtree, which
+        // come after everything collected below it.
+        A left = monoid.identity();
+
+        for (TreapNode<K, V> node = top.left; node != null;) {
+            if (!fromStart && tooLow(node.key, lo, loInclusive)) {
+                node = node.right;
+            } else {
+                left = monoid.combine(monoid.combine(monoid.lift(node.value), aggregateOf(node.right)), left);
+                node = node.left;
+            }
+        }
+
+        // Symmetrically, the part of the right subtree in range is a prefix of it
+        A right = monoid.identity();
+
+        for (TreapNode<K, V> node = top.right; node != null;) {
+            if (!toEnd && tooHigh(node.key, hi, hiInclusive)) {
+                node = node.left;
+            } else {
+                right = monoid.combine(right, monoid.combine(aggregateOf(node.left), monoid.lift(node.value)));
+                node = node.right;
+            }
+        }
+
+        return monoid.combine(monoid.combine(left, monoid.lift(top.value)), right);
+    }
+
+    private boolean tooLow(K key, K lo, boolean loInclusive) {
+        int comparison = compare(key, lo);
+        return comparison < 0 || (comparison == 0 && !loInclusive);
+    }
+
+    private boolean tooHigh(K key, K hi, boolean hiInclusive) {
+        int comparison = compare(key, hi);
+        return comparison > 0 || (comparison == 0 && !hiInclusive);
+    }
+
+    private final class AggregateNode extends TreapNode<K, V> {
+
+        A aggregate;
+
+        AggregateNode(K key, V value) {
+            super(key, value, Treap.randomPriority());
+            this.aggregate = monoid.lift(value);
+        }
+
+        @Override
+        public V setValue(V value) {
+            V old = super.setValue(value);
+            subtreeChanged(this);
+            return old;
+        }
+    }
+}
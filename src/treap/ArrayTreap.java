@@ -0,0 +1,750 @@
+package treap;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.SortedSet;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A treap that stores its nodes in parallel arrays instead of separate
+ * objects. A node is an index into these arrays, and its parent and children
+ * are stored as indices as well, with {@link #NIL} meaning no node. This saves
+ * an object header and three references per element, and keeps nodes that are
+ * created close together in time close together in memory.
+ *
+ * Slots of removed nodes are kept in a free list and reused by later
+ * insertions. {@link #compact()} renumbers the nodes in sorted order, so that
+ * in-order traversals and descents through nearby keys access memory
+ * sequentially.
+ *
+ * @param <E>
+ */
+public class ArrayTreap<E> extends AbstractSet<E> implements SeekableSet<E> {
+
+    private static final int NIL = -1;
+    private static final int DEFAULT_CAPACITY = 16;
+
+    // Node storage: the node with index i has key keys[i], priority priorities[i], etc.
+    private Object[] keys;
+    private float[] priorities;
+    private int[] parents, lefts, rights;
+
+    private int root = NIL;
+    private int size = 0;
+    private int used = 0; // Slots at or beyond this index have never been used
+    private int free = NIL; // First slot of the free list, which is linked through lefts
+    private Comparator<? super E> comparator = null;
+    private int modCount = 0;
+
+    /**
+     * Constructs a new, empty treap, sorted according to the natural ordering
+     * of its elements.
+     */
+    public ArrayTreap() {
+        keys = new Object[DEFAULT_CAPACITY];
+        priorities = new float[DEFAULT_CAPACITY];
+        parents = new int[DEFAULT_CAPACITY];
+        lefts = new int[DEFAULT_CAPACITY];
+        rights = new int[DEFAULT_CAPACITY];
+    }
+
+    /**
+     * Constructs a new treap containing the elements in the specified
+     * collection, sorted according to the natural ordering of its elements.
+     *
+     * @param c
+     */
+    public ArrayTreap(Collection<? extends E> c) {
+        this();
+        addAll(c);
+    }
+
+    /**
+     * Constructs a new, empty treap, sorted according to the specified
+     * comparator.
+     *
+     * @param comparator
+     */
+    public ArrayTreap(Comparator<? super E> comparator) {
+        this();
+        this.comparator = comparator;
+    }
+
+    /**
+     * Constructs a new treap containing the same elements and using the same
+     * ordering as the specified sorted set.
+     *
+     * @param s
+     */
+    public ArrayTreap(SortedSet<E> s) {
+        this(s.comparator());
+        addAll(s);
+    }
+
+    @Override
+    public boolean add(E e) {
+        // Find the place this value should be inserted
+        int parent = NIL;
+        int node = root;
+        int comparison = 0;
+
+        while (node != NIL) {
+            parent = node;
+
+            comparison = compare(e, key(node));
+
+            if (comparison == 0) {
+                // The treap already contains the specified key
+                return false;
+            } else if (comparison < 0) {
+                node = lefts[node];
+            } else {
+                node = rights[node];
+            }
+        }
+
+        // Create a new node with the specified key and a random priority
+        int newNode = allocate(e, ThreadLocalRandom.current().nextFloat());
+
+        // Insert this node into the treap
+        if (parent == NIL) {
+            root = newNode;
+        } else {
+            if (comparison < 0) {
+                lefts[parent] = newNode;
+            } else {
+                rights[parent] = newNode;
+            }
+
+            parents[newNode] = parent;
+        }
+
+        // Fix the heap property by performing rotations
+        while (parents[newNode] != NIL && priorities[newNode] < priorities[parents[newNode]]) {
+            if (newNode == lefts[parents[newNode]]) {
+                rotateRight(parents[newNode]);
+            } else {
+                rotateLeft(parents[newNode]);
+            }
+        }
+
+        size++;
+        modCount++;
+
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean contains(Object o) {
+        return find((E) o) != NIL;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean remove(Object o) {
+        int node = find((E) o);
+
+        if (node == NIL) {
+            return false;
+        }
+
+        remove(node);
+
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(keys, 0, used, null);
+        root = NIL;
+        size = 0;
+        used = 0;
+        free = NIL;
+        modCount++;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new ArrayTreapIterator(firstNode(), NIL, false);
+    }
+
+    @Override
+    public Iterator<E> descendingIterator() {
+        return new ArrayTreapIterator(lastNode(), NIL, true);
+    }
+
+    @Override
+    public E lower(E e) {
+        return keyOrNull(lowerNode(e));
+    }
+
+    @Override
+    public E higher(E e) {
+        return keyOrNull(higherNode(e));
+    }
+
+    @Override
+    public E floor(E e) {
+        return keyOrNull(floorNode(e));
+    }
+
+    @Override
+    public E ceiling(E e) {
+        return keyOrNull(ceilingNode(e));
+    }
+
+    @Override
+    public E pollFirst() {
+        int first = firstNode();
+
+        if (first == NIL) {
+            return null;
+        }
+
+        E key = key(first);
+        remove(first);
+        return key;
+    }
+
+    @Override
+    public E pollLast() {
+        int last = lastNode();
+
+        if (last == NIL) {
+            return null;
+        }
+
+        E key = key(last);
+        remove(last);
+        return key;
+    }
+
+    @Override
+    public Comparator<? super E> comparator() {
+        return comparator;
+    }
+
+    @Override
+    public E first() {
+        if (root == NIL) {
+            throw new NoSuchElementException("First element was queried, while the treap was empty.");
+        }
+
+        return key(firstNode());
+    }
+
+    @Override
+    public E last() {
+        if (root == NIL) {
+            throw new NoSuchElementException("Last element was queried, while the treap was empty.");
+        }
+
+        return key(lastNode());
+    }
+
+    @Override
+    public NavigableSet<E> descendingSet() {
+        return new NavigableSubSet<E>(this, true, null, true, true, null, true, true);
+    }
+
+    @Override
+    public NavigableSet<E> subSet(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+        if (compare(fromElement, toElement) > 0) {
+            throw new IllegalArgumentException("fromElement > toElement");
+        }
+
+        return new NavigableSubSet<E>(this, false, fromElement, fromInclusive, false, toElement, toInclusive, false);
+    }
+
+    @Override
+    public NavigableSet<E> headSet(E toElement, boolean inclusive) {
+        return new NavigableSubSet<E>(this, true, null, true, false, toElement, inclusive, false);
+    }
+
+    @Override
+    public NavigableSet<E> tailSet(E fromElement, boolean inclusive) {
+        return new NavigableSubSet<E>(this, false, fromElement, inclusive, true, null, true, false);
+    }
+
+    @Override
+    public SortedSet<E> subSet(E fromElement, E toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public SortedSet<E> headSet(E toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public SortedSet<E> tailSet(E fromElement) {
+        return tailSet(fromElement, true);
+    }
+
+    @Override
+    public Iterator<E> rangeIterator(boolean fromStart, E lo, boolean loInclusive, boolean toEnd, E hi, boolean hiInclusive) {
+        int first = (fromStart ? firstNode() : (loInclusive ? ceilingNode(lo) : higherNode(lo)));
+        int fence = (toEnd ? NIL : (hiInclusive ? higherNode(hi) : ceilingNode(hi)));
+
+        if (first != NIL && fence != NIL && compare(key(first), key(fence)) >= 0) {
+            // The range is empty
+            first = NIL;
+        }
+
+        return new ArrayTreapIterator(first, fence, false);
+    }
+
+    @Override
+    public Iterator<E> descendingRangeIterator(boolean fromStart, E lo, boolean loInclusive, boolean toEnd, E hi, boolean hiInclusive) {
+        int first = (toEnd ? lastNode() : (hiInclusive ? floorNode(hi) : lowerNode(hi)));
+        int fence = (fromStart ? NIL : (loInclusive ? lowerNode(lo) : floorNode(lo)));
+
+        if (first != NIL && fence != NIL && compare(key(first), key(fence)) <= 0) {
+            // The range is empty
+            first = NIL;
+        }
+
+        return new ArrayTreapIterator(first, fence, true);
+    }
+
+    /**
+     * Renumbers the nodes in sorted order and shrinks the node arrays to the
+     * size of this treap. Afterwards, the node with the i-th smallest key is
+     * stored at index i, so scans and searches for nearby keys touch nearby
+     * memory. Takes O(n) time.
+     */
+    public void compact() {
+        int[] newIndex = new int[used];
+        int[] order = new int[size];
+        int count = 0;
+
+        for (int node = firstNode(); node != NIL; node = successor(node)) {
+            newIndex[node] = count;
+            order[count] = node;
+            count++;
+        }
+
+        int capacity = Math.max(size, DEFAULT_CAPACITY);
+        Object[] newKeys = new Object[capacity];
+        float[] newPriorities = new float[capacity];
+        int[] newParents = new int[capacity];
+        int[] newLefts = new int[capacity];
+        int[] newRights = new int[capacity];
+
+        for (int i = 0; i < size; i++) {
+            int node = order[i];
+            newKeys[i] = keys[node];
+            newPriorities[i] = priorities[node];
+            newParents[i] = (parents[node] == NIL ? NIL : newIndex[parents[node]]);
+            newLefts[i] = (lefts[node] == NIL ? NIL : newIndex[lefts[node]]);
+            newRights[i] = (rights[node] == NIL ? NIL : newIndex[rights[node]]);
+        }
+
+        keys = newKeys;
+        priorities = newPriorities;
+        parents = newParents;
+        lefts = newLefts;
+        rights = newRights;
+
+        root = (root == NIL ? NIL : newIndex[root]);
+        used = size;
+        free = NIL;
+        modCount++;
+    }
+
+    @SuppressWarnings("unchecked")
+    private E key(int node) {
+        return (E) keys[node];
+    }
+
+    private E keyOrNull(int node) {
+        return (node == NIL ? null : key(node));
+    }
+
+    @SuppressWarnings("unchecked")
+    private int compare(E a, E b) {
+        if (comparator != null) {
+            return comparator.compare(a, b);
+        } else if (a != null) {
+            return ((Comparable<E>) a).compareTo(b);
+        } else if (b != null) {
+            return -((Comparable<E>) b).compareTo(a);
+        } else {
+            // Both a and b are null, so they are equal
+            return 0;
+        }
+    }
+
+    /**
+     * Returns a free slot holding a new leaf with the given key and priority,
+     * growing the arrays if necessary.
+     *
+     * @param key
+     * @param priority
+     * @return
+     */
+    private int allocate(E key, float priority) {
+        int node;
+
+        if (free != NIL) {
+            node = free;
+            free = lefts[node];
+        } else {
+            if (used == keys.length) {
+                int capacity = 2 * keys.length;
+                keys = Arrays.copyOf(keys, capacity);
+                priorities = Arrays.copyOf(priorities, capacity);
+                parents = Arrays.copyOf(parents, capacity);
+                lefts = Arrays.copyOf(lefts, capacity);
+                rights = Arrays.copyOf(rights, capacity);
+            }
+
+            node = used;
+            used++;
+        }
+
+        keys[node] = key;
+        priorities[node] = priority;
+        parents[node] = NIL;
+        lefts[node] = NIL;
+        rights[node] = NIL;
+
+        return node;
+    }
+
+    private int find(E key) {
+        int node = root;
+
+        while (node != NIL) {
+            int comparison = compare(key, key(node));
+
+            if (comparison < 0) {
+                node = lefts[node];
+            } else if (comparison > 0) {
+                node = rights[node];
+            } else {
+                return node;
+            }
+        }
+
+        return NIL;
+    }
+
+    private void remove(int node) {
+        // Perform rotations until this node is a leaf
+        while (lefts[node] != NIL || rights[node] != NIL) {
+            rotateDown(node);
+        }
+
+        // Actually remove the node
+        int parent = parents[node];
+
+        if (parent == NIL) {
+            root = NIL;
+        } else if (node == lefts[parent]) {
+            lefts[parent] = NIL;
+        } else {
+            rights[parent] = NIL;
+        }
+
+        // Add its slot to the free list
+        keys[node] = null;
+        lefts[node] = free;
+        free = node;
+
+        size--;
+        modCount++;
+    }
+
+    /**
+     * Rotate the subtree rooted at the specified node to the right, making the
+     * left child of the specified node the new root.
+     *
+     * @param node
+     */
+    private void rotateRight(int node) {
+        int child = lefts[node];
+        int parent = parents[node];
+        int middleSubtreap = rights[child];
+
+        // Switch the child pointers
+        if (parent == NIL) {
+            root = child;
+        } else if (node == lefts[parent]) {
+            lefts[parent] = child;
+        } else {
+            rights[parent] = child;
+        }
+
+        lefts[node] = middleSubtreap;
+        rights[child] = node;
+
+        // Fix the parent pointers
+        parents[node] = child;
+        parents[child] = parent;
+
+        if (middleSubtreap != NIL) {
+            parents[middleSubtreap] = node;
+        }
+    }
+
+    /**
+     * Rotate the subtree rooted at the specified node to the left, making the
+     * right child of the specified node the new root.
+     *
+     * @param node
+     */
+    private void rotateLeft(int node) {
+        int child = rights[node];
+        int parent = parents[node];
+        int middleSubtreap = lefts[child];
+
+        // Switch the child pointers
+        if (parent == NIL) {
+            root = child;
+        } else if (node == lefts[parent]) {
+            lefts[parent] = child;
+        } else {
+            rights[parent] = child;
+        }
+
+        rights[node] = middleSubtreap;
+        lefts[child] = node;
+
+        // Fix the parent pointers
+        parents[node] = child;
+        parents[child] = parent;
+
+        if (middleSubtreap != NIL) {
+            parents[middleSubtreap] = node;
+        }
+    }
+
+    /**
+     * Rotates the subtree rooted at the specified node to move this node down
+     * the tree. Must not be called on a leaf.
+     *
+     * @param node
+     */
+    private void rotateDown(int node) {
+        int left = lefts[node];
+        int right = rights[node];
+
+        if (left == NIL) {
+            rotateLeft(node);
+        } else if (right == NIL) {
+            rotateRight(node);
+        } else if (priorities[left] < priorities[right]) {
+            rotateRight(node);
+        } else {
+            rotateLeft(node);
+        }
+    }
+
+    private int firstNode() {
+        int node = root;
+
+        if (node != NIL) {
+            while (lefts[node] != NIL) {
+                node = lefts[node];
+            }
+        }
+
+        return node;
+    }
+
+    private int lastNode() {
+        int node = root;
+
+        if (node != NIL) {
+            while (rights[node] != NIL) {
+                node = rights[node];
+            }
+        }
+
+        return node;
+    }
+
+    private int lowerNode(E e) {
+        int node = root;
+        int lower = NIL;
+
+        while (node != NIL) {
+            if (compare(key(node), e) < 0) {
+                lower = node;
+                node = rights[node];
+            } else {
+                node = lefts[node];
+            }
+        }
+
+        return lower;
+    }
+
+    private int higherNode(E e) {
+        int node = root;
+        int higher = NIL;
+
+        while (node != NIL) {
+            if (compare(key(node), e) > 0) {
+                higher = node;
+                node = lefts[node];
+            } else {
+                node = rights[node];
+            }
+        }
+
+        return higher;
+    }
+
+    private int floorNode(E e) {
+        int node = root;
+        int lower = NIL;
+
+        while (node != NIL) {
+            int comparison = compare(key(node), e);
+
+            if (comparison == 0) {
+                return node;
+            } else if (comparison < 0) {
+                lower = node;
+                node = rights[node];
+            } else {
+                node = lefts[node];
+            }
+        }
+
+        return lower;
+    }
+
+    private int ceilingNode(E e) {
+        int node = root;
+        int higher = NIL;
+
+        while (node != NIL) {
+            int comparison = compare(key(node), e);
+
+            if (comparison == 0) {
+                return node;
+            } else if (comparison > 0) {
+                higher = node;
+                node = lefts[node];
+            } else {
+                node = rights[node];
+            }
+        }
+
+        return higher;
+    }
+
+    private int successor(int node) {
+        if (rights[node] != NIL) {
+            node = rights[node];
+
+            while (lefts[node] != NIL) {
+                node = lefts[node];
+            }
+
+            return node;
+        } else {
+            // Go up until we arrive from a left child
+            int parent = parents[node];
+
+            while (parent != NIL && node == rights[parent]) {
+                node = parent;
+                parent = parents[parent];
+            }
+
+            return parent;
+        }
+    }
+
+    private int predecessor(int node) {
+        if (lefts[node] != NIL) {
+            node = lefts[node];
+
+            while (rights[node] != NIL) {
+                node = rights[node];
+            }
+
+            return node;
+        } else {
+            // Go up until we arrive from a right child
+            int parent = parents[node];
+
+            while (parent != NIL && node == lefts[parent]) {
+                node = parent;
+                parent = parents[parent];
+            }
+
+            return parent;
+        }
+    }
+
+    /**
+     * Iterates over the nodes from a first node up to, but not including, a
+     * fence node, in ascending or descending order.
+     */
+    private class ArrayTreapIterator implements Iterator<E> {
+
+        private final int fence;
+        private final boolean descending;
+        private int lastReturned = NIL;
+        private int nextNode;
+        private int expectedModCount = modCount;
+
+        ArrayTreapIterator(int first, int fence, boolean descending) {
+            this.nextNode = first;
+            this.fence = fence;
+            this.descending = descending;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextNode != NIL && nextNode != fence;
+        }
+
+        @Override
+        public E next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+
+            lastReturned = nextNode;
+            nextNode = (descending ? predecessor(nextNode) : successor(nextNode));
+            return key(lastReturned);
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned == NIL) {
+                throw new IllegalStateException();
+            }
+
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+
+            // Removal only rotates the removed node down and frees its slot, so nextNode stays valid
+            ArrayTreap.this.remove(lastReturned);
+            lastReturned = NIL;
+            expectedModCount = modCount;
+        }
+    }
+}
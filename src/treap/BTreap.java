@@ -0,0 +1,901 @@
+package treap;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.SortedSet;
+
+/**
+ * A treap whose nodes are blocks holding a sorted array of up to a fixed
+ * number of elements, instead of a single element. The blocks form a treap
+ * ordered by their key ranges: all elements in the left subtreap of a block
+ * are smaller than its first element, and all elements in its right subtreap
+ * are greater than its last element. The priorities order whole blocks.
+ *
+ * With blocks of b elements, a search follows about log(n / b) pointers
+ * instead of log n, and then does a binary search within a single array, so
+ * it touches far fewer cache lines. A full block is split into two halves,
+ * the upper one becoming a new block with its own priority. A block that
+ * drops below a quarter full is merged with a neighbouring block, or takes
+ * over some of its elements if both together would be too full.
+ *
+ * @param <E>
+ */
+public class BTreap<E> extends AbstractSet<E> implements SeekableSet<E> {
+
+    private static final int DEFAULT_BLOCK_SIZE = 32;
+    private static final int MIN_BLOCK_SIZE = 4;
+
+    private final int blockSize;
+    private Block<E> root = null;
+    private int size = 0;
+    private Comparator<? super E> comparator = null;
+    private int modCount = 0;
+
+    /**
+     * Constructs a new, empty treap, sorted according to the natural ordering
+     * of its elements.
+     */
+    public BTreap() {
+        this.blockSize = DEFAULT_BLOCK_SIZE;
+    }
+
+    /**
+     * Constructs a new treap containing the elements in the specified
+     * collection, sorted according to the natural ordering of its elements.
+     *
+     * @param c
+     */
+    public BTreap(Collection<? extends E> c) {
+        this();
+        addAll(c);
+    }
+
+    /**
+     * Constructs a new, empty treap, sorted according to the specified
+     * comparator.
+     *
+     * @param comparator
+     */
+    public BTreap(Comparator<? super E> comparator) {
+        this();
+        this.comparator = comparator;
+    }
+
+    /**
+     * Constructs a new, empty treap, sorted according to the specified
+     * comparator, or the natural ordering of its elements if the comparator
+     * is null, whose blocks hold up to the given number of elements.
+     *
+     * @param comparator
+     * @param blockSize
+     * @throws IllegalArgumentException if the block size is less than 4
+     */
+    public BTreap(Comparator<? super E> comparator, int blockSize) {
+        if (blockSize < MIN_BLOCK_SIZE) {
+            throw new IllegalArgumentException("Blocks must hold at least " + MIN_BLOCK_SIZE + " elements.");
+        }
+
+        this.blockSize = blockSize;
+        this.comparator = comparator;
+    }
+
+    /**
+     * Constructs a new treap containing the same elements and using the same
+     * ordering as the specified sorted set.
+     *
+     * @param s
+     */
+    public BTreap(SortedSet<E> s) {
+        this(s.comparator());
+        addAll(s);
+    }
+
+    @Override
+    public boolean add(E e) {
+        if (root == null) {
+            root = new Block<E>(blockSize, Treap.randomPriority());
+            root.keys[0] = e;
+            root.count = 1;
+            size++;
+            modCount++;
+            return true;
+        }
+
+        // Find the block whose range contains the element. If there is none,
+        // the last block we visit is adjacent to it, so it goes there.
+        Block<E> block = root;
+
+        while (true) {
+            if (compare(e, block.key(0)) < 0) {
+                if (block.left == null) {
+                    break;
+                }
+
+                block = block.left;
+            } else if (compare(e, block.key(block.count - 1)) > 0) {
+                if (block.right == null) {
+                    break;
+                }
+
+                block = block.right;
+            } else {
+                break;
+            }
+        }
+
+        int index = ceilingIndex(block, e, true);
+
+        if (index < block.count && compare(block.key(index), e) == 0) {
+            // The treap already contains the specified key
+            return false;
+        }
+
+        if (block.count == blockSize) {
+            Block<E> upper = split(block);
+
+            if (index > block.count) {
+                index -= block.count;
+                block = upper;
+            }
+        }
+
+        System.arraycopy(block.keys, index, block.keys, index + 1, block.count - index);
+        block.keys[index] = e;
+        block.count++;
+
+        size++;
+        modCount++;
+
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean contains(Object o) {
+        E key = (E) o;
+        Block<E> block = findBlock(key);
+        return block != null && indexOf(block, key) >= 0;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean remove(Object o) {
+        E key = (E) o;
+        Block<E> block = findBlock(key);
+
+        if (block == null) {
+            return false;
+        }
+
+        int index = indexOf(block, key);
+
+        if (index < 0) {
+            return false;
+        }
+
+        removeAt(block, index);
+
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        root = null;
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new BTreapIterator(true, null, true, true, null, true, false);
+    }
+
+    @Override
+    public Iterator<E> descendingIterator() {
+        return new BTreapIterator(true, null, true, true, null, true, true);
+    }
+
+    @Override
+    public E lower(E e) {
+        Block<E> block = floorBlock(e, false);
+        return (block == null ? null : block.key(ceilingIndex(block, e, true) - 1));
+    }
+
+    @Override
+    public E higher(E e) {
+        Block<E> block = ceilingBlock(e, false);
+        return (block == null ? null : block.key(ceilingIndex(block, e, false)));
+    }
+
+    @Override
+    public E floor(E e) {
+        Block<E> block = floorBlock(e, true);
+        return (block == null ? null : block.key(ceilingIndex(block, e, false) - 1));
+    }
+
+    @Override
+    public E ceiling(E e) {
+        Block<E> block = ceilingBlock(e, true);
+        return (block == null ? null : block.key(ceilingIndex(block, e, true)));
+    }
+
+    @Override
+    public E pollFirst() {
+        if (root == null) {
+            return null;
+        }
+
+        Block<E> first = firstBlock();
+        E key = first.key(0);
+        removeAt(first, 0);
+        return key;
+    }
+
+    @Override
+    public E pollLast() {
+        if (root == null) {
+            return null;
+        }
+
+        Block<E> last = lastBlock();
+        E key = last.key(last.count - 1);
+        removeAt(last, last.count - 1);
+        return key;
+    }
+
+    @Override
+    public Comparator<? super E> comparator() {
+        return comparator;
+    }
+
+    @Override
+    public E first() {
+        if (root == null) {
+            throw new NoSuchElementException("First element was queried, while the treap was empty.");
+        }
+
+        return firstBlock().key(0);
+    }
+
+    @Override
+    public E last() {
+        if (root == null) {
+            throw new NoSuchElementException("Last element was queried, while the treap was empty.");
+        }
+
+        Block<E> last = lastBlock();
+        return last.key(last.count - 1);
+    }
+
+    @Override
+    public NavigableSet<E> descendingSet() {
+        return new NavigableSubSet<E>(this, true, null, true, true, null, true, true);
+    }
+
+    @Override
+    public NavigableSet<E> subSet(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+        if (compare(fromElement, toElement) > 0) {
+            throw new IllegalArgumentException("fromElement > toElement");
+        }
+
+        return new NavigableSubSet<E>(this, false, fromElement, fromInclusive, false, toElement, toInclusive, false);
+    }
+
+    @Override
+    public NavigableSet<E> headSet(E toElement, boolean inclusive) {
+        return new NavigableSubSet<E>(this, true, null, true, false, toElement, inclusive, false);
+    }
+
+    @Override
+    public NavigableSet<E> tailSet(E fromElement, boolean inclusive) {
+        return new NavigableSubSet<E>(this, false, fromElement, inclusive, true, null, true, false);
+    }
+
+    @Override
+    public SortedSet<E> subSet(E fromElement, E toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public SortedSet<E> headSet(E toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public SortedSet<E> tailSet(E fromElement) {
+        return tailSet(fromElement, true);
+    }
+
+    @Override
+    public Iterator<E> rangeIterator(boolean fromStart, E lo, boolean loInclusive, boolean toEnd, E hi, boolean hiInclusive) {
+        return new BTreapIterator(fromStart, lo, loInclusive, toEnd, hi, hiInclusive, false);
+    }
+
+    @Override
+    public Iterator<E> descendingRangeIterator(boolean fromStart, E lo, boolean loInclusive, boolean toEnd, E hi, boolean hiInclusive) {
+        return new BTreapIterator(fromStart, lo, loInclusive, toEnd, hi, hiInclusive, true);
+    }
+
+    @SuppressWarnings("unchecked")
+    private int compare(E a, E b) {
+        if (comparator != null) {
+            return comparator.compare(a, b);
+        } else if (a != null) {
+            return ((Comparable<E>) a).compareTo(b);
+        } else if (b != null) {
+            return -((Comparable<E>) b).compareTo(a);
+        } else {
+            // Both a and b are null, so they are equal
+            return 0;
+        }
+    }
+
+    /**
+     * Returns the block whose range contains the given key, or null if there
+     * is none.
+     *
+     * @param key
+     * @return
+     */
+    private Block<E> findBlock(E key) {
+        Block<E> block = root;
+
+        while (block != null) {
+            if (compare(key, block.key(0)) < 0) {
+                block = block.left;
+            } else if (compare(key, block.key(block.count - 1)) > 0) {
+                block = block.right;
+            } else {
+                return block;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns the position of the given key in the block, or -1 if the block
+     * does not contain it.
+     *
+     * @param block
+     * @param key
+     * @return
+     */
+    private int indexOf(Block<E> block, E key) {
+        int index = ceilingIndex(block, key, true);
+        return (index < block.count && compare(block.key(index), key) == 0 ? index : -1);
+    }
+
+    /**
+     * Returns the position in the block of the first element that is greater
+     * than (or equal to, if inclusive) the given key, or the number of
+     * elements in the block if there is none. Uses a binary search.
+     *
+     * @param block
+     * @param key
+     * @param inclusive
+     * @return
+     */
+    private int ceilingIndex(Block<E> block, E key, boolean inclusive) {
+        int lo = 0;
+        int hi = block.count;
+
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int comparison = compare(block.key(mid), key);
+
+            if (comparison < 0 || (comparison == 0 && !inclusive)) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+
+        return lo;
+    }
+
+    /**
+     * Returns the block holding the smallest element that is greater than (or
+     * equal to, if inclusive) the given key, or null if there is none.
+     *
+     * @param key
+     * @param inclusive
+     * @return
+     */
+    private Block<E> ceilingBlock(E key, boolean inclusive) {
+        Block<E> block = root;
+        Block<E> result = null;
+
+        while (block != null) {
+            int comparison = compare(block.key(block.count - 1), key);
+
+            if (comparison > 0 || (comparison == 0 && inclusive)) {
+                result = block;
+                comparison = compare(block.key(0), key);
+
+                if (comparison < 0 || (comparison == 0 && !inclusive)) {
+                    // The first element is too small, so the answer lies within this block
+                    return block;
+                }
+
+                block = block.left;
+            } else {
+                block = block.right;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the block holding the largest element that is smaller than (or
+     * equal to, if inclusive) the given key, or null if there is none.
+     *
+     * @param key
+     * @param inclusive
+     * @return
+     */
+    private Block<E> floorBlock(E key, boolean inclusive) {
+        Block<E> block = root;
+        Block<E> result = null;
+
+        while (block != null) {
+            int comparison = compare(block.key(0), key);
+
+            if (comparison < 0 || (comparison == 0 && inclusive)) {
+                result = block;
+                comparison = compare(block.key(block.count - 1), key);
+
+                if (comparison > 0 || (comparison == 0 && !inclusive)) {
+                    // The last element is too large, so the answer lies within this block
+                    return block;
+                }
+
+                block = block.right;
+            } else {
+                block = block.left;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Moves the upper half of the elements of the given full block to a new
+     * block, which is inserted into the treap directly after it.
+     *
+     * @param block
+     * @return the new block
+     */
+    private Block<E> split(Block<E> block) {
+        Block<E> upper = new Block<E>(blockSize, Treap.randomPriority());
+        int half = block.count / 2;
+
+        upper.count = block.count - half;
+        System.arraycopy(block.keys, half, upper.keys, 0, upper.count);
+        clearKeys(block, half, block.count);
+        block.count = half;
+
+        // The new block becomes the leftmost block in the right subtreap
+        if (block.right == null) {
+            block.right = upper;
+            upper.parent = block;
+        } else {
+            Block<E> parent = block.right;
+
+            while (parent.left != null) {
+                parent = parent.left;
+            }
+
+            parent.left = upper;
+            upper.parent = parent;
+        }
+
+        // Fix the heap property by performing rotations
+        while (upper.parent != null && upper.priority < upper.parent.priority) {
+            if (upper == upper.parent.left) {
+                rotateRight(upper.parent);
+            } else {
+                rotateLeft(upper.parent);
+            }
+        }
+
+        return upper;
+    }
+
+    /**
+     * Removes the element at the given position in the block, and merges or
+     * rebalances the block with a neighbour if it becomes too empty.
+     *
+     * @param block
+     * @param index
+     */
+    private void removeAt(Block<E> block, int index) {
+        System.arraycopy(block.keys, index + 1, block.keys, index, block.count - index - 1);
+        block.count--;
+        block.keys[block.count] = null;
+
+        size--;
+        modCount++;
+
+        if (block.count == 0) {
+            removeBlock(block);
+        } else if (block.count < blockSize / 4) {
+            Block<E> next = successor(block);
+
+            if (next != null) {
+                rebalance(block, next);
+            } else {
+                Block<E> previous = predecessor(block);
+
+                if (previous != null) {
+                    rebalance(previous, block);
+                }
+            }
+        }
+    }
+
+    /**
+     * Merges two adjacent blocks if their elements fit comfortably in one, or
+     * spreads their elements evenly over both otherwise.
+     *
+     * @param lower
+     * @param upper the block directly after the lower one
+     */
+    private void rebalance(Block<E> lower, Block<E> upper) {
+        int total = lower.count + upper.count;
+
+        if (total <= 3 * blockSize / 4) {
+            // Merge, leaving room for a few more insertions before the next split
+            System.arraycopy(upper.keys, 0, lower.keys, lower.count, upper.count);
+            lower.count = total;
+            upper.count = 0;
+            removeBlock(upper);
+        } else if (lower.count < upper.count) {
+            // Move the first elements of the upper block to the end of the lower one
+            int move = total / 2 - lower.count;
+            System.arraycopy(upper.keys, 0, lower.keys, lower.count, move);
+            System.arraycopy(upper.keys, move, upper.keys, 0, upper.count - move);
+            clearKeys(upper, upper.count - move, upper.count);
+            lower.count += move;
+            upper.count -= move;
+        } else {
+            // Move the last elements of the lower block to the start of the upper one
+            int move = total / 2 - upper.count;
+            System.arraycopy(upper.keys, 0, upper.keys, move, upper.count);
+            System.arraycopy(lower.keys, lower.count - move, upper.keys, 0, move);
+            clearKeys(lower, lower.count - move, lower.count);
+            lower.count -= move;
+            upper.count += move;
+        }
+    }
+
+    private static void clearKeys(Block<?> block, int from, int to) {
+        for (int i = from; i < to; i++) {
+            block.keys[i] = null;
+        }
+    }
+
+    private void removeBlock(Block<E> block) {
+        // Perform rotations until this block is a leaf
+        while (block.left != null || block.right != null) {
+            rotateDown(block);
+        }
+
+        // Actually remove the block
+        if (block == root) {
+            root = null;
+        } else if (block == block.parent.left) {
+            block.parent.left = null;
+        } else {
+            block.parent.right = null;
+        }
+    }
+
+    /**
+     * Rotate the subtree rooted at the specified block to the right, making
+     * the left child of the specified block the new root.
+     *
+     * @param block
+     */
+    private void rotateRight(Block<E> block) {
+        Block<E> child = block.left;
+        Block<E> parent = block.parent;
+        Block<E> middleSubtreap = child.right;
+
+        // Switch the child pointers
+        if (parent == null) {
+            root = child;
+        } else if (block == parent.left) {
+            parent.left = child;
+        } else {
+            parent.right = child;
+        }
+
+        block.left = middleSubtreap;
+        child.right = block;
+
+        // Fix the parent pointers
+        block.parent = child;
+        child.parent = parent;
+
+        if (middleSubtreap != null) {
+            middleSubtreap.parent = block;
+        }
+    }
+
+    /**
+     * Rotate the subtree rooted at the specified block to the left, making the
+     * right child of the specified block the new root.
+     *
+     * @param block
+     */
+    private void rotateLeft(Block<E> block) {
+        Block<E> child = block.right;
+        Block<E> parent = block.parent;
+        Block<E> middleSubtreap = child.left;
+
+        // Switch the child pointers
+        if (parent == null) {
+            root = child;
+        } else if (block == parent.left) {
+            parent.left = child;
+        } else {
+            parent.right = child;
+        }
+
+        block.right = middleSubtreap;
+        child.left = block;
+
+        // Fix the parent pointers
+        block.parent = child;
+        child.parent = parent;
+
+        if (middleSubtreap != null) {
+            middleSubtreap.parent = block;
+        }
+    }
+
+    /**
+     * Rotates the subtree rooted at the specified block to move this block
+     * down the tree. Must not be called on a leaf.
+     *
+     * @param block
+     */
+    private void rotateDown(Block<E> block) {
+        if (block.left == null) {
+            rotateLeft(block);
+        } else if (block.right == null) {
+            rotateRight(block);
+        } else if (block.left.priority < block.right.priority) {
+            rotateRight(block);
+        } else {
+            rotateLeft(block);
+        }
+    }
+
+    private Block<E> firstBlock() {
+        Block<E> block = root;
+
+        if (block != null) {
+            while (block.left != null) {
+                block = block.left;
+            }
+        }
+
+        return block;
+    }
+
+    private Block<E> lastBlock() {
+        Block<E> block = root;
+
+        if (block != null) {
+            while (block.right != null) {
+                block = block.right;
+            }
+        }
+
+        return block;
+    }
+
+    private Block<E> successor(Block<E> block) {
+        if (block.right != null) {
+            block = block.right;
+
+            while (block.left != null) {
+                block = block.left;
+            }
+
+            return block;
+        } else {
+            // Go up until we arrive from a left child
+            Block<E> parent = block.parent;
+
+            while (parent != null && block == parent.right) {
+                block = parent;
+                parent = parent.parent;
+            }
+
+            return parent;
+        }
+    }
+
+    private Block<E> predecessor(Block<E> block) {
+        if (block.left != null) {
+            block = block.left;
+
+            while (block.right != null) {
+                block = block.right;
+            }
+
+            return block;
+        } else {
+            // Go up until we arrive from a right child
+            Block<E> parent = block.parent;
+
+            while (parent != null && block == parent.left) {
+                block = parent;
+                parent = parent.parent;
+            }
+
+            return parent;
+        }
+    }
+
+    /**
+     * Iterates over the elements in a range, in ascending or descending order.
+     * A position is a block and an index into it. Removing an element may
+     * merge or rebalance blocks, which moves the elements around, so the
+     * iterator then finds its next position and the end of the range again
+     * by searching for the last returned element and the first element past
+     * the range.
+     */
+    private class BTreapIterator implements Iterator<E> {
+
+        private final boolean descending;
+        private final boolean unbounded; // True if the range does not end before the end of the treap
+        private final E fenceKey; // The first element past the range
+        private Block<E> nextBlock, fenceBlock;
+        private int nextIndex, fenceIndex;
+        private E lastReturned = null;
+        private boolean canRemove = false;
+        private int expectedModCount = modCount;
+
+        BTreapIterator(boolean fromStart, E lo, boolean loInclusive, boolean toEnd, E hi, boolean hiInclusive, boolean descending) {
+            this.descending = descending;
+
+            if (descending) {
+                seekNext(toEnd, hi, hiInclusive);
+                E fence = (fromStart ? null : (loInclusive ? lower(lo) : floor(lo)));
+                unbounded = (fence == null);
+                fenceKey = fence;
+            } else {
+                seekNext(fromStart, lo, loInclusive);
+                E fence = (toEnd ? null : (hiInclusive ? higher(hi) : ceiling(hi)));
+                unbounded = (fence == null);
+                fenceKey = fence;
+            }
+
+            seekFence();
+
+            if (nextBlock != null && !unbounded) {
+                int comparison = compare(nextBlock.key(nextIndex), fenceKey);
+
+                if (descending ? comparison <= 0 : comparison >= 0) {
+                    // The range is empty
+                    nextBlock = null;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextBlock != null && (nextBlock != fenceBlock || nextIndex != fenceIndex);
+        }
+
+        @Override
+        public E next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+
+            lastReturned = nextBlock.key(nextIndex);
+            canRemove = true;
+
+            if (descending) {
+                nextIndex--;
+
+                if (nextIndex < 0) {
+                    nextBlock = predecessor(nextBlock);
+                    nextIndex = (nextBlock == null ? 0 : nextBlock.count - 1);
+                }
+            } else {
+                nextIndex++;
+
+                if (nextIndex == nextBlock.count) {
+                    nextBlock = successor(nextBlock);
+                    nextIndex = 0;
+                }
+            }
+
+            return lastReturned;
+        }
+
+        @Override
+        public void remove() {
+            if (!canRemove) {
+                throw new IllegalStateException();
+            }
+
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+
+            BTreap.this.remove(lastReturned);
+            seekNext(false, lastReturned, false);
+            seekFence();
+            canRemove = false;
+            expectedModCount = modCount;
+        }
+
+        /**
+         * Moves to the first element past the given bound in the direction of
+         * the iteration, or the first element overall if unbounded is true.
+         *
+         * @param unbounded
+         * @param bound
+         * @param inclusive
+         */
+        private void seekNext(boolean unbounded, E bound, boolean inclusive) {
+            if (descending) {
+                nextBlock = (unbounded ? lastBlock() : floorBlock(bound, inclusive));
+                nextIndex = (nextBlock == null ? 0 : (unbounded ? nextBlock.count : ceilingIndex(nextBlock, bound, !inclusive)) - 1);
+            } else {
+                nextBlock = (unbounded ? firstBlock() : ceilingBlock(bound, inclusive));
+                nextIndex = (nextBlock == null || unbounded ? 0 : ceilingIndex(nextBlock, bound, inclusive));
+            }
+        }
+
+        private void seekFence() {
+            if (unbounded) {
+                fenceBlock = null;
+                fenceIndex = 0;
+            } else {
+                fenceBlock = findBlock(fenceKey);
+                fenceIndex = indexOf(fenceBlock, fenceKey);
+            }
+        }
+    }
+
+    private static final class Block<E> {
+
+        final Object[] keys;
+        final float priority;
+        int count = 0;
+        Block<E> parent, left, right;
+
+        Block(int capacity, float priority) {
+            this.keys = new Object[capacity];
+            this.priority = priority;
+        }
+
+        @SuppressWarnings("unchecked")
+        E key(int index) {
+            return (E) keys[index];
+        }
+    }
+}
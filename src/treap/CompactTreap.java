@@ -0,0 +1,684 @@
+package treap;
+
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.SortedSet;
+
+/**
+ * A treap whose nodes only hold a key, a priority and two child references:
+ * there are no parent pointers and no subtreap sizes. This saves two fields
+ * per node compared to {@link Treap}, at the cost of its index-based
+ * operations.
+ *
+ * Without parent pointers, all updates work top-down. An insertion descends
+ * to the place where the priority of the new node belongs and splits the
+ * subtreap below it around the new key, and a removal replaces the removed
+ * node by the join of its children. Neither performs any rotations.
+ * Iterators keep the path from the root to their current position on an
+ * explicit stack.
+ *
+ * @param <E>
+ */
+public class CompactTreap<E> extends AbstractSet<E> implements SeekableSet<E> {
+
+    private Node<E> root = null;
+    private int size = 0;
+    private Comparator<? super E> comparator = null;
+    private int modCount = 0;
+
+    /**
+     * Constructs a new, empty treap, sorted according to the natural ordering
+     * of its elements.
+     */
+    public CompactTreap() {
+    }
+
+    /**
+     * Constructs a new treap containing the elements in the specified
+     * collection, sorted according to the natural ordering of its elements.
+     *
+     * @param c
+     */
+    public CompactTreap(Collection<? extends E> c) {
+        this();
+        addAll(c);
+    }
+
+    /**
+     * Constructs a new, empty treap, sorted according to the specified
+     * comparator.
+     *
+     * @param comparator
+     */
+    public CompactTreap(Comparator<? super E> comparator) {
+        this();
+        this.comparator = comparator;
+    }
+
+    /**
+     * Constructs a new treap containing the same elements and using the same
+     * ordering as the specified sorted set.
+     *
+     * @param s
+     */
+    public CompactTreap(SortedSet<E> s) {
+        this(s.comparator());
+        addAll(s);
+    }
+
+    @Override
+    public boolean add(E e) {
+        float priority = Treap.randomPriority();
+
+        // Find the place where the new node belongs according to its priority
+        Node<E> parent = null;
+        Node<E> node = root;
+        int comparison = 0;
+
+        while (node != null && node.priority <= priority) {
+            comparison = compare(e, node.key);
+
+            if (comparison == 0) {
+                // The treap already contains the specified key
+                return false;
+            }
+
+            parent = node;
+            node = (comparison < 0 ? node.left : node.right);
+        }
+
+        // The subtreap that the new node takes over may still contain the key
+        if (find(node, e) != null) {
+            return false;
+        }
+
+        Node<E> newNode = new Node<E>(e, priority);
+        split(node, e, newNode);
+        replaceChild(parent, comparison, newNode);
+
+        size++;
+        modCount++;
+
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean contains(Object o) {
+        return find(root, (E) o) != null;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        @SuppressWarnings("unchecked")
+        E key = (E) o;
+
+        // Find the node with the given key, keeping track of how we got there
+        Node<E> parent = null;
+        Node<E> node = root;
+        int comparison = 0;
+
+        while (node != null) {
+            int c = compare(key, node.key);
+
+            if (c == 0) {
+                break;
+            }
+
+            parent = node;
+            comparison = c;
+            node = (c < 0 ? node.left : node.right);
+        }
+
+        if (node == null) {
+            return false;
+        }
+
+        replaceChild(parent, comparison, join(node.left, node.right));
+
+        size--;
+        modCount++;
+
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        root = null;
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new CompactTreapIterator(true, null, true, null, false);
+    }
+
+    @Override
+    public Iterator<E> descendingIterator() {
+        return new CompactTreapIterator(true, null, true, null, true);
+    }
+
+    @Override
+    public E lower(E e) {
+        return keyOrNull(lowerNode(e));
+    }
+
+    @Override
+    public E higher(E e) {
+        return keyOrNull(higherNode(e));
+    }
+
+    @Override
+    public E floor(E e) {
+        return keyOrNull(floorNode(e));
+    }
+
+    @Override
+    public E ceiling(E e) {
+        return keyOrNull(ceilingNode(e));
+    }
+
+    @Override
+    public E pollFirst() {
+        if (root == null) {
+            return null;
+        }
+
+        // The first node has no left child, so its right child takes its place
+        Node<E> parent = null;
+        Node<E> node = root;
+
+        while (node.left != null) {
+            parent = node;
+            node = node.left;
+        }
+
+        if (parent == null) {
+            root = node.right;
+        } else {
+            parent.left = node.right;
+        }
+
+        size--;
+        modCount++;
+
+        return node.key;
+    }
+
+    @Override
+    public E pollLast() {
+        if (root == null) {
+            return null;
+        }
+
+        // The last node has no right child, so its left child takes its place
+        Node<E> parent = null;
+        Node<E> node = root;
+
+        while (node.right != null) {
+            parent = node;
+            node = node.right;
+        }
+
+        if (parent == null) {
+            root = node.left;
+        } else {
+            parent.right = node.left;
+        }
+
+        size--;
+        modCount++;
+
+        return node.key;
+    }
+
+    @Override
+    public Comparator<? super E> comparator() {
+        return comparator;
+    }
+
+    @Override
+    public E first() {
+        if (root == null) {
+            throw new NoSuchElementException("First element was queried, while the treap was empty.");
+        }
+
+        Node<E> node = root;
+
+        while (node.left != null) {
+            node = node.left;
+        }
+
+        return node.key;
+    }
+
+    @Override
+    public E last() {
+        if (root == null) {
+            throw new NoSuchElementException("Last element was queried, while the treap was empty.");
+        }
+
+        Node<E> node = root;
+
+        while (node.right != null) {
+            node = node.right;
+        }
+
+        return node.key;
+    }
+
+    @Override
+    public NavigableSet<E> descendingSet() {
+        return new NavigableSubSet<E>(this, true, null, true, true, null, true, true);
+    }
+
+    @Override
+    public NavigableSet<E> subSet(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+        if (compare(fromElement, toElement) > 0) {
+            throw new IllegalArgumentException("fromElement > toElement");
+        }
+
+        return new NavigableSubSet<E>(this, false, fromElement, fromInclusive, false, toElement, toInclusive, false);
+    }
+
+    @Override
+    public NavigableSet<E> headSet(E toElement, boolean inclusive) {
+        return new NavigableSubSet<E>(this, true, null, true, false, toElement, inclusive, false);
+    }
+
+    @Override
+    public NavigableSet<E> tailSet(E fromElement, boolean inclusive) {
+        return new NavigableSubSet<E>(this, false, fromElement, inclusive, true, null, true, false);
+    }
+
+    @Override
+    public SortedSet<E> subSet(E fromElement, E toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public SortedSet<E> headSet(E toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public SortedSet<E> tailSet(E fromElement) {
+        return tailSet(fromElement, true);
+    }
+
+    @Override
+    public Iterator<E> rangeIterator(boolean fromStart, E lo, boolean loInclusive, boolean toEnd, E hi, boolean hiInclusive) {
+        Node<E> fence = (toEnd ? null : (hiInclusive ? higherNode(hi) : ceilingNode(hi)));
+        return new CompactTreapIterator(fromStart, lo, loInclusive, fence, false);
+    }
+
+    @Override
+    public Iterator<E> descendingRangeIterator(boolean fromStart, E lo, boolean loInclusive, boolean toEnd, E hi, boolean hiInclusive) {
+        Node<E> fence = (fromStart ? null : (loInclusive ? lowerNode(lo) : floorNode(lo)));
+        return new CompactTreapIterator(toEnd, hi, hiInclusive, fence, true);
+    }
+
+    private static <E> E keyOrNull(Node<E> node) {
+        return (node == null ? null : node.key);
+    }
+
+    @SuppressWarnings("unchecked")
+    private int compare(E a, E b) {
+        if (comparator != null) {
+            return comparator.compare(a, b);
+        } else if (a != null) {
+            return ((Comparable<E>) a).compareTo(b);
+        } else if (b != null) {
+            return -((Comparable<E>) b).compareTo(a);
+        } else {
+            // Both a and b are null, so they are equal
+            return 0;
+        }
+    }
+
+    private Node<E> find(Node<E> node, E key) {
+        while (node != null) {
+            int comparison = compare(key, node.key);
+
+            if (comparison < 0) {
+                node = node.left;
+            } else if (comparison > 0) {
+                node = node.right;
+            } else {
+                return node;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Makes the specified node the left or right child of the specified
+     * parent, depending on the sign of the comparison, or the root if the
+     * parent is null.
+     *
+     * @param parent
+     * @param comparison
+     * @param child
+     */
+    private void replaceChild(Node<E> parent, int comparison, Node<E> child) {
+        if (parent == null) {
+            root = child;
+        } else if (comparison < 0) {
+            parent.left = child;
+        } else {
+            parent.right = child;
+        }
+    }
+
+    /**
+     * Splits the subtreap rooted at the specified node, which does not
+     * contain the key, into the elements smaller and greater than the key,
+     * and makes these the left and right subtreaps of the given new node.
+     * Walks down once, appending every node to the rightmost path of the
+     * smaller part or the leftmost path of the greater part.
+     *
+     * @param node
+     * @param key
+     * @param newNode
+     */
+    private void split(Node<E> node, E key, Node<E> newNode) {
+        Node<E> lastSmaller = null;
+        Node<E> lastGreater = null;
+
+        while (node != null) {
+            if (compare(node.key, key) < 0) {
+                if (lastSmaller == null) {
+                    newNode.left = node;
+                } else {
+                    lastSmaller.right = node;
+                }
+
+                lastSmaller = node;
+                node = node.right;
+            } else {
+                if (lastGreater == null) {
+                    newNode.right = node;
+                } else {
+                    lastGreater.left = node;
+                }
+
+                lastGreater = node;
+                node = node.left;
+            }
+        }
+
+        // Cut off the links that now cross the key
+        if (lastSmaller != null) {
+            lastSmaller.right = null;
+        }
+
+        if (lastGreater != null) {
+            lastGreater.left = null;
+        }
+    }
+
+    /**
+     * Joins two subtreaps, where all keys in the left one are smaller than
+     * all keys in the right one, into a single one. Walks down the rightmost
+     * path of the left subtreap and the leftmost path of the right subtreap,
+     * merging them by priority.
+     *
+     * @param left
+     * @param right
+     * @return the root of the joined subtreap
+     */
+    private static <E> Node<E> join(Node<E> left, Node<E> right) {
+        Node<E> top = null;
+        Node<E> parent = null; // The last node placed, whose child is still open
+        boolean openRight = false;
+
+        while (left != null && right != null) {
+            // The root with the lowest priority goes on top, and the rest of
+            // the other subtreap is joined into its child facing that side
+            Node<E> next;
+            boolean nextOpenRight;
+
+            if (left.priority <= right.priority) {
+                next = left;
+                left = left.right;
+                nextOpenRight = true;
+            } else {
+                next = right;
+                right = right.left;
+                nextOpenRight = false;
+            }
+
+            if (parent == null) {
+                top = next;
+            } else if (openRight) {
+                parent.right = next;
+            } else {
+                parent.left = next;
+            }
+
+            parent = next;
+            openRight = nextOpenRight;
+        }
+
+        Node<E> rest = (left != null ? left : right);
+
+        if (parent == null) {
+            top = rest;
+        } else if (openRight) {
+            parent.right = rest;
+        } else {
+            parent.left = rest;
+        }
+
+        return top;
+    }
+
+    /*
+     * The following four searches remember the last node where they turned in
+     * the direction of the wanted key. As each later candidate lies in the
+     * subtreap of the previous one, it is always closer to the key, so no
+     * extra comparisons are needed.
+     */
+    private Node<E> lowerNode(E e) {
+        Node<E> node = root;
+        Node<E> lower = null;
+
+        while (node != null) {
+            if (compare(node.key, e) < 0) {
+                lower = node;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+
+        return lower;
+    }
+
+    private Node<E> higherNode(E e) {
+        Node<E> node = root;
+        Node<E> higher = null;
+
+        while (node != null) {
+            if (compare(node.key, e) > 0) {
+                higher = node;
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+
+        return higher;
+    }
+
+    private Node<E> floorNode(E e) {
+        Node<E> node = root;
+        Node<E> lower = null;
+
+        while (node != null) {
+            int comparison = compare(node.key, e);
+
+            if (comparison == 0) {
+                return node;
+            } else if (comparison < 0) {
+                lower = node;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+
+        return lower;
+    }
+
+    private Node<E> ceilingNode(E e) {
+        Node<E> node = root;
+        Node<E> higher = null;
+
+        while (node != null) {
+            int comparison = compare(node.key, e);
+
+            if (comparison == 0) {
+                return node;
+            } else if (comparison > 0) {
+                higher = node;
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+
+        return higher;
+    }
+
+    /**
+     * Iterates over the nodes from a bound up to, but not including, a fence
+     * node, in ascending or descending order. The stack holds the nodes on
+     * the path from the root to the next node that have not been returned
+     * yet, with the next node on top. Removing an element restructures the
+     * treap below it, so the iterator then rebuilds its stack with a new
+     * descent from the root.
+     */
+    private class CompactTreapIterator implements Iterator<E> {
+
+        private final Node<E> fence;
+        private final boolean descending;
+        private final ArrayDeque<Node<E>> stack = new ArrayDeque<Node<E>>();
+        private Node<E> lastReturned = null;
+        private int expectedModCount = modCount;
+
+        /**
+         * Creates an iterator that starts at the first element past the given
+         * bound: the smallest element that is greater than (or equal to, if
+         * inclusive) the bound in ascending order, and the largest element
+         * that is smaller than (or equal to) the bound in descending order.
+         * If unbounded is true, the bound is ignored.
+         *
+         * @param unbounded
+         * @param bound
+         * @param inclusive
+         * @param fence
+         * @param descending
+         */
+        CompactTreapIterator(boolean unbounded, E bound, boolean inclusive, Node<E> fence, boolean descending) {
+            this.fence = fence;
+            this.descending = descending;
+            seek(unbounded, bound, inclusive);
+
+            if (fence != null && !stack.isEmpty()) {
+                int comparison = compare(stack.peek().key, fence.key);
+
+                if (descending ? comparison <= 0 : comparison >= 0) {
+                    // The range is empty
+                    stack.clear();
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !stack.isEmpty() && stack.peek() != fence;
+        }
+
+        @Override
+        public E next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+
+            lastReturned = stack.pop();
+
+            // Push the path to the next node, which is the first one in the next subtreap
+            Node<E> node = (descending ? lastReturned.left : lastReturned.right);
+
+            while (node != null) {
+                stack.push(node);
+                node = (descending ? node.right : node.left);
+            }
+
+            return lastReturned.key;
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned == null) {
+                throw new IllegalStateException();
+            }
+
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+
+            CompactTreap.this.remove(lastReturned.key);
+            seek(false, lastReturned.key, false);
+            lastReturned = null;
+            expectedModCount = modCount;
+        }
+
+        private void seek(boolean unbounded, E bound, boolean inclusive) {
+            stack.clear();
+            Node<E> node = root;
+
+            while (node != null) {
+                int comparison = (unbounded ? 1 : (descending ? compare(bound, node.key) : compare(node.key, bound)));
+
+                if (comparison > 0 || (comparison == 0 && inclusive)) {
+                    // This node is past the bound, so the next one is here or in the subtreap before it
+                    stack.push(node);
+                    node = (descending ? node.right : node.left);
+                } else {
+                    node = (descending ? node.left : node.right);
+                }
+            }
+        }
+    }
+
+    private static class Node<E> {
+
+        final E key;
+        final float priority;
+        Node<E> left, right;
+
+        Node(E key, float priority) {
+            this.key = key;
+            this.priority = priority;
+        }
+    }
+}
@@ -0,0 +1,863 @@
+package treap;
+
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.SortedSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread-safe treap, with the same weakly consistent semantics as
+ * {@link java.util.concurrent.ConcurrentSkipListSet}.
+ *
+ * Queries never lock and never retry. Updates work top-down and lock only the
+ * nodes they change. An insertion descends to the first node on its search
+ * path with a larger priority than the new node, and splits the subtreap
+ * below it around the new key. A removal replaces its node by the join of the
+ * node's two subtreaps. Either way, the only nodes that change are the parent
+ * of that subtreap and the nodes on the split path, or on the two spines that
+ * are joined, of which there are O(1) in expectation. The update locks the parent first and the path
+ * nodes top-down, and builds copies of the path nodes instead of changing
+ * them. It then marks the originals as dead and publishes the result with a
+ * single write to a child link of the parent. Queries therefore always see a
+ * valid treap, and updates that touch disjoint parts of the treap run in
+ * parallel. An update that finds a node dead, or its parent link changed,
+ * after locking it starts over.
+ *
+ * Iterators are weakly consistent: they never throw a
+ * ConcurrentModificationException, and they return each element at most once.
+ * They read the treap in small batches and reflect any updates made between
+ * batches. The same holds for the views returned by {@link #subSet},
+ * {@link #headSet}, {@link #tailSet} and {@link #descendingSet()}. As for
+ * ConcurrentSkipListSet, {@link #clear()} and the bulk operations are not
+ * atomic. Null elements are not permitted.
+ *
+ * @param <E>
+ */
+public class ConcurrentTreap<E> extends AbstractSet<E> implements SeekableSet<E> {
+
+    /**
+     * The number of elements that iterators read at a time.
+     */
+    private static final int BATCH_SIZE = 64;
+
+    private final Comparator<? super E> comparator;
+    private final Node<E> head = new Node<E>(null, Float.NEGATIVE_INFINITY, null, null); // Its right child is the root
+    private final LongAdder size = new LongAdder();
+
+    /**
+     * Constructs a new, empty treap, sorted according to the natural ordering
+     * of its elements.
+     */
+    public ConcurrentTreap() {
+        this.comparator = null;
+    }
+
+    /**
+     * Constructs a new treap containing the elements in the specified
+     * collection, sorted according to the natural ordering of its elements.
+     *
+     * @param c
+     */
+    public ConcurrentTreap(Collection<? extends E> c) {
+        this();
+        addAll(c);
+    }
+
+    /**
+     * Constructs a new, empty treap, sorted according to the specified
+     * comparator.
+     *
+     * @param comparator
+     */
+    public ConcurrentTreap(Comparator<? super E> comparator) {
+        this.comparator = comparator;
+    }
+
+    /**
+     * Constructs a new treap containing the same elements and using the same
+     * ordering as the specified sorted set.
+     *
+     * @param s
+     */
+    public ConcurrentTreap(SortedSet<E> s) {
+        this(s.comparator());
+        addAll(s);
+    }
+
+    @Override
+    public boolean add(E e) {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+
+        float priority = ThreadLocalRandom.current().nextFloat();
+
+        while (true) {
+            // Find the first node on the search path with a larger priority
+            Node<E> parent = head;
+            boolean left = false;
+            Node<E> node = head.right;
+
+            while (node != null) {
+                int comparison = compare(e, node.key);
+
+                if (comparison == 0) {
+                    // The treap already contains the specified key
+                    return false;
+                }
+
+                if (node.priority > priority) {
+                    break;
+                }
+
+                parent = node;
+                left = (comparison < 0);
+                node = (left ? node.left : node.right);
+            }
+
+            synchronized (parent) {
+                if (parent.dead || (left ? parent.left : parent.right) != node) {
+                    // Another update changed this part of the treap, start over
+                    continue;
+                }
+
+                Split<E> parts = split(node, e);
+
+                if (parts == null) {
+                    // The key was added below the insertion point in the meantime
+                    return false;
+                }
+
+                link(parent, left, new Node<E>(e, priority, parts.left, parts.right));
+            }
+
+            size.increment();
+
+            return true;
+        }
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (o == null) {
+            throw new NullPointerException();
+        }
+
+        @SuppressWarnings("unchecked")
+        E key = (E) o;
+
+        return find(key) != null;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (o == null) {
+            throw new NullPointerException();
+        }
+
+        @SuppressWarnings("unchecked")
+        E key = (E) o;
+
+        while (true) {
+            Node<E> parent = head;
+            boolean left = false;
+            Node<E> node = head.right;
+
+            while (node != null) {
+                int comparison = compare(key, node.key);
+
+                if (comparison == 0) {
+                    break;
+                }
+
+                parent = node;
+                left = (comparison < 0);
+                node = (left ? node.left : node.right);
+            }
+
+            if (node == null) {
+                return false;
+            }
+
+            if (unlink(parent, left, node, null)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Removes all elements from this treap. This is not atomic: updates that
+     * run at the same time may or may not take effect before the treap is
+     * emptied.
+     */
+    @Override
+    public void clear() {
+        Node<E> root;
+
+        synchronized (head) {
+            root = head.right;
+            head.right = null;
+        }
+
+        // Updates that already locked a node of the old treap may still
+        // complete there, so take the nodes out one at a time. Updates that
+        // lock one of them afterwards find it dead and start over.
+        ArrayDeque<Node<E>> stack = new ArrayDeque<Node<E>>();
+        int removed = 0;
+
+        if (root != null) {
+            stack.push(root);
+        }
+
+        while (!stack.isEmpty()) {
+            Node<E> node = stack.pop();
+
+            synchronized (node) {
+                node.dead = true;
+                removed++;
+
+                if (node.left != null) {
+                    stack.push(node.left);
+                }
+
+                if (node.right != null) {
+                    stack.push(node.right);
+                }
+            }
+        }
+
+        size.add(-removed);
+    }
+
+    /**
+     * Returns the number of elements in this treap. Unlike
+     * ConcurrentSkipListSet, this does not traverse the elements.
+     *
+     * @return
+     */
+    @Override
+    public int size() {
+        // A removal may be counted just before the insertion it undoes
+        return (int) Math.max(size.sum(), 0);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return head.right == null;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new ConcurrentTreapIterator(true, null, true, true, null, true, false);
+    }
+
+    @Override
+    public Iterator<E> descendingIterator() {
+        return new ConcurrentTreapIterator(true, null, true, true, null, true, true);
+    }
+
+    @Override
+    public E lower(E e) {
+        return keyOrNull(lowerNode(checkNotNull(e)));
+    }
+
+    @Override
+    public E higher(E e) {
+        return keyOrNull(higherNode(checkNotNull(e)));
+    }
+
+    @Override
+    public E floor(E e) {
+        return keyOrNull(floorNode(checkNotNull(e)));
+    }
+
+    @Override
+    public E ceiling(E e) {
+        return keyOrNull(ceilingNode(checkNotNull(e)));
+    }
+
+    @Override
+    public E pollFirst() {
+        while (true) {
+            Node<E> parent = head;
+            boolean left = false;
+            Node<E> node = head.right;
+
+            if (node == null) {
+                return null;
+            }
+
+            for (Node<E> next = node.left; next != null; next = node.left) {
+                parent = node;
+                left = true;
+                node = next;
+            }
+
+            if (unlink(parent, left, node, Search.FIRST)) {
+                return node.key;
+            }
+        }
+    }
+
+    @Override
+    public E pollLast() {
+        while (true) {
+            Node<E> parent = head;
+            boolean left = false;
+            Node<E> node = head.right;
+
+            if (node == null) {
+                return null;
+            }
+
+            for (Node<E> next = node.right; next != null; next = node.right) {
+                parent = node;
+                left = false;
+                node = next;
+            }
+
+            if (unlink(parent, left, node, Search.LAST)) {
+                return node.key;
+            }
+        }
+    }
+
+    @Override
+    public Comparator<? super E> comparator() {
+        return comparator;
+    }
+
+    @Override
+    public E first() {
+        Node<E> first = firstNode();
+
+        if (first == null) {
+            throw new NoSuchElementException("First element was queried, while the treap was empty.");
+        }
+
+        return first.key;
+    }
+
+    @Override
+    public E last() {
+        Node<E> last = lastNode();
+
+        if (last == null) {
+            throw new NoSuchElementException("Last element was queried, while the treap was empty.");
+        }
+
+        return last.key;
+    }
+
+    @Override
+    public NavigableSet<E> descendingSet() {
+        return new NavigableSubSet<E>(this, true, null, true, true, null, true, true);
+    }
+
+    @Override
+    public NavigableSet<E> subSet(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+        if (compare(fromElement, toElement) > 0) {
+            throw new IllegalArgumentException("fromElement > toElement");
+        }
+
+        return new NavigableSubSet<E>(this, false, fromElement, fromInclusive, false, toElement, toInclusive, false);
+    }
+
+    @Override
+    public NavigableSet<E> headSet(E toElement, boolean inclusive) {
+        return new NavigableSubSet<E>(this, true, null, true, false, toElement, inclusive, false);
+    }
+
+    @Override
+    public NavigableSet<E> tailSet(E fromElement, boolean inclusive) {
+        return new NavigableSubSet<E>(this, false, fromElement, inclusive, true, null, true, false);
+    }
+
+    @Override
+    public SortedSet<E> subSet(E fromElement, E toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public SortedSet<E> headSet(E toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public SortedSet<E> tailSet(E fromElement) {
+        return tailSet(fromElement, true);
+    }
+
+    @Override
+    public Iterator<E> rangeIterator(boolean fromStart, E lo, boolean loInclusive, boolean toEnd, E hi, boolean hiInclusive) {
+        return new ConcurrentTreapIterator(fromStart, lo, loInclusive, toEnd, hi, hiInclusive, false);
+    }
+
+    @Override
+    public Iterator<E> descendingRangeIterator(boolean fromStart, E lo, boolean loInclusive, boolean toEnd, E hi, boolean hiInclusive) {
+        return new ConcurrentTreapIterator(fromStart, lo, loInclusive, toEnd, hi, hiInclusive, true);
+    }
+
+    @SuppressWarnings("unchecked")
+    private int compare(E a, E b) {
+        if (comparator != null) {
+            return comparator.compare(a, b);
+        } else {
+            return ((Comparable<E>) a).compareTo(b);
+        }
+    }
+
+    private static <E> E checkNotNull(E e) {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+
+        return e;
+    }
+
+    private static <E> E keyOrNull(Node<E> node) {
+        return (node == null ? null : node.key);
+    }
+
+    private enum Search {
+
+        FIRST, LAST
+    }
+
+    /*
+     * The searches below do not lock. Every child link they follow points to
+     * a valid treap: either the current one, or one that a later update
+     * replaced as a whole, whose dead nodes keep the keys and links they had
+     * at that moment. A search therefore always finds an answer that was
+     * correct at some point while it ran.
+     */
+    private Node<E> find(E key) {
+        Node<E> node = head.right;
+
+        while (node != null) {
+            int comparison = compare(key, node.key);
+
+            if (comparison < 0) {
+                node = node.left;
+            } else if (comparison > 0) {
+                node = node.right;
+            } else {
+                return node;
+            }
+        }
+
+        return null;
+    }
+
+    private Node<E> firstNode() {
+        Node<E> node = head.right;
+
+        if (node != null) {
+            for (Node<E> left = node.left; left != null; left = node.left) {
+                node = left;
+            }
+        }
+
+        return node;
+    }
+
+    private Node<E> lastNode() {
+        Node<E> node = head.right;
+
+        if (node != null) {
+            for (Node<E> right = node.right; right != null; right = node.right) {
+                node = right;
+            }
+        }
+
+        return node;
+    }
+
+    private Node<E> lowerNode(E e) {
+        Node<E> node = head.right;
+        Node<E> lower = null;
+
+        while (node != null) {
+            if (compare(node.key, e) < 0) {
+                lower = node;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+
+        return lower;
+    }
+
+    private Node<E> higherNode(E e) {
+        Node<E> node = head.right;
+        Node<E> higher = null;
+
+        while (node != null) {
+            if (compare(node.key, e) > 0) {
+                higher = node;
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+
+        return higher;
+    }
+
+    private Node<E> floorNode(E e) {
+        Node<E> node = head.right;
+        Node<E> lower = null;
+
+        while (node != null) {
+            int comparison = compare(node.key, e);
+
+            if (comparison == 0) {
+                return node;
+            } else if (comparison < 0) {
+                lower = node;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+
+        return lower;
+    }
+
+    private Node<E> ceilingNode(E e) {
+        Node<E> node = head.right;
+        Node<E> higher = null;
+
+        while (node != null) {
+            int comparison = compare(node.key, e);
+
+            if (comparison == 0) {
+                return node;
+            } else if (comparison > 0) {
+                higher = node;
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+
+        return higher;
+    }
+
+    /*
+     * The updates below lock nodes in top-down order: first the parent whose
+     * child link they replace, then the nodes below it on their split or join
+     * path, which all lie in that child's subtreap. A node can only be made
+     * dead or have its links changed by an update that holds its parent, so
+     * once an update holds a live parent, the nodes below it stay alive until
+     * the update publishes its copies.
+     */
+    private void link(Node<E> parent, boolean left, Node<E> child) {
+        if (left) {
+            parent.left = child;
+        } else {
+            parent.right = child;
+        }
+    }
+
+    /**
+     * Replaces the given node, the child of parent on the given side, by the
+     * join of its subtreaps. Fails if the parent is dead or no longer links to
+     * the node, or, for FIRST or LAST, if the node is no longer the first or
+     * last node.
+     *
+     * @param parent
+     * @param left
+     * @param node
+     * @param end FIRST, LAST or null
+     * @return true if the node was removed
+     */
+    private boolean unlink(Node<E> parent, boolean left, Node<E> node, Search end) {
+        synchronized (parent) {
+            if (parent.dead || (left ? parent.left : parent.right) != node) {
+                return false;
+            }
+
+            synchronized (node) {
+                if ((end == Search.FIRST && node.left != null) || (end == Search.LAST && node.right != null)) {
+                    return false;
+                }
+
+                Node<E> joined = join(node.left, node.right);
+                node.dead = true;
+                link(parent, left, joined);
+            }
+        }
+
+        size.decrement();
+
+        return true;
+    }
+
+    /**
+     * Returns copies of the keys less than and greater than the given key in
+     * the subtreap rooted at the given node. Copies the nodes on the search
+     * path of the key and marks the originals dead; the other nodes are
+     * shared. Must be called while holding the lock on the parent of the
+     * node.
+     *
+     * @param node
+     * @param key
+     * @return the two parts, or null if the subtreap contains the key, in
+     * which case nothing was changed
+     */
+    private Split<E> split(Node<E> node, E key) {
+        if (node == null) {
+            return new Split<E>();
+        }
+
+        synchronized (node) {
+            int comparison = compare(key, node.key);
+            Split<E> parts;
+
+            if (comparison == 0) {
+                return null;
+            } else if (comparison < 0) {
+                parts = split(node.left, key);
+
+                if (parts == null) {
+                    return null;
+                }
+
+                parts.right = new Node<E>(node.key, node.priority, parts.right, node.right);
+            } else {
+                parts = split(node.right, key);
+
+                if (parts == null) {
+                    return null;
+                }
+
+                parts.left = new Node<E>(node.key, node.priority, node.left, parts.left);
+            }
+
+            node.dead = true;
+
+            return parts;
+        }
+    }
+
+    /**
+     * Returns a copy of the join of the given subtreaps, all of whose keys in
+     * a are smaller than those in b. Copies all nodes on the right spine of a
+     * and the left spine of b, and marks the originals dead. Must be called
+     * while holding the lock on the parent of both.
+     *
+     * The nodes on these spines are bounded by the removed key, so their key
+     * intervals widen. They must be copied even where the join path has run
+     * out of the other subtreap: a live node whose interval widens could
+     * receive keys that readers still walking the old path do not expect
+     * there. The other nodes keep their intervals and are shared.
+     *
+     * @param a
+     * @param b
+     * @return
+     */
+    private Node<E> join(Node<E> a, Node<E> b) {
+        if (a == null && b == null) {
+            return null;
+        } else if (b == null || (a != null && a.priority < b.priority)) {
+            synchronized (a) {
+                Node<E> copy = new Node<E>(a.key, a.priority, a.left, join(a.right, b));
+                a.dead = true;
+                return copy;
+            }
+        } else {
+            synchronized (b) {
+                Node<E> copy = new Node<E>(b.key, b.priority, join(a, b.left), b.right);
+                b.dead = true;
+                return copy;
+            }
+        }
+    }
+
+    private static final class Node<E> {
+
+        final E key;
+        final float priority;
+        volatile Node<E> left, right;
+        boolean dead = false; // Only accessed while holding the lock on this node
+
+        Node(E key, float priority, Node<E> left, Node<E> right) {
+            this.key = key;
+            this.priority = priority;
+            this.left = left;
+            this.right = right;
+        }
+    }
+
+    private static final class Split<E> {
+
+        Node<E> left, right;
+    }
+
+    /**
+     * A weakly consistent iterator over a range of elements. It copies up to
+     * BATCH_SIZE keys at a time, with an in-order walk of the treap that
+     * starts after the last copied key.
+     */
+    private class ConcurrentTreapIterator implements Iterator<E> {
+
+        private final boolean fromStart, toEnd;
+        private final E lo, hi;
+        private final boolean loInclusive, hiInclusive;
+        private final boolean descending;
+        private final Object[] batch = new Object[BATCH_SIZE];
+        private final ArrayDeque<Node<E>> stack = new ArrayDeque<Node<E>>();
+        private int batchSize = 0;
+        private int position = 0;
+        private boolean started = false;
+        private boolean exhausted = false;
+        private E lastCopied = null; // The key the next batch continues after
+        private E lastReturned = null;
+
+        ConcurrentTreapIterator(boolean fromStart, E lo, boolean loInclusive, boolean toEnd, E hi, boolean hiInclusive, boolean descending) {
+            this.fromStart = fromStart;
+            this.lo = lo;
+            this.loInclusive = loInclusive;
+            this.toEnd = toEnd;
+            this.hi = hi;
+            this.hiInclusive = hiInclusive;
+            this.descending = descending;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (position == batchSize && !exhausted) {
+                fillBatch();
+            }
+
+            return position < batchSize;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public E next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            lastReturned = (E) batch[position];
+            batch[position] = null;
+            position++;
+            return lastReturned;
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned == null) {
+                throw new IllegalStateException();
+            }
+
+            ConcurrentTreap.this.remove(lastReturned);
+            lastReturned = null;
+        }
+
+        private void fillBatch() {
+            int count = copyBatch();
+
+            batchSize = count;
+            position = 0;
+            started = true;
+
+            if (count < BATCH_SIZE) {
+                exhausted = true;
+            }
+
+            if (count > 0) {
+                @SuppressWarnings("unchecked")
+                E last = (E) batch[count - 1];
+                lastCopied = last;
+            }
+        }
+
+        /**
+         * Copies the next keys in the range into the batch. The walk keeps a
+         * stack of the nodes whose keys it still has to return, each of which
+         * comes before the subtreap that it has to walk after it.
+         *
+         * @return the number of keys copied
+         */
+        private int copyBatch() {
+            stack.clear();
+
+            // Descend to the first key of the batch
+            Node<E> node = head.right;
+
+            while (node != null) {
+                if (beforeStart(node.key)) {
+                    node = (descending ? node.left : node.right);
+                } else {
+                    stack.push(node);
+                    node = (descending ? node.right : node.left);
+                }
+            }
+
+            int count = 0;
+
+            while (!stack.isEmpty() && count < BATCH_SIZE) {
+                node = stack.pop();
+
+                if (descending ? tooLow(node.key) : tooHigh(node.key)) {
+                    break;
+                }
+
+                batch[count++] = node.key;
+
+                // Continue with the nearest keys in the subtreap past this node
+                for (Node<E> next = (descending ? node.left : node.right); next != null; next = (descending ? next.right : next.left)) {
+                    stack.push(next);
+                }
+            }
+
+            stack.clear();
+
+            return count;
+        }
+
+        /**
+         * Returns whether the given key comes before the first key of the next
+         * batch: at or before the last copied key, or outside the range.
+         *
+         * @param e
+         * @return
+         */
+        private boolean beforeStart(E e) {
+            if (started) {
+                int comparison = compare(e, lastCopied);
+                return (descending ? comparison >= 0 : comparison <= 0);
+            } else {
+                return (descending ? tooHigh(e) : tooLow(e));
+            }
+        }
+
+        private boolean tooLow(E e) {
+            if (fromStart) {
+                return false;
+            }
+
+            int comparison = compare(e, lo);
+            return comparison < 0 || (comparison == 0 && !loInclusive);
+        }
+
+        private boolean tooHigh(E e) {
+            if (toEnd) {
+                return false;
+            }
+
+            int comparison = compare(e, hi);
+            return comparison > 0 || (comparison == 0 && !hiInclusive);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package treap;
+
+/**
+ * A finger into a {@link Treap}, created by {@link Treap#cursor()}. The cursor
+ * remembers the element it is positioned at, and starts every search from
+ * there instead of from the root, following the parent pointers up only as
+ * far as needed. Finding an element that is d positions away from the cursor
+ * takes expected O(log d) comparisons instead of O(log n), which makes
+ * near-sequential workloads, like adding increasing timestamps or probing a
+ * sorted list of keys, considerably cheaper.
+ *
+ * Every search leaves the cursor at the element it found. If it found none,
+ * the cursor is left at the last element it visited, which is adjacent to the
+ * searched key. Modifying the treap other than through this cursor resets it,
+ * so that the next search starts from the root again.
+ *
+ * @param <E>
+ */
+public interface Cursor<E> {
+
+    /**
+     * Returns the element the cursor is positioned at.
+     *
+     * @return
+     * @throws java.util.NoSuchElementException if the cursor is not
+     * positioned at any element
+     */
+    E get();
+
+    /**
+     * Moves the cursor to the next element.
+     *
+     * @return the next element, or null if there is none, in which case the
+     * cursor does not move. An unpositioned cursor moves to the first element.
+     */
+    E next();
+
+    /**
+     * Moves the cursor to the previous element.
+     *
+     * @return the previous element, or null if there is none, in which case
+     * the cursor does not move. An unpositioned cursor moves to the last
+     * element.
+     */
+    E previous();
+
+    /**
+     * Returns whether the treap contains the specified element.
+     *
+     * @param e
+     * @return
+     */
+    boolean contains(E e);
+
+    /**
+     * Returns the greatest element strictly less than the specified one, or
+     * null if there is no such element.
+     *
+     * @param e
+     * @return
+     */
+    E lower(E e);
+
+    /**
+     * Returns the least element strictly greater than the specified one, or
+     * null if there is no such element.
+     *
+     * @param e
+     * @return
+     */
+    E higher(E e);
+
+    /**
+     * Returns the greatest element less than or equal to the specified one,
+     * or null if there is no such element.
+     *
+     * @param e
+     * @return
+     */
+    E floor(E e);
+
+    /**
+     * Returns the least element greater than or equal to the specified one,
+     * or null if there is no such element.
+     *
+     * @param e
+     * @return
+     */
+    E ceiling(E e);
+
+    /**
+     * Adds the specified element to the treap if it is not already present,
+     * and moves the cursor to it.
+     *
+     * @param e
+     * @return true if the treap did not already contain the element
+     */
+    boolean add(E e);
+
+    /**
+     * Removes the specified element from the treap if it is present, and
+     * moves the cursor to its successor, or its predecessor if it was the
+     * last element.
+     *
+     * @param e
+     * @return true if the treap contained the element
+     */
+    boolean remove(E e);
+}
@@ -0,0 +1,522 @@
+package treap;
+
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A treap of primitive double keys. It works like {@link Treap}, but stores the
+ * keys without boxing them and compares them directly.
+ *
+ * Keys are ordered numerically, so -0.0 and 0.0 are considered equal. NaN is
+ * not a valid key: it cannot be added or used as a search key, and is never
+ * contained in the treap.
+ *
+ * Since there is no null value to signal a missing key, the methods that
+ * search for a key near a given value throw a NoSuchElementException if no
+ * such key exists, like {@link #first()} and {@link #last()}.
+ */
+public class DoubleTreap {
+
+    private int size = 0;
+    private Node root = null;
+    private int modCount = 0;
+
+    /**
+     * Constructs a new, empty treap.
+     */
+    public DoubleTreap() {
+    }
+
+    /**
+     * Adds the specified key to this treap, if it is not already present.
+     *
+     * @param e
+     * @return true if this treap did not already contain the key
+     * @throws IllegalArgumentException if the key is NaN
+     */
+    public boolean add(double e) {
+        checkKey(e);
+
+        // Find the place this value should be inserted
+        Node parent = null;
+        Node node = root;
+        boolean smaller = false;
+
+        while (node != null) {
+            parent = node;
+
+            if (e < node.key) {
+                smaller = true;
+                node = node.left;
+            } else if (e > node.key) {
+                smaller = false;
+                node = node.right;
+            } else {
+                // The treap already contains the specified key
+                return false;
+            }
+        }
+
+        // Create a new node with the specified key and a random priority
+        Node newNode = new Node(e, ThreadLocalRandom.current().nextFloat());
+
+        // Insert this node into the treap
+        if (parent == null) {
+            root = newNode;
+        } else {
+            if (smaller) {
+                parent.left = newNode;
+            } else {
+                parent.right = newNode;
+            }
+
+            newNode.parent = parent;
+        }
+
+        // Fix the heap property by performing rotations
+        while (newNode.parent != null && newNode.priority < newNode.parent.priority) {
+            if (newNode == newNode.parent.left) {
+                rotateRight(newNode.parent);
+            } else {
+                assert newNode == newNode.parent.right;
+                rotateLeft(newNode.parent);
+            }
+        }
+
+        size++;
+        modCount++;
+
+        return true;
+    }
+
+    public boolean contains(double e) {
+        return find(e) != null;
+    }
+
+    /**
+     * Removes the specified key from this treap, if it is present.
+     *
+     * @param e
+     * @return true if this treap contained the key
+     */
+    public boolean remove(double e) {
+        Node node = find(e);
+
+        if (node == null) {
+            return false;
+        }
+
+        remove(node);
+
+        return true;
+    }
+
+    public void clear() {
+        root = null;
+        size = 0;
+        modCount++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns an iterator over the keys in this treap in ascending order.
+     *
+     * @return
+     */
+    public PrimitiveIterator.OfDouble iterator() {
+        return new PrimitiveIterator.OfDouble() {
+
+            private Node lastReturned = null;
+            private Node nextNode = firstNode();
+            private int expectedModCount = modCount;
+
+            @Override
+            public boolean hasNext() {
+                return nextNode != null;
+            }
+
+            @Override
+            public double nextDouble() {
+                if (nextNode == null) {
+                    throw new NoSuchElementException();
+                }
+
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+
+                lastReturned = nextNode;
+                nextNode = successor(nextNode);
+                return lastReturned.key;
+            }
+
+            @Override
+            public void remove() {
+                if (lastReturned == null) {
+                    throw new IllegalStateException();
+                }
+
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+
+                DoubleTreap.this.remove(lastReturned);
+                lastReturned = null;
+                expectedModCount = modCount;
+            }
+        };
+    }
+
+    /**
+     * Returns the largest key strictly less than the given key.
+     *
+     * @param e
+     * @return
+     * @throws NoSuchElementException if there is no such key
+     * @throws IllegalArgumentException if the given key is NaN
+     */
+    public double lower(double e) {
+        checkKey(e);
+
+        Node node = root;
+        Node lower = null;
+
+        while (node != null) {
+            if (node.key < e) {
+                lower = node;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+
+        return keyOf(lower);
+    }
+
+    /**
+     * Returns the smallest key strictly greater than the given key.
+     *
+     * @param e
+     * @return
+     * @throws NoSuchElementException if there is no such key
+     * @throws IllegalArgumentException if the given key is NaN
+     */
+    public double higher(double e) {
+        checkKey(e);
+
+        Node node = root;
+        Node higher = null;
+
+        while (node != null) {
+            if (node.key > e) {
+                higher = node;
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+
+        return keyOf(higher);
+    }
+
+    /**
+     * Returns the largest key less than or equal to the given key.
+     *
+     * @param e
+     * @return
+     * @throws NoSuchElementException if there is no such key
+     * @throws IllegalArgumentException if the given key is NaN
+     */
+    public double floor(double e) {
+        checkKey(e);
+
+        Node node = root;
+        Node lower = null;
+
+        while (node != null) {
+            if (node.key < e) {
+                lower = node;
+                node = node.right;
+            } else if (node.key > e) {
+                node = node.left;
+            } else {
+                return node.key;
+            }
+        }
+
+        return keyOf(lower);
+    }
+
+    /**
+     * Returns the smallest key greater than or equal to the given key.
+     *
+     * @param e
+     * @return
+     * @throws NoSuchElementException if there is no such key
+     * @throws IllegalArgumentException if the given key is NaN
+     */
+    public double ceiling(double e) {
+        checkKey(e);
+
+        Node node = root;
+        Node higher = null;
+
+        while (node != null) {
+            if (node.key > e) {
+                higher = node;
+                node = node.left;
+            } else if (node.key < e) {
+                node = node.right;
+            } else {
+                return node.key;
+            }
+        }
+
+        return keyOf(higher);
+    }
+
+    public double first() {
+        if (root == null) {
+            throw new NoSuchElementException("First element was queried, while the treap was empty.");
+        }
+
+        return firstNode().key;
+    }
+
+    public double last() {
+        if (root == null) {
+            throw new NoSuchElementException("Last element was queried, while the treap was empty.");
+        }
+
+        return lastNode().key;
+    }
+
+    /**
+     * Removes and returns the smallest key.
+     *
+     * @return
+     * @throws NoSuchElementException if this treap is empty
+     */
+    public double pollFirst() {
+        double first = first();
+        remove(firstNode());
+        return first;
+    }
+
+    /**
+     * Removes and returns the largest key.
+     *
+     * @return
+     * @throws NoSuchElementException if this treap is empty
+     */
+    public double pollLast() {
+        double last = last();
+        remove(lastNode());
+        return last;
+    }
+
+    private Node find(double e) {
+        if (Double.isNaN(e)) {
+            return null;
+        }
+
+        Node node = root;
+
+        while (node != null) {
+            if (e < node.key) {
+                node = node.left;
+            } else if (e > node.key) {
+                node = node.right;
+            } else {
+                return node;
+            }
+        }
+
+        return null;
+    }
+
+    private static void checkKey(double e) {
+        if (Double.isNaN(e)) {
+            throw new IllegalArgumentException("NaN is not a valid key.");
+        }
+    }
+
+    private static double keyOf(Node node) {
+        if (node == null) {
+            throw new NoSuchElementException();
+        }
+
+        return node.key;
+    }
+
+    private void remove(Node node) {
+        // Perform rotations until this node is a leaf
+        while (node.left != null || node.right != null) {
+            rotateDown(node);
+        }
+
+        // Actually remove the node
+        if (node == root) {
+            root = null;
+        } else {
+            if (node == node.parent.left) {
+                node.parent.left = null;
+            } else {
+                assert node == node.parent.right;
+                node.parent.right = null;
+            }
+        }
+
+        size--;
+        modCount++;
+    }
+
+    /**
+     * Rotate the subtree rooted at the specified node to the right, making the
+     * left child of the specified node the new root.
+     *
+     * @param node
+     */
+    private void rotateRight(Node node) {
+        Node child = node.left;
+        Node parent = node.parent;
+        Node middleSubtreap = child.right;
+
+        // Switch the child pointers
+        if (parent == null) {
+            root = child;
+        } else if (node == parent.left) {
+            parent.left = child;
+        } else {
+            parent.right = child;
+        }
+
+        node.left = middleSubtreap;
+        child.right = node;
+
+        // Fix the parent pointers
+        node.parent = child;
+        child.parent = parent;
+
+        if (middleSubtreap != null) {
+            middleSubtreap.parent = node;
+        }
+    }
+
+    /**
+     * Rotate the subtree rooted at the specified node to the left, making the
+     * right child of the specified node the new root.
+     *
+     * @param node
+     */
+    private void rotateLeft(Node node) {
+        Node child = node.right;
+        Node parent = node.parent;
+        Node middleSubtreap = child.left;
+
+        // Switch the child pointers
+        if (parent == null) {
+            root = child;
+        } else if (node == parent.left) {
+            parent.left = child;
+        } else {
+            parent.right = child;
+        }
+
+        node.right = middleSubtreap;
+        child.left = node;
+
+        // Fix the parent pointers
+        node.parent = child;
+        child.parent = parent;
+
+        if (middleSubtreap != null) {
+            middleSubtreap.parent = node;
+        }
+    }
+
+    /**
+     * Rotates the subtree rooted at the specified node to move this node down
+     * the tree. Must not be called on a leaf.
+     *
+     * @param node
+     */
+    private void rotateDown(Node node) {
+        if (node.left == null) {
+            rotateLeft(node);
+        } else if (node.right == null) {
+            rotateRight(node);
+        } else if (node.left.priority < node.right.priority) {
+            rotateRight(node);
+        } else {
+            rotateLeft(node);
+        }
+    }
+
+    private Node firstNode() {
+        Node node = root;
+
+        if (node != null) {
+            while (node.left != null) {
+                node = node.left;
+            }
+        }
+
+        return node;
+    }
+
+    private Node lastNode() {
+        Node node = root;
+
+        if (node != null) {
+            while (node.right != null) {
+                node = node.right;
+            }
+        }
+
+        return node;
+    }
+
+    private static Node successor(Node node) {
+        if (node.right != null) {
+            node = node.right;
+
+            while (node.left != null) {
+                node = node.left;
+            }
+
+            return node;
+        } else {
+            // Go up until we arrive from a left child
+            Node parent = node.parent;
+
+            while (parent != null && node == parent.right) {
+                node = parent;
+                parent = parent.parent;
+            }
+
+            return parent;
+        }
+    }
+
+    private static class Node {
+
+        final double key;
+        final float priority;
+        Node parent, left, right;
+
+        Node(double key, float priority) {
+            this.key = key;
+            this.priority = priority;
+        }
+    }
+}
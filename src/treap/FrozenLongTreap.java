@@ -0,0 +1,224 @@
+package treap;
+
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * An immutable set of primitive long keys, created by
+ * {@link LongTreap#freeze()}. Like {@link FrozenTreap}, it stores the keys in
+ * Eytzinger order, but as the keys themselves are in the array, a search
+ * touches no memory other than this array. The descent compiles to a loop
+ * without data-dependent branches, and the first levels of the implicit tree
+ * stay in cache.
+ *
+ * The methods that search for a key near a given value throw a
+ * NoSuchElementException if no such key exists, as in {@link LongTreap}.
+ */
+public final class FrozenLongTreap {
+
+    private final long[] keys; // The keys in ascending order
+    private final long[] tree; // The keys in Eytzinger order, starting at index 1
+    private final int[] ranks; // The position in keys of each key in tree
+
+    /**
+     * Creates a frozen set from the given array, which holds distinct keys in
+     * ascending order and is not used by anyone else.
+     *
+     * @param keys
+     */
+    FrozenLongTreap(long[] keys) {
+        this.keys = keys;
+
+        tree = new long[keys.length + 1];
+        ranks = new int[keys.length + 1];
+        fill(0, 1);
+    }
+
+    /**
+     * Fills the subtree rooted at position k of the Eytzinger array with the
+     * sorted keys starting at position i, in order.
+     *
+     * @param i
+     * @param k
+     * @return the position of the first key that was not used
+     */
+    private int fill(int i, int k) {
+        if (k < tree.length) {
+            i = fill(i, 2 * k);
+            tree[k] = keys[i];
+            ranks[k] = i;
+            i = fill(i + 1, 2 * k + 1);
+        }
+
+        return i;
+    }
+
+    public boolean contains(long e) {
+        int rank = ceilingRank(e);
+        return rank < keys.length && keys[rank] == e;
+    }
+
+    public int size() {
+        return keys.length;
+    }
+
+    public boolean isEmpty() {
+        return keys.length == 0;
+    }
+
+    /**
+     * Returns an iterator over the keys in ascending order.
+     *
+     * @return
+     */
+    public PrimitiveIterator.OfLong iterator() {
+        return new PrimitiveIterator.OfLong() {
+
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < keys.length;
+            }
+
+            @Override
+            public long nextLong() {
+                if (next >= keys.length) {
+                    throw new NoSuchElementException();
+                }
+
+                next++;
+                return keys[next - 1];
+            }
+        };
+    }
+
+    /**
+     * Returns the largest key strictly less than the given key.
+     *
+     * @param e
+     * @return
+     * @throws NoSuchElementException if there is no such key
+     */
+    public long lower(long e) {
+        return keyAt(ceilingRank(e) - 1);
+    }
+
+    /**
+     * Returns the smallest key strictly greater than the given key.
+     *
+     * @param e
+     * @return
+     * @throws NoSuchElementException if there is no such key
+     */
+    public long higher(long e) {
+        return keyAt(higherRank(e));
+    }
+
+    /**
+     * Returns the largest key less than or equal to the given key.
+     *
+     * @param e
+     * @return
+     * @throws NoSuchElementException if there is no such key
+     */
+    public long floor(long e) {
+        return keyAt(higherRank(e) - 1);
+    }
+
+    /**
+     * Returns the smallest key greater than or equal to the given key.
+     *
+     * @param e
+     * @return
+     * @throws NoSuchElementException if there is no such key
+     */
+    public long ceiling(long e) {
+        return keyAt(ceilingRank(e));
+    }
+
+    public long first() {
+        if (keys.length == 0) {
+            throw new NoSuchElementException("First element was queried, while the treap was empty.");
+        }
+
+        return keys[0];
+    }
+
+    public long last() {
+        if (keys.length == 0) {
+            throw new NoSuchElementException("Last element was queried, while the treap was empty.");
+        }
+
+        return keys[keys.length - 1];
+    }
+
+    /**
+     * Returns the key at the specified position in ascending order.
+     *
+     * @param index
+     * @return
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    public long get(int index) {
+        if (index < 0 || index >= keys.length) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + keys.length);
+        }
+
+        return keys[index];
+    }
+
+    /**
+     * Returns the number of keys strictly less than the given key.
+     *
+     * @param e
+     * @return
+     */
+    public int countLessThan(long e) {
+        return ceilingRank(e);
+    }
+
+    private long keyAt(int rank) {
+        if (rank < 0 || rank >= keys.length) {
+            throw new NoSuchElementException();
+        }
+
+        return keys[rank];
+    }
+
+    /**
+     * Returns the position in ascending order of the smallest key that is
+     * greater than or equal to the given one, or the size of this set if there
+     * is none. See {@link FrozenTreap} for how the descent works.
+     *
+     * @param e
+     * @return
+     */
+    private int ceilingRank(long e) {
+        long[] tree = this.tree;
+        int k = 1;
+
+        while (k < tree.length) {
+            k = 2 * k + (tree[k] < e ? 1 : 0);
+        }
+
+        return rankAfterDescent(k);
+    }
+
+    private int higherRank(long e) {
+        long[] tree = this.tree;
+        int k = 1;
+
+        while (k < tree.length) {
+            k = 2 * k + (tree[k] <= e ? 1 : 0);
+        }
+
+        return rankAfterDescent(k);
+    }
+
+    private int rankAfterDescent(int k) {
+        // Drop the trailing right turns and the last left turn
+        k >>>= Integer.numberOfTrailingZeros(~k) + 1;
+        return (k == 0 ? keys.length : ranks[k]);
+    }
+}
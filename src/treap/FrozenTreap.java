@@ -0,0 +1,380 @@
+package treap;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.SortedSet;
+
+/**
+ * An immutable sorted set, created by {@link Treap#freeze()}, that stores its
+ * elements in arrays instead of nodes. Besides a sorted array, the elements are
+ * stored in Eytzinger order: the array holds an implicit, perfectly balanced
+ * search tree in breadth-first order, with the children of position k at
+ * positions 2k and 2k + 1. A search therefore follows no pointers except to
+ * the elements it compares, and the first levels of the tree, which every
+ * search visits, share a few cache lines.
+ *
+ * Every search takes at most floor(log2 n) + 1 comparisons and has no
+ * data-dependent branches besides the comparison itself. Positions in the
+ * tree map to positions in the sorted array, so that index-based operations
+ * and iteration are simple array accesses. All operations that would modify
+ * the set throw an {@link UnsupportedOperationException}.
+ *
+ * @param <E>
+ */
+public final class FrozenTreap<E> extends AbstractSet<E> implements SeekableSet<E> {
+
+    private final Object[] keys; // The elements in ascending order
+    private final Object[] tree; // The elements in Eytzinger order, starting at index 1
+    private final int[] ranks; // The position in keys of each element in tree
+    private final Comparator<? super E> comparator;
+
+    /**
+     * Creates a frozen set from the given array, which holds distinct
+     * elements in ascending order according to the comparator and is not used
+     * by anyone else.
+     *
+     * @param keys
+     * @param comparator
+     */
+    FrozenTreap(Object[] keys, Comparator<? super E> comparator) {
+        this.keys = keys;
+        this.comparator = comparator;
+
+        tree = new Object[keys.length + 1];
+        ranks = new int[keys.length + 1];
+        fill(0, 1);
+    }
+
+    /**
+     * Fills the subtree rooted at position k of the Eytzinger array with the
+     * sorted elements starting at position i, in order.
+     *
+     * @param i
+     * @param k
+     * @return the position of the first element that was not used
+     */
+    private int fill(int i, int k) {
+        if (k < tree.length) {
+            i = fill(i, 2 * k);
+            tree[k] = keys[i];
+            ranks[k] = i;
+            i = fill(i + 1, 2 * k + 1);
+        }
+
+        return i;
+    }
+
+    @Override
+    public int size() {
+        return keys.length;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean contains(Object o) {
+        E key = (E) o;
+        int rank = ceilingRank(key);
+        return rank < keys.length && compare(key(rank), key) == 0;
+    }
+
+    @Override
+    public boolean add(E e) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends E> c) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public E pollFirst() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public E pollLast() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new FrozenTreapIterator(0, keys.length, false);
+    }
+
+    @Override
+    public Iterator<E> descendingIterator() {
+        return new FrozenTreapIterator(0, keys.length, true);
+    }
+
+    @Override
+    public E lower(E e) {
+        return keyOrNull(ceilingRank(e) - 1);
+    }
+
+    @Override
+    public E higher(E e) {
+        return keyOrNull(higherRank(e));
+    }
+
+    @Override
+    public E floor(E e) {
+        return keyOrNull(higherRank(e) - 1);
+    }
+
+    @Override
+    public E ceiling(E e) {
+        return keyOrNull(ceilingRank(e));
+    }
+
+    @Override
+    public Comparator<? super E> comparator() {
+        return comparator;
+    }
+
+    @Override
+    public E first() {
+        if (keys.length == 0) {
+            throw new NoSuchElementException("First element was queried, while the treap was empty.");
+        }
+
+        return key(0);
+    }
+
+    @Override
+    public E last() {
+        if (keys.length == 0) {
+            throw new NoSuchElementException("Last element was queried, while the treap was empty.");
+        }
+
+        return key(keys.length - 1);
+    }
+
+    /**
+     * Returns the element at the specified position in the sorted order. Takes
+     * constant time.
+     *
+     * @param index
+     * @return
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    public E get(int index) {
+        if (index < 0 || index >= keys.length) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + keys.length);
+        }
+
+        return key(index);
+    }
+
+    /**
+     * Returns the position of the specified element in the sorted order, or -1
+     * if this set does not contain it. Takes O(log n) time.
+     *
+     * @param o
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public int indexOf(Object o) {
+        E key = (E) o;
+        int rank = ceilingRank(key);
+        return (rank < keys.length && compare(key(rank), key) == 0 ? rank : -1);
+    }
+
+    /**
+     * Returns the number of elements in this set that are strictly less than
+     * the specified element. Takes O(log n) time.
+     *
+     * @param e
+     * @return
+     */
+    public int countLessThan(E e) {
+        return ceilingRank(e);
+    }
+
+    @Override
+    public NavigableSet<E> descendingSet() {
+        return new NavigableSubSet<E>(this, true, null, true, true, null, true, true);
+    }
+
+    @Override
+    public NavigableSet<E> subSet(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+        if (compare(fromElement, toElement) > 0) {
+            throw new IllegalArgumentException("fromElement > toElement");
+        }
+
+        return new NavigableSubSet<E>(this, false, fromElement, fromInclusive, false, toElement, toInclusive, false);
+    }
+
+    @Override
+    public NavigableSet<E> headSet(E toElement, boolean inclusive) {
+        return new NavigableSubSet<E>(this, true, null, true, false, toElement, inclusive, false);
+    }
+
+    @Override
+    public NavigableSet<E> tailSet(E fromElement, boolean inclusive) {
+        return new NavigableSubSet<E>(this, false, fromElement, inclusive, true, null, true, false);
+    }
+
+    @Override
+    public SortedSet<E> subSet(E fromElement, E toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public SortedSet<E> headSet(E toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public SortedSet<E> tailSet(E fromElement) {
+        return tailSet(fromElement, true);
+    }
+
+    @Override
+    public Iterator<E> rangeIterator(boolean fromStart, E lo, boolean loInclusive, boolean toEnd, E hi, boolean hiInclusive) {
+        int from = (fromStart ? 0 : (loInclusive ? ceilingRank(lo) : higherRank(lo)));
+        int to = (toEnd ? keys.length : (hiInclusive ? higherRank(hi) : ceilingRank(hi)));
+        return new FrozenTreapIterator(from, Math.max(from, to), false);
+    }
+
+    @Override
+    public Iterator<E> descendingRangeIterator(boolean fromStart, E lo, boolean loInclusive, boolean toEnd, E hi, boolean hiInclusive) {
+        int from = (fromStart ? 0 : (loInclusive ? ceilingRank(lo) : higherRank(lo)));
+        int to = (toEnd ? keys.length : (hiInclusive ? higherRank(hi) : ceilingRank(hi)));
+        return new FrozenTreapIterator(from, Math.max(from, to), true);
+    }
+
+    @SuppressWarnings("unchecked")
+    private E key(int rank) {
+        return (E) keys[rank];
+    }
+
+    private E keyOrNull(int rank) {
+        return (rank < 0 || rank >= keys.length ? null : key(rank));
+    }
+
+    @SuppressWarnings("unchecked")
+    private int compare(E a, E b) {
+        if (comparator != null) {
+            return comparator.compare(a, b);
+        } else if (a != null) {
+            return ((Comparable<E>) a).compareTo(b);
+        } else if (b != null) {
+            return -((Comparable<E>) b).compareTo(a);
+        } else {
+            // Both a and b are null, so they are equal
+            return 0;
+        }
+    }
+
+    /**
+     * Returns the position in the sorted order of the smallest element that is
+     * greater than or equal to the specified one, or the size of this set if
+     * there is none.
+     *
+     * @param e
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    private int ceilingRank(E e) {
+        int k = 1;
+
+        // Go right past smaller elements and left otherwise, until we fall off the tree
+        while (k < tree.length) {
+            k = 2 * k + (compare((E) tree[k], e) < 0 ? 1 : 0);
+        }
+
+        return rankAfterDescent(k);
+    }
+
+    /**
+     * Returns the position in the sorted order of the smallest element that is
+     * strictly greater than the specified one, or the size of this set if
+     * there is none.
+     *
+     * @param e
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    private int higherRank(E e) {
+        int k = 1;
+
+        while (k < tree.length) {
+            k = 2 * k + (compare((E) tree[k], e) <= 0 ? 1 : 0);
+        }
+
+        return rankAfterDescent(k);
+    }
+
+    /**
+     * Converts the position where a descent fell off the tree to the rank of
+     * the answer. The bits of k record the path, with a 1 for every right
+     * turn; the answer is the last node where the descent turned left, which
+     * we find by dropping the trailing right turns and that left turn.
+     *
+     * @param k
+     * @return
+     */
+    private int rankAfterDescent(int k) {
+        k >>>= Integer.numberOfTrailingZeros(~k) + 1;
+        return (k == 0 ? keys.length : ranks[k]);
+    }
+
+    /**
+     * Iterates over the elements at the positions from one position up to, but
+     * not including, another in the sorted order, in ascending or descending
+     * order.
+     */
+    private class FrozenTreapIterator implements Iterator<E> {
+
+        private final boolean descending;
+        private final int end;
+        private int next;
+
+        FrozenTreapIterator(int from, int to, boolean descending) {
+            this.descending = descending;
+            this.next = (descending ? to - 1 : from);
+            this.end = (descending ? from - 1 : to);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != end;
+        }
+
+        @Override
+        public E next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            E key = key(next);
+            next += (descending ? -1 : 1);
+            return key;
+        }
+    }
+}
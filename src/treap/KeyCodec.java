@@ -0,0 +1,98 @@
+package treap;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Converts keys to and from bytes, for writing snapshots of a treap with
+ * {@link Treap#writeSnapshot} and reading them with {@link Treap#readSnapshot}.
+ *
+ * @param <E>
+ */
+public interface KeyCodec<E> {
+
+    /**
+     * Writes the given key at the current position of the buffer. If the
+     * buffer does not have enough room, this throws a
+     * {@link java.nio.BufferOverflowException}; whatever was written is then
+     * discarded, and the key is encoded again into a buffer with more room.
+     *
+     * @param key
+     * @param buffer
+     */
+    void encode(E key, ByteBuffer buffer);
+
+    /**
+     * Reads a key written by {@link #encode} from the current position of the
+     * buffer.
+     *
+     * @param buffer
+     * @return
+     */
+    E decode(ByteBuffer buffer);
+
+    /**
+     * Encodes longs as 8 bytes.
+     *
+     * @return
+     */
+    static KeyCodec<Long> longs() {
+        return new KeyCodec<Long>() {
+
+            @Override
+            public void encode(Long key, ByteBuffer buffer) {
+                buffer.putLong(key);
+            }
+
+            @Override
+            public Long decode(ByteBuffer buffer) {
+                return buffer.getLong();
+            }
+        };
+    }
+
+    /**
+     * Encodes integers as 4 bytes.
+     *
+     * @return
+     */
+    static KeyCodec<Integer> integers() {
+        return new KeyCodec<Integer>() {
+
+            @Override
+            public void encode(Integer key, ByteBuffer buffer) {
+                buffer.putInt(key);
+            }
+
+            @Override
+            public Integer decode(ByteBuffer buffer) {
+                return buffer.getInt();
+            }
+        };
+    }
+
+    /**
+     * Encodes strings as their length in bytes, followed by their UTF-8
+     * encoding.
+     *
+     * @return
+     */
+    static KeyCodec<String> strings() {
+        return new KeyCodec<String>() {
+
+            @Override
+            public void encode(String key, ByteBuffer buffer) {
+                byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+                buffer.putInt(bytes.length);
+                buffer.put(bytes);
+            }
+
+            @Override
+            public String decode(ByteBuffer buffer) {
+                byte[] bytes = new byte[buffer.getInt()];
+                buffer.get(bytes);
+                return new String(bytes, StandardCharsets.UTF_8);
+            }
+        };
+    }
+}
@@ -0,0 +1,163 @@
+package treap;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Objects;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+
+/**
+ * An associative way of summarizing values, as used by
+ * {@link AggregateTreapMap}. The aggregate of a sequence of values is obtained
+ * by lifting each value to an aggregate and combining the results from left to
+ * right. The combine operation must be associative and have the identity as
+ * its neutral element, but it need not be commutative: aggregates are always
+ * combined in key order.
+ *
+ * @param <V> the type of the values
+ * @param <A> the type of the aggregates
+ */
+public interface Monoid<V, A> {
+
+    /**
+     * Returns the aggregate of no values.
+     *
+     * @return
+     */
+    A identity();
+
+    /**
+     * Returns the aggregate of the single given value.
+     *
+     * @param value
+     * @return
+     */
+    A lift(V value);
+
+    /**
+     * Returns the aggregate of the values summarized by left, followed by those
+     * summarized by right.
+     *
+     * @param left
+     * @param right
+     * @return
+     */
+    A combine(A left, A right);
+
+    /**
+     * Returns a monoid with the given operations.
+     *
+     * @param <V>
+     * @param <A>
+     * @param identity
+     * @param lift
+     * @param combine
+     * @return
+     */
+    static <V, A> Monoid<V, A> of(final A identity, final Function<? super V, ? extends A> lift, final BinaryOperator<A> combine) {
+        Objects.requireNonNull(lift);
+        Objects.requireNonNull(combine);
+
+        return new Monoid<V, A>() {
+
+            @Override
+            public A identity() {
+                return identity;
+            }
+
+            @Override
+            public A lift(V value) {
+                return lift.apply(value);
+            }
+
+            @Override
+            public A combine(A left, A right) {
+                return combine.apply(left, right);
+            }
+        };
+    }
+
+    /**
+     * Counts the values.
+     *
+     * @param <V>
+     * @return
+     */
+    static <V> Monoid<V, Long> count() {
+        return Monoid.<V, Long>of(0L, v -> 1L, Long::sum);
+    }
+
+    /**
+     * Sums the values as longs. Null values are not allowed.
+     *
+     * @return
+     */
+    static Monoid<Number, Long> longSum() {
+        return Monoid.<Number, Long>of(0L, Number::longValue, Long::sum);
+    }
+
+    /**
+     * Sums the values as doubles. Null values are not allowed.
+     *
+     * @return
+     */
+    static Monoid<Number, Double> doubleSum() {
+        return Monoid.<Number, Double>of(0.0, Number::doubleValue, Double::sum);
+    }
+
+    /**
+     * Returns the smallest value according to their natural ordering, or null
+     * if there are no values. Null values are not allowed.
+     *
+     * @param <V>
+     * @return
+     */
+    static <V extends Comparable<? super V>> Monoid<V, V> min() {
+        return min(Comparator.<V>naturalOrder());
+    }
+
+    /**
+     * Returns the smallest value according to the given comparator, or null if
+     * there are no values. Null values are not allowed.
+     *
+     * @param <V>
+     * @param comparator
+     * @return
+     */
+    static <V> Monoid<V, V> min(final Comparator<? super V> comparator) {
+        Objects.requireNonNull(comparator);
+
+        return Monoid.<V, V>of(null, Objects::requireNonNull, (a, b) -> {
+            if (a == null) {
+                return b;
+            } else if (b == null) {
+                return a;
+            } else {
+                return (comparator.compare(b, a) < 0 ? b : a);
+            }
+        });
+    }
+
+    /**
+     * Returns the largest value according to their natural ordering, or null
+     * if there are no values. Null values are not allowed.
+     *
+     * @param <V>
+     * @return
+     */
+    static <V extends Comparable<? super V>> Monoid<V, V> max() {
+        return min(Comparator.<V>reverseOrder());
+    }
+
+    /**
+     * Returns the largest value according to the given comparator, or null if
+     * there are no values. Null values are not allowed.
+     *
+     * @param <V>
+     * @param comparator
+     * @return
+     */
+    static <V> Monoid<V, V> max(Comparator<? super V> comparator) {
+        return min(Collections.reverseOrder(comparator));
+    }
+}
@@ -0,0 +1,167 @@
+package treap;
+
+import java.util.AbstractSet;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.SortedSet;
+
+/**
+ * The keys of a navigable map, as a navigable set. Every query is answered by
+ * the map, and range views of the set are the key sets of the corresponding
+ * range views of the map.
+ *
+ * @param <K>
+ */
+final class NavigableKeySet<K> extends AbstractSet<K> implements NavigableSet<K> {
+
+    private final NavigableMap<K, ?> map;
+
+    NavigableKeySet(NavigableMap<K, ?> map) {
+        this.map = map;
+    }
+
+    @Override
+    public Iterator<K> iterator() {
+        return keys(map.entrySet().iterator());
+    }
+
+    @Override
+    public Iterator<K> descendingIterator() {
+        return keys(map.descendingMap().entrySet().iterator());
+    }
+
+    @Override
+    public int size() {
+        return map.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return map.isEmpty();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return map.containsKey(o);
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (map.containsKey(o)) {
+            map.remove(o);
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    @Override
+    public void clear() {
+        map.clear();
+    }
+
+    @Override
+    public K lower(K e) {
+        return map.lowerKey(e);
+    }
+
+    @Override
+    public K floor(K e) {
+        return map.floorKey(e);
+    }
+
+    @Override
+    public K ceiling(K e) {
+        return map.ceilingKey(e);
+    }
+
+    @Override
+    public K higher(K e) {
+        return map.higherKey(e);
+    }
+
+    @Override
+    public K first() {
+        return map.firstKey();
+    }
+
+    @Override
+    public K last() {
+        return map.lastKey();
+    }
+
+    @Override
+    public K pollFirst() {
+        Map.Entry<K, ?> entry = map.pollFirstEntry();
+        return (entry == null ? null : entry.getKey());
+    }
+
+    @Override
+    public K pollLast() {
+        Map.Entry<K, ?> entry = map.pollLastEntry();
+        return (entry == null ? null : entry.getKey());
+    }
+
+    @Override
+    public Comparator<? super K> comparator() {
+        return map.comparator();
+    }
+
+    @Override
+    public NavigableSet<K> descendingSet() {
+        return new NavigableKeySet<K>(map.descendingMap());
+    }
+
+    @Override
+    public NavigableSet<K> subSet(K fromElement, boolean fromInclusive, K toElement, boolean toInclusive) {
+        return new NavigableKeySet<K>(map.subMap(fromElement, fromInclusive, toElement, toInclusive));
+    }
+
+    @Override
+    public NavigableSet<K> headSet(K toElement, boolean inclusive) {
+        return new NavigableKeySet<K>(map.headMap(toElement, inclusive));
+    }
+
+    @Override
+    public NavigableSet<K> tailSet(K fromElement, boolean inclusive) {
+        return new NavigableKeySet<K>(map.tailMap(fromElement, inclusive));
+    }
+
+    @Override
+    public SortedSet<K> subSet(K fromElement, K toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public SortedSet<K> headSet(K toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public SortedSet<K> tailSet(K fromElement) {
+        return tailSet(fromElement, true);
+    }
+
+    private static <K> Iterator<K> keys(final Iterator<? extends Map.Entry<K, ?>> entries) {
+        return new Iterator<K>() {
+
+            @Override
+            public boolean hasNext() {
+                return entries.hasNext();
+            }
+
+            @Override
+            public K next() {
+                return entries.next().getKey();
+            }
+
+            @Override
+            public void remove() {
+                entries.remove();
+            }
+        };
+    }
+}
@@ -0,0 +1,444 @@
+package treap;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.SortedMap;
+
+/**
+ * A view of the entries of a {@link SeekableMap} with keys within a range,
+ * possibly in descending order. This is the map counterpart of
+ * {@link NavigableSubSet}, and works the same way: the bounds are stored in the
+ * ascending order of the backing map, and the "abs" methods work in that
+ * order.
+ *
+ * @param <K>
+ * @param <V>
+ */
+final class NavigableSubMap<K, V> extends AbstractMap<K, V> implements NavigableMap<K, V> {
+
+    private final SeekableMap<K, V> map;
+    private final boolean fromStart, toEnd; // Whether the view is unbounded below or above
+    private final K lo, hi;
+    private final boolean loInclusive, hiInclusive;
+    private final boolean descending;
+
+    NavigableSubMap(SeekableMap<K, V> map, boolean fromStart, K lo, boolean loInclusive, boolean toEnd, K hi, boolean hiInclusive, boolean descending) {
+        this.map = map;
+        this.fromStart = fromStart;
+        this.lo = lo;
+        this.loInclusive = loInclusive;
+        this.toEnd = toEnd;
+        this.hi = hi;
+        this.hiInclusive = hiInclusive;
+        this.descending = descending;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean containsKey(Object key) {
+        return inRange((K) key) && map.containsKey(key);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        return (inRange((K) key) ? map.get(key) : null);
+    }
+
+    @Override
+    public V put(K key, V value) {
+        if (!inRange(key)) {
+            throw new IllegalArgumentException("Key out of range.");
+        }
+
+        return map.put(key, value);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V remove(Object key) {
+        return (inRange((K) key) ? map.remove(key) : null);
+    }
+
+    @Override
+    public int size() {
+        return entrySet().size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return absLowest() == null;
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        return new EntrySet();
+    }
+
+    @Override
+    public Set<K> keySet() {
+        return navigableKeySet();
+    }
+
+    @Override
+    public NavigableSet<K> navigableKeySet() {
+        return new NavigableKeySet<K>(this);
+    }
+
+    @Override
+    public NavigableSet<K> descendingKeySet() {
+        return descendingMap().navigableKeySet();
+    }
+
+    @Override
+    public Map.Entry<K, V> lowerEntry(K key) {
+        return (descending ? absHigher(key) : absLower(key));
+    }
+
+    @Override
+    public K lowerKey(K key) {
+        return keyOrNull(lowerEntry(key));
+    }
+
+    @Override
+    public Map.Entry<K, V> floorEntry(K key) {
+        return (descending ? absCeiling(key) : absFloor(key));
+    }
+
+    @Override
+    public K floorKey(K key) {
+        return keyOrNull(floorEntry(key));
+    }
+
+    @Override
+    public Map.Entry<K, V> ceilingEntry(K key) {
+        return (descending ? absFloor(key) : absCeiling(key));
+    }
+
+    @Override
+    public K ceilingKey(K key) {
+        return keyOrNull(ceilingEntry(key));
+    }
+
+    @Override
+    public Map.Entry<K, V> higherEntry(K key) {
+        return (descending ? absLower(key) : absHigher(key));
+    }
+
+    @Override
+    public K higherKey(K key) {
+        return keyOrNull(higherEntry(key));
+    }
+
+    @Override
+    public Map.Entry<K, V> firstEntry() {
+        return (descending ? absHighest() : absLowest());
+    }
+
+    @Override
+    public Map.Entry<K, V> lastEntry() {
+        return (descending ? absLowest() : absHighest());
+    }
+
+    @Override
+    public K firstKey() {
+        return exists(firstEntry()).getKey();
+    }
+
+    @Override
+    public K lastKey() {
+        return exists(lastEntry()).getKey();
+    }
+
+    @Override
+    public Map.Entry<K, V> pollFirstEntry() {
+        return removeIfExists(firstEntry());
+    }
+
+    @Override
+    public Map.Entry<K, V> pollLastEntry() {
+        return removeIfExists(lastEntry());
+    }
+
+    @Override
+    public Comparator<? super K> comparator() {
+        Comparator<? super K> comparator = map.comparator();
+
+        if (descending) {
+            return (comparator == null ? Collections.reverseOrder() : Collections.reverseOrder(comparator));
+        } else {
+            return comparator;
+        }
+    }
+
+    @Override
+    public NavigableMap<K, V> descendingMap() {
+        return new NavigableSubMap<K, V>(map, fromStart, lo, loInclusive, toEnd, hi, hiInclusive, !descending);
+    }
+
+    @Override
+    public NavigableMap<K, V> subMap(K fromKey, boolean fromInclusive, K toKey, boolean toInclusive) {
+        if (descending) {
+            return absSubMap(false, toKey, toInclusive, false, fromKey, fromInclusive);
+        } else {
+            return absSubMap(false, fromKey, fromInclusive, false, toKey, toInclusive);
+        }
+    }
+
+    @Override
+    public NavigableMap<K, V> headMap(K toKey, boolean inclusive) {
+        if (descending) {
+            return absSubMap(false, toKey, inclusive, true, null, true);
+        } else {
+            return absSubMap(true, null, true, false, toKey, inclusive);
+        }
+    }
+
+    @Override
+    public NavigableMap<K, V> tailMap(K fromKey, boolean inclusive) {
+        if (descending) {
+            return absSubMap(true, null, true, false, fromKey, inclusive);
+        } else {
+            return absSubMap(false, fromKey, inclusive, true, null, true);
+        }
+    }
+
+    @Override
+    public SortedMap<K, V> subMap(K fromKey, K toKey) {
+        return subMap(fromKey, true, toKey, false);
+    }
+
+    @Override
+    public SortedMap<K, V> headMap(K toKey) {
+        return headMap(toKey, false);
+    }
+
+    @Override
+    public SortedMap<K, V> tailMap(K fromKey) {
+        return tailMap(fromKey, true);
+    }
+
+    private NavigableMap<K, V> absSubMap(boolean newFromStart, K newLo, boolean newLoInclusive, boolean newToEnd, K newHi, boolean newHiInclusive) {
+        if (!newFromStart && !newToEnd && compare(newLo, newHi) > 0) {
+            throw new IllegalArgumentException("fromKey > toKey");
+        }
+
+        if (!newFromStart && !inRange(newLo, newLoInclusive)) {
+            throw new IllegalArgumentException("Lower bound out of range.");
+        }
+
+        if (!newToEnd && !inRange(newHi, newHiInclusive)) {
+            throw new IllegalArgumentException("Upper bound out of range.");
+        }
+
+        // Missing bounds are inherited from this view
+        if (newFromStart) {
+            newFromStart = fromStart;
+            newLo = lo;
+            newLoInclusive = loInclusive;
+        }
+
+        if (newToEnd) {
+            newToEnd = toEnd;
+            newHi = hi;
+            newHiInclusive = hiInclusive;
+        }
+
+        return new NavigableSubMap<K, V>(map, newFromStart, newLo, newLoInclusive, newToEnd, newHi, newHiInclusive, descending);
+    }
+
+    private Map.Entry<K, V> absLowest() {
+        Map.Entry<K, V> e;
+
+        if (fromStart) {
+            e = map.firstEntry();
+        } else {
+            e = (loInclusive ? map.ceilingEntry(lo) : map.higherEntry(lo));
+        }
+
+        return (e == null || tooHigh(e.getKey()) ? null : e);
+    }
+
+    private Map.Entry<K, V> absHighest() {
+        Map.Entry<K, V> e;
+
+        if (toEnd) {
+            e = map.lastEntry();
+        } else {
+            e = (hiInclusive ? map.floorEntry(hi) : map.lowerEntry(hi));
+        }
+
+        return (e == null || tooLow(e.getKey()) ? null : e);
+    }
+
+    private Map.Entry<K, V> absCeiling(K key) {
+        if (tooLow(key)) {
+            return absLowest();
+        }
+
+        Map.Entry<K, V> result = map.ceilingEntry(key);
+        return (result == null || tooHigh(result.getKey()) ? null : result);
+    }
+
+    private Map.Entry<K, V> absHigher(K key) {
+        if (tooLow(key)) {
+            return absLowest();
+        }
+
+        Map.Entry<K, V> result = map.higherEntry(key);
+        return (result == null || tooHigh(result.getKey()) ? null : result);
+    }
+
+    private Map.Entry<K, V> absFloor(K key) {
+        if (tooHigh(key)) {
+            return absHighest();
+        }
+
+        Map.Entry<K, V> result = map.floorEntry(key);
+        return (result == null || tooLow(result.getKey()) ? null : result);
+    }
+
+    private Map.Entry<K, V> absLower(K key) {
+        if (tooHigh(key)) {
+            return absHighest();
+        }
+
+        Map.Entry<K, V> result = map.lowerEntry(key);
+        return (result == null || tooLow(result.getKey()) ? null : result);
+    }
+
+    private static <K, V> K keyOrNull(Map.Entry<K, V> e) {
+        return (e == null ? null : e.getKey());
+    }
+
+    private Map.Entry<K, V> exists(Map.Entry<K, V> e) {
+        if (e == null) {
+            throw new NoSuchElementException();
+        }
+
+        return e;
+    }
+
+    private Map.Entry<K, V> removeIfExists(Map.Entry<K, V> e) {
+        if (e != null) {
+            map.remove(e.getKey());
+        }
+
+        return e;
+    }
+
+    private boolean tooLow(K key) {
+        if (fromStart) {
+            return false;
+        }
+
+        int comparison = compare(key, lo);
+        return comparison < 0 || (comparison == 0 && !loInclusive);
+    }
+
+    private boolean tooHigh(K key) {
+        if (toEnd) {
+            return false;
+        }
+
+        int comparison = compare(key, hi);
+        return comparison > 0 || (comparison == 0 && !hiInclusive);
+    }
+
+    private boolean inRange(K key) {
+        return !tooLow(key) && !tooHigh(key);
+    }
+
+    /**
+     * Returns whether the given bound of a new view lies within this view. An
+     * exclusive bound may be equal to an exclusive bound of this view.
+     *
+     * @param key
+     * @param inclusive
+     * @return
+     */
+    private boolean inRange(K key, boolean inclusive) {
+        if (inclusive) {
+            return inRange(key);
+        } else {
+            return (fromStart || compare(key, lo) >= 0) && (toEnd || compare(key, hi) <= 0);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private int compare(K a, K b) {
+        Comparator<? super K> comparator = map.comparator();
+
+        if (comparator != null) {
+            return comparator.compare(a, b);
+        } else {
+            return ((Comparable<? super K>) a).compareTo(b);
+        }
+    }
+
+    private class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+
+        @Override
+        public Iterator<Map.Entry<K, V>> iterator() {
+            if (descending) {
+                return map.descendingEntryRangeIterator(fromStart, lo, loInclusive, toEnd, hi, hiInclusive);
+            } else {
+                return map.entryRangeIterator(fromStart, lo, loInclusive, toEnd, hi, hiInclusive);
+            }
+        }
+
+        @Override
+        public int size() {
+            int size = 0;
+
+            for (Iterator<Map.Entry<K, V>> it = iterator(); it.hasNext(); it.next()) {
+                size++;
+            }
+
+            return size;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return NavigableSubMap.this.isEmpty();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean contains(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+
+            Map.Entry<K, ?> entry = (Map.Entry<K, ?>) o;
+            return inRange(entry.getKey()) && map.entrySet().contains(entry);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean remove(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+
+            Map.Entry<K, ?> entry = (Map.Entry<K, ?>) o;
+            return inRange(entry.getKey()) && map.entrySet().remove(entry);
+        }
+
+        @Override
+        public void clear() {
+            for (Iterator<Map.Entry<K, V>> it = iterator(); it.hasNext();) {
+                it.next();
+                it.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,356 @@
+package treap;
+
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.SortedSet;
+
+/**
+ * A view of the elements of a {@link SeekableSet} within a range, possibly in
+ * descending order. All queries are answered by the backing set, with the
+ * bounds checked against its current contents, so the view never copies any
+ * elements.
+ *
+ * The bounds are always stored in the ascending order of the backing set. The
+ * methods whose name starts with "abs" work in that order as well; the public
+ * methods translate between the two orders if the view is descending.
+ *
+ * @param <E>
+ */
+final class NavigableSubSet<E> extends AbstractSet<E> implements NavigableSet<E> {
+
+    private final SeekableSet<E> set;
+    private final boolean fromStart, toEnd; // Whether the view is unbounded below or above
+    private final E lo, hi;
+    private final boolean loInclusive, hiInclusive;
+    private final boolean descending;
+
+    NavigableSubSet(SeekableSet<E> set, boolean fromStart, E lo, boolean loInclusive, boolean toEnd, E hi, boolean hiInclusive, boolean descending) {
+        this.set = set;
+        this.fromStart = fromStart;
+        this.lo = lo;
+        this.loInclusive = loInclusive;
+        this.toEnd = toEnd;
+        this.hi = hi;
+        this.hiInclusive = hiInclusive;
+        this.descending = descending;
+    }
+
+    @Override
+    public boolean add(E e) {
+        if (!inRange(e)) {
+            throw new IllegalArgumentException("Element out of range.");
+        }
+
+        return set.add(e);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean contains(Object o) {
+        return inRange((E) o) && set.contains(o);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean remove(Object o) {
+        return inRange((E) o) && set.remove(o);
+    }
+
+    @Override
+    public void clear() {
+        for (Iterator<E> it = iterator(); it.hasNext();) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+
+        for (Iterator<E> it = iterator(); it.hasNext(); it.next()) {
+            size++;
+        }
+
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return absLowest() == null;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return (descending ? absDescendingIterator() : absIterator());
+    }
+
+    @Override
+    public Iterator<E> descendingIterator() {
+        return (descending ? absIterator() : absDescendingIterator());
+    }
+
+    @Override
+    public E lower(E e) {
+        return (descending ? absHigher(e) : absLower(e));
+    }
+
+    @Override
+    public E floor(E e) {
+        return (descending ? absCeiling(e) : absFloor(e));
+    }
+
+    @Override
+    public E ceiling(E e) {
+        return (descending ? absFloor(e) : absCeiling(e));
+    }
+
+    @Override
+    public E higher(E e) {
+        return (descending ? absLower(e) : absHigher(e));
+    }
+
+    @Override
+    public E first() {
+        return exists(descending ? absHighest() : absLowest());
+    }
+
+    @Override
+    public E last() {
+        return exists(descending ? absLowest() : absHighest());
+    }
+
+    @Override
+    public E pollFirst() {
+        return removeIfExists(descending ? absHighest() : absLowest());
+    }
+
+    @Override
+    public E pollLast() {
+        return removeIfExists(descending ? absLowest() : absHighest());
+    }
+
+    @Override
+    public Comparator<? super E> comparator() {
+        Comparator<? super E> comparator = set.comparator();
+
+        if (descending) {
+            return (comparator == null ? Collections.reverseOrder() : Collections.reverseOrder(comparator));
+        } else {
+            return comparator;
+        }
+    }
+
+    @Override
+    public NavigableSet<E> descendingSet() {
+        return new NavigableSubSet<E>(set, fromStart, lo, loInclusive, toEnd, hi, hiInclusive, !descending);
+    }
+
+    @Override
+    public NavigableSet<E> subSet(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+        if (descending) {
+            return absSubSet(false, toElement, toInclusive, false, fromElement, fromInclusive);
+        } else {
+            return absSubSet(false, fromElement, fromInclusive, false, toElement, toInclusive);
+        }
+    }
+
+    @Override
+    public NavigableSet<E> headSet(E toElement, boolean inclusive) {
+        if (descending) {
+            return absSubSet(false, toElement, inclusive, true, null, true);
+        } else {
+            return absSubSet(true, null, true, false, toElement, inclusive);
+        }
+    }
+
+    @Override
+    public NavigableSet<E> tailSet(E fromElement, boolean inclusive) {
+        if (descending) {
+            return absSubSet(true, null, true, false, fromElement, inclusive);
+        } else {
+            return absSubSet(false, fromElement, inclusive, true, null, true);
+        }
+    }
+
+    @Override
+    public SortedSet<E> subSet(E fromElement, E toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public SortedSet<E> headSet(E toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public SortedSet<E> tailSet(E fromElement) {
+        return tailSet(fromElement, true);
+    }
+
+    private NavigableSet<E> absSubSet(boolean newFromStart, E newLo, boolean newLoInclusive, boolean newToEnd, E newHi, boolean newHiInclusive) {
+        if (!newFromStart && !newToEnd && compare(newLo, newHi) > 0) {
+            throw new IllegalArgumentException("fromElement > toElement");
+        }
+
+        if (!newFromStart && !inRange(newLo, newLoInclusive)) {
+            throw new IllegalArgumentException("Lower bound out of range.");
+        }
+
+        if (!newToEnd && !inRange(newHi, newHiInclusive)) {
+            throw new IllegalArgumentException("Upper bound out of range.");
+        }
+
+        // Missing bounds are inherited from this view
+        if (newFromStart) {
+            newFromStart = fromStart;
+            newLo = lo;
+            newLoInclusive = loInclusive;
+        }
+
+        if (newToEnd) {
+            newToEnd = toEnd;
+            newHi = hi;
+            newHiInclusive = hiInclusive;
+        }
+
+        return new NavigableSubSet<E>(set, newFromStart, newLo, newLoInclusive, newToEnd, newHi, newHiInclusive, descending);
+    }
+
+    private Iterator<E> absIterator() {
+        return set.rangeIterator(fromStart, lo, loInclusive, toEnd, hi, hiInclusive);
+    }
+
+    private Iterator<E> absDescendingIterator() {
+        return set.descendingRangeIterator(fromStart, lo, loInclusive, toEnd, hi, hiInclusive);
+    }
+
+    private E absLowest() {
+        E e;
+
+        if (fromStart) {
+            e = (set.isEmpty() ? null : set.first());
+        } else {
+            e = (loInclusive ? set.ceiling(lo) : set.higher(lo));
+        }
+
+        return (e == null || tooHigh(e) ? null : e);
+    }
+
+    private E absHighest() {
+        E e;
+
+        if (toEnd) {
+            e = (set.isEmpty() ? null : set.last());
+        } else {
+            e = (hiInclusive ? set.floor(hi) : set.lower(hi));
+        }
+
+        return (e == null || tooLow(e) ? null : e);
+    }
+
+    private E absCeiling(E e) {
+        if (tooLow(e)) {
+            return absLowest();
+        }
+
+        E result = set.ceiling(e);
+        return (result == null || tooHigh(result) ? null : result);
+    }
+
+    private E absHigher(E e) {
+        if (tooLow(e)) {
+            return absLowest();
+        }
+
+        E result = set.higher(e);
+        return (result == null || tooHigh(result) ? null : result);
+    }
+
+    private E absFloor(E e) {
+        if (tooHigh(e)) {
+            return absHighest();
+        }
+
+        E result = set.floor(e);
+        return (result == null || tooLow(result) ? null : result);
+    }
+
+    private E absLower(E e) {
+        if (tooHigh(e)) {
+            return absHighest();
+        }
+
+        E result = set.lower(e);
+        return (result == null || tooLow(result) ? null : result);
+    }
+
+    private E exists(E e) {
+        if (e == null) {
+            throw new NoSuchElementException();
+        }
+
+        return e;
+    }
+
+    private E removeIfExists(E e) {
+        if (e != null) {
+            set.remove(e);
+        }
+
+        return e;
+    }
+
+    private boolean tooLow(E e) {
+        if (fromStart) {
+            return false;
+        }
+
+        int comparison = compare(e, lo);
+        return comparison < 0 || (comparison == 0 && !loInclusive);
+    }
+
+    private boolean tooHigh(E e) {
+        if (toEnd) {
+            return false;
+        }
+
+        int comparison = compare(e, hi);
+        return comparison > 0 || (comparison == 0 && !hiInclusive);
+    }
+
+    private boolean inRange(E e) {
+        return !tooLow(e) && !tooHigh(e);
+    }
+
+    /**
+     * Returns whether the given bound of a new view lies within this view. An
+     * exclusive bound may be equal to an exclusive bound of this view.
+     *
+     * @param e
+     * @param inclusive
+     * @return
+     */
+    private boolean inRange(E e, boolean inclusive) {
+        if (inclusive) {
+            return inRange(e);
+        } else {
+            return (fromStart || compare(e, lo) >= 0) && (toEnd || compare(e, hi) <= 0);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private int compare(E a, E b) {
+        Comparator<? super E> comparator = set.comparator();
+
+        if (comparator != null) {
+            return comparator.compare(a, b);
+        } else {
+            return ((Comparable<? super E>) a).compareTo(b);
+        }
+    }
+}
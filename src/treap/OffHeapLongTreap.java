@@ -0,0 +1,687 @@
+package treap;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A treap of primitive long keys that keeps its nodes outside the Java heap.
+ * Each node is a fixed-size record in a direct buffer, and nodes refer to each
+ * other by index, so the garbage collector sees a handful of buffers instead
+ * of one object per element.
+ *
+ * The records are allocated in chunks. When all chunks are full, a new chunk
+ * is added, so existing records never move. Slots of removed nodes are kept in
+ * a free list and reused. Call {@link #close()} when the treap is no longer
+ * needed, so that its buffers become garbage even while the treap itself is
+ * still referenced; a closed treap can no longer be used. The native memory of
+ * a buffer is only freed once the garbage collector collects the buffer.
+ *
+ * Like {@link LongTreap}, the methods that search for a key near a given
+ * value throw a NoSuchElementException if no such key exists.
+ */
+public class OffHeapLongTreap implements AutoCloseable {
+
+    private static final int NIL = -1;
+
+    // Record layout: key, priority, parent, left child, right child
+    private static final int KEY = 0;
+    private static final int PRIORITY = 8;
+    private static final int PARENT = 12;
+    private static final int LEFT = 16;
+    private static final int RIGHT = 20;
+    private static final int RECORD_SIZE = 24;
+
+    private static final int CHUNK_SHIFT = 16;
+    private static final int CHUNK_RECORDS = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_RECORDS - 1;
+
+    private ByteBuffer[] chunks;
+    private int chunkCount = 0;
+    private int root = NIL;
+    private int size = 0;
+    private int used = 0; // Slots at or beyond this index have never been used
+    private int free = NIL; // First slot of the free list, which is linked through the left children
+    private int modCount = 0;
+
+    /**
+     * Constructs a new, empty treap.
+     */
+    public OffHeapLongTreap() {
+        chunks = new ByteBuffer[4];
+    }
+
+    /**
+     * Constructs a new, empty treap with room for at least the given number of
+     * keys before it needs to allocate more memory.
+     *
+     * @param initialCapacity
+     */
+    public OffHeapLongTreap(int initialCapacity) {
+        this();
+
+        while (capacity() < initialCapacity) {
+            addChunk();
+        }
+    }
+
+    /**
+     * Adds the specified key to this treap, if it is not already present.
+     *
+     * @param e
+     * @return true if this treap did not already contain the key
+     */
+    public boolean add(long e) {
+        checkOpen();
+
+        // Find the place this value should be inserted
+        int parent = NIL;
+        int node = root;
+        boolean smaller = false;
+
+        while (node != NIL) {
+            parent = node;
+            long key = key(node);
+
+            if (e < key) {
+                smaller = true;
+                node = left(node);
+            } else if (e > key) {
+                smaller = false;
+                node = right(node);
+            } else {
+                // The treap already contains the specified key
+                return false;
+            }
+        }
+
+        // Create a new node with the specified key and a random priority
+        int newNode = allocate(e, ThreadLocalRandom.current().nextFloat());
+
+        // Insert this node into the treap
+        if (parent == NIL) {
+            root = newNode;
+        } else {
+            if (smaller) {
+                setLeft(parent, newNode);
+            } else {
+                setRight(parent, newNode);
+            }
+
+            setParent(newNode, parent);
+        }
+
+        // Fix the heap property by performing rotations
+        float priority = priority(newNode);
+
+        while (parent(newNode) != NIL && priority < priority(parent(newNode))) {
+            if (newNode == left(parent(newNode))) {
+                rotateRight(parent(newNode));
+            } else {
+                rotateLeft(parent(newNode));
+            }
+        }
+
+        size++;
+        modCount++;
+
+        return true;
+    }
+
+    public boolean contains(long e) {
+        checkOpen();
+        return find(e) != NIL;
+    }
+
+    /**
+     * Removes the specified key from this treap, if it is present.
+     *
+     * @param e
+     * @return true if this treap contained the key
+     */
+    public boolean remove(long e) {
+        checkOpen();
+
+        int node = find(e);
+
+        if (node == NIL) {
+            return false;
+        }
+
+        remove(node);
+
+        return true;
+    }
+
+    /**
+     * Removes all keys from this treap. The memory it has allocated is kept
+     * for reuse.
+     */
+    public void clear() {
+        checkOpen();
+        root = NIL;
+        size = 0;
+        used = 0;
+        free = NIL;
+        modCount++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the number of keys this treap can hold without allocating more
+     * memory.
+     *
+     * @return
+     */
+    public long capacity() {
+        return (long) chunkCount * CHUNK_RECORDS;
+    }
+
+    /**
+     * Returns an iterator over the keys in this treap in ascending order.
+     *
+     * @return
+     */
+    public PrimitiveIterator.OfLong iterator() {
+        checkOpen();
+
+        return new PrimitiveIterator.OfLong() {
+
+            private int lastReturned = NIL;
+            private int nextNode = firstNode();
+            private int expectedModCount = modCount;
+
+            @Override
+            public boolean hasNext() {
+                return nextNode != NIL;
+            }
+
+            @Override
+            public long nextLong() {
+                if (nextNode == NIL) {
+                    throw new NoSuchElementException();
+                }
+
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+
+                lastReturned = nextNode;
+                nextNode = successor(nextNode);
+                return key(lastReturned);
+            }
+
+            @Override
+            public void remove() {
+                if (lastReturned == NIL) {
+                    throw new IllegalStateException();
+                }
+
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+
+                OffHeapLongTreap.this.remove(lastReturned);
+                lastReturned = NIL;
+                expectedModCount = modCount;
+            }
+        };
+    }
+
+    /**
+     * Returns the largest key strictly less than the given key.
+     *
+     * @param e
+     * @return
+     * @throws NoSuchElementException if there is no such key
+     */
+    public long lower(long e) {
+        checkOpen();
+
+        int node = root;
+        int lower = NIL;
+
+        while (node != NIL) {
+            if (key(node) < e) {
+                lower = node;
+                node = right(node);
+            } else {
+                node = left(node);
+            }
+        }
+
+        return keyOf(lower);
+    }
+
+    /**
+     * Returns the smallest key strictly greater than the given key.
+     *
+     * @param e
+     * @return
+     * @throws NoSuchElementException if there is no such key
+     */
+    public long higher(long e) {
+        checkOpen();
+
+        int node = root;
+        int higher = NIL;
+
+        while (node != NIL) {
+            if (key(node) > e) {
+                higher = node;
+                node = left(node);
+            } else {
+                node = right(node);
+            }
+        }
+
+        return keyOf(higher);
+    }
+
+    /**
+     * Returns the largest key less than or equal to the given key.
+     *
+     * @param e
+     * @return
+     * @throws NoSuchElementException if there is no such key
+     */
+    public long floor(long e) {
+        checkOpen();
+
+        int node = root;
+        int lower = NIL;
+
+        while (node != NIL) {
+            long key = key(node);
+
+            if (key < e) {
+                lower = node;
+                node = right(node);
+            } else if (key > e) {
+                node = left(node);
+            } else {
+                return key;
+            }
+        }
+
+        return keyOf(lower);
+    }
+
+    /**
+     * Returns the smallest key greater than or equal to the given key.
+     *
+     * @param e
+     * @return
+     * @throws NoSuchElementException if there is no such key
+     */
+    public long ceiling(long e) {
+        checkOpen();
+
+        int node = root;
+        int higher = NIL;
+
+        while (node != NIL) {
+            long key = key(node);
+
+            if (key > e) {
+                higher = node;
+                node = left(node);
+            } else if (key < e) {
+                node = right(node);
+            } else {
+                return key;
+            }
+        }
+
+        return keyOf(higher);
+    }
+
+    public long first() {
+        checkOpen();
+
+        if (root == NIL) {
+            throw new NoSuchElementException("First element was queried, while the treap was empty.");
+        }
+
+        return key(firstNode());
+    }
+
+    public long last() {
+        checkOpen();
+
+        if (root == NIL) {
+            throw new NoSuchElementException("Last element was queried, while the treap was empty.");
+        }
+
+        return key(lastNode());
+    }
+
+    /**
+     * Removes and returns the smallest key.
+     *
+     * @return
+     * @throws NoSuchElementException if this treap is empty
+     */
+    public long pollFirst() {
+        long first = first();
+        remove(firstNode());
+        return first;
+    }
+
+    /**
+     * Removes and returns the largest key.
+     *
+     * @return
+     * @throws NoSuchElementException if this treap is empty
+     */
+    public long pollLast() {
+        long last = last();
+        remove(lastNode());
+        return last;
+    }
+
+    /**
+     * Drops the references to the buffers of this treap, so that the garbage
+     * collector can free their native memory; this call does not free it
+     * itself. Afterwards, all operations except {@link #size()},
+     * {@link #isEmpty()}, {@link #capacity()} and {@link #close()} throw an
+     * IllegalStateException. Closing a closed treap has no effect.
+     */
+    @Override
+    public void close() {
+        chunks = null;
+        chunkCount = 0;
+        root = NIL;
+        size = 0;
+        used = 0;
+        free = NIL;
+        modCount++;
+    }
+
+    private void checkOpen() {
+        if (chunks == null) {
+            throw new IllegalStateException("The treap has been closed.");
+        }
+    }
+
+    // Record access
+    private ByteBuffer chunk(int node) {
+        return chunks[node >>> CHUNK_SHIFT];
+    }
+
+    private static int offset(int node) {
+        return (node & CHUNK_MASK) * RECORD_SIZE;
+    }
+
+    private long key(int node) {
+        return chunk(node).getLong(offset(node) + KEY);
+    }
+
+    private float priority(int node) {
+        return chunk(node).getFloat(offset(node) + PRIORITY);
+    }
+
+    private int parent(int node) {
+        return chunk(node).getInt(offset(node) + PARENT);
+    }
+
+    private int left(int node) {
+        return chunk(node).getInt(offset(node) + LEFT);
+    }
+
+    private int right(int node) {
+        return chunk(node).getInt(offset(node) + RIGHT);
+    }
+
+    private void setParent(int node, int parent) {
+        chunk(node).putInt(offset(node) + PARENT, parent);
+    }
+
+    private void setLeft(int node, int left) {
+        chunk(node).putInt(offset(node) + LEFT, left);
+    }
+
+    private void setRight(int node, int right) {
+        chunk(node).putInt(offset(node) + RIGHT, right);
+    }
+
+    private void addChunk() {
+        if (chunkCount == chunks.length) {
+            chunks = Arrays.copyOf(chunks, 2 * chunks.length);
+        }
+
+        chunks[chunkCount] = ByteBuffer.allocateDirect(CHUNK_RECORDS * RECORD_SIZE).order(ByteOrder.nativeOrder());
+        chunkCount++;
+    }
+
+    /**
+     * Returns a free slot holding a new leaf with the given key and priority,
+     * adding a chunk if necessary.
+     *
+     * @param key
+     * @param priority
+     * @return
+     */
+    private int allocate(long key, float priority) {
+        int node;
+
+        if (free != NIL) {
+            node = free;
+            free = left(node);
+        } else {
+            if (used == Integer.MAX_VALUE) {
+                throw new IllegalStateException("The treap is full.");
+            }
+
+            if (used == capacity()) {
+                addChunk();
+            }
+
+            node = used;
+            used++;
+        }
+
+        ByteBuffer chunk = chunk(node);
+        int offset = offset(node);
+        chunk.putLong(offset + KEY, key);
+        chunk.putFloat(offset + PRIORITY, priority);
+        chunk.putInt(offset + PARENT, NIL);
+        chunk.putInt(offset + LEFT, NIL);
+        chunk.putInt(offset + RIGHT, NIL);
+
+        return node;
+    }
+
+    private int find(long e) {
+        int node = root;
+
+        while (node != NIL) {
+            long key = key(node);
+
+            if (e < key) {
+                node = left(node);
+            } else if (e > key) {
+                node = right(node);
+            } else {
+                return node;
+            }
+        }
+
+        return NIL;
+    }
+
+    private long keyOf(int node) {
+        if (node == NIL) {
+            throw new NoSuchElementException();
+        }
+
+        return key(node);
+    }
+
+    private void remove(int node) {
+        // Perform rotations until this node is a leaf
+        while (left(node) != NIL || right(node) != NIL) {
+            rotateDown(node);
+        }
+
+        // Actually remove the node
+        int parent = parent(node);
+
+        if (parent == NIL) {
+            root = NIL;
+        } else if (node == left(parent)) {
+            setLeft(parent, NIL);
+        } else {
+            setRight(parent, NIL);
+        }
+
+        // Add its slot to the free list
+        setLeft(node, free);
+        free = node;
+
+        size--;
+        modCount++;
+    }
+
+    /**
+     * Rotate the subtree rooted at the specified node to the right, making the
+     * left child of the specified node the new root.
+     *
+     * @param node
+     */
+    private void rotateRight(int node) {
+        int child = left(node);
+        int parent = parent(node);
+        int middleSubtreap = right(child);
+
+        // Switch the child pointers
+        if (parent == NIL) {
+            root = child;
+        } else if (node == left(parent)) {
+            setLeft(parent, child);
+        } else {
+            setRight(parent, child);
+        }
+
+        setLeft(node, middleSubtreap);
+        setRight(child, node);
+
+        // Fix the parent pointers
+        setParent(node, child);
+        setParent(child, parent);
+
+        if (middleSubtreap != NIL) {
+            setParent(middleSubtreap, node);
+        }
+    }
+
+    /**
+     * Rotate the subtree rooted at the specified node to the left, making the
+     * right child of the specified node the new root.
+     *
+     * @param node
+     */
+    private void rotateLeft(int node) {
+        int child = right(node);
+        int parent = parent(node);
+        int middleSubtreap = left(child);
+
+        // Switch the child pointers
+        if (parent == NIL) {
+            root = child;
+        } else if (node == left(parent)) {
+            setLeft(parent, child);
+        } else {
+            setRight(parent, child);
+        }
+
+        setRight(node, middleSubtreap);
+        setLeft(child, node);
+
+        // Fix the parent pointers
+        setParent(node, child);
+        setParent(child, parent);
+
+        if (middleSubtreap != NIL) {
+            setParent(middleSubtreap, node);
+        }
+    }
+
+    /**
+     * Rotates the subtree rooted at the specified node to move this node down
+     * the tree. Must not be called on a leaf.
+     *
+     * @param node
+     */
+    private void rotateDown(int node) {
+        int left = left(node);
+        int right = right(node);
+
+        if (left == NIL) {
+            rotateLeft(node);
+        } else if (right == NIL) {
+            rotateRight(node);
+        } else if (priority(left) < priority(right)) {
+            rotateRight(node);
+        } else {
+            rotateLeft(node);
+        }
+    }
+
+    private int firstNode() {
+        int node = root;
+
+        if (node != NIL) {
+            while (left(node) != NIL) {
+                node = left(node);
+            }
+        }
+
+        return node;
+    }
+
+    private int lastNode() {
+        int node = root;
+
+        if (node != NIL) {
+            while (right(node) != NIL) {
+                node = right(node);
+            }
+        }
+
+        return node;
+    }
+
+    private int successor(int node) {
+        if (right(node) != NIL) {
+            node = right(node);
+
+            while (left(node) != NIL) {
+                node = left(node);
+            }
+
+            return node;
+        } else {
+            // Go up until we arrive from a left child
+            int parent = parent(node);
+
+            while (parent != NIL && node == right(parent)) {
+                node = parent;
+                parent = parent(parent);
+            }
+
+            return parent;
+        }
+    }
+}
@@ -0,0 +1,441 @@
+package treap;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * An immutable treap. Instead of changing the treap, {@link #add(Object)} and
+ * {@link #remove(Object)} return a new version of it, and leave the original
+ * untouched. The new version shares all nodes with the original, except for
+ * the expected O(log n) nodes on the paths that changed, which are copied.
+ *
+ * As versions never change, a snapshot is simply a reference to a version: it
+ * costs nothing to take, and can be read by any number of threads while new
+ * versions are being created.
+ *
+ * Nodes have no parent pointers, since a node can be part of many versions at
+ * the same time. All operations therefore work top-down.
+ *
+ * @param <E>
+ */
+public final class PersistentTreap<E> implements Iterable<E> {
+
+    private final Node<E> root;
+    private final Comparator<? super E> comparator;
+
+    /**
+     * Constructs a new, empty treap, sorted according to the natural ordering
+     * of its elements.
+     */
+    public PersistentTreap() {
+        this(null, null);
+    }
+
+    /**
+     * Constructs a new, empty treap, sorted according to the specified
+     * comparator.
+     *
+     * @param comparator
+     */
+    public PersistentTreap(Comparator<? super E> comparator) {
+        this(null, comparator);
+    }
+
+    private PersistentTreap(Node<E> root, Comparator<? super E> comparator) {
+        this.root = root;
+        this.comparator = comparator;
+    }
+
+    /**
+     * Returns a version of this treap that contains the specified element.
+     * Takes expected O(log n) time and space.
+     *
+     * @param e
+     * @return this treap if it already contains the element, and a new version
+     * otherwise
+     */
+    public PersistentTreap<E> add(E e) {
+        if (contains(e)) {
+            return this;
+        }
+
+        return new PersistentTreap<E>(insert(root, e, ThreadLocalRandom.current().nextFloat()), comparator);
+    }
+
+    /**
+     * Returns a version of this treap that does not contain the specified
+     * element. Takes expected O(log n) time and space.
+     *
+     * @param o
+     * @return this treap if it does not contain the element, and a new version
+     * otherwise
+     */
+    public PersistentTreap<E> remove(Object o) {
+        if (!contains(o)) {
+            return this;
+        }
+
+        @SuppressWarnings("unchecked")
+        E key = (E) o;
+
+        return new PersistentTreap<E>(delete(root, key), comparator);
+    }
+
+    /**
+     * Returns an empty version of this treap, with the same ordering.
+     *
+     * @return
+     */
+    public PersistentTreap<E> clear() {
+        return (root == null ? this : new PersistentTreap<E>(null, comparator));
+    }
+
+    public boolean contains(Object o) {
+        @SuppressWarnings("unchecked")
+        E key = (E) o;
+
+        Node<E> node = root;
+
+        while (node != null) {
+            int comparison = compare(key, node.key);
+
+            if (comparison < 0) {
+                node = node.left;
+            } else if (comparison > 0) {
+                node = node.right;
+            } else {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    public int size() {
+        return size(root);
+    }
+
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    public Comparator<? super E> comparator() {
+        return comparator;
+    }
+
+    /**
+     * Returns the element at the specified position in the sorted order of
+     * this treap. Takes expected O(log n) time.
+     *
+     * @param index
+     * @return
+     * @throws IndexOutOfBoundsException if the index is negative or not
+     * smaller than the size of this treap
+     */
+    public E get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+
+        Node<E> node = root;
+
+        while (true) {
+            int leftSize = size(node.left);
+
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index > leftSize) {
+                index -= leftSize + 1;
+                node = node.right;
+            } else {
+                return node.key;
+            }
+        }
+    }
+
+    public E lower(E e) {
+        Node<E> node = root;
+        E lower = null;
+
+        while (node != null) {
+            if (compare(node.key, e) < 0) {
+                lower = node.key;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+
+        return lower;
+    }
+
+    public E higher(E e) {
+        Node<E> node = root;
+        E higher = null;
+
+        while (node != null) {
+            if (compare(node.key, e) > 0) {
+                higher = node.key;
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+
+        return higher;
+    }
+
+    public E floor(E e) {
+        Node<E> node = root;
+        E lower = null;
+
+        while (node != null) {
+            int comparison = compare(node.key, e);
+
+            if (comparison == 0) {
+                return node.key;
+            } else if (comparison < 0) {
+                lower = node.key;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+
+        return lower;
+    }
+
+    public E ceiling(E e) {
+        Node<E> node = root;
+        E higher = null;
+
+        while (node != null) {
+            int comparison = compare(node.key, e);
+
+            if (comparison == 0) {
+                return node.key;
+            } else if (comparison > 0) {
+                higher = node.key;
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+
+        return higher;
+    }
+
+    public E first() {
+        if (root == null) {
+            throw new NoSuchElementException("First element was queried, while the treap was empty.");
+        }
+
+        Node<E> node = root;
+
+        while (node.left != null) {
+            node = node.left;
+        }
+
+        return node.key;
+    }
+
+    public E last() {
+        if (root == null) {
+            throw new NoSuchElementException("Last element was queried, while the treap was empty.");
+        }
+
+        Node<E> node = root;
+
+        while (node.right != null) {
+            node = node.right;
+        }
+
+        return node.key;
+    }
+
+    /**
+     * Returns an iterator over the elements of this version in ascending
+     * order. The iterator keeps the path to the current node on a stack, and
+     * does not support removal.
+     *
+     * @return
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<E>() {
+
+            @SuppressWarnings("unchecked")
+            private Node<E>[] stack = (Node<E>[]) new Node<?>[32];
+            private int stackSize = 0;
+
+            {
+                pushLeftSpine(root);
+            }
+
+            @Override
+            public boolean hasNext() {
+                return stackSize > 0;
+            }
+
+            @Override
+            public E next() {
+                if (stackSize == 0) {
+                    throw new NoSuchElementException();
+                }
+
+                Node<E> node = stack[--stackSize];
+                pushLeftSpine(node.right);
+                return node.key;
+            }
+
+            private void pushLeftSpine(Node<E> node) {
+                while (node != null) {
+                    if (stackSize == stack.length) {
+                        stack = Arrays.copyOf(stack, 2 * stackSize);
+                    }
+
+                    stack[stackSize++] = node;
+                    node = node.left;
+                }
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+
+        for (Iterator<E> it = iterator(); it.hasNext();) {
+            sb.append(it.next());
+
+            if (it.hasNext()) {
+                sb.append(", ");
+            }
+        }
+
+        return sb.append(']').toString();
+    }
+
+    @SuppressWarnings("unchecked")
+    private int compare(E a, E b) {
+        if (comparator != null) {
+            return comparator.compare(a, b);
+        } else if (a != null) {
+            return ((Comparable<E>) a).compareTo(b);
+        } else if (b != null) {
+            return -((Comparable<E>) b).compareTo(a);
+        } else {
+            // Both a and b are null, so they are equal
+            return 0;
+        }
+    }
+
+    /**
+     * Returns a copy of the subtreap rooted at the given node with a new node
+     * for the given key, which must not be present yet. The new node is placed
+     * at the depth its priority dictates, by splitting the subtreap below it.
+     *
+     * @param node
+     * @param key
+     * @param priority
+     * @return
+     */
+    private Node<E> insert(Node<E> node, E key, float priority) {
+        if (node == null || priority < node.priority) {
+            @SuppressWarnings("unchecked")
+            Node<E>[] parts = (Node<E>[]) new Node<?>[2];
+            split(node, key, parts);
+            return new Node<E>(key, priority, parts[0], parts[1]);
+        } else if (compare(key, node.key) < 0) {
+            return new Node<E>(node.key, node.priority, insert(node.left, key, priority), node.right);
+        } else {
+            return new Node<E>(node.key, node.priority, node.left, insert(node.right, key, priority));
+        }
+    }
+
+    /**
+     * Returns a copy of the subtreap rooted at the given node without the node
+     * with the given key, which must be present.
+     *
+     * @param node
+     * @param key
+     * @return
+     */
+    private Node<E> delete(Node<E> node, E key) {
+        int comparison = compare(key, node.key);
+
+        if (comparison < 0) {
+            return new Node<E>(node.key, node.priority, delete(node.left, key), node.right);
+        } else if (comparison > 0) {
+            return new Node<E>(node.key, node.priority, node.left, delete(node.right, key));
+        } else {
+            return join(node.left, node.right);
+        }
+    }
+
+    /**
+     * Splits the subtreap rooted at the given node into the nodes with keys
+     * smaller than the given key (stored in parts[0]) and those with larger
+     * keys (parts[1]), copying the nodes on the search path. The key must not
+     * be present.
+     *
+     * @param node
+     * @param key
+     * @param parts
+     */
+    private void split(Node<E> node, E key, Node<E>[] parts) {
+        if (node == null) {
+            parts[0] = null;
+            parts[1] = null;
+        } else if (compare(node.key, key) < 0) {
+            split(node.right, key, parts);
+            parts[0] = new Node<E>(node.key, node.priority, node.left, parts[0]);
+        } else {
+            split(node.left, key, parts);
+            parts[1] = new Node<E>(node.key, node.priority, parts[1], node.right);
+        }
+    }
+
+    /**
+     * Joins two subtreaps, where all keys in the left one are smaller than all
+     * keys in the right one, copying the nodes on the merged spines.
+     *
+     * @param left
+     * @param right
+     * @return
+     */
+    private static <E> Node<E> join(Node<E> left, Node<E> right) {
+        if (left == null) {
+            return right;
+        } else if (right == null) {
+            return left;
+        } else if (left.priority < right.priority) {
+            return new Node<E>(left.key, left.priority, left.left, join(left.right, right));
+        } else {
+            return new Node<E>(right.key, right.priority, join(left, right.left), right.right);
+        }
+    }
+
+    private static int size(Node<?> node) {
+        return (node == null ? 0 : node.size);
+    }
+
+    private static final class Node<E> {
+
+        final E key;
+        final float priority;
+        final int size; // The number of nodes in the subtreap rooted at this node
+        final Node<E> left, right;
+
+        Node(E key, float priority, Node<E> left, Node<E> right) {
+            this.key = key;
+            this.priority = priority;
+            this.left = left;
+            this.right = right;
+            this.size = 1 + size(left) + size(right);
+        }
+    }
+}
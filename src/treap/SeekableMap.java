@@ -0,0 +1,48 @@
+package treap;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+
+/**
+ * A navigable map that can iterate over the entries in a range of keys without
+ * visiting the entries before the range. The range views returned by
+ * {@link NavigableSubMap} are built on these iterators, like those of
+ * {@link SeekableSet}.
+ *
+ * @param <K>
+ * @param <V>
+ */
+interface SeekableMap<K, V> extends NavigableMap<K, V> {
+
+    /**
+     * Returns an iterator over the entries with keys in the given range, in
+     * ascending order. If fromStart is true, the range has no lower bound and
+     * lo is ignored; likewise for toEnd and hi. The iterator supports removal,
+     * and its entries support setValue.
+     *
+     * @param fromStart
+     * @param lo
+     * @param loInclusive
+     * @param toEnd
+     * @param hi
+     * @param hiInclusive
+     * @return
+     */
+    Iterator<Map.Entry<K, V>> entryRangeIterator(boolean fromStart, K lo, boolean loInclusive, boolean toEnd, K hi, boolean hiInclusive);
+
+    /**
+     * Returns an iterator over the entries with keys in the given range, in
+     * descending order. The bounds are interpreted as in
+     * {@link #entryRangeIterator(boolean, Object, boolean, boolean, Object, boolean)}.
+     *
+     * @param fromStart
+     * @param lo
+     * @param loInclusive
+     * @param toEnd
+     * @param hi
+     * @param hiInclusive
+     * @return
+     */
+    Iterator<Map.Entry<K, V>> descendingEntryRangeIterator(boolean fromStart, K lo, boolean loInclusive, boolean toEnd, K hi, boolean hiInclusive);
+}
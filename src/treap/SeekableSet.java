@@ -0,0 +1,44 @@
+package treap;
+
+import java.util.Iterator;
+import java.util.NavigableSet;
+
+/**
+ * A navigable set that can iterate over a range of its elements without
+ * visiting the elements before the range. The range views returned by
+ * {@link NavigableSubSet} are built on these iterators.
+ *
+ * @param <E>
+ */
+interface SeekableSet<E> extends NavigableSet<E> {
+
+    /**
+     * Returns an iterator over the elements in the given range, in ascending
+     * order. If fromStart is true, the range has no lower bound and lo is
+     * ignored; likewise for toEnd and hi. The iterator supports removal.
+     *
+     * @param fromStart
+     * @param lo
+     * @param loInclusive
+     * @param toEnd
+     * @param hi
+     * @param hiInclusive
+     * @return
+     */
+    Iterator<E> rangeIterator(boolean fromStart, E lo, boolean loInclusive, boolean toEnd, E hi, boolean hiInclusive);
+
+    /**
+     * Returns an iterator over the elements in the given range, in descending
+     * order. The bounds are interpreted as in
+     * {@link #rangeIterator(boolean, Object, boolean, boolean, Object, boolean)}.
+     *
+     * @param fromStart
+     * @param lo
+     * @param loInclusive
+     * @param toEnd
+     * @param hi
+     * @param hiInclusive
+     * @return
+     */
+    Iterator<E> descendingRangeIterator(boolean fromStart, E lo, boolean loInclusive, boolean toEnd, E hi, boolean hiInclusive);
+}
@@ -1,23 +1,60 @@
 package treap;
 
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.AbstractSet;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
+import java.util.NavigableSet;
 import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.SortedSet;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
 
 /**
  * A basic implementation of a Treap: a probabilistically balanced binary search
  * tree.
  * @param <E>
  */
-public class Treap<E> extends AbstractSet<E> {
+public class Treap<E> extends AbstractSet<E> implements SeekableSet<E> {
+
+    /**
+     * Set operations on subtreaps with at least this many nodes in total are
+     * split into tasks that run in parallel.
+     */
+    private static final int PARALLEL_THRESHOLD = 1 << 13;
+
+    // The snapshot format: a header with the magic number, version, flags,
+    // size and priority seed, followed by the elements in ascending order.
+    // Version 1 headers have no seed.
+    private static final int SNAPSHOT_MAGIC = 0x54525053; // "TRPS"
+    private static final int SNAPSHOT_VERSION = 2;
+    private static final int SNAPSHOT_PRIORITIES = 1; // Flag: every element is preceded by its priority
+    private static final int SNAPSHOT_HASHED = 2; // Flag: the treap derives its priorities from the keys and the seed
+    private static final int SNAPSHOT_HEADER_SIZE = 24;
+    private static final int SNAPSHOT_V1_HEADER_SIZE = 16;
+    private static final int SNAPSHOT_BUFFER_SIZE = 1 << 16;
+    private static final long SNAPSHOT_WINDOW_SIZE = 1 << 30; // Snapshots are mapped in windows of at most this many bytes
 
-    private int size = 0;
     private TreapNode<E> root = null;
     private Comparator<? super E> comparator = null;
+    private boolean hashedPriorities = false; // Whether priorities are derived from the keys instead of drawn at random
+    private long seed = 0; // The seed for hashed priorities
+    private int modCount = 0; // The number of structural modifications, used to detect concurrent modification by iterators
+    private final TreapStats.Recorder stats = (TreapStats.ENABLED ? new TreapStats.Recorder() : null);
 
     /**
      * Constructs a new, empty treap, sorted according to the natural ordering
@@ -48,6 +85,38 @@ public class Treap<E> extends AbstractSet<E> {
         this.comparator = comparator;
     }
 
+    /**
+     * Constructs a new, empty treap, sorted according to the specified
+     * comparator, or the natural ordering of its elements if the comparator
+     * is null, that derives the priority of every element from its hash code
+     * and the given seed instead of drawing it at random.
+     *
+     * As the shape of a treap is determined by its elements and their
+     * priorities, two such treaps with the same seed and the same elements
+     * have the same shape, no matter in which order the elements were added or
+     * how many were removed in between. Equal priorities are broken by
+     * placing the smaller element higher, so that the shape remains unique.
+     * Merging in nodes from a treap with different priorities, through
+     * {@link #addAll} or {@link #join}, gives up this guarantee.
+     *
+     * The priorities are not fully independent. They are derived from the
+     * 32-bit {@link Object#hashCode()} of each element, so elements with equal
+     * hash codes always get equal priorities, and a set with many of those
+     * becomes unbalanced. Like random priorities, they are floats with 24
+     * bits of resolution, so even distinct hash codes collide: with a few
+     * thousand elements, some equal priorities are to be expected. The
+     * tie-break keeps the shape unique and the treap correct; it only orders
+     * the tied elements by key instead of at random.
+     *
+     * @param comparator
+     * @param seed
+     */
+    public Treap(Comparator<? super E> comparator, long seed) {
+        this(comparator);
+        this.hashedPriorities = true;
+        this.seed = seed;
+    }
+
     /**
      * Constructs a new treap containing the same elements and using the same
      * ordering as the specified sorted set.
@@ -61,6 +130,17 @@ public class Treap<E> extends AbstractSet<E> {
 
     @Override
     public boolean add(E e) {
+        if (TreapStats.ENABLED) {
+            stats.begin();
+            boolean added = insert(e);
+            stats.end(TreapStats.Operation.ADD, size());
+            return added;
+        }
+
+        return insert(e);
+    }
+
+    private boolean insert(E e) {
         // Find the place this value should be inserted
         TreapNode<E> parent = null;
         TreapNode<E> node = root;
@@ -81,8 +161,25 @@ public class Treap<E> extends AbstractSet<E> {
             }
         }
 
-        // Create a new node with the specified key and a random priority
-        TreapNode<E> newNode = new TreapNode<E>(e, ThreadLocalRandom.current().nextFloat());
+        attach(e, parent, comparison);
+        return true;
+    }
+
+    /**
+     * Adds a new node with the specified key as a child of the specified
+     * parent, or as the root if the parent is null, and restores the heap
+     * property.
+     *
+     * @param e
+     * @param parent
+     * @param comparison the result of comparing the key to the key of the
+     * parent, which determines whether the new node becomes its left or right
+     * child
+     * @return the new node
+     */
+    private TreapNode<E> attach(E e, TreapNode<E> parent, int comparison) {
+        // Create a new node with the specified key and a new priority
+        TreapNode<E> newNode = new TreapNode<E>(e, newPriority(e));
 
         // Insert this node into the treap
         if (parent == null) {
@@ -97,10 +194,17 @@ public class Treap<E> extends AbstractSet<E> {
             }
 
             newNode.parent = parent;
+
+            // The new node is part of the subtreap of each of its ancestors
+            for (TreapNode<E> ancestor = parent; ancestor != null; ancestor = ancestor.parent) {
+                ancestor.size++;
+            }
         }
 
-        // Fix the heap property by performing rotations
-        while (newNode.parent != null && newNode.priority < newNode.parent.priority) {
+        // Fix the heap property by performing rotations. On equal priorities,
+        // the smaller key goes on top, which is the new node if it is a left child.
+        while (newNode.parent != null && (newNode.priority < newNode.parent.priority
+                || (newNode.priority == newNode.parent.priority && newNode == newNode.parent.left))) {
             if (newNode == newNode.parent.left) {
                 rotateRight(newNode.parent);
             } else {
@@ -109,13 +213,24 @@ public class Treap<E> extends AbstractSet<E> {
             }
         }
 
-        size++;
+        modCount++;
 
-        return true;
+        return newNode;
     }
 
     @Override
     public boolean contains(Object o) {
+        if (TreapStats.ENABLED) {
+            stats.begin();
+            boolean found = containsKey(o);
+            stats.end(TreapStats.Operation.CONTAINS, size());
+            return found;
+        }
+
+        return containsKey(o);
+    }
+
+    private boolean containsKey(Object o) {
         if (comparator != null) {
             return containsWithComparator(o);
         }
@@ -133,6 +248,10 @@ public class Treap<E> extends AbstractSet<E> {
         while (node != null) {
             comparison = key.compareTo(node.key);
 
+            if (TreapStats.ENABLED) {
+                stats.comparisons.increment();
+            }
+
             if (comparison < 0) {
                 node = node.left;
             } else if (comparison > 0) {
@@ -155,6 +274,10 @@ public class Treap<E> extends AbstractSet<E> {
         while (node != null) {
             comparison = comparator.compare(key, node.key);
 
+            if (TreapStats.ENABLED) {
+                stats.comparisons.increment();
+            }
+
             if (comparison < 0) {
                 node = node.left;
             } else if (comparison > 0) {
@@ -170,11 +293,22 @@ public class Treap<E> extends AbstractSet<E> {
     @Override
     public void clear() {
         root = null;
-        size = 0;
+        modCount++;
     }
 
     @Override
     public boolean remove(Object o) {
+        if (TreapStats.ENABLED) {
+            stats.begin();
+            boolean removed = removeKey(o);
+            stats.end(TreapStats.Operation.REMOVE, size());
+            return removed;
+        }
+
+        return removeKey(o);
+    }
+
+    private boolean removeKey(Object o) {
         // Find the node corresponding to the given key
         @SuppressWarnings("unchecked")
         E key = (E) o;
@@ -204,127 +338,92 @@ public class Treap<E> extends AbstractSet<E> {
 
     @Override
     public Iterator<E> iterator() {
-        return new Iterator<E>() {
-
-            private int nextIndex = 0;
-            private TreapNode<E> currentNode = null;
-            private TreapNode<E> nextNode = firstNode();
+        return new TreapIterator(firstNode(), null, false);
+    }
 
-            @Override
-            public boolean hasNext() {
-                return nextIndex < size();
-            }
+    @Override
+    public Iterator<E> descendingIterator() {
+        return new TreapIterator(lastNode(), null, true);
+    }
 
-            @Override
-            public E next() {
-                currentNode = nextNode;
-                nextNode = higherNode(currentNode.key);
-                nextIndex++;
-                return currentNode.key;
-            }
+    /**
+     * Returns a spliterator over the elements of this treap, in ascending
+     * order. It reports exact sizes, also after splitting, and splits its
+     * range at the median position, found by descending from the root using
+     * the subtree sizes. Each part is traversed through the child and parent
+     * pointers, without comparing elements.
+     *
+     * @return
+     */
+    @Override
+    public Spliterator<E> spliterator() {
+        return new TreapSpliterator(firstNode(), 0, size());
+    }
 
-            @Override
-            public void remove() {
-                /* TODO: implement lowerNode
-                TreapNode<E> previousNode = lowerNode(currentNode);
-                Treap.this.remove(currentNode);
-                currentNode = previousNode;
-                nextIndex--;
-                 */
-                throw new UnsupportedOperationException("Not supported yet.");
-            }
-        };
+    /**
+     * Returns a new cursor over this treap, which is not positioned at any
+     * element yet. Its first search starts from the root.
+     *
+     * @return
+     */
+    public Cursor<E> cursor() {
+        return new TreapCursor();
     }
 
     @Override
     public int size() {
-        return size;
+        return size(root);
     }
 
+    @Override
     public E lower(E e) {
-        TreapNode<E> node = root;
-        E lower = null;
-
-        while (node != null) {
-            if (compare(node.key, e) < 0) {
-                if (lower == null || compare(node.key, lower) > 0) {
-                    lower = node.key;
-                }
-
-                node = node.right;
-            } else {
-                node = node.left;
-            }
+        if (TreapStats.ENABLED) {
+            stats.begin();
+            E lower = keyOrNull(lowerNode(e));
+            stats.end(TreapStats.Operation.LOWER, size());
+            return lower;
         }
 
-        return lower;
+        return keyOrNull(lowerNode(e));
     }
 
+    @Override
     public E higher(E e) {
-        TreapNode<E> node = root;
-        E higher = null;
-
-        while (node != null) {
-            if (compare(node.key, e) > 0) {
-                if (higher == null || compare(node.key, higher) < 0) {
-                    higher = node.key;
-                }
-
-                node = node.left;
-            } else {
-                node = node.right;
-            }
+        if (TreapStats.ENABLED) {
+            stats.begin();
+            E higher = keyOrNull(higherNode(e));
+            stats.end(TreapStats.Operation.HIGHER, size());
+            return higher;
         }
 
-        return higher;
+        return keyOrNull(higherNode(e));
     }
 
+    @Override
     public E floor(E e) {
-        TreapNode<E> node = root;
-        E lower = null;
-
-        while (node != null) {
-            int comparison = compare(node.key, e);
-
-            if (comparison == 0) {
-                return e;
-            } else if (comparison < 0) {
-                if (lower == null || compare(node.key, lower) > 0) {
-                    lower = node.key;
-                }
-
-                node = node.right;
-            } else {
-                node = node.left;
-            }
+        if (TreapStats.ENABLED) {
+            stats.begin();
+            E floor = keyOrNull(floorNode(e));
+            stats.end(TreapStats.Operation.FLOOR, size());
+            return floor;
         }
 
-        return lower;
+        return keyOrNull(floorNode(e));
     }
 
+    @Override
     public E ceiling(E e) {
-        TreapNode<E> node = root;
-        E higher = null;
-
-        while (node != null) {
-            int comparison = compare(node.key, e);
-
-            if (comparison == 0) {
-                return e;
-            } else if (comparison > 0) {
-                if (higher == null || compare(node.key, higher) < 0) {
-                    higher = node.key;
-                }
-
-                node = node.left;
-            } else {
-                node = node.right;
-            }
+        if (TreapStats.ENABLED) {
+            stats.begin();
+            E ceiling = keyOrNull(ceilingNode(e));
+            stats.end(TreapStats.Operation.CEILING, size());
+            return ceiling;
         }
 
-        return higher;
+        return keyOrNull(ceilingNode(e));
     }
 
+    @Override
     public E pollFirst() {
         if (root == null) {
             return null;
@@ -341,6 +440,7 @@ public class Treap<E> extends AbstractSet<E> {
         }
     }
 
+    @Override
     public E pollLast() {
         if (root == null) {
             return null;
@@ -357,10 +457,12 @@ public class Treap<E> extends AbstractSet<E> {
         }
     }
 
+    @Override
     public Comparator<? super E> comparator() {
         return comparator;
     }
 
+    @Override
     public E first() {
         if (root == null) {
             throw new NoSuchElementException("First element was queried, while the treap was empty.");
@@ -375,6 +477,7 @@ public class Treap<E> extends AbstractSet<E> {
         }
     }
 
+    @Override
     public E last() {
         if (root == null) {
             throw new NoSuchElementException("Last element was queried, while the treap was empty.");
@@ -389,128 +492,864 @@ public class Treap<E> extends AbstractSet<E> {
         }
     }
 
-    @SuppressWarnings("unchecked")
-    private int compare(E a, E b) {
-        if (comparator != null) {
-            return comparator.compare(a, b);
-        } else if (a != null) {
-            return ((Comparable<E>) a).compareTo(b);
-        } else if (b != null) {
-            return -((Comparable<E>) b).compareTo(a);
-        } else {
-            // Both a and b are null, so they are equal
-            return 0;
+    /**
+     * Returns a reverse order view of the elements in this treap. The view is
+     * backed by this treap and does not copy any elements.
+     *
+     * @return
+     */
+    @Override
+    public NavigableSet<E> descendingSet() {
+        return new NavigableSubSet<E>(this, true, null, true, true, null, true, true);
+    }
+
+    /**
+     * Returns a view of the portion of this treap whose elements range from
+     * fromElement to toElement. The view is backed by this treap, and its
+     * bounds are checked against the live treap, so no elements are copied.
+     * Iteration over the view starts at its lowest element in expected
+     * O(log n) time.
+     *
+     * @param fromElement
+     * @param fromInclusive
+     * @param toElement
+     * @param toInclusive
+     * @return
+     */
+    @Override
+    public NavigableSet<E> subSet(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+        if (compare(fromElement, toElement) > 0) {
+            throw new IllegalArgumentException("fromElement > toElement");
         }
+
+        return new NavigableSubSet<E>(this, false, fromElement, fromInclusive, false, toElement, toInclusive, false);
     }
 
-    private void remove(TreapNode<E> node) {
-        // Perform rotations until this node is a leaf
-        while (node.left != null || node.right != null) {
-            rotateDown(node);
+    @Override
+    public NavigableSet<E> headSet(E toElement, boolean inclusive) {
+        return new NavigableSubSet<E>(this, true, null, true, false, toElement, inclusive, false);
+    }
+
+    @Override
+    public NavigableSet<E> tailSet(E fromElement, boolean inclusive) {
+        return new NavigableSubSet<E>(this, false, fromElement, inclusive, true, null, true, false);
+    }
+
+    @Override
+    public SortedSet<E> subSet(E fromElement, E toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public SortedSet<E> headSet(E toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public SortedSet<E> tailSet(E fromElement) {
+        return tailSet(fromElement, true);
+    }
+
+    @Override
+    public Iterator<E> rangeIterator(boolean fromStart, E lo, boolean loInclusive, boolean toEnd, E hi, boolean hiInclusive) {
+        TreapNode<E> first = (fromStart ? firstNode() : (loInclusive ? ceilingNode(lo) : higherNode(lo)));
+        TreapNode<E> fence = (toEnd ? null : (hiInclusive ? higherNode(hi) : ceilingNode(hi)));
+
+        if (first != null && fence != null && compare(first.key, fence.key) >= 0) {
+            // The range is empty
+            first = null;
         }
 
-        // Actually remove the node
-        if (node == root) {
-            root = null;
-        } else {
-            if (node == node.parent.left) {
-                node.parent.left = null;
-            } else {
-                assert node == node.parent.right;
-                node.parent.right = null;
-            }
+        return new TreapIterator(first, fence, false);
+    }
+
+    @Override
+    public Iterator<E> descendingRangeIterator(boolean fromStart, E lo, boolean loInclusive, boolean toEnd, E hi, boolean hiInclusive) {
+        TreapNode<E> first = (toEnd ? lastNode() : (hiInclusive ? floorNode(hi) : lowerNode(hi)));
+        TreapNode<E> fence = (fromStart ? null : (loInclusive ? lowerNode(lo) : floorNode(lo)));
+
+        if (first != null && fence != null && compare(first.key, fence.key) <= 0) {
+            // The range is empty
+            first = null;
         }
 
-        size--;
+        return new TreapIterator(first, fence, true);
     }
 
     /**
-     * Rotate the subtree rooted at the specified node to the right, making the
-     * left child of the specified node the new root.
+     * Compares the specified object with this treap for equality. If it is a
+     * treap with the same ordering, both are walked in order side by side,
+     * which takes O(n) time instead of O(n log n).
      *
-     * @param node
+     * @param o
+     * @return true if the specified object is a set equal to this treap
      */
-    private void rotateRight(TreapNode<E> node) {
-        TreapNode<E> child = node.left;
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
 
-        if (child == null) {
-            throw new InternalError("rotateRight called on node without left child.");
-        } else {
-            // Store temporary values
-            TreapNode<E> parent = node.parent;
-            TreapNode<E> middleSubtreap = child.right;
+        Treap<E> other = (o instanceof Collection ? sameOrderTreap((Collection<?>) o) : null);
 
-            // Switch the child pointers
-            if (parent == null) {
-                root = child;
-            } else {
-                if (node == parent.left) {
-                    parent.left = child;
-                } else {
-                    assert node == parent.right;
-                    parent.right = child;
-                }
+        if (other == null) {
+            return super.equals(o);
+        }
+
+        if (size() != other.size()) {
+            return false;
+        }
+
+        for (TreapNode<E> a = firstNode(), b = other.firstNode(); a != null; a = successor(a), b = successor(b)) {
+            if (compare(a.key, b.key) != 0) {
+                return false;
             }
+        }
 
-            node.left = middleSubtreap;
-            child.right = node;
+        return true;
+    }
 
-            // Fix the parent pointers
-            node.parent = child;
-            child.parent = parent;
+    /**
+     * Returns whether the given treap has exactly the same shape as this one:
+     * equal keys in the same positions, with the same priorities. Two treaps
+     * created with the same seed through {@link #Treap(Comparator, long)} that
+     * contain the same elements always have the same shape, regardless of the
+     * order in which the elements were added and removed.
+     *
+     * @param other
+     * @return
+     */
+    public boolean sameShape(Treap<?> other) {
+        return sameShape(root, other.root);
+    }
 
-            if (middleSubtreap != null) {
-                middleSubtreap.parent = node;
+    private static boolean sameShape(TreapNode<?> a, TreapNode<?> b) {
+        // Walk down the left spine iteratively and only recurse to the right
+        while (a != null && b != null) {
+            if (a.priority != b.priority || a.size != b.size || !Objects.equals(a.key, b.key)
+                    || !sameShape(a.right, b.right)) {
+                return false;
             }
+
+            a = a.left;
+            b = b.left;
         }
+
+        return a == b;
     }
 
     /**
-     * Rotate the subtree rooted at the specified node to the left, making the
-     * right child of the specified node the new root.
+     * Returns the statistics collected for this treap, along with its current
+     * height and average depth. The counters are only kept when
+     * {@link TreapStats#ENABLED} is set, and are zero otherwise. The height and
+     * average depth are always computed, which takes O(n) time.
      *
-     * @param node
+     * @return
      */
-    private void rotateLeft(TreapNode<E> node) {
-        TreapNode<E> child = node.right;
+    public TreapStats stats() {
+        int height = 0;
+        long totalDepth = 0;
 
-        if (child == null) {
-            throw new InternalError("rotateLeft called on node without right child.");
-        } else {
-            // Store temporary values
-            TreapNode<E> parent = node.parent;
-            TreapNode<E> middleSubtreap = child.left;
+        // Walk over all nodes in order, keeping track of the depth of the current one
+        TreapNode<E> node = root;
+        int depth = 0;
 
-            // Switch the child pointers
-            if (parent == null) {
-                root = child;
-            } else {
-                if (node == parent.left) {
-                    parent.left = child;
-                } else {
-                    assert node == parent.right;
-                    parent.right = child;
-                }
+        if (node != null) {
+            while (node.left != null) {
+                node = node.left;
+                depth++;
             }
+        }
 
-            node.right = middleSubtreap;
-            child.left = node;
+        while (node != null) {
+            totalDepth += depth;
+            height = Math.max(height, depth + 1);
 
-            // Fix the parent pointers
-            node.parent = child;
-            child.parent = parent;
+            if (node.right != null) {
+                node = node.right;
+                depth++;
 
-            if (middleSubtreap != null) {
-                middleSubtreap.parent = node;
+                while (node.left != null) {
+                    node = node.left;
+                    depth++;
+                }
+            } else {
+                // Go up until we arrive from a left child
+                TreapNode<E> parent = node.parent;
+                depth--;
+
+                while (parent != null && node == parent.right) {
+                    node = parent;
+                    parent = parent.parent;
+                    depth--;
+                }
+
+                node = parent;
             }
         }
+
+        return new TreapStats(stats, height, (root == null ? 0 : (double) totalDepth / size()));
     }
 
     /**
-     * Rotates the subtree rooted at the specified node to move this node down
-     * the tree. Must not be called on a leaf.
+     * Returns the element at the specified position in the sorted order of
+     * this treap. Takes expected O(log n) time.
      *
-     * @param node
+     * @param index
+     * @return
+     * @throws IndexOutOfBoundsException if the index is negative or not
+     * smaller than the size of this treap
+     */
+    public E get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+
+        return nodeAt(index).key;
+    }
+
+    /**
+     * Returns the position of the specified element in the sorted order of
+     * this treap, or -1 if this treap does not contain the element. Takes
+     * expected O(log n) time.
+     *
+     * @param o
+     * @return
+     */
+    public int indexOf(Object o) {
+        @SuppressWarnings("unchecked")
+        E key = (E) o;
+
+        TreapNode<E> node = root;
+        int index = 0;
+
+        while (node != null) {
+            int comparison = compare(key, node.key);
+
+            if (comparison < 0) {
+                node = node.left;
+            } else if (comparison > 0) {
+                index += size(node.left) + 1;
+                node = node.right;
+            } else {
+                return index + size(node.left);
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns the number of elements in this treap that are strictly less than
+     * the specified element. Takes expected O(log n) time.
+     *
+     * @param e
+     * @return
+     */
+    public int countLessThan(E e) {
+        return countBelow(e, false);
+    }
+
+    /**
+     * Returns the number of elements in this treap that are greater than or
+     * equal to fromElement and strictly less than toElement. Takes expected
+     * O(log n) time.
+     *
+     * @param fromElement
+     * @param toElement
+     * @return
+     * @throws IllegalArgumentException if fromElement is greater than
+     * toElement
+     */
+    public int countRange(E fromElement, E toElement) {
+        return countRange(fromElement, true, toElement, false);
+    }
+
+    /**
+     * Returns the number of elements in this treap that lie in the given
+     * range, which is interpreted as in
+     * {@link #subSet(Object, boolean, Object, boolean)}. Takes expected
+     * O(log n) time.
+     *
+     * @param fromElement
+     * @param fromInclusive
+     * @param toElement
+     * @param toInclusive
+     * @return
+     * @throws IllegalArgumentException if fromElement is greater than
+     * toElement
+     */
+    public int countRange(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+        if (compare(fromElement, toElement) > 0) {
+            throw new IllegalArgumentException("fromElement > toElement");
+        }
+
+        // An empty range with equal bounds can come out as -1
+        return Math.max(0, countBelow(toElement, toInclusive) - countBelow(fromElement, !fromInclusive));
+    }
+
+    /**
+     * Removes all elements that are greater than or equal to fromElement and
+     * strictly less than toElement from this treap. Takes expected O(log n)
+     * time, regardless of the number of elements removed.
+     *
+     * @param fromElement
+     * @param toElement
+     * @return the number of elements removed
+     * @throws IllegalArgumentException if fromElement is greater than
+     * toElement
+     */
+    public int removeRange(E fromElement, E toElement) {
+        return removeRange(fromElement, true, toElement, false);
+    }
+
+    /**
+     * Removes all elements in the given range from this treap. The range is
+     * interpreted as in {@link #subSet(Object, boolean, Object, boolean)}.
+     * Takes expected O(log n) time, regardless of the number of elements
+     * removed.
+     *
+     * @param fromElement
+     * @param fromInclusive
+     * @param toElement
+     * @param toInclusive
+     * @return the number of elements removed
+     * @throws IllegalArgumentException if fromElement is greater than
+     * toElement
+     */
+    public int removeRange(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+        return size(cutRange(fromElement, fromInclusive, toElement, toInclusive));
+    }
+
+    /**
+     * Removes all elements that are greater than or equal to fromElement and
+     * strictly less than toElement from this treap and returns them as a new
+     * treap with the same ordering. Takes expected O(log n) time.
+     *
+     * @param fromElement
+     * @param toElement
+     * @return
+     * @throws IllegalArgumentException if fromElement is greater than
+     * toElement
+     */
+    public Treap<E> extractRange(E fromElement, E toElement) {
+        return extractRange(fromElement, true, toElement, false);
+    }
+
+    /**
+     * Removes all elements in the given range from this treap and returns them
+     * as a new treap with the same ordering. The range is interpreted as in
+     * {@link #subSet(Object, boolean, Object, boolean)}. Takes expected
+     * O(log n) time.
+     *
+     * @param fromElement
+     * @param fromInclusive
+     * @param toElement
+     * @param toInclusive
+     * @return
+     * @throws IllegalArgumentException if fromElement is greater than
+     * toElement
+     */
+    public Treap<E> extractRange(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+        return newTreap(cutRange(fromElement, fromInclusive, toElement, toInclusive));
+    }
+
+    /**
+     * Removes all elements that are greater than or equal to the specified key
+     * from this treap and returns them as a new treap with the same ordering.
+     * Takes expected O(log n) time.
+     *
+     * @param key
+     * @return a treap containing all elements of this treap that are greater
+     * than or equal to the specified key
+     */
+    public Treap<E> split(E key) {
+        Split<E> parts = new Split<E>();
+        split(root, key, parts);
+
+        // There is no separate place for an equal key here, so put it back in the right part
+        if (parts.equal != null) {
+            parts.right = join(parts.equal, parts.right);
+        }
+
+        root = parts.left;
+        modCount++;
+
+        return newTreap(parts.right);
+    }
+
+    /**
+     * Moves all elements of the specified treap to the end of this treap. All
+     * elements of the specified treap must be greater than all elements of
+     * this treap, and both treaps must use the same ordering. Afterwards, the
+     * specified treap is empty. Takes expected O(log n) time.
+     *
+     * @param other
+     * @throws IllegalArgumentException if the specified treap uses a different
+     * ordering, or its smallest element is not greater than the largest
+     * element of this treap
+     */
+    public void join(Treap<E> other) {
+        if (other == this) {
+            throw new IllegalArgumentException("A treap cannot be joined with itself.");
+        }
+
+        if (!sameOrder(other.comparator)) {
+            throw new IllegalArgumentException("The joined treap must use the same ordering as this treap.");
+        }
+
+        if (root != null && other.root != null && compare(last(), other.first()) >= 0) {
+            throw new IllegalArgumentException("All elements of the joined treap must be greater than the elements of this treap.");
+        }
+
+        root = join(root, other.root);
+        other.root = null;
+        modCount++;
+        other.modCount++;
+    }
+
+    /**
+     * Adds all elements in the specified collection to this treap. If the
+     * collection is a treap with the same ordering, its elements are merged in
+     * expected O(m log(n/m + 1)) time, using multiple threads for large treaps.
+     * If this treap is empty, it is built directly from the elements, which
+     * takes O(n) time if they are sorted, and O(n log n) otherwise.
+     *
+     * @param c
+     * @return true if this treap changed as a result of the call
+     */
+    @Override
+    public boolean addAll(Collection<? extends E> c) {
+        Treap<E> other = sameOrderTreap(c);
+
+        if (other == null) {
+            if (root == null && !c.isEmpty()) {
+                build(c);
+                return true;
+            }
+
+            return super.addAll(c);
+        }
+
+        int oldSize = size();
+        root = runSetOperation(SetOperation.UNION, root, copy(other.root));
+        modCount++;
+        return size() != oldSize;
+    }
+
+    /**
+     * Retains only the elements in this treap that are contained in the
+     * specified collection. If the collection is a treap with the same
+     * ordering, the intersection is computed in expected O(m log(n/m + 1))
+     * time, using multiple threads for large treaps.
+     *
+     * @param c
+     * @return true if this treap changed as a result of the call
+     */
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        Treap<E> other = sameOrderTreap(c);
+
+        if (other == null) {
+            return super.retainAll(c);
+        }
+
+        int oldSize = size();
+        root = runSetOperation(SetOperation.INTERSECTION, root, copy(other.root));
+        modCount++;
+        return size() != oldSize;
+    }
+
+    /**
+     * Removes all elements from this treap that are contained in the specified
+     * collection. If the collection is a treap with the same ordering, the
+     * difference is computed in expected O(m log(n/m + 1)) time, using
+     * multiple threads for large treaps.
+     *
+     * @param c
+     * @return true if this treap changed as a result of the call
+     */
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        Treap<E> other = sameOrderTreap(c);
+
+        if (other == null) {
+            return super.removeAll(c);
+        }
+
+        int oldSize = size();
+        root = runSetOperation(SetOperation.DIFFERENCE, root, copy(other.root));
+        modCount++;
+        return size() != oldSize;
+    }
+
+    /**
+     * Adds all elements of the given batch to this treap. Instead of searching
+     * for every element from the root, the batch is sorted, built into a
+     * separate treap in linear time and merged into this one in a single pass,
+     * which takes expected O(m log(n/m + 1)) time for a batch of m elements,
+     * compared to O(m log n) for adding them one by one. Large batches are
+     * merged using multiple threads.
+     *
+     * @param batch
+     * @return the number of elements that were not yet present
+     */
+    public int addBatch(Collection<? extends E> batch) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        int oldSize = size();
+        TreapNode<E> batchRoot = buildTreap(batch);
+        root = (root == null ? batchRoot : runSetOperation(SetOperation.UNION, root, batchRoot));
+        modCount++;
+        return size() - oldSize;
+    }
+
+    /**
+     * Removes all elements of the given batch from this treap. Works like
+     * {@link #addBatch}, and takes expected O(m log(n/m + 1)) time after
+     * sorting the batch.
+     *
+     * @param batch
+     * @return the number of elements that were removed
+     * @throws ClassCastException if the batch contains elements that cannot be
+     * compared to the elements of this treap
+     */
+    @SuppressWarnings("unchecked")
+    public int removeBatch(Collection<?> batch) {
+        if (batch.isEmpty() || root == null) {
+            return 0;
+        }
+
+        int oldSize = size();
+        root = runSetOperation(SetOperation.DIFFERENCE, root, buildTreap((Collection<? extends E>) batch));
+        modCount++;
+        return oldSize - size();
+    }
+
+    /**
+     * Returns an immutable copy of this treap that is laid out in arrays for
+     * fast searches. Later changes to this treap do not affect the copy. Takes
+     * O(n) time and does not compare any elements.
+     *
+     * @return
+     * @see FrozenTreap
+     */
+    public FrozenTreap<E> freeze() {
+        Object[] keys = new Object[size()];
+        int i = 0;
+
+        for (TreapNode<E> node = firstNode(); node != null; node = successor(node)) {
+            keys[i] = node.key;
+            i++;
+        }
+
+        return new FrozenTreap<E>(keys, comparator);
+    }
+
+    /**
+     * Writes a snapshot of this treap to the given file, replacing its
+     * contents. The snapshot holds a short header followed by the elements in
+     * ascending order, each encoded by the given codec. If withPriorities is
+     * true, every element is preceded by its priority: the snapshot grows by
+     * four bytes per element, but is read back into a treap with exactly the
+     * same shape. A treap with hashed priorities records its seed, so that the
+     * treap read back derives its priorities in the same way. Writing takes
+     * O(n) time and does not compare any elements.
+     *
+     * @param path
+     * @param codec
+     * @param withPriorities
+     * @throws IOException
+     */
+    public void writeSnapshot(Path path, KeyCodec<? super E> codec, boolean withPriorities) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(SNAPSHOT_BUFFER_SIZE);
+            buffer.putInt(SNAPSHOT_MAGIC);
+            buffer.putInt(SNAPSHOT_VERSION);
+            buffer.putInt((withPriorities ? SNAPSHOT_PRIORITIES : 0) | (hashedPriorities ? SNAPSHOT_HASHED : 0));
+            buffer.putInt(size());
+            buffer.putLong(seed);
+
+            for (TreapNode<E> node = firstNode(); node != null; node = successor(node)) {
+                while (true) {
+                    buffer.mark();
+
+                    try {
+                        if (withPriorities) {
+                            buffer.putFloat(node.priority);
+                        }
+
+                        codec.encode(node.key, buffer);
+                        break;
+                    } catch (BufferOverflowException e) {
+                        // Drop the partially written element and try again with an empty buffer
+                        buffer.reset();
+
+                        if (buffer.position() == 0) {
+                            buffer = ByteBuffer.allocateDirect(2 * buffer.capacity());
+                        } else {
+                            writeBuffer(channel, buffer);
+                        }
+                    }
+                }
+            }
+
+            writeBuffer(channel, buffer);
+        }
+    }
+
+    /**
+     * Reads a snapshot written by {@link #writeSnapshot} into a new treap,
+     * sorted according to the natural ordering of its elements.
+     *
+     * @param <E>
+     * @param path
+     * @param codec
+     * @return
+     * @throws IOException
+     */
+    public static <E> Treap<E> readSnapshot(Path path, KeyCodec<? extends E> codec) throws IOException {
+        return readSnapshot(path, codec, null);
+    }
+
+    /**
+     * Reads a snapshot written by {@link #writeSnapshot} into a new treap,
+     * sorted according to the specified comparator. The file is memory-mapped,
+     * and the treap is built bottom-up from the elements in O(n) time, without
+     * comparing any elements. The comparator must therefore order the elements
+     * in the same way as the treap that wrote the snapshot. If the snapshot
+     * holds priorities, the new treap has the same shape as the original one;
+     * otherwise new priorities are drawn. If the original treap had hashed
+     * priorities, so does the new treap, with the same seed, which gives it
+     * the same shape either way.
+     *
+     * @param <E>
+     * @param path
+     * @param codec
+     * @param comparator
+     * @return
+     * @throws IOException if the file cannot be read or is not a valid
+     * snapshot
+     */
+    @SuppressWarnings("unchecked")
+    public static <E> Treap<E> readSnapshot(Path path, KeyCodec<? extends E> codec, Comparator<? super E> comparator) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+
+            if (fileSize < SNAPSHOT_V1_HEADER_SIZE) {
+                throw new IOException("Not a treap snapshot: " + path);
+            }
+
+            long windowStart = 0;
+            long windowSize = SNAPSHOT_WINDOW_SIZE;
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, Math.min(fileSize, windowSize));
+
+            if (buffer.getInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Not a treap snapshot: " + path);
+            }
+
+            int version = buffer.getInt();
+
+            if (version != 1 && version != SNAPSHOT_VERSION) {
+                throw new IOException("Unsupported treap snapshot version: " + version);
+            }
+
+            if (version != 1 && fileSize < SNAPSHOT_HEADER_SIZE) {
+                throw new IOException("Truncated treap snapshot: " + path);
+            }
+
+            int flags = buffer.getInt();
+            boolean withPriorities = (flags & SNAPSHOT_PRIORITIES) != 0;
+            int n = buffer.getInt();
+            long seed = (version == 1 ? 0 : buffer.getLong());
+
+            if (n < 0) {
+                throw new IOException("Invalid treap snapshot size: " + n);
+            }
+
+            E[] keys = (E[]) new Object[n];
+            float[] priorities = (withPriorities ? new float[n] : null);
+
+            for (int i = 0; i < n; i++) {
+                int start = buffer.position();
+
+                try {
+                    if (withPriorities) {
+                        priorities[i] = buffer.getFloat();
+                    }
+
+                    keys[i] = codec.decode(buffer);
+                } catch (BufferUnderflowException e) {
+                    if (windowStart + buffer.capacity() == fileSize) {
+                        throw new IOException("Truncated treap snapshot: " + path);
+                    }
+
+                    if (start == 0) {
+                        // The element does not even fit in an entire window
+                        windowSize = Math.min(2 * windowSize, Integer.MAX_VALUE);
+                    }
+
+                    // Map the next window, starting at this element
+                    windowStart += start;
+                    buffer = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, Math.min(fileSize - windowStart, windowSize));
+                    i--;
+                }
+            }
+
+            Treap<E> treap = ((flags & SNAPSHOT_HASHED) != 0 ? new Treap<E>(comparator, seed) : new Treap<E>(comparator));
+            treap.root = treap.buildSorted(keys, priorities, n);
+            return treap;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private int compare(E a, E b) {
+        if (TreapStats.ENABLED) {
+            stats.comparisons.increment();
+        }
+
+        if (comparator != null) {
+            return comparator.compare(a, b);
+        } else if (a != null) {
+            return ((Comparable<E>) a).compareTo(b);
+        } else if (b != null) {
+            return -((Comparable<E>) b).compareTo(a);
+        } else {
+            // Both a and b are null, so they are equal
+            return 0;
+        }
+    }
+
+    private void remove(TreapNode<E> node) {
+        modCount++;
+
+        // Perform rotations until this node is a leaf
+        while (node.left != null || node.right != null) {
+            rotateDown(node);
+        }
+
+        // Actually remove the node
+        if (node == root) {
+            root = null;
+        } else {
+            if (node == node.parent.left) {
+                node.parent.left = null;
+            } else {
+                assert node == node.parent.right;
+                node.parent.right = null;
+            }
+
+            for (TreapNode<E> ancestor = node.parent; ancestor != null; ancestor = ancestor.parent) {
+                ancestor.size--;
+            }
+        }
+    }
+
+    /**
+     * Rotate the subtree rooted at the specified node to the right, making the
+     * left child of the specified node the new root.
+     *
+     * @param node
+     */
+    private void rotateRight(TreapNode<E> node) {
+        TreapNode<E> child = node.left;
+
+        if (child == null) {
+            throw new InternalError("rotateRight called on node without left child.");
+        } else {
+            if (TreapStats.ENABLED) {
+                stats.rotations++;
+            }
+
+            // Store temporary values
+            TreapNode<E> parent = node.parent;
+            TreapNode<E> middleSubtreap = child.right;
+
+            // Switch the child pointers
+            if (parent == null) {
+                root = child;
+            } else {
+                if (node == parent.left) {
+                    parent.left = child;
+                } else {
+                    assert node == parent.right;
+                    parent.right = child;
+                }
+            }
+
+            node.left = middleSubtreap;
+            child.right = node;
+
+            // Fix the parent pointers
+            node.parent = child;
+            child.parent = parent;
+
+            if (middleSubtreap != null) {
+                middleSubtreap.parent = node;
+            }
+
+            // Fix the subtreap sizes
+            child.size = node.size;
+            updateSize(node);
+        }
+    }
+
+    /**
+     * Rotate the subtree rooted at the specified node to the left, making the
+     * right child of the specified node the new root.
+     *
+     * @param node
+     */
+    private void rotateLeft(TreapNode<E> node) {
+        TreapNode<E> child = node.right;
+
+        if (child == null) {
+            throw new InternalError("rotateLeft called on node without right child.");
+        } else {
+            if (TreapStats.ENABLED) {
+                stats.rotations++;
+            }
+
+            // Store temporary values
+            TreapNode<E> parent = node.parent;
+            TreapNode<E> middleSubtreap = child.left;
+
+            // Switch the child pointers
+            if (parent == null) {
+                root = child;
+            } else {
+                if (node == parent.left) {
+                    parent.left = child;
+                } else {
+                    assert node == parent.right;
+                    parent.right = child;
+                }
+            }
+
+            node.right = middleSubtreap;
+            child.left = node;
+
+            // Fix the parent pointers
+            node.parent = child;
+            child.parent = parent;
+
+            if (middleSubtreap != null) {
+                middleSubtreap.parent = node;
+            }
+
+            // Fix the subtreap sizes
+            child.size = node.size;
+            updateSize(node);
+        }
+    }
+
+    /**
+     * Rotates the subtree rooted at the specified node to move this node down
+     * the tree. Must not be called on a leaf.
+     *
+     * @param node
      */
     private void rotateDown(TreapNode<E> node) {
         if (node.left == null) {
@@ -518,58 +1357,1189 @@ public class Treap<E> extends AbstractSet<E> {
             rotateLeft(node);
         } else if (node.right == null) {
             rotateRight(node);
-        } else if (node.left.priority < node.right.priority) {
+        } else if (node.left.priority <= node.right.priority) {
+            // On equal priorities, the left child has the smaller key, so it goes on top
             rotateRight(node);
         } else {
-            rotateLeft(node);
+            rotateLeft(node);
+        }
+    }
+
+    private TreapNode<E> firstNode() {
+        if (root == null) {
+            return null;
+        } else {
+            TreapNode<E> node = root;
+
+            while (node.left != null) {
+                node = node.left;
+            }
+
+            return node;
+        }
+    }
+
+    private TreapNode<E> lastNode() {
+        if (root == null) {
+            return null;
+        } else {
+            TreapNode<E> node = root;
+
+            while (node.right != null) {
+                node = node.right;
+            }
+
+            return node;
+        }
+    }
+
+    /*
+     * The following four searches remember the last node where they turned in
+     * the direction of the wanted key. As each later candidate lies in the
+     * subtreap of the previous one, it is always closer to the key, so no
+     * extra comparisons are needed.
+     */
+    private TreapNode<E> lowerNode(E e) {
+        TreapNode<E> node = root;
+        TreapNode<E> lower = null;
+
+        while (node != null) {
+            if (compare(node.key, e) < 0) {
+                lower = node;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+
+        return lower;
+    }
+
+    private TreapNode<E> higherNode(E e) {
+        TreapNode<E> node = root;
+        TreapNode<E> higher = null;
+
+        while (node != null) {
+            if (compare(node.key, e) > 0) {
+                higher = node;
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+
+        return higher;
+    }
+
+    private TreapNode<E> floorNode(E e) {
+        TreapNode<E> node = root;
+        TreapNode<E> lower = null;
+
+        while (node != null) {
+            int comparison = compare(node.key, e);
+
+            if (comparison == 0) {
+                return node;
+            } else if (comparison < 0) {
+                lower = node;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+
+        return lower;
+    }
+
+    private TreapNode<E> ceilingNode(E e) {
+        TreapNode<E> node = root;
+        TreapNode<E> higher = null;
+
+        while (node != null) {
+            int comparison = compare(node.key, e);
+
+            if (comparison == 0) {
+                return node;
+            } else if (comparison > 0) {
+                higher = node;
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+
+        return higher;
+    }
+
+    private static <E> E keyOrNull(TreapNode<E> node) {
+        return (node == null ? null : node.key);
+    }
+
+    /**
+     * Returns the number of elements that are smaller than, or if inclusive is
+     * true, smaller than or equal to the specified element.
+     *
+     * @param e
+     * @param inclusive
+     * @return
+     */
+    private int countBelow(E e, boolean inclusive) {
+        TreapNode<E> node = root;
+        int count = 0;
+
+        while (node != null) {
+            int comparison = compare(node.key, e);
+
+            if (comparison < 0 || (comparison == 0 && inclusive)) {
+                count += size(node.left) + 1;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Cuts the subtreap with all elements in the given range out of this
+     * treap, by splitting it at both bounds and joining the outer parts.
+     *
+     * @param fromElement
+     * @param fromInclusive
+     * @param toElement
+     * @param toInclusive
+     * @return the root of the subtreap with the elements in the range, with a
+     * null parent pointer
+     */
+    private TreapNode<E> cutRange(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+        if (compare(fromElement, toElement) > 0) {
+            throw new IllegalArgumentException("fromElement > toElement");
+        }
+
+        Split<E> parts = new Split<E>();
+        split(root, fromElement, parts);
+
+        TreapNode<E> below = parts.left;
+        TreapNode<E> range = parts.right;
+
+        if (parts.equal != null) {
+            if (fromInclusive) {
+                range = join(parts.equal, range);
+            } else {
+                below = join(below, parts.equal);
+            }
+        }
+
+        split(range, toElement, parts);
+
+        TreapNode<E> above = parts.right;
+        range = parts.left;
+
+        if (parts.equal != null) {
+            if (toInclusive) {
+                range = join(range, parts.equal);
+            } else {
+                above = join(parts.equal, above);
+            }
+        }
+
+        root = join(below, above);
+        modCount++;
+
+        return range;
+    }
+
+    /**
+     * Returns a new treap with the same ordering and priorities as this one,
+     * with the given root.
+     *
+     * @param root
+     * @return
+     */
+    private Treap<E> newTreap(TreapNode<E> root) {
+        Treap<E> treap = new Treap<E>(comparator);
+        treap.hashedPriorities = hashedPriorities;
+        treap.seed = seed;
+        treap.root = root;
+        return treap;
+    }
+
+    /**
+     * Splits the subtreap rooted at the specified node into a subtreap with
+     * all keys smaller than the given key, the node with a key equal to the
+     * given key (if any), and a subtreap with all larger keys. The results are
+     * stored in the given Split object; their parent pointers are null.
+     *
+     * @param node
+     * @param key
+     * @param result
+     */
+    private void split(TreapNode<E> node, E key, Split<E> result) {
+        TreapNode<E> leftRoot = null, leftTail = null; // leftTail is missing its right child
+        TreapNode<E> rightRoot = null, rightTail = null; // rightTail is missing its left child
+        TreapNode<E> equal = null;
+
+        while (node != null) {
+            int comparison = compare(node.key, key);
+
+            if (comparison < 0) {
+                if (leftTail == null) {
+                    leftRoot = node;
+                } else {
+                    leftTail.right = node;
+                }
+
+                node.parent = leftTail;
+                leftTail = node;
+                node = node.right;
+            } else if (comparison > 0) {
+                if (rightTail == null) {
+                    rightRoot = node;
+                } else {
+                    rightTail.left = node;
+                }
+
+                node.parent = rightTail;
+                rightTail = node;
+                node = node.left;
+            } else {
+                equal = node;
+                break;
+            }
+        }
+
+        // Hand the subtreaps of the equal node to both sides
+        TreapNode<E> leftRest = (equal == null ? null : equal.left);
+        TreapNode<E> rightRest = (equal == null ? null : equal.right);
+
+        if (leftTail == null) {
+            leftRoot = leftRest;
+        } else {
+            leftTail.right = leftRest;
+        }
+
+        if (leftRest != null) {
+            leftRest.parent = leftTail;
+        }
+
+        if (rightTail == null) {
+            rightRoot = rightRest;
+        } else {
+            rightTail.left = rightRest;
+        }
+
+        if (rightRest != null) {
+            rightRest.parent = rightTail;
+        }
+
+        if (equal != null) {
+            equal.parent = equal.left = equal.right = null;
+            equal.size = 1;
+        }
+
+        // Only the nodes on the search path changed size
+        updateSizesToRoot(leftTail);
+        updateSizesToRoot(rightTail);
+
+        result.left = leftRoot;
+        result.equal = equal;
+        result.right = rightRoot;
+    }
+
+    /**
+     * Joins the two given subtreaps into one. All keys in the left subtreap
+     * must be smaller than all keys in the right subtreap.
+     *
+     * @param left
+     * @param right
+     * @return the root of the joined subtreap, with a null parent pointer
+     */
+    private static <E> TreapNode<E> join(TreapNode<E> left, TreapNode<E> right) {
+        TreapNode<E> root = null;
+        TreapNode<E> tail = null;
+        boolean attachRight = false;
+
+        // Merge the right spine of the left subtreap with the left spine of the right one
+        while (left != null && right != null) {
+            TreapNode<E> top;
+            boolean fromLeft = left.priority <= right.priority; // On equal priorities, the smaller key goes on top
+
+            if (fromLeft) {
+                top = left;
+                left = left.right;
+            } else {
+                top = right;
+                right = right.left;
+            }
+
+            if (tail == null) {
+                root = top;
+            } else if (attachRight) {
+                tail.right = top;
+            } else {
+                tail.left = top;
+            }
+
+            top.parent = tail;
+            tail = top;
+            attachRight = fromLeft; // The next node replaces the child we continue with
+        }
+
+        TreapNode<E> rest = (left != null ? left : right);
+
+        if (tail == null) {
+            root = rest;
+        } else if (attachRight) {
+            tail.right = rest;
+        } else {
+            tail.left = rest;
+        }
+
+        if (rest != null) {
+            rest.parent = tail;
+        }
+
+        updateSizesToRoot(tail);
+
+        return root;
+    }
+
+    /**
+     * Combines the two given subtreaps according to the specified set
+     * operation and returns the root of the result. Both subtreaps are
+     * consumed. Large subtreaps are processed in parallel.
+     *
+     * @param operation
+     * @param a
+     * @param b
+     * @return
+     */
+    private TreapNode<E> combine(SetOperation operation, TreapNode<E> a, TreapNode<E> b) {
+        if (a == null) {
+            return (operation == SetOperation.UNION ? b : null);
+        }
+
+        if (b == null) {
+            return (operation == SetOperation.INTERSECTION ? null : a);
+        }
+
+        if (operation != SetOperation.DIFFERENCE && (b.priority < a.priority || (b.priority == a.priority && compare(b.key, a.key) < 0))) {
+            // Union and intersection are symmetric, so we can keep the node with the lowest priority on top
+            TreapNode<E> temp = a;
+            a = b;
+            b = temp;
+        }
+
+        boolean parallel = a.size + b.size >= PARALLEL_THRESHOLD;
+
+        Split<E> parts = new Split<E>();
+        split(b, a.key, parts);
+
+        TreapNode<E> left;
+        TreapNode<E> right;
+
+        if (parallel) {
+            ForkJoinTask<TreapNode<E>> leftTask = new SetOperationTask(operation, a.left, parts.left).fork();
+            right = combine(operation, a.right, parts.right);
+            left = leftTask.join();
+        } else {
+            left = combine(operation, a.left, parts.left);
+            right = combine(operation, a.right, parts.right);
+        }
+
+        boolean keep = (operation == SetOperation.UNION)
+                || (operation == SetOperation.INTERSECTION && parts.equal != null)
+                || (operation == SetOperation.DIFFERENCE && parts.equal == null);
+
+        if (keep) {
+            setChildren(a, left, right);
+            return a;
+        } else {
+            return join(left, right);
+        }
+    }
+
+    private TreapNode<E> runSetOperation(SetOperation operation, TreapNode<E> a, TreapNode<E> b) {
+        TreapNode<E> result;
+
+        if (size(a) + size(b) >= PARALLEL_THRESHOLD) {
+            result = ForkJoinPool.commonPool().invoke(new SetOperationTask(operation, a, b));
+        } else {
+            result = combine(operation, a, b);
+        }
+
+        if (result != null) {
+            result.parent = null;
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the specified collection as a treap if it is a treap with the
+     * same ordering as this one, and null otherwise.
+     *
+     * @param c
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    private Treap<E> sameOrderTreap(Collection<?> c) {
+        if (!(c instanceof Treap)) {
+            return null;
+        }
+
+        Treap<E> other = (Treap<E>) c;
+
+        return (sameOrder(other.comparator) ? other : null);
+    }
+
+    private boolean sameOrder(Comparator<?> otherComparator) {
+        return (comparator == null ? otherComparator == null : comparator.equals(otherComparator));
+    }
+
+    /**
+     * Replaces the contents of this treap by the elements of the given
+     * collection.
+     *
+     * @param c
+     */
+    private void build(Collection<? extends E> c) {
+        root = buildTreap(c);
+        modCount++;
+    }
+
+    /**
+     * Builds a separate treap from the elements of the given collection and
+     * returns its root. Sorted sets with the same ordering and other sorted
+     * input are built in linear time, other input is sorted first.
+     *
+     * @param c
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    private TreapNode<E> buildTreap(Collection<? extends E> c) {
+        E[] keys = (E[]) c.toArray();
+        int n = keys.length;
+
+        if (!(c instanceof SortedSet && sameOrder(((SortedSet<?>) c).comparator()))) {
+            if (!isSorted(keys)) {
+                Arrays.parallelSort(keys, comparator);
+            }
+
+            n = removeDuplicates(keys);
+        }
+
+        return buildSorted(keys, null, n);
+    }
+
+    private boolean isSorted(E[] keys) {
+        for (int i = 1; i < keys.length; i++) {
+            if (compare(keys[i - 1], keys[i]) > 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Moves the distinct keys of the given sorted array to its front.
+     *
+     * @param keys
+     * @return the number of distinct keys
+     */
+    private int removeDuplicates(E[] keys) {
+        if (keys.length == 0) {
+            return 0;
+        }
+
+        int n = 1;
+
+        for (int i = 1; i < keys.length; i++) {
+            if (compare(keys[n - 1], keys[i]) != 0) {
+                keys[n] = keys[i];
+                n++;
+            }
+        }
+
+        return n;
+    }
+
+    /**
+     * Builds a treap from the first n keys of the given array, which must be
+     * sorted and distinct, in O(n) time. The treap is built from left to
+     * right, keeping a stack with the current right spine: each new node
+     * becomes the right child of the last spine node with a lower priority,
+     * and the nodes it pops off the spine become its left subtreap.
+     *
+     * @param keys
+     * @param priorities the priorities of the keys, or null to give them new
+     * ones
+     * @param n
+     * @return the root of the new treap
+     */
+    @SuppressWarnings("unchecked")
+    private TreapNode<E> buildSorted(E[] keys, float[] priorities, int n) {
+        TreapNode<E>[] spine = (TreapNode<E>[]) new TreapNode<?>[32];
+        int spineSize = 0;
+
+        for (int i = 0; i < n; i++) {
+            TreapNode<E> node = new TreapNode<E>(keys[i], (priorities == null ? newPriority(keys[i]) : priorities[i]));
+            TreapNode<E> popped = null;
+
+            while (spineSize > 0 && spine[spineSize - 1].priority > node.priority) {
+                popped = spine[--spineSize];
+                updateSize(popped); // Both of its subtreaps are complete
+            }
+
+            node.left = popped;
+
+            if (popped != null) {
+                popped.parent = node;
+            }
+
+            if (spineSize > 0) {
+                spine[spineSize - 1].right = node;
+                node.parent = spine[spineSize - 1];
+            }
+
+            if (spineSize == spine.length) {
+                spine = Arrays.copyOf(spine, 2 * spineSize);
+            }
+
+            spine[spineSize++] = node;
+        }
+
+        // The nodes on the spine are complete as well now
+        while (spineSize > 1) {
+            updateSize(spine[--spineSize]);
+        }
+
+        if (spineSize == 0) {
+            return null;
+        } else {
+            updateSize(spine[0]);
+            return spine[0];
         }
     }
 
-    private TreapNode<E> firstNode() {
-        if (root == null) {
+    static float randomPriority() {
+        return ThreadLocalRandom.current().nextFloat();
+    }
+
+    private float newPriority(E key) {
+        return (hashedPriorities ? hashPriority(key, seed) : randomPriority());
+    }
+
+    /**
+     * Derives a priority in [0, 1) from the hash code of the given key and a
+     * seed, by scrambling them with the 64-bit finalizer of MurmurHash3. Like
+     * {@link #randomPriority()}, the result is a multiple of 2^-24, so only the
+     * top 24 bits of the scrambled hash are kept, and keys with equal hash
+     * codes get equal priorities.
+     *
+     * @param key
+     * @param seed
+     * @return
+     */
+    static float hashPriority(Object key, long seed) {
+        long h = seed + 0x9E3779B97F4A7C15L * Objects.hashCode(key);
+        h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+        h = (h ^ (h >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return (h >>> 40) * 0x1.0p-24f;
+    }
+
+    private static void writeBuffer(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+
+        buffer.clear();
+    }
+
+    /**
+     * Returns a copy of the subtreap rooted at the specified node, with the
+     * same shape and priorities.
+     *
+     * @param node
+     * @return
+     */
+    private static <E> TreapNode<E> copy(TreapNode<E> node) {
+        if (node == null) {
             return null;
-        } else {
-            TreapNode<E> node = root;
+        }
 
-            while (node.left != null) {
-                node = node.left;
-            }
+        TreapNode<E> copy = new TreapNode<E>(node.key, node.priority);
+        setChildren(copy, copy(node.left), copy(node.right));
+        return copy;
+    }
 
-            return node;
+    private static <E> void setChildren(TreapNode<E> node, TreapNode<E> left, TreapNode<E> right) {
+        node.left = left;
+        node.right = right;
+
+        if (left != null) {
+            left.parent = node;
         }
+
+        if (right != null) {
+            right.parent = node;
+        }
+
+        updateSize(node);
     }
 
-    private TreapNode<E> higherNode(E e) {
-        TreapNode<E> node = root;
-        TreapNode<E> higherNode = null;
+    private static int size(TreapNode<?> node) {
+        return (node == null ? 0 : node.size);
+    }
+
+    private static void updateSize(TreapNode<?> node) {
+        node.size = 1 + size(node.left) + size(node.right);
+    }
 
+    private static void updateSizesToRoot(TreapNode<?> node) {
         while (node != null) {
-            if (compare(node.key, e) > 0) {
-                if (higherNode == null || compare(node.key, higherNode.key) < 0) {
-                    higherNode = node;
-                }
+            updateSize(node);
+            node = node.parent;
+        }
+    }
+
+    /**
+     * Returns the node at the specified position in the sorted order. The
+     * index must be valid.
+     *
+     * @param index
+     * @return
+     */
+    private TreapNode<E> nodeAt(int index) {
+        TreapNode<E> node = root;
+
+        while (true) {
+            int leftSize = size(node.left);
 
+            if (index < leftSize) {
                 node = node.left;
+            } else if (index > leftSize) {
+                index -= leftSize + 1;
+                node = node.right;
             } else {
+                return node;
+            }
+        }
+    }
+
+    /**
+     * Returns the node with the smallest key greater than the key of the
+     * specified node, or null if there is no such node. Follows the parent and
+     * child pointers, so it does not perform any comparisons and takes
+     * amortized constant time when iterating over the whole treap.
+     *
+     * @param node
+     * @return
+     */
+    private TreapNode<E> successor(TreapNode<E> node) {
+        if (node.right != null) {
+            node = node.right;
+
+            while (node.left != null) {
+                node = node.left;
+            }
+
+            return node;
+        } else {
+            // Go up until we arrive from a left child
+            TreapNode<E> parent = node.parent;
+
+            while (parent != null && node == parent.right) {
+                node = parent;
+                parent = parent.parent;
+            }
+
+            return parent;
+        }
+    }
+
+    /**
+     * Returns the node with the largest key smaller than the key of the
+     * specified node, or null if there is no such node. This mirrors
+     * {@link #successor(TreapNode)}.
+     *
+     * @param node
+     * @return
+     */
+    private TreapNode<E> predecessor(TreapNode<E> node) {
+        if (node.left != null) {
+            node = node.left;
+
+            while (node.right != null) {
                 node = node.right;
             }
+
+            return node;
+        } else {
+            // Go up until we arrive from a right child
+            TreapNode<E> parent = node.parent;
+
+            while (parent != null && node == parent.left) {
+                node = parent;
+                parent = parent.parent;
+            }
+
+            return parent;
+        }
+    }
+
+    /**
+     * Iterates over the nodes from a first node up to, but not including, a
+     * fence node, in ascending or descending order.
+     */
+    private class TreapIterator implements Iterator<E> {
+
+        private final TreapNode<E> fence;
+        private final boolean descending;
+        private TreapNode<E> lastReturned = null;
+        private TreapNode<E> nextNode;
+        private int expectedModCount = modCount;
+
+        TreapIterator(TreapNode<E> first, TreapNode<E> fence, boolean descending) {
+            this.nextNode = first;
+            this.fence = fence;
+            this.descending = descending;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextNode != null && nextNode != fence;
+        }
+
+        @Override
+        public E next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+
+            lastReturned = nextNode;
+            nextNode = (descending ? predecessor(nextNode) : successor(nextNode));
+            return lastReturned.key;
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned == null) {
+                throw new IllegalStateException();
+            }
+
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+
+            // Removal only rotates the removed node down, so nextNode stays valid
+            Treap.this.remove(lastReturned);
+            lastReturned = null;
+            expectedModCount = modCount;
+        }
+    }
+
+    /**
+     * Covers the elements at the positions from index up to, but not
+     * including, fence in the sorted order. The node at position index is
+     * looked up lazily, so that splitting only costs a single descent.
+     */
+    private class TreapSpliterator implements Spliterator<E> {
+
+        private TreapNode<E> current; // The node at position index, or null if it has not been looked up yet
+        private int index;
+        private final int fence;
+        private final int expectedModCount = modCount;
+
+        TreapSpliterator(TreapNode<E> current, int index, int fence) {
+            this.current = current;
+            this.index = index;
+            this.fence = fence;
+        }
+
+        @Override
+        public Spliterator<E> trySplit() {
+            int mid = (index + fence) >>> 1;
+
+            if (mid == index) {
+                return null;
+            }
+
+            checkForComodification();
+
+            Spliterator<E> prefix = new TreapSpliterator(current, index, mid);
+            current = null;
+            index = mid;
+            return prefix;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super E> action) {
+            if (action == null) {
+                throw new NullPointerException();
+            }
+
+            if (index >= fence) {
+                return false;
+            }
+
+            checkForComodification();
+
+            TreapNode<E> node = (current == null ? nodeAt(index) : current);
+            current = (index + 1 < fence ? successor(node) : null);
+            index++;
+            action.accept(node.key);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super E> action) {
+            if (action == null) {
+                throw new NullPointerException();
+            }
+
+            if (index >= fence) {
+                return;
+            }
+
+            checkForComodification();
+
+            TreapNode<E> node = (current == null ? nodeAt(index) : current);
+            int remaining = fence - index;
+            current = null;
+            index = fence;
+
+            for (int i = 0; i < remaining && node != null; i++) {
+                action.accept(node.key);
+                node = successor(node);
+            }
+
+            checkForComodification();
+        }
+
+        @Override
+        public long estimateSize() {
+            return fence - index;
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.ORDERED | Spliterator.SORTED | Spliterator.DISTINCT;
+        }
+
+        @Override
+        public Comparator<? super E> getComparator() {
+            return comparator;
+        }
+
+        private void checkForComodification() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+    /**
+     * Remembers a finger node and starts every search from there. For a key
+     * greater than the finger, a search climbs from the finger to the first
+     * ancestor that is greater than it. If the key is smaller than that
+     * ancestor, it belongs in the right subtreap of the finger; otherwise the
+     * search repeats from the ancestor. It then descends as usual. The
+     * ancestors that are skipped while climbing are smaller than the finger,
+     * so they are not compared to the key. Keys smaller than the finger are
+     * handled symmetrically.
+     */
+    private class TreapCursor implements Cursor<E> {
+
+        private TreapNode<E> finger = null;
+        private int expectedModCount = modCount;
+        // The results of the last search
+        private TreapNode<E> lower, higher, last;
+        private int lastComparison;
+
+        @Override
+        public E get() {
+            checkFinger();
+
+            if (finger == null) {
+                throw new NoSuchElementException();
+            }
+
+            return finger.key;
+        }
+
+        @Override
+        public E next() {
+            checkFinger();
+            return moveTo(finger == null ? firstNode() : successor(finger));
+        }
+
+        @Override
+        public E previous() {
+            checkFinger();
+            return moveTo(finger == null ? lastNode() : predecessor(finger));
+        }
+
+        @Override
+        public boolean contains(E e) {
+            TreapNode<E> node = search(e);
+            moveTo(node == null ? last : node);
+            return node != null;
+        }
+
+        @Override
+        public E lower(E e) {
+            TreapNode<E> node = search(e);
+            return moveToOrLast(node == null ? lower : predecessor(node));
+        }
+
+        @Override
+        public E higher(E e) {
+            TreapNode<E> node = search(e);
+            return moveToOrLast(node == null ? higher : successor(node));
+        }
+
+        @Override
+        public E floor(E e) {
+            TreapNode<E> node = search(e);
+            return moveToOrLast(node == null ? lower : node);
+        }
+
+        @Override
+        public E ceiling(E e) {
+            TreapNode<E> node = search(e);
+            return moveToOrLast(node == null ? higher : node);
+        }
+
+        @Override
+        public boolean add(E e) {
+            TreapNode<E> node = search(e);
+
+            if (node != null) {
+                finger = node;
+                return false;
+            }
+
+            finger = attach(e, last, lastComparison);
+            expectedModCount = modCount;
+            return true;
+        }
+
+        @Override
+        public boolean remove(E e) {
+            TreapNode<E> node = search(e);
+
+            if (node == null) {
+                moveTo(last);
+                return false;
+            }
+
+            // Removal only rotates the removed node down, so its neighbours stay valid
+            TreapNode<E> next = successor(node);
+            finger = (next == null ? predecessor(node) : next);
+            Treap.this.remove(node);
+            expectedModCount = modCount;
+            return true;
+        }
+
+        /**
+         * Forgets the finger if the treap was modified through other means,
+         * as it may no longer be part of it.
+         */
+        private void checkFinger() {
+            if (modCount != expectedModCount) {
+                finger = null;
+                expectedModCount = modCount;
+            }
+        }
+
+        private E moveTo(TreapNode<E> node) {
+            if (node == null) {
+                return null;
+            }
+
+            finger = node;
+            return node.key;
+        }
+
+        private E moveToOrLast(TreapNode<E> node) {
+            if (node == null) {
+                moveTo(last);
+                return null;
+            }
+
+            return moveTo(node);
         }
 
-        return higherNode;
+        /**
+         * Searches for the specified key, starting from the finger. If it is
+         * not found, lower and higher afterwards hold the nodes with the
+         * closest smaller and larger keys. In any case, last and lastComparison hold the last node visited and the
+         * result of comparing the key to it.
+         *
+         * @param key
+         * @return the node with the specified key, or null if there is none
+         */
+        private TreapNode<E> search(E key) {
+            checkFinger();
+            lower = null;
+            higher = null;
+            last = null;
+
+            TreapNode<E> node = root;
+
+            if (finger != null) {
+                lastComparison = compare(key, finger.key);
+                last = finger;
+
+                if (lastComparison == 0) {
+                    return finger;
+                } else if (lastComparison > 0) {
+                    lower = finger;
+
+                    while (true) {
+                        // Skip the ancestors smaller than the last node, up to the first one that is greater
+                        TreapNode<E> child = last;
+
+                        while (child.parent != null && child == child.parent.right) {
+                            child = child.parent;
+                        }
+
+                        TreapNode<E> parent = child.parent;
+
+                        if (parent == null) {
+                            break;
+                        }
+
+                        int comparison = compare(key, parent.key);
+
+                        if (comparison < 0) {
+                            // The key lies between the last node and this ancestor
+                            higher = parent;
+                            break;
+                        } else if (comparison == 0) {
+                            last = parent;
+                            lastComparison = 0;
+                            return parent;
+                        }
+
+                        lower = parent;
+                        last = parent;
+                    }
+
+                    node = last.right;
+                } else {
+                    higher = finger;
+
+                    while (true) {
+                        // Skip the ancestors greater than the last node, up to the first one that is smaller
+                        TreapNode<E> child = last;
+
+                        while (child.parent != null && child == child.parent.left) {
+                            child = child.parent;
+                        }
+
+                        TreapNode<E> parent = child.parent;
+
+                        if (parent == null) {
+                            break;
+                        }
+
+                        int comparison = compare(key, parent.key);
+
+                        if (comparison > 0) {
+                            // The key lies between this ancestor and the last node
+                            lower = parent;
+                            break;
+                        } else if (comparison == 0) {
+                            last = parent;
+                            lastComparison = 0;
+                            return parent;
+                        }
+
+                        higher = parent;
+                        last = parent;
+                    }
+
+                    node = last.left;
+                }
+            }
+
+            // Descend from the subtreap that contains the position of the key
+            while (node != null) {
+                last = node;
+                lastComparison = compare(key, node.key);
+
+                if (lastComparison == 0) {
+                    return node;
+                } else if (lastComparison < 0) {
+                    higher = node;
+                    node = node.left;
+                } else {
+                    lower = node;
+                    node = node.right;
+                }
+            }
+
+            return null;
+        }
     }
 
-    private class TreapNode<E> {
+    private static class TreapNode<E> {
 
         E key;
         float priority;
+        int size; // The number of nodes in the subtreap rooted at this node
         TreapNode<E> parent, left, right;
 
         public TreapNode(E key, float priority) {
             this.key = key;
             this.priority = priority;
+            size = 1;
             parent = null;
             left = null;
             right = null;
         }
     }
+
+    /**
+     * The result of splitting a subtreap around a key.
+     */
+    private static class Split<E> {
+
+        TreapNode<E> left, equal, right;
+    }
+
+    private enum SetOperation {
+
+        UNION, INTERSECTION, DIFFERENCE
+    }
+
+    private class SetOperationTask extends RecursiveTask<TreapNode<E>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final SetOperation operation;
+        private final TreapNode<E> a, b;
+
+        SetOperationTask(SetOperation operation, TreapNode<E> a, TreapNode<E> b) {
+            this.operation = operation;
+            this.a = a;
+            this.b = b;
+        }
+
+        @Override
+        protected TreapNode<E> compute() {
+            return combine(operation, a, b);
+        }
+    }
 }
@@ -0,0 +1,606 @@
+package treap;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * A list backed by an implicit treap: a treap whose nodes are ordered by
+ * position instead of by key. The position of a node is never stored, but
+ * follows from the sizes of the subtreaps to its left, so inserting or
+ * removing an element anywhere in the list takes expected O(log n) time,
+ * rather than the O(n) an ArrayList needs to shift its elements.
+ *
+ * Besides the List operations, a TreapList can cut out a range of elements as
+ * a new list ({@link #cut(int, int)}), append another list
+ * ({@link #concatenate(TreapList)}) and reverse a range
+ * ({@link #reverse(int, int)}), all in expected O(log n) time. Reversal is
+ * lazy: it flips a flag on the root of the range, which is pushed down to the
+ * children whenever an operation passes through the node.
+ *
+ * The nodes have no parent pointers, since pushing a reversal down would have
+ * to fix those of all grandchildren. All operations therefore work top-down,
+ * using splits and joins.
+ *
+ * @param <E>
+ */
+public class TreapList<E> extends AbstractList<E> implements RandomAccess {
+
+    private Node<E> root = null;
+
+    /**
+     * Constructs a new, empty list.
+     */
+    public TreapList() {
+    }
+
+    /**
+     * Constructs a new list containing the elements of the specified
+     * collection, in the order they are returned by its iterator. Takes O(n)
+     * time.
+     *
+     * @param c
+     */
+    public TreapList(Collection<? extends E> c) {
+        root = build(c.toArray());
+    }
+
+    @Override
+    public E get(int index) {
+        checkIndex(index);
+        return nodeAt(index).value;
+    }
+
+    @Override
+    public E set(int index, E element) {
+        checkIndex(index);
+
+        Node<E> node = nodeAt(index);
+        E old = node.value;
+        node.value = element;
+        return old;
+    }
+
+    @Override
+    public int size() {
+        return size(root);
+    }
+
+    @Override
+    public boolean add(E e) {
+        add(size(), e);
+        return true;
+    }
+
+    /**
+     * Inserts the specified element at the specified position in this list.
+     * Takes expected O(log n) time.
+     *
+     * @param index
+     * @param element
+     */
+    @Override
+    public void add(int index, E element) {
+        checkPosition(index);
+
+        root = insert(root, index, new Node<E>(element, Treap.randomPriority()));
+        modCount++;
+    }
+
+    /**
+     * Removes the element at the specified position in this list. Takes
+     * expected O(log n) time.
+     *
+     * @param index
+     * @return
+     */
+    @Override
+    public E remove(int index) {
+        checkIndex(index);
+
+        E old = nodeAt(index).value;
+        root = delete(root, index);
+        modCount++;
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        root = null;
+        modCount++;
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends E> c) {
+        return addAll(size(), c);
+    }
+
+    /**
+     * Inserts all elements of the specified collection at the specified
+     * position. Takes O(k) time to build a treap out of the k new elements,
+     * plus expected O(log n) time to insert it into this list.
+     *
+     * @param index
+     * @param c
+     * @return
+     */
+    @Override
+    public boolean addAll(int index, Collection<? extends E> c) {
+        checkPosition(index);
+
+        Node<E> added = build(c.toArray());
+
+        if (added == null) {
+            return false;
+        }
+
+        @SuppressWarnings("unchecked")
+        Node<E>[] parts = (Node<E>[]) new Node<?>[2];
+        split(root, index, parts);
+        root = join(join(parts[0], added), parts[1]);
+        modCount++;
+        return true;
+    }
+
+    /**
+     * Removes the elements from fromIndex, inclusive, to toIndex, exclusive.
+     * Takes expected O(log n) time, so that {@code subList(from, to).clear()}
+     * does as well.
+     *
+     * @param fromIndex
+     * @param toIndex
+     */
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+        checkRange(fromIndex, toIndex);
+        cutRange(fromIndex, toIndex);
+        modCount++;
+    }
+
+    /**
+     * Removes the elements from fromIndex, inclusive, to toIndex, exclusive,
+     * and returns them as a new list. Takes expected O(log n) time.
+     *
+     * @param fromIndex
+     * @param toIndex
+     * @return
+     * @throws IndexOutOfBoundsException if fromIndex is negative, toIndex is
+     * larger than the size of this list, or fromIndex is larger than toIndex
+     */
+    public TreapList<E> cut(int fromIndex, int toIndex) {
+        checkRange(fromIndex, toIndex);
+
+        TreapList<E> result = new TreapList<E>();
+        result.root = cutRange(fromIndex, toIndex);
+        modCount++;
+        return result;
+    }
+
+    /**
+     * Appends all elements of the other list to this one, and empties the
+     * other list. Takes expected O(log n) time.
+     *
+     * @param other
+     * @throws IllegalArgumentException if the other list is this list
+     */
+    public void concatenate(TreapList<E> other) {
+        if (other == this) {
+            throw new IllegalArgumentException("A list cannot be concatenated with itself.");
+        }
+
+        root = join(root, other.root);
+        other.root = null;
+        modCount++;
+        other.modCount++;
+    }
+
+    /**
+     * Reverses the order of the elements from fromIndex, inclusive, to
+     * toIndex, exclusive. Takes expected O(log n) time.
+     *
+     * @param fromIndex
+     * @param toIndex
+     * @throws IndexOutOfBoundsException if fromIndex is negative, toIndex is
+     * larger than the size of this list, or fromIndex is larger than toIndex
+     */
+    public void reverse(int fromIndex, int toIndex) {
+        checkRange(fromIndex, toIndex);
+
+        @SuppressWarnings("unchecked")
+        Node<E>[] parts = (Node<E>[]) new Node<?>[2];
+        split(root, toIndex, parts);
+        Node<E> right = parts[1];
+        split(parts[0], fromIndex, parts);
+
+        if (parts[1] != null) {
+            parts[1].reversed = !parts[1].reversed;
+        }
+
+        root = join(join(parts[0], parts[1]), right);
+        modCount++;
+    }
+
+    /**
+     * Returns an iterator over the elements of this list. Unlike the iterator
+     * of AbstractList, which calls {@link #get(int)} for every element, it
+     * takes O(n) time in total.
+     *
+     * @return
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new TreapListIterator();
+    }
+
+    /**
+     * Splits the range from fromIndex to toIndex off this list and returns its
+     * root.
+     */
+    private Node<E> cutRange(int fromIndex, int toIndex) {
+        @SuppressWarnings("unchecked")
+        Node<E>[] parts = (Node<E>[]) new Node<?>[2];
+        split(root, toIndex, parts);
+        Node<E> right = parts[1];
+        split(parts[0], fromIndex, parts);
+        root = join(parts[0], right);
+        return parts[1];
+    }
+
+    private Node<E> nodeAt(int index) {
+        Node<E> node = root;
+
+        while (true) {
+            pushDown(node);
+
+            int leftSize = size(node.left);
+
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index > leftSize) {
+                index -= leftSize + 1;
+                node = node.right;
+            } else {
+                return node;
+            }
+        }
+    }
+
+    /**
+     * Inserts the new node at the given position of the subtreap rooted at the
+     * given node, and returns the new root. The new node is placed at the
+     * depth its priority dictates, by splitting the subtreap below it.
+     *
+     * @param node
+     * @param index
+     * @param newNode
+     * @return
+     */
+    private static <E> Node<E> insert(Node<E> node, int index, Node<E> newNode) {
+        if (node == null) {
+            return newNode;
+        } else if (newNode.priority < node.priority) {
+            @SuppressWarnings("unchecked")
+            Node<E>[] parts = (Node<E>[]) new Node<?>[2];
+            split(node, index, parts);
+            newNode.left = parts[0];
+            newNode.right = parts[1];
+            updateSize(newNode);
+            return newNode;
+        } else {
+            pushDown(node);
+
+            int leftSize = size(node.left);
+
+            if (index <= leftSize) {
+                node.left = insert(node.left, index, newNode);
+            } else {
+                node.right = insert(node.right, index - leftSize - 1, newNode);
+            }
+
+            node.size++;
+            return node;
+        }
+    }
+
+    /**
+     * Removes the node at the given position of the subtreap rooted at the
+     * given node, and returns the new root.
+     *
+     * @param node
+     * @param index
+     * @return
+     */
+    private static <E> Node<E> delete(Node<E> node, int index) {
+        pushDown(node);
+
+        int leftSize = size(node.left);
+
+        if (index < leftSize) {
+            node.left = delete(node.left, index);
+        } else if (index > leftSize) {
+            node.right = delete(node.right, index - leftSize - 1);
+        } else {
+            return join(node.left, node.right);
+        }
+
+        node.size--;
+        return node;
+    }
+
+    /**
+     * Splits the subtreap rooted at the given node into its first index nodes
+     * (stored in parts[0]) and the remaining ones (parts[1]).
+     *
+     * @param node
+     * @param index
+     * @param parts
+     */
+    private static <E> void split(Node<E> node, int index, Node<E>[] parts) {
+        if (node == null) {
+            parts[0] = null;
+            parts[1] = null;
+            return;
+        }
+
+        pushDown(node);
+
+        int leftSize = size(node.left);
+
+        if (index <= leftSize) {
+            split(node.left, index, parts);
+            node.left = parts[1];
+            parts[1] = node;
+        } else {
+            split(node.right, index - leftSize - 1, parts);
+            node.right = parts[0];
+            parts[0] = node;
+        }
+
+        updateSize(node);
+    }
+
+    /**
+     * Joins two subtreaps, placing all nodes of the left one before those of
+     * the right one.
+     *
+     * @param left
+     * @param right
+     * @return
+     */
+    private static <E> Node<E> join(Node<E> left, Node<E> right) {
+        if (left == null) {
+            return right;
+        } else if (right == null) {
+            return left;
+        } else if (left.priority < right.priority) {
+            pushDown(left);
+            left.right = join(left.right, right);
+            updateSize(left);
+            return left;
+        } else {
+            pushDown(right);
+            right.left = join(left, right.left);
+            updateSize(right);
+            return right;
+        }
+    }
+
+    /**
+     * Builds a treap of the given values in O(n) time, by keeping the right
+     * spine of the treap built so far on a stack, as Treap does for sorted
+     * keys.
+     *
+     * @param values
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    private static <E> Node<E> build(Object[] values) {
+        Node<E>[] spine = (Node<E>[]) new Node<?>[32];
+        int spineSize = 0;
+
+        for (Object value : values) {
+            Node<E> node = new Node<E>((E) value, Treap.randomPriority());
+            Node<E> popped = null;
+
+            while (spineSize > 0 && spine[spineSize - 1].priority > node.priority) {
+                popped = spine[--spineSize];
+                updateSize(popped); // Both of its subtreaps are complete
+            }
+
+            node.left = popped;
+
+            if (spineSize > 0) {
+                spine[spineSize - 1].right = node;
+            }
+
+            if (spineSize == spine.length) {
+                spine = Arrays.copyOf(spine, 2 * spineSize);
+            }
+
+            spine[spineSize++] = node;
+        }
+
+        // The nodes on the spine are complete as well now
+        while (spineSize > 1) {
+            updateSize(spine[--spineSize]);
+        }
+
+        if (spineSize == 0) {
+            return null;
+        } else {
+            updateSize(spine[0]);
+            return spine[0];
+        }
+    }
+
+    /**
+     * Applies a pending reversal of the subtreap rooted at the given node to
+     * the node itself, passing it on to its children.
+     *
+     * @param node
+     */
+    private static void pushDown(Node<?> node) {
+        if (node.reversed) {
+            swapChildren(node);
+            node.reversed = false;
+
+            if (node.left != null) {
+                node.left.reversed = !node.left.reversed;
+            }
+
+            if (node.right != null) {
+                node.right.reversed = !node.right.reversed;
+            }
+        }
+    }
+
+    private static <E> void swapChildren(Node<E> node) {
+        Node<E> left = node.left;
+        node.left = node.right;
+        node.right = left;
+    }
+
+    private static int size(Node<?> node) {
+        return (node == null ? 0 : node.size);
+    }
+
+    private static void updateSize(Node<?> node) {
+        node.size = 1 + size(node.left) + size(node.right);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+    }
+
+    private void checkPosition(int index) {
+        if (index < 0 || index > size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+    }
+
+    private void checkRange(int fromIndex, int toIndex) {
+        if (fromIndex < 0 || toIndex > size() || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException("From: " + fromIndex + ", To: " + toIndex + ", Size: " + size());
+        }
+    }
+
+    private static final class Node<E> {
+
+        E value;
+        final float priority;
+        int size = 1; // The number of nodes in the subtreap rooted at this node
+        boolean reversed = false; // Whether the order of the subtreap rooted at this node is still to be reversed
+        Node<E> left, right;
+
+        Node(E value, float priority) {
+            this.value = value;
+            this.priority = priority;
+        }
+    }
+
+    /**
+     * An in-order iterator that keeps the path to the next node on a stack.
+     * Pending reversals are pushed down as it descends, which does not change
+     * the order of the list.
+     */
+    private class TreapListIterator implements Iterator<E> {
+
+        @SuppressWarnings("unchecked")
+        private Node<E>[] stack = (Node<E>[]) new Node<?>[32];
+        private int stackSize = 0;
+        private int index = 0;
+        private int lastReturned = -1;
+        private int expectedModCount = modCount;
+
+        TreapListIterator() {
+            pushLeftSpine(root);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return stackSize > 0;
+        }
+
+        @Override
+        public E next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+
+            if (stackSize == 0) {
+                throw new NoSuchElementException();
+            }
+
+            Node<E> node = stack[--stackSize];
+            pushLeftSpine(node.right);
+            lastReturned = index++;
+            return node.value;
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned < 0) {
+                throw new IllegalStateException();
+            }
+
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+
+            // Removal restructures the treap, so find the next node again
+            TreapList.this.remove(lastReturned);
+            index = lastReturned;
+            lastReturned = -1;
+            expectedModCount = modCount;
+
+            stackSize = 0;
+            seek(index);
+        }
+
+        private void pushLeftSpine(Node<E> node) {
+            while (node != null) {
+                pushDown(node);
+                push(node);
+                node = node.left;
+            }
+        }
+
+        /**
+         * Rebuilds the stack so that the node at the given position is next.
+         */
+        private void seek(int index) {
+            Node<E> node = root;
+
+            while (node != null) {
+                pushDown(node);
+
+                int leftSize = size(node.left);
+
+                if (index < leftSize) {
+                    push(node);
+                    node = node.left;
+                } else if (index > leftSize) {
+                    index -= leftSize + 1;
+                    node = node.right;
+                } else {
+                    push(node);
+                    return;
+                }
+            }
+        }
+
+        private void push(Node<E> node) {
+            if (stackSize == stack.length) {
+                stack = Arrays.copyOf(stack, 2 * stackSize);
+            }
+
+            stack[stackSize++] = node;
+        }
+    }
+}
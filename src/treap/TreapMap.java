@@ -0,0 +1,1108 @@
+package treap;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * A treap-based implementation of the NavigableMap interface, intended as a
+ * drop-in replacement for {@link java.util.TreeMap}. It works like
+ * {@link Treap}, with the value stored in the node next to its key.
+ *
+ * The methods that update a mapping based on its current value
+ * ({@link #compute}, {@link #computeIfAbsent}, {@link #computeIfPresent},
+ * {@link #merge} and {@link #putIfAbsent}) search for the key only once. If
+ * the key is missing, the new node is attached to the last node on the search
+ * path; if the mapping has to be removed, the node that was found is rotated
+ * down and cut off directly.
+ *
+ * Like TreeMap, the entries returned by the navigation methods (such as
+ * {@link #floorEntry}) are snapshots that do not support setValue, while those
+ * returned by the entry set iterator write through to the map.
+ *
+ * @param <K>
+ * @param <V>
+ */
+public class TreapMap<K, V> extends AbstractMap<K, V> implements SeekableMap<K, V> {
+
+    private TreapNode<K, V> root = null;
+    private Comparator<? super K> comparator = null;
+    private int size = 0;
+    private int modCount = 0; // The number of structural modifications, used to detect concurrent modification by iterators
+
+    /**
+     * Constructs a new, empty map, sorted according to the natural ordering of
+     * its keys.
+     */
+    public TreapMap() {
+    }
+
+    /**
+     * Constructs a new, empty map, sorted according to the specified
+     * comparator.
+     *
+     * @param comparator
+     */
+    public TreapMap(Comparator<? super K> comparator) {
+        this.comparator = comparator;
+    }
+
+    /**
+     * Constructs a new map containing the mappings of the specified map,
+     * sorted according to the natural ordering of its keys.
+     *
+     * @param m
+     */
+    public TreapMap(Map<? extends K, ? extends V> m) {
+        putAll(m);
+    }
+
+    /**
+     * Constructs a new map containing the same mappings and using the same
+     * ordering as the specified sorted map.
+     *
+     * @param m
+     */
+    public TreapMap(SortedMap<K, ? extends V> m) {
+        this(m.comparator());
+        putAll(m);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return getNode(key) != null;
+    }
+
+    @Override
+    public V get(Object key) {
+        TreapNode<K, V> node = getNode(key);
+        return (node == null ? null : node.value);
+    }
+
+    @Override
+    public V getOrDefault(Object key, V defaultValue) {
+        TreapNode<K, V> node = getNode(key);
+        return (node == null ? defaultValue : node.value);
+    }
+
+    @Override
+    public V put(K key, V value) {
+        // Find the place this key should be inserted
+        TreapNode<K, V> parent = null;
+        TreapNode<K, V> node = root;
+        int comparison = 0;
+
+        if (node == null) {
+            compare(key, key); // Type and null check
+        }
+
+        while (node != null) {
+            parent = node;
+            comparison = compare(key, node.key);
+
+            if (comparison == 0) {
+                return node.setValue(value);
+            } else if (comparison < 0) {
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+
+        attach(newNode(key, value), parent, comparison);
+        return null;
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        TreapNode<K, V> parent = null;
+        TreapNode<K, V> node = root;
+        int comparison = 0;
+
+        if (node == null) {
+            compare(key, key); // Type and null check
+        }
+
+        while (node != null) {
+            parent = node;
+            comparison = compare(key, node.key);
+
+            if (comparison == 0) {
+                if (node.value == null) {
+                    node.setValue(value);
+                    return null;
+                } else {
+                    return node.value;
+                }
+            } else if (comparison < 0) {
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+
+        attach(newNode(key, value), parent, comparison);
+        return null;
+    }
+
+    @Override
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        Objects.requireNonNull(mappingFunction);
+
+        TreapNode<K, V> parent = null;
+        TreapNode<K, V> node = root;
+        int comparison = 0;
+
+        if (node == null) {
+            compare(key, key); // Type and null check
+        }
+
+        while (node != null) {
+            parent = node;
+            comparison = compare(key, node.key);
+
+            if (comparison == 0) {
+                if (node.value == null) {
+                    node.setValue(callMappingFunction(mappingFunction, key));
+                }
+
+                return node.value;
+            } else if (comparison < 0) {
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+
+        V value = callMappingFunction(mappingFunction, key);
+
+        if (value != null) {
+            attach(newNode(key, value), parent, comparison);
+        }
+
+        return value;
+    }
+
+    @Override
+    public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        Objects.requireNonNull(remappingFunction);
+
+        TreapNode<K, V> node = getNode(key);
+
+        if (node == null || node.value == null) {
+            return null;
+        }
+
+        return remap(node, callRemappingFunction(remappingFunction, key, node.value));
+    }
+
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        Objects.requireNonNull(remappingFunction);
+
+        TreapNode<K, V> parent = null;
+        TreapNode<K, V> node = root;
+        int comparison = 0;
+
+        if (node == null) {
+            compare(key, key); // Type and null check
+        }
+
+        while (node != null) {
+            parent = node;
+            comparison = compare(key, node.key);
+
+            if (comparison == 0) {
+                return remap(node, callRemappingFunction(remappingFunction, key, node.value));
+            } else if (comparison < 0) {
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+
+        V value = callRemappingFunction(remappingFunction, key, null);
+
+        if (value != null) {
+            attach(newNode(key, value), parent, comparison);
+        }
+
+        return value;
+    }
+
+    @Override
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        Objects.requireNonNull(value);
+        Objects.requireNonNull(remappingFunction);
+
+        TreapNode<K, V> parent = null;
+        TreapNode<K, V> node = root;
+        int comparison = 0;
+
+        if (node == null) {
+            compare(key, key); // Type and null check
+        }
+
+        while (node != null) {
+            parent = node;
+            comparison = compare(key, node.key);
+
+            if (comparison == 0) {
+                if (node.value == null) {
+                    node.setValue(value);
+                    return value;
+                }
+
+                int expectedModCount = modCount;
+                V newValue = remappingFunction.apply(node.value, value);
+
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+
+                return remap(node, newValue);
+            } else if (comparison < 0) {
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+
+        attach(newNode(key, value), parent, comparison);
+        return value;
+    }
+
+    @Override
+    public V replace(K key, V value) {
+        TreapNode<K, V> node = getNode(key);
+        return (node == null ? null : node.setValue(value));
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        TreapNode<K, V> node = getNode(key);
+
+        if (node != null && Objects.equals(node.value, oldValue)) {
+            node.setValue(newValue);
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    @Override
+    public V remove(Object key) {
+        TreapNode<K, V> node = getNode(key);
+
+        if (node == null) {
+            return null;
+        }
+
+        V value = node.value;
+        remove(node);
+        return value;
+    }
+
+    @Override
+    public void clear() {
+        root = null;
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        return new EntrySet();
+    }
+
+    @Override
+    public Set<K> keySet() {
+        return navigableKeySet();
+    }
+
+    @Override
+    public NavigableSet<K> navigableKeySet() {
+        return new NavigableKeySet<K>(this);
+    }
+
+    @Override
+    public NavigableSet<K> descendingKeySet() {
+        return descendingMap().navigableKeySet();
+    }
+
+    @Override
+    public Map.Entry<K, V> lowerEntry(K key) {
+        return exportEntry(lowerNode(key));
+    }
+
+    @Override
+    public K lowerKey(K key) {
+        return keyOrNull(lowerNode(key));
+    }
+
+    @Override
+    public Map.Entry<K, V> floorEntry(K key) {
+        return exportEntry(floorNode(key));
+    }
+
+    @Override
+    public K floorKey(K key) {
+        return keyOrNull(floorNode(key));
+    }
+
+    @Override
+    public Map.Entry<K, V> ceilingEntry(K key) {
+        return exportEntry(ceilingNode(key));
+    }
+
+    @Override
+    public K ceilingKey(K key) {
+        return keyOrNull(ceilingNode(key));
+    }
+
+    @Override
+    public Map.Entry<K, V> higherEntry(K key) {
+        return exportEntry(higherNode(key));
+    }
+
+    @Override
+    public K higherKey(K key) {
+        return keyOrNull(higherNode(key));
+    }
+
+    @Override
+    public Map.Entry<K, V> firstEntry() {
+        return exportEntry(firstNode());
+    }
+
+    @Override
+    public Map.Entry<K, V> lastEntry() {
+        return exportEntry(lastNode());
+    }
+
+    @Override
+    public K firstKey() {
+        if (root == null) {
+            throw new NoSuchElementException("First key was queried, while the map was empty.");
+        }
+
+        return firstNode().key;
+    }
+
+    @Override
+    public K lastKey() {
+        if (root == null) {
+            throw new NoSuchElementException("Last key was queried, while the map was empty.");
+        }
+
+        return lastNode().key;
+    }
+
+    @Override
+    public Map.Entry<K, V> pollFirstEntry() {
+        TreapNode<K, V> first = firstNode();
+
+        if (first == null) {
+            return null;
+        }
+
+        Map.Entry<K, V> entry = exportEntry(first);
+        remove(first);
+        return entry;
+    }
+
+    @Override
+    public Map.Entry<K, V> pollLastEntry() {
+        TreapNode<K, V> last = lastNode();
+
+        if (last == null) {
+            return null;
+        }
+
+        Map.Entry<K, V> entry = exportEntry(last);
+        remove(last);
+        return entry;
+    }
+
+    @Override
+    public Comparator<? super K> comparator() {
+        return comparator;
+    }
+
+    /**
+     * Returns a reverse order view of the mappings in this map. The view is
+     * backed by this map and does not copy any mappings.
+     *
+     * @return
+     */
+    @Override
+    public NavigableMap<K, V> descendingMap() {
+        return new NavigableSubMap<K, V>(this, true, null, true, true, null, true, true);
+    }
+
+    @Override
+    public NavigableMap<K, V> subMap(K fromKey, boolean fromInclusive, K toKey, boolean toInclusive) {
+        if (compare(fromKey, toKey) > 0) {
+            throw new IllegalArgumentException("fromKey > toKey");
+        }
+
+        return new NavigableSubMap<K, V>(this, false, fromKey, fromInclusive, false, toKey, toInclusive, false);
+    }
+
+    @Override
+    public NavigableMap<K, V> headMap(K toKey, boolean inclusive) {
+        return new NavigableSubMap<K, V>(this, true, null, true, false, toKey, inclusive, false);
+    }
+
+    @Override
+    public NavigableMap<K, V> tailMap(K fromKey, boolean inclusive) {
+        return new NavigableSubMap<K, V>(this, false, fromKey, inclusive, true, null, true, false);
+    }
+
+    @Override
+    public SortedMap<K, V> subMap(K fromKey, K toKey) {
+        return subMap(fromKey, true, toKey, false);
+    }
+
+    @Override
+    public SortedMap<K, V> headMap(K toKey) {
+        return headMap(toKey, false);
+    }
+
+    @Override
+    public SortedMap<K, V> tailMap(K fromKey) {
+        return tailMap(fromKey, true);
+    }
+
+    @Override
+    public Iterator<Map.Entry<K, V>> entryRangeIterator(boolean fromStart, K lo, boolean loInclusive, boolean toEnd, K hi, boolean hiInclusive) {
+        TreapNode<K, V> first = (fromStart ? firstNode() : (loInclusive ? ceilingNode(lo) : higherNode(lo)));
+        TreapNode<K, V> fence = (toEnd ? null : (hiInclusive ? higherNode(hi) : ceilingNode(hi)));
+
+        if (first != null && fence != null && compare(first.key, fence.key) >= 0) {
+            // The range is empty
+            first = null;
+        }
+
+        return new EntryIterator(first, fence, false);
+    }
+
+    @Override
+    public Iterator<Map.Entry<K, V>> descendingEntryRangeIterator(boolean fromStart, K lo, boolean loInclusive, boolean toEnd, K hi, boolean hiInclusive) {
+        TreapNode<K, V> first = (toEnd ? lastNode() : (hiInclusive ? floorNode(hi) : lowerNode(hi)));
+        TreapNode<K, V> fence = (fromStart ? null : (loInclusive ? lowerNode(lo) : floorNode(lo)));
+
+        if (first != null && fence != null && compare(first.key, fence.key) <= 0) {
+            // The range is empty
+            first = null;
+        }
+
+        return new EntryIterator(first, fence, true);
+    }
+
+    /**
+     * Creates the node for a new mapping. Subclasses that keep extra data in
+     * the nodes override this together with {@link #subtreeChanged} and
+     * {@link #rotated}.
+     *
+     * @param key
+     * @param value
+     * @return
+     */
+    TreapNode<K, V> newNode(K key, V value) {
+        return new TreapNode<K, V>(key, value, Treap.randomPriority());
+    }
+
+    /**
+     * Called after the mappings in the subtree rooted at the given node
+     * changed: a node was attached or cut off below it, or its value or that
+     * of one of its descendants was replaced. This also changes the subtrees
+     * of all its ancestors.
+     *
+     * @param node
+     */
+    void subtreeChanged(TreapNode<K, V> node) {
+    }
+
+    /**
+     * Called after a rotation that made the given child the parent of the
+     * given node. The subtree rooted at the child holds the same mappings as
+     * the one rooted at the node did before the rotation.
+     *
+     * @param node
+     * @param child
+     */
+    void rotated(TreapNode<K, V> node, TreapNode<K, V> child) {
+    }
+
+    TreapNode<K, V> root() {
+        return root;
+    }
+
+    @SuppressWarnings("unchecked")
+    int compare(K a, K b) {
+        if (comparator != null) {
+            return comparator.compare(a, b);
+        } else {
+            return ((Comparable<? super K>) a).compareTo(b);
+        }
+    }
+
+    private TreapNode<K, V> getNode(Object key) {
+        if (comparator != null) {
+            return getNodeWithComparator(key);
+        }
+
+        if (key == null) {
+            throw new NullPointerException();
+        }
+
+        @SuppressWarnings("unchecked")
+        Comparable<? super K> k = (Comparable<? super K>) key;
+
+        TreapNode<K, V> node = root;
+
+        while (node != null) {
+            int comparison = k.compareTo(node.key);
+
+            if (comparison < 0) {
+                node = node.left;
+            } else if (comparison > 0) {
+                node = node.right;
+            } else {
+                return node;
+            }
+        }
+
+        return null;
+    }
+
+    private TreapNode<K, V> getNodeWithComparator(Object key) {
+        @SuppressWarnings("unchecked")
+        K k = (K) key;
+
+        TreapNode<K, V> node = root;
+
+        while (node != null) {
+            int comparison = comparator.compare(k, node.key);
+
+            if (comparison < 0) {
+                node = node.left;
+            } else if (comparison > 0) {
+                node = node.right;
+            } else {
+                return node;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Inserts the new node as a child of the given parent, on the side given by
+     * the comparison of its key to that of the parent, and restores the heap
+     * property.
+     *
+     * @param newNode
+     * @param parent
+     * @param comparison
+     */
+    private void attach(TreapNode<K, V> newNode, TreapNode<K, V> parent, int comparison) {
+        if (parent == null) {
+            root = newNode;
+        } else {
+            if (comparison < 0) {
+                parent.left = newNode;
+            } else {
+                parent.right = newNode;
+            }
+
+            newNode.parent = parent;
+        }
+
+        subtreeChanged(newNode);
+
+        // Fix the heap property by performing rotations
+        while (newNode.parent != null && newNode.priority < newNode.parent.priority) {
+            if (newNode == newNode.parent.left) {
+                rotateRight(newNode.parent);
+            } else {
+                assert newNode == newNode.parent.right;
+                rotateLeft(newNode.parent);
+            }
+        }
+
+        size++;
+        modCount++;
+    }
+
+    /**
+     * Stores the new value in the given node, or removes the node if the new
+     * value is null, as the compute methods require.
+     *
+     * @param node
+     * @param newValue
+     * @return
+     */
+    private V remap(TreapNode<K, V> node, V newValue) {
+        if (newValue == null) {
+            remove(node);
+        } else {
+            node.setValue(newValue);
+        }
+
+        return newValue;
+    }
+
+    private V callMappingFunction(Function<? super K, ? extends V> mappingFunction, K key) {
+        int expectedModCount = modCount;
+        V value = mappingFunction.apply(key);
+
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+
+        return value;
+    }
+
+    private V callRemappingFunction(BiFunction<? super K, ? super V, ? extends V> remappingFunction, K key, V oldValue) {
+        int expectedModCount = modCount;
+        V value = remappingFunction.apply(key, oldValue);
+
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+
+        return value;
+    }
+
+    private void remove(TreapNode<K, V> node) {
+        // Perform rotations until this node is a leaf
+        while (node.left != null || node.right != null) {
+            rotateDown(node);
+        }
+
+        // Actually remove the node
+        if (node == root) {
+            root = null;
+        } else {
+            if (node == node.parent.left) {
+                node.parent.left = null;
+            } else {
+                assert node == node.parent.right;
+                node.parent.right = null;
+            }
+
+            subtreeChanged(node.parent);
+        }
+
+        size--;
+        modCount++;
+    }
+
+    /**
+     * Rotate the subtree rooted at the specified node to the right, making the
+     * left child of the specified node the new root.
+     *
+     * @param node
+     */
+    private void rotateRight(TreapNode<K, V> node) {
+        TreapNode<K, V> child = node.left;
+        TreapNode<K, V> parent = node.parent;
+        TreapNode<K, V> middleSubtreap = child.right;
+
+        // Switch the child pointers
+        if (parent == null) {
+            root = child;
+        } else if (node == parent.left) {
+            parent.left = child;
+        } else {
+            parent.right = child;
+        }
+
+        node.left = middleSubtreap;
+        child.right = node;
+
+        // Fix the parent pointers
+        node.parent = child;
+        child.parent = parent;
+
+        if (middleSubtreap != null) {
+            middleSubtreap.parent = node;
+        }
+
+        rotated(node, child);
+    }
+
+    /**
+     * Rotate the subtree rooted at the specified node to the left, making the
+     * right child of the specified node the new root.
+     *
+     * @param node
+     */
+    private void rotateLeft(TreapNode<K, V> node) {
+        TreapNode<K, V> child = node.right;
+        TreapNode<K, V> parent = node.parent;
+        TreapNode<K, V> middleSubtreap = child.left;
+
+        // Switch the child pointers
+        if (parent == null) {
+            root = child;
+        } else if (node == parent.left) {
+            parent.left = child;
+        } else {
+            parent.right = child;
+        }
+
+        node.right = middleSubtreap;
+        child.left = node;
+
+        // Fix the parent pointers
+        node.parent = child;
+        child.parent = parent;
+
+        if (middleSubtreap != null) {
+            middleSubtreap.parent = node;
+        }
+
+        rotated(node, child);
+    }
+
+    /**
+     * Rotates the subtree rooted at the specified node to move this node down
+     * the tree. Must not be called on a leaf.
+     *
+     * @param node
+     */
+    private void rotateDown(TreapNode<K, V> node) {
+        if (node.left == null) {
+            rotateLeft(node);
+        } else if (node.right == null) {
+            rotateRight(node);
+        } else if (node.left.priority < node.right.priority) {
+            rotateRight(node);
+        } else {
+            rotateLeft(node);
+        }
+    }
+
+    private TreapNode<K, V> firstNode() {
+        TreapNode<K, V> node = root;
+
+        if (node != null) {
+            while (node.left != null) {
+                node = node.left;
+            }
+        }
+
+        return node;
+    }
+
+    private TreapNode<K, V> lastNode() {
+        TreapNode<K, V> node = root;
+
+        if (node != null) {
+            while (node.right != null) {
+                node = node.right;
+            }
+        }
+
+        return node;
+    }
+
+    private TreapNode<K, V> lowerNode(K key) {
+        TreapNode<K, V> node = root;
+        TreapNode<K, V> lower = null;
+
+        while (node != null) {
+            if (compare(node.key, key) < 0) {
+                lower = node;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+
+        return lower;
+    }
+
+    private TreapNode<K, V> higherNode(K key) {
+        TreapNode<K, V> node = root;
+        TreapNode<K, V> higher = null;
+
+        while (node != null) {
+            if (compare(node.key, key) > 0) {
+                higher = node;
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+
+        return higher;
+    }
+
+    private TreapNode<K, V> floorNode(K key) {
+        TreapNode<K, V> node = root;
+        TreapNode<K, V> lower = null;
+
+        while (node != null) {
+            int comparison = compare(node.key, key);
+
+            if (comparison == 0) {
+                return node;
+            } else if (comparison < 0) {
+                lower = node;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+
+        return lower;
+    }
+
+    private TreapNode<K, V> ceilingNode(K key) {
+        TreapNode<K, V> node = root;
+        TreapNode<K, V> higher = null;
+
+        while (node != null) {
+            int comparison = compare(node.key, key);
+
+            if (comparison == 0) {
+                return node;
+            } else if (comparison > 0) {
+                higher = node;
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+
+        return higher;
+    }
+
+    private static <K, V> TreapNode<K, V> successor(TreapNode<K, V> node) {
+        if (node.right != null) {
+            node = node.right;
+
+            while (node.left != null) {
+                node = node.left;
+            }
+
+            return node;
+        } else {
+            // Go up until we arrive from a left child
+            TreapNode<K, V> parent = node.parent;
+
+            while (parent != null && node == parent.right) {
+                node = parent;
+                parent = parent.parent;
+            }
+
+            return parent;
+        }
+    }
+
+    private static <K, V> TreapNode<K, V> predecessor(TreapNode<K, V> node) {
+        if (node.left != null) {
+            node = node.left;
+
+            while (node.right != null) {
+                node = node.right;
+            }
+
+            return node;
+        } else {
+            // Go up until we arrive from a right child
+            TreapNode<K, V> parent = node.parent;
+
+            while (parent != null && node == parent.left) {
+                node = parent;
+                parent = parent.parent;
+            }
+
+            return parent;
+        }
+    }
+
+    private static <K, V> Map.Entry<K, V> exportEntry(TreapNode<K, V> node) {
+        return (node == null ? null : new AbstractMap.SimpleImmutableEntry<K, V>(node));
+    }
+
+    private static <K> K keyOrNull(TreapNode<K, ?> node) {
+        return (node == null ? null : node.key);
+    }
+
+    static class TreapNode<K, V> implements Map.Entry<K, V> {
+
+        final K key;
+        V value;
+        final float priority;
+        TreapNode<K, V> parent, left, right;
+
+        TreapNode(K key, V value, float priority) {
+            this.key = key;
+            this.value = value;
+            this.priority = priority;
+        }
+
+        @Override
+        public K getKey() {
+            return key;
+        }
+
+        @Override
+        public V getValue() {
+            return value;
+        }
+
+        @Override
+        public V setValue(V value) {
+            V old = this.value;
+            this.value = value;
+            return old;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            return Objects.equals(key, e.getKey()) && Objects.equals(value, e.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(key) ^ Objects.hashCode(value);
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + value;
+        }
+    }
+
+    private class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+
+        @Override
+        public Iterator<Map.Entry<K, V>> iterator() {
+            return new EntryIterator(firstNode(), null, false);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public void clear() {
+            TreapMap.this.clear();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return matchingNode(o) != null;
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            TreapNode<K, V> node = matchingNode(o);
+
+            if (node == null) {
+                return false;
+            }
+
+            TreapMap.this.remove(node);
+            return true;
+        }
+
+        private TreapNode<K, V> matchingNode(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return null;
+            }
+
+            Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+            TreapNode<K, V> node = getNode(entry.getKey());
+            return (node != null && Objects.equals(node.value, entry.getValue()) ? node : null);
+        }
+    }
+
+    /**
+     * Iterates over the nodes from a first node up to, but not including, a
+     * fence node, in ascending or descending order.
+     */
+    private class EntryIterator implements Iterator<Map.Entry<K, V>> {
+
+        private final TreapNode<K, V> fence;
+        private final boolean descending;
+        private TreapNode<K, V> lastReturned = null;
+        private TreapNode<K, V> nextNode;
+        private int expectedModCount = modCount;
+
+        EntryIterator(TreapNode<K, V> first, TreapNode<K, V> fence, boolean descending) {
+            this.nextNode = first;
+            this.fence = fence;
+            this.descending = descending;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextNode != null && nextNode != fence;
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+
+            lastReturned = nextNode;
+            nextNode = (descending ? predecessor(nextNode) : successor(nextNode));
+            return lastReturned;
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned == null) {
+                throw new IllegalStateException();
+            }
+
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+
+            // Removal only rotates the removed node down, so nextNode stays valid
+            TreapMap.this.remove(lastReturned);
+            lastReturned = null;
+            expectedModCount = modCount;
+        }
+    }
+}
@@ -0,0 +1,806 @@
+package treap;
+
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A sorted multiset backed by a treap. Equal elements share a single node that
+ * stores how often the element occurs, so the memory use and the cost of every
+ * operation depend only on the number of distinct elements, not on the total
+ * number of occurrences. Every node also stores the total number of
+ * occurrences in its subtree, which makes rank and select queries over all
+ * occurrences ({@link #get}, {@link #indexOf}, {@link #countLessThan}) take
+ * expected O(log n) time.
+ *
+ * As a Collection, the multiset contains every element as often as it occurs:
+ * {@link #size} counts all occurrences, and the iterator returns each element
+ * that many times, in sorted order. Null elements are not permitted.
+ *
+ * @param <E>
+ */
+public class TreapMultiset<E> extends AbstractCollection<E> {
+
+    private TreapNode<E> root = null;
+    private Comparator<? super E> comparator = null;
+    private int distinctSize = 0;
+    private int modCount = 0; // The number of modifications, used to detect concurrent modification by iterators
+
+    /**
+     * Constructs a new, empty multiset, sorted according to the natural
+     * ordering of its elements.
+     */
+    public TreapMultiset() {
+    }
+
+    /**
+     * Constructs a new, empty multiset, sorted according to the specified
+     * comparator.
+     *
+     * @param comparator
+     */
+    public TreapMultiset(Comparator<? super E> comparator) {
+        this.comparator = comparator;
+    }
+
+    /**
+     * Constructs a new multiset containing the elements in the specified
+     * collection, including duplicates, sorted according to the natural
+     * ordering of its elements.
+     *
+     * @param c
+     */
+    public TreapMultiset(Collection<? extends E> c) {
+        addAll(c);
+    }
+
+    /**
+     * Returns the total number of occurrences of all elements.
+     *
+     * @return
+     */
+    @Override
+    public int size() {
+        return total(root);
+    }
+
+    /**
+     * Returns the number of distinct elements.
+     *
+     * @return
+     */
+    public int distinctSize() {
+        return distinctSize;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return getNode(o) != null;
+    }
+
+    /**
+     * Returns the number of occurrences of the specified element.
+     *
+     * @param o
+     * @return
+     */
+    public int count(Object o) {
+        TreapNode<E> node = getNode(o);
+        return (node == null ? 0 : node.count);
+    }
+
+    /**
+     * Adds a single occurrence of the specified element.
+     *
+     * @param e
+     * @return true
+     */
+    @Override
+    public boolean add(E e) {
+        add(e, 1);
+        return true;
+    }
+
+    /**
+     * Adds the given number of occurrences of the specified element. Takes
+     * expected O(log n) time, where n is the number of distinct elements.
+     *
+     * @param e
+     * @param occurrences
+     * @return the number of occurrences of the element before the call
+     * @throws IllegalArgumentException if occurrences is negative, or if the
+     * size of the multiset would exceed Integer.MAX_VALUE
+     */
+    public int add(E e, int occurrences) {
+        checkOccurrences(occurrences);
+
+        if ((long) size() + occurrences > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("The multiset cannot contain more than Integer.MAX_VALUE occurrences.");
+        }
+
+        // Find the node for this element, or the place it should be inserted
+        TreapNode<E> parent = null;
+        TreapNode<E> node = root;
+        int comparison = 0;
+
+        if (node == null) {
+            compare(e, e); // Type and null check
+        }
+
+        while (node != null) {
+            parent = node;
+            comparison = compare(e, node.key);
+
+            if (comparison == 0) {
+                int oldCount = node.count;
+
+                if (occurrences > 0) {
+                    node.count += occurrences;
+                    addToTotals(node, occurrences);
+                    modCount++;
+                }
+
+                return oldCount;
+            } else if (comparison < 0) {
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+
+        if (occurrences > 0) {
+            attach(new TreapNode<E>(e, occurrences, Treap.randomPriority()), parent, comparison);
+        }
+
+        return 0;
+    }
+
+    /**
+     * Removes a single occurrence of the specified element, if it is present.
+     *
+     * @param o
+     * @return true if an occurrence was removed
+     */
+    @Override
+    public boolean remove(Object o) {
+        return remove(o, 1) > 0;
+    }
+
+    /**
+     * Removes the given number of occurrences of the specified element, or all
+     * of them if it occurs fewer times. Takes expected O(log n) time, where n
+     * is the number of distinct elements.
+     *
+     * @param o
+     * @param occurrences
+     * @return the number of occurrences of the element before the call
+     * @throws IllegalArgumentException if occurrences is negative
+     */
+    public int remove(Object o, int occurrences) {
+        checkOccurrences(occurrences);
+
+        TreapNode<E> node = getNode(o);
+
+        if (node == null) {
+            return 0;
+        }
+
+        int oldCount = node.count;
+
+        if (occurrences >= oldCount) {
+            remove(node);
+        } else if (occurrences > 0) {
+            node.count -= occurrences;
+            addToTotals(node, -occurrences);
+            modCount++;
+        }
+
+        return oldCount;
+    }
+
+    @Override
+    public void clear() {
+        root = null;
+        distinctSize = 0;
+        modCount++;
+    }
+
+    /**
+     * Returns an iterator over all occurrences, in ascending order. Each
+     * element is returned as often as it occurs, and removing it through the
+     * iterator removes a single occurrence.
+     *
+     * @return
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new OccurrenceIterator();
+    }
+
+    /**
+     * Returns a view of the distinct elements of this multiset, in ascending
+     * order. Removing an element from the view removes all its occurrences.
+     *
+     * @return
+     */
+    public Set<E> elementSet() {
+        return new ElementSet();
+    }
+
+    /**
+     * Returns the smallest element.
+     *
+     * @return
+     * @throws NoSuchElementException if the multiset is empty
+     */
+    public E first() {
+        if (root == null) {
+            throw new NoSuchElementException("First element was queried, while the multiset was empty.");
+        }
+
+        return firstNode().key;
+    }
+
+    /**
+     * Returns the largest element.
+     *
+     * @return
+     * @throws NoSuchElementException if the multiset is empty
+     */
+    public E last() {
+        if (root == null) {
+            throw new NoSuchElementException("Last element was queried, while the multiset was empty.");
+        }
+
+        TreapNode<E> node = root;
+
+        while (node.right != null) {
+            node = node.right;
+        }
+
+        return node.key;
+    }
+
+    public Comparator<? super E> comparator() {
+        return comparator;
+    }
+
+    /**
+     * Returns the element at the specified position in the sorted order of all
+     * occurrences. For example, if the multiset holds a twice and b once, the
+     * elements at positions 0, 1 and 2 are a, a and b. Takes expected
+     * O(log n) time, where n is the number of distinct elements.
+     *
+     * @param index
+     * @return
+     * @throws IndexOutOfBoundsException if the index is negative or not
+     * smaller than the size of this multiset
+     */
+    public E get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+
+        TreapNode<E> node = root;
+
+        while (true) {
+            int leftTotal = total(node.left);
+
+            if (index < leftTotal) {
+                node = node.left;
+            } else if (index < leftTotal + node.count) {
+                return node.key;
+            } else {
+                index -= leftTotal + node.count;
+                node = node.right;
+            }
+        }
+    }
+
+    /**
+     * Returns the position of the first occurrence of the specified element
+     * in the sorted order of all occurrences, or -1 if this multiset does not
+     * contain the element. Takes expected O(log n) time, where n is the number
+     * of distinct elements.
+     *
+     * @param o
+     * @return
+     */
+    public int indexOf(Object o) {
+        @SuppressWarnings("unchecked")
+        E key = (E) o;
+
+        TreapNode<E> node = root;
+        int index = 0;
+
+        while (node != null) {
+            int comparison = compare(key, node.key);
+
+            if (comparison < 0) {
+                node = node.left;
+            } else if (comparison > 0) {
+                index += total(node.left) + node.count;
+                node = node.right;
+            } else {
+                return index + total(node.left);
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns the number of occurrences of elements that are strictly less
+     * than the specified element. Takes expected O(log n) time, where n is the
+     * number of distinct elements.
+     *
+     * @param e
+     * @return
+     */
+    public int countLessThan(E e) {
+        TreapNode<E> node = root;
+        int count = 0;
+
+        while (node != null) {
+            if (compare(node.key, e) < 0) {
+                count += total(node.left) + node.count;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Compares the specified object with this multiset for equality. Two
+     * multisets are equal if they contain the same elements with the same
+     * numbers of occurrences.
+     *
+     * @param o
+     * @return
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
+
+        if (!(o instanceof TreapMultiset)) {
+            return false;
+        }
+
+        TreapMultiset<?> other = (TreapMultiset<?>) o;
+
+        if (size() != other.size() || distinctSize != other.distinctSize) {
+            return false;
+        }
+
+        try {
+            for (TreapNode<E> node = firstNode(); node != null; node = successor(node)) {
+                if (other.count(node.key) != node.count) {
+                    return false;
+                }
+            }
+        } catch (ClassCastException unused) {
+            return false;
+        }
+
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 0;
+
+        for (TreapNode<E> node = firstNode(); node != null; node = successor(node)) {
+            hash += node.key.hashCode() ^ node.count;
+        }
+
+        return hash;
+    }
+
+    /**
+     * Returns a string representation of this multiset, in which elements that
+     * occur more than once are followed by their count, as in [a x 2, b].
+     *
+     * @return
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+
+        for (TreapNode<E> node = firstNode(); node != null; node = successor(node)) {
+            if (sb.length() > 1) {
+                sb.append(", ");
+            }
+
+            sb.append(node.key);
+
+            if (node.count > 1) {
+                sb.append(" x ").append(node.count);
+            }
+        }
+
+        return sb.append(']').toString();
+    }
+
+    private static void checkOccurrences(int occurrences) {
+        if (occurrences < 0) {
+            throw new IllegalArgumentException("The number of occurrences cannot be negative: " + occurrences);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private int compare(E a, E b) {
+        if (comparator != null) {
+            return comparator.compare(a, b);
+        } else {
+            return ((Comparable<? super E>) a).compareTo(b);
+        }
+    }
+
+    private TreapNode<E> getNode(Object o) {
+        @SuppressWarnings("unchecked")
+        E key = (E) o;
+
+        TreapNode<E> node = root;
+
+        while (node != null) {
+            int comparison = compare(key, node.key);
+
+            if (comparison < 0) {
+                node = node.left;
+            } else if (comparison > 0) {
+                node = node.right;
+            } else {
+                return node;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Inserts the new node as a child of the given parent, on the side given by
+     * the comparison of its key to that of the parent, and restores the heap
+     * property.
+     *
+     * @param newNode
+     * @param parent
+     * @param comparison
+     */
+    private void attach(TreapNode<E> newNode, TreapNode<E> parent, int comparison) {
+        if (parent == null) {
+            root = newNode;
+        } else {
+            if (comparison < 0) {
+                parent.left = newNode;
+            } else {
+                parent.right = newNode;
+            }
+
+            newNode.parent = parent;
+            addToTotals(parent, newNode.count);
+        }
+
+        // Fix the heap property by performing rotations
+        while (newNode.parent != null && newNode.priority < newNode.parent.priority) {
+            if (newNode == newNode.parent.left) {
+                rotateRight(newNode.parent);
+            } else {
+                assert newNode == newNode.parent.right;
+                rotateLeft(newNode.parent);
+            }
+        }
+
+        distinctSize++;
+        modCount++;
+    }
+
+    private void remove(TreapNode<E> node) {
+        // Perform rotations until this node is a leaf
+        while (node.left != null || node.right != null) {
+            if (node.left == null) {
+                rotateLeft(node);
+            } else if (node.right == null) {
+                rotateRight(node);
+            } else if (node.left.priority < node.right.priority) {
+                rotateRight(node);
+            } else {
+                rotateLeft(node);
+            }
+        }
+
+        // Actually remove the node
+        if (node == root) {
+            root = null;
+        } else {
+            if (node == node.parent.left) {
+                node.parent.left = null;
+            } else {
+                assert node == node.parent.right;
+                node.parent.right = null;
+            }
+
+            addToTotals(node.parent, -node.count);
+        }
+
+        distinctSize--;
+        modCount++;
+    }
+
+    /**
+     * Rotate the subtree rooted at the specified node to the right, making the
+     * left child of the specified node the new root.
+     *
+     * @param node
+     */
+    private void rotateRight(TreapNode<E> node) {
+        TreapNode<E> child = node.left;
+        TreapNode<E> parent = node.parent;
+        TreapNode<E> middleSubtreap = child.right;
+
+        // Switch the child pointers
+        if (parent == null) {
+            root = child;
+        } else if (node == parent.left) {
+            parent.left = child;
+        } else {
+            parent.right = child;
+        }
+
+        node.left = middleSubtreap;
+        child.right = node;
+
+        // Fix the parent pointers
+        node.parent = child;
+        child.parent = parent;
+
+        if (middleSubtreap != null) {
+            middleSubtreap.parent = node;
+        }
+
+        // The child now holds everything the node held before
+        child.total = node.total;
+        updateTotal(node);
+    }
+
+    /**
+     * Rotate the subtree rooted at the specified node to the left, making the
+     * right child of the specified node the new root.
+     *
+     * @param node
+     */
+    private void rotateLeft(TreapNode<E> node) {
+        TreapNode<E> child = node.right;
+        TreapNode<E> parent = node.parent;
+        TreapNode<E> middleSubtreap = child.left;
+
+        // Switch the child pointers
+        if (parent == null) {
+            root = child;
+        } else if (node == parent.left) {
+            parent.left = child;
+        } else {
+            parent.right = child;
+        }
+
+        node.right = middleSubtreap;
+        child.left = node;
+
+        // Fix the parent pointers
+        node.parent = child;
+        child.parent = parent;
+
+        if (middleSubtreap != null) {
+            middleSubtreap.parent = node;
+        }
+
+        // The child now holds everything the node held before
+        child.total = node.total;
+        updateTotal(node);
+    }
+
+    private TreapNode<E> firstNode() {
+        TreapNode<E> node = root;
+
+        if (node != null) {
+            while (node.left != null) {
+                node = node.left;
+            }
+        }
+
+        return node;
+    }
+
+    private static <E> TreapNode<E> successor(TreapNode<E> node) {
+        if (node.right != null) {
+            node = node.right;
+
+            while (node.left != null) {
+                node = node.left;
+            }
+
+            return node;
+        } else {
+            // Go up until we arrive from a left child
+            TreapNode<E> parent = node.parent;
+
+            while (parent != null && node == parent.right) {
+                node = parent;
+                parent = parent.parent;
+            }
+
+            return parent;
+        }
+    }
+
+    private static int total(TreapNode<?> node) {
+        return (node == null ? 0 : node.total);
+    }
+
+    private static void updateTotal(TreapNode<?> node) {
+        node.total = node.count + total(node.left) + total(node.right);
+    }
+
+    private static void addToTotals(TreapNode<?> node, int delta) {
+        while (node != null) {
+            node.total += delta;
+            node = node.parent;
+        }
+    }
+
+    private static final class TreapNode<E> {
+
+        final E key;
+        final float priority;
+        int count; // The number of occurrences of the key
+        int total; // The number of occurrences in the subtreap rooted at this node
+        TreapNode<E> parent, left, right;
+
+        TreapNode(E key, int count, float priority) {
+            this.key = key;
+            this.count = count;
+            this.total = count;
+            this.priority = priority;
+        }
+    }
+
+    /**
+     * Returns every element as often as it occurs. Removing an occurrence only
+     * rotates its node down if it was the last one, so the nodes that are yet
+     * to be visited stay valid.
+     */
+    private class OccurrenceIterator implements Iterator<E> {
+
+        private TreapNode<E> current = null;
+        private TreapNode<E> nextNode = firstNode();
+        private int remaining = 0; // The number of occurrences of current that were not returned yet
+        private boolean canRemove = false;
+        private int expectedModCount = modCount;
+
+        @Override
+        public boolean hasNext() {
+            return remaining > 0 || nextNode != null;
+        }
+
+        @Override
+        public E next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+
+            if (remaining == 0) {
+                current = nextNode;
+                remaining = current.count;
+                nextNode = successor(current);
+            }
+
+            remaining--;
+            canRemove = true;
+            return current.key;
+        }
+
+        @Override
+        public void remove() {
+            if (!canRemove) {
+                throw new IllegalStateException();
+            }
+
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+
+            TreapMultiset.this.remove(current.key, 1);
+            canRemove = false;
+            expectedModCount = modCount;
+        }
+    }
+
+    private class ElementSet extends AbstractSet<E> {
+
+        @Override
+        public Iterator<E> iterator() {
+            return new ElementIterator();
+        }
+
+        @Override
+        public int size() {
+            return distinctSize;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return TreapMultiset.this.contains(o);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            return TreapMultiset.this.remove(o, Integer.MAX_VALUE) > 0;
+        }
+
+        @Override
+        public void clear() {
+            TreapMultiset.this.clear();
+        }
+    }
+
+    private class ElementIterator implements Iterator<E> {
+
+        private TreapNode<E> lastReturned = null;
+        private TreapNode<E> nextNode = firstNode();
+        private int expectedModCount = modCount;
+
+        @Override
+        public boolean hasNext() {
+            return nextNode != null;
+        }
+
+        @Override
+        public E next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+
+            lastReturned = nextNode;
+            nextNode = successor(nextNode);
+            return lastReturned.key;
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned == null) {
+                throw new IllegalStateException();
+            }
+
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+
+            // Removal only rotates the removed node down, so nextNode stays valid
+            TreapMultiset.this.remove(lastReturned);
+            lastReturned = null;
+            expectedModCount = modCount;
+        }
+    }
+}
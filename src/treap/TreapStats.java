@@ -0,0 +1,235 @@
+package treap;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Statistics about the operations performed on a {@link Treap}, returned by
+ * {@link Treap#stats()}.
+ *
+ * Collecting statistics is off by default. It is switched on for all treaps by
+ * starting the JVM with {@code -Dtreap.stats=true}. The switch is a static
+ * final field, so when it is off, the JIT compiler removes the bookkeeping from
+ * the treap operations entirely. When it is on, every treap counts the
+ * comparisons and rotations it performs and records, for each search or
+ * update, its depth (the number of nodes compared to the key) and, for
+ * updates, the number of rotations it took.
+ *
+ * In addition, operations that take longer than a threshold are reported to
+ * JDK Flight Recorder as {@code treap.Operation} events. The threshold
+ * defaults to 1 ms and can be changed like that of any other event, for
+ * instance with {@code jfr configure treap.Operation#threshold=100us} or
+ * {@code Recording.enable("treap.Operation").withThreshold(...)}.
+ *
+ * Depths and rotation counts of 63 and up share the last histogram bucket.
+ */
+public final class TreapStats {
+
+    /**
+     * Whether statistics are collected, as set by the system property
+     * treap.stats.
+     */
+    public static final boolean ENABLED = Boolean.getBoolean("treap.stats");
+
+    private static final int BUCKETS = 64;
+
+    /**
+     * The operations for which depth and duration are recorded.
+     */
+    public enum Operation {
+
+        ADD, REMOVE, CONTAINS, LOWER, HIGHER, FLOOR, CEILING
+    }
+
+    private final long operations;
+    private final long comparisons;
+    private final long rotations;
+    private final long[] depthHistogram;
+    private final long[] rotationHistogram;
+    private final int height;
+    private final double averageDepth;
+
+    TreapStats(Recorder recorder, int height, double averageDepth) {
+        if (recorder == null) {
+            this.operations = 0;
+            this.comparisons = 0;
+            this.rotations = 0;
+            this.depthHistogram = new long[BUCKETS];
+            this.rotationHistogram = new long[BUCKETS];
+        } else {
+            this.operations = recorder.operations;
+            this.comparisons = recorder.comparisons.sum();
+            this.rotations = recorder.rotations;
+            this.depthHistogram = recorder.depthHistogram.clone();
+            this.rotationHistogram = recorder.rotationHistogram.clone();
+        }
+
+        this.height = height;
+        this.averageDepth = averageDepth;
+    }
+
+    /**
+     * Returns the number of searches and updates recorded.
+     *
+     * @return
+     */
+    public long getOperations() {
+        return operations;
+    }
+
+    /**
+     * Returns the total number of key comparisons, including those made by
+     * bulk operations.
+     *
+     * @return
+     */
+    public long getComparisons() {
+        return comparisons;
+    }
+
+    /**
+     * Returns the total number of rotations.
+     *
+     * @return
+     */
+    public long getRotations() {
+        return rotations;
+    }
+
+    /**
+     * Returns a histogram of the depths of the recorded operations: element d
+     * is the number of operations that compared the key to d nodes.
+     *
+     * @return
+     */
+    public long[] getDepthHistogram() {
+        return depthHistogram.clone();
+    }
+
+    /**
+     * Returns a histogram of the rotations per update: element r is the number
+     * of additions and removals that performed r rotations.
+     *
+     * @return
+     */
+    public long[] getRotationHistogram() {
+        return rotationHistogram.clone();
+    }
+
+    /**
+     * Returns the height of the treap when these statistics were taken: the
+     * number of nodes on its longest root-to-leaf path.
+     *
+     * @return
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the average number of ancestors of the nodes in the treap when
+     * these statistics were taken, or 0 if it was empty.
+     *
+     * @return
+     */
+    public double getAverageDepth() {
+        return averageDepth;
+    }
+
+    @Override
+    public String toString() {
+        return "TreapStats{operations=" + operations + ", comparisons=" + comparisons + ", rotations=" + rotations
+                + ", height=" + height + ", averageDepth=" + averageDepth
+                + ", depthHistogram=" + Arrays.toString(trim(depthHistogram))
+                + ", rotationHistogram=" + Arrays.toString(trim(rotationHistogram)) + "}";
+    }
+
+    private static long[] trim(long[] histogram) {
+        int length = histogram.length;
+
+        while (length > 0 && histogram[length - 1] == 0) {
+            length--;
+        }
+
+        return Arrays.copyOf(histogram, length);
+    }
+
+    /**
+     * The counters of a single treap. Like the treap itself, it is not
+     * thread-safe, except for the comparison counter: parallel set operations
+     * compare keys on several threads at once. Operations do not nest, so a
+     * single set of start values suffices.
+     */
+    static final class Recorder {
+
+        long operations = 0;
+        final LongAdder comparisons = new LongAdder();
+        long rotations = 0;
+        final long[] depthHistogram = new long[BUCKETS];
+        final long[] rotationHistogram = new long[BUCKETS];
+        private long startComparisons;
+        private long startRotations;
+        private OperationEvent event;
+
+        void begin() {
+            startComparisons = comparisons.sum();
+            startRotations = rotations;
+            event = new OperationEvent();
+            event.begin();
+        }
+
+        void end(Operation operation, int size) {
+            int depth = (int) Math.min(comparisons.sum() - startComparisons, BUCKETS - 1);
+            int updateRotations = (int) Math.min(rotations - startRotations, BUCKETS - 1);
+
+            operations++;
+            depthHistogram[depth]++;
+
+            if (operation == Operation.ADD || operation == Operation.REMOVE) {
+                rotationHistogram[updateRotations]++;
+            }
+
+            event.end();
+
+            if (event.shouldCommit()) {
+                event.operation = operation.name();
+                event.depth = depth;
+                event.rotations = updateRotations;
+                event.size = size;
+                event.commit();
+            }
+
+            event = null;
+        }
+    }
+
+    @Name("treap.Operation")
+    @Label("Treap Operation")
+    @Category("Treap")
+    @Description("A treap operation that took longer than the threshold")
+    @StackTrace(true)
+    @Threshold("1 ms")
+    static final class OperationEvent extends Event {
+
+        @Label("Operation")
+        String operation;
+
+        @Label("Depth")
+        @Description("The number of nodes the key was compared to")
+        int depth;
+
+        @Label("Rotations")
+        int rotations;
+
+        @Label("Size")
+        @Description("The number of elements after the operation")
+        int size;
+    }
+}
@@ -0,0 +1,193 @@
+package treap;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.TreeMap;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class AggregateTreapMapTest {
+
+    private final Random rand = new Random();
+    private final int RANGE = 100;
+    private final int nTestRepetitions = 1000;
+    private AggregateTreapMap<Integer, Integer, Long> map;
+    private TreeMap<Integer, Integer> treeMap;
+
+    public AggregateTreapMapTest() {
+    }
+
+    @Before
+    public void setUp() {
+        map = new AggregateTreapMap<Integer, Integer, Long>(Monoid.longSum());
+        treeMap = new TreeMap<Integer, Integer>();
+
+        for (int i = 0; i < 50; i++) {
+            int key = rand.nextInt(RANGE);
+            int value = rand.nextInt(1000);
+            map.put(key, value);
+            treeMap.put(key, value);
+        }
+    }
+
+    @Test
+    public void testAggregate() {
+        System.out.println("aggregate");
+
+        for (int i = 0; i < nTestRepetitions; i++) {
+            int key = rand.nextInt(RANGE);
+            int value = rand.nextInt(1000);
+
+            switch (rand.nextInt(4)) {
+                case 0:
+                    assertEquals(treeMap.put(key, value), map.put(key, value));
+                    break;
+                case 1:
+                    assertEquals(treeMap.remove(key), map.remove(key));
+                    break;
+                case 2:
+                    assertEquals(treeMap.merge(key, value, (a, b) -> (a + b) % 5 == 0 ? null : a + b),
+                            map.merge(key, value, (a, b) -> (a + b) % 5 == 0 ? null : a + b));
+                    break;
+                default:
+                    assertEquals(treeMap.computeIfPresent(key, (k, v) -> v + 1), map.computeIfPresent(key, (k, v) -> v + 1));
+                    break;
+            }
+
+            assertEquals(sum(treeMap), map.aggregate());
+
+            int a = rand.nextInt(RANGE + 10) - 5;
+            int b = rand.nextInt(RANGE + 10) - 5;
+            int from = Math.min(a, b);
+            int to = Math.max(a, b);
+            boolean fromInclusive = rand.nextBoolean();
+            boolean toInclusive = rand.nextBoolean();
+
+            assertEquals(sum(treeMap.subMap(from, fromInclusive, to, toInclusive)), map.aggregate(from, fromInclusive, to, toInclusive));
+            assertEquals(sum(treeMap.subMap(from, to)), map.aggregate(from, to));
+            assertEquals(sum(treeMap.headMap(to, toInclusive)), map.headAggregate(to, toInclusive));
+            assertEquals(sum(treeMap.tailMap(from, fromInclusive)), map.tailAggregate(from, fromInclusive));
+        }
+    }
+
+    @Test
+    public void testEntrySetValue() {
+        System.out.println("entry setValue and iterator remove");
+
+        Iterator<Map.Entry<Integer, Integer>> it = treeMap.entrySet().iterator();
+        Iterator<Map.Entry<Integer, Integer>> mapIt = map.entrySet().iterator();
+
+        while (it.hasNext()) {
+            Map.Entry<Integer, Integer> entry = it.next();
+            Map.Entry<Integer, Integer> mapEntry = mapIt.next();
+
+            if (rand.nextBoolean()) {
+                it.remove();
+                mapIt.remove();
+            } else {
+                entry.setValue(entry.getKey() * 3);
+                mapEntry.setValue(mapEntry.getKey() * 3);
+            }
+
+            assertEquals(sum(treeMap), map.aggregate());
+        }
+
+        for (int key = 0; key < RANGE; key += 7) {
+            assertEquals(sum(treeMap.headMap(key, true)), map.headAggregate(key, true));
+        }
+    }
+
+    @Test
+    public void testFirstKeyWhere() {
+        System.out.println("firstKeyWhere");
+
+        for (int i = 0; i < 100; i++) {
+            long threshold = rand.nextInt(60000) - 1;
+            Integer expected = null;
+            long total = 0;
+
+            for (Map.Entry<Integer, Integer> entry : treeMap.entrySet()) {
+                total += entry.getValue();
+
+                if (total > threshold) {
+                    expected = entry.getKey();
+                    break;
+                }
+            }
+
+            assertEquals(expected, map.firstKeyWhere(sum -> sum > threshold));
+        }
+
+        assertEquals(treeMap.firstKey(), map.firstKeyWhere(sum -> true));
+        assertNull(map.firstKeyWhere(sum -> false));
+    }
+
+    @Test
+    public void testNonCommutative() {
+        System.out.println("non-commutative monoid");
+
+        AggregateTreapMap<Integer, String, String> concatenation = new AggregateTreapMap<Integer, String, String>(
+                Monoid.<String, String>of("", s -> s, String::concat));
+        StringBuilder expected = new StringBuilder();
+
+        for (int i = 0; i < 26; i++) {
+            concatenation.put((i * 7) % 26, String.valueOf((char) ('a' + (i * 7) % 26)));
+        }
+
+        for (int i = 0; i < 26; i++) {
+            expected.append((char) ('a' + i));
+        }
+
+        assertEquals(expected.toString(), concatenation.aggregate());
+        assertEquals("defgh", concatenation.aggregate(3, 8));
+        assertEquals("abc", concatenation.headAggregate(2, true));
+        assertEquals(Integer.valueOf(4), concatenation.firstKeyWhere(s -> s.length() >= 5));
+    }
+
+    @Test
+    public void testMinMaxCount() {
+        System.out.println("min, max and count");
+
+        AggregateTreapMap<Integer, Integer, Integer> min = new AggregateTreapMap<Integer, Integer, Integer>(Monoid.<Integer>min());
+        AggregateTreapMap<Integer, Integer, Integer> max = new AggregateTreapMap<Integer, Integer, Integer>(Monoid.<Integer>max());
+        AggregateTreapMap<Integer, Integer, Long> count = new AggregateTreapMap<Integer, Integer, Long>(Monoid.<Integer>count());
+
+        min.putAll(treeMap);
+        max.putAll(treeMap);
+        count.putAll(treeMap);
+
+        for (int i = 0; i < 100; i++) {
+            int a = rand.nextInt(RANGE);
+            int b = rand.nextInt(RANGE);
+            NavigableMap<Integer, Integer> range = treeMap.subMap(Math.min(a, b), true, Math.max(a, b), true);
+
+            assertEquals(range.isEmpty() ? null : range.values().stream().min(Integer::compare).get(), min.aggregate(Math.min(a, b), true, Math.max(a, b), true));
+            assertEquals(range.isEmpty() ? null : range.values().stream().max(Integer::compare).get(), max.aggregate(Math.min(a, b), true, Math.max(a, b), true));
+            assertEquals(Long.valueOf(range.size()), count.aggregate(Math.min(a, b), true, Math.max(a, b), true));
+        }
+
+        count.clear();
+        assertEquals(Long.valueOf(0), count.aggregate());
+        assertNull(min.firstKeyWhere(m -> false));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAggregateInvalidRange() {
+        System.out.println("aggregate invalid range");
+
+        map.aggregate(10, 5);
+    }
+
+    private static Long sum(Map<Integer, Integer> m) {
+        long sum = 0;
+
+        for (int value : m.values()) {
+            sum += value;
+        }
+
+        return sum;
+    }
+}
@@ -0,0 +1,54 @@
+package treap;
+
+import java.util.Collection;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ArrayTreapTest extends TreapTestBase<ArrayTreap<Integer>> {
+
+    public ArrayTreapTest() {
+    }
+
+    @Override
+    protected ArrayTreap<Integer> createTreap() {
+        return new ArrayTreap<Integer>();
+    }
+
+    @Override
+    protected ArrayTreap<Integer> createTreap(Collection<Integer> c) {
+        return new ArrayTreap<Integer>(c);
+    }
+
+    @Test
+    public void testCompact() {
+        System.out.println("compact");
+
+        for (int i = 0; i < nTestRepetitions; i++) {
+            int val = rand.nextInt(RANGE);
+
+            if (rand.nextBoolean()) {
+                set.add(val);
+                treap.add(val);
+            } else {
+                set.remove(val);
+                treap.remove(val);
+            }
+        }
+
+        treap.compact();
+        checkOrder(treap, set);
+
+        // The treap is still fully functional after compaction
+        for (int i = 0; i < nTestRepetitions; i++) {
+            int val = rand.nextInt(RANGE);
+
+            if (rand.nextBoolean()) {
+                assertEquals(set.add(val), treap.add(val));
+            } else {
+                assertEquals(set.remove(val), treap.remove(val));
+            }
+        }
+
+        checkOrder(treap, set);
+    }
+}
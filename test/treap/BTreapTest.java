@@ -0,0 +1,129 @@
+package treap;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeSet;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class BTreapTest extends TreapTestBase<BTreap<Integer>> {
+
+    // Small blocks, so that the tests split and merge plenty of them
+    private static final int BLOCK_SIZE = 4;
+
+    public BTreapTest() {
+    }
+
+    @Override
+    protected BTreap<Integer> createTreap() {
+        return new BTreap<Integer>(null, BLOCK_SIZE);
+    }
+
+    @Override
+    protected BTreap<Integer> createTreap(Collection<Integer> c) {
+        BTreap<Integer> result = new BTreap<Integer>(null, BLOCK_SIZE);
+        result.addAll(c);
+        return result;
+    }
+
+    @Test
+    public void testIteratorRemove() {
+        System.out.println("iterator remove");
+
+        List<Integer> expected = new ArrayList<Integer>();
+
+        for (Iterator<Integer> it = treap.iterator(); it.hasNext();) {
+            Integer element = it.next();
+
+            if (rand.nextBoolean()) {
+                it.remove();
+                set.remove(element);
+            } else {
+                expected.add(element);
+            }
+        }
+
+        assertEquals(expected, new ArrayList<Integer>(treap));
+        checkOrder(treap, set);
+
+        // Removals merge and rebalance blocks, which must not disturb a range iterator
+        for (Iterator<Integer> it = treap.headSet(RANGE / 2, true).descendingIterator(); it.hasNext();) {
+            Integer element = it.next();
+
+            if (rand.nextBoolean()) {
+                it.remove();
+                set.remove(element);
+            }
+        }
+
+        checkOrder(treap, set);
+    }
+
+    @Test
+    public void testSplitAndMerge() {
+        System.out.println("split and merge");
+
+        for (int blockSize : new int[]{4, 7, 32}) {
+            BTreap<Integer> blocks = new BTreap<Integer>(null, blockSize);
+            TreeSet<Integer> expected = new TreeSet<Integer>();
+
+            // Grow the set, then shrink it again, so that blocks fill up and empty out
+            for (int round = 0; round < 2; round++) {
+                for (int i = 0; i < 20000; i++) {
+                    int val = rand.nextInt(5000);
+                    assertEquals(expected.add(val), blocks.add(val));
+                }
+
+                for (int i = 0; i < 20000; i++) {
+                    int val = rand.nextInt(5000);
+                    assertEquals(expected.remove(val), blocks.remove(val));
+                }
+
+                assertEquals(expected.size(), blocks.size());
+                assertEquals(new ArrayList<Integer>(expected), new ArrayList<Integer>(blocks));
+            }
+
+            while (!expected.isEmpty()) {
+                assertEquals(expected.pollFirst(), blocks.pollFirst());
+                assertEquals(expected.pollLast(), blocks.pollLast());
+            }
+
+            assertTrue(blocks.isEmpty());
+            assertNull(blocks.pollFirst());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBlockSize() {
+        System.out.println("block size");
+        new BTreap<Integer>(null, 3);
+    }
+
+    @Test
+    public void testLargeTreap() {
+        System.out.println("large treap");
+
+        BTreap<Integer> large = new BTreap<Integer>();
+
+        for (int i = 0; i < 100000; i++) {
+            large.add(i);
+        }
+
+        for (int i = 0; i < 100000; i += 2) {
+            assertTrue(large.remove(i));
+        }
+
+        assertEquals(50000, large.size());
+        assertEquals(Integer.valueOf(1), large.first());
+        assertEquals(Integer.valueOf(99999), large.last());
+
+        int expected = 1;
+
+        for (Integer element : large) {
+            assertEquals(expected, element.intValue());
+            expected += 2;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package treap;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class CompactTreapTest extends TreapTestBase<CompactTreap<Integer>> {
+
+    public CompactTreapTest() {
+    }
+
+    @Override
+    protected CompactTreap<Integer> createTreap() {
+        return new CompactTreap<Integer>();
+    }
+
+    @Override
+    protected CompactTreap<Integer> createTreap(Collection<Integer> c) {
+        return new CompactTreap<Integer>(c);
+    }
+
+    @Test
+    public void testIteratorRemove() {
+        System.out.println("iterator remove");
+
+        List<Integer> expected = new ArrayList<Integer>();
+
+        for (Iterator<Integer> it = treap.iterator(); it.hasNext();) {
+            Integer element = it.next();
+
+            if (rand.nextBoolean()) {
+                it.remove();
+                set.remove(element);
+            } else {
+                expected.add(element);
+            }
+        }
+
+        assertEquals(expected, new ArrayList<Integer>(treap));
+        checkOrder(treap, set);
+
+        // Removing through a descending range view rebuilds the path in the other direction
+        for (Iterator<Integer> it = treap.headSet(RANGE / 2, true).descendingIterator(); it.hasNext();) {
+            Integer element = it.next();
+
+            if (rand.nextBoolean()) {
+                it.remove();
+                set.remove(element);
+            }
+        }
+
+        checkOrder(treap, set);
+    }
+
+    @Test
+    public void testLargeTreap() {
+        System.out.println("large treap");
+
+        CompactTreap<Integer> large = new CompactTreap<Integer>();
+
+        for (int i = 0; i < 100000; i++) {
+            large.add(i);
+        }
+
+        for (int i = 0; i < 100000; i += 2) {
+            assertTrue(large.remove(i));
+        }
+
+        assertEquals(50000, large.size());
+        assertEquals(Integer.valueOf(1), large.first());
+        assertEquals(Integer.valueOf(99999), large.last());
+
+        int expected = 1;
+
+        for (Integer element : large) {
+            assertEquals(expected, element.intValue());
+            expected += 2;
+        }
+    }
+}
@@ -0,0 +1,381 @@
+package treap;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ConcurrentTreapTest extends TreapTestBase<ConcurrentTreap<Integer>> {
+
+    public ConcurrentTreapTest() {
+    }
+
+    @Override
+    protected ConcurrentTreap<Integer> createTreap() {
+        return new ConcurrentTreap<Integer>();
+    }
+
+    @Override
+    protected ConcurrentTreap<Integer> createTreap(Collection<Integer> c) {
+        return new ConcurrentTreap<Integer>(c);
+    }
+
+    @Test
+    public void testIteratorWeaklyConsistent() {
+        System.out.println("iteratorWeaklyConsistent");
+
+        treap.clear();
+
+        for (int i = 0; i < 1000; i++) {
+            treap.add(2 * i);
+        }
+
+        // Modifying the treap during iteration must not throw, elements must
+        // be returned in order, and elements added behind the iterator must
+        // not be returned
+        int previous = -1;
+
+        for (Iterator<Integer> it = treap.iterator(); it.hasNext();) {
+            int val = it.next();
+            assertTrue(val > previous);
+            assertTrue(val % 2 == 0);
+            previous = val;
+
+            treap.remove(val + 2);
+            treap.add(val - 1);
+        }
+
+    }
+
+    @Test
+    public void testConcurrentUpdates() throws InterruptedException {
+        System.out.println("concurrentUpdates");
+
+        final int nThreads = 4;
+        final int perThread = 20000;
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        List<Thread> threads = new ArrayList<Thread>();
+
+        treap.clear();
+        set.clear();
+
+        // Each writer owns the keys congruent to its index, adds them all and
+        // removes the odd multiples again, while readers query the treap
+        for (int t = 0; t < nThreads; t++) {
+            final int offset = t;
+
+            threads.add(new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < perThread; i++) {
+                            assertTrue(treap.add(i * nThreads + offset));
+                        }
+
+                        for (int i = 1; i < perThread; i += 2) {
+                            assertTrue(treap.remove(i * nThreads + offset));
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            });
+
+            threads.add(new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < perThread; i++) {
+                            Integer ceiling = treap.ceiling(i);
+
+                            if (ceiling != null) {
+                                assertTrue(ceiling >= i);
+                            }
+
+                            Integer previous = null;
+                            Iterator<Integer> it = treap.tailSet(i, true).iterator();
+
+                            for (int j = 0; j < 3 && it.hasNext(); j++) {
+                                Integer val = it.next();
+                                assertTrue(val >= i);
+                                assertTrue(previous == null || previous < val);
+                                previous = val;
+                            }
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            });
+        }
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertNull(failure.get());
+
+        for (int i = 0; i < nThreads * perThread; i++) {
+            set.add(i);
+        }
+
+        for (int t = 0; t < nThreads; t++) {
+            for (int i = 1; i < perThread; i += 2) {
+                set.remove(i * nThreads + t);
+            }
+        }
+
+        checkOrder(treap, set);
+    }
+
+    @Test
+    public void testConcurrentContention() throws InterruptedException {
+        System.out.println("concurrentContention");
+
+        final int nThreads = 4;
+        final int range = 64;
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        List<Thread> threads = new ArrayList<Thread>();
+
+        treap.clear();
+
+        // All writers update the same few keys, so that their split and join
+        // paths overlap all the time
+        for (int t = 0; t < nThreads; t++) {
+            final Random random = new Random(t);
+
+            threads.add(new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < 50000; i++) {
+                            int val = random.nextInt(range);
+
+                            switch (random.nextInt(4)) {
+                                case 0:
+                                    treap.add(val);
+                                    break;
+                                case 1:
+                                    treap.remove(val);
+                                    break;
+                                case 2:
+                                    Integer first = treap.pollFirst();
+                                    assertTrue(first == null || (first >= 0 && first < range));
+                                    break;
+                                default:
+                                    Integer floor = treap.floor(val);
+                                    assertTrue(floor == null || floor <= val);
+                            }
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            });
+        }
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertNull(failure.get());
+
+        // Whatever the outcome, the treap must be consistent
+        set.clear();
+        set.addAll(new ArrayList<Integer>(treap));
+        assertEquals(set.size(), treap.size());
+
+        for (int val = 0; val < range; val++) {
+            assertEquals(set.contains(val), treap.contains(val));
+        }
+
+        checkOrder(treap, set);
+    }
+
+    @Test
+    public void testIterateDuringUpdates() throws InterruptedException {
+        System.out.println("iterateDuringUpdates");
+
+        final int range = 100000;
+        final int nWriters = 4;
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final AtomicBoolean done = new AtomicBoolean(false);
+        List<Thread> writers = new ArrayList<Thread>();
+
+        treap.clear();
+
+        for (int i = 0; i < range; i += 2) {
+            treap.add(i);
+        }
+
+        for (int t = 0; t < nWriters; t++) {
+            final Random random = new Random(t);
+
+            writers.add(new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < 200000; i++) {
+                            int val = random.nextInt(range);
+
+                            if (random.nextBoolean()) {
+                                treap.add(val);
+                            } else {
+                                treap.remove(val);
+                            }
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            });
+        }
+
+        // Every key the reader sees must come strictly after the previous one
+        Thread reader = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Random random = new Random();
+
+                    while (!done.get()) {
+                        checkAscending(treap);
+
+                        int from = random.nextInt(range);
+                        int to = from + random.nextInt(range - from);
+                        checkAscending(treap.subSet(from, true, to, false));
+                        checkAscending(treap.headSet(to, true).descendingSet());
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            }
+
+            private void checkAscending(NavigableSet<Integer> view) {
+                boolean descending = (view.comparator() != null);
+                Integer previous = null;
+
+                for (Integer val : view) {
+                    if (previous != null) {
+                        assertTrue(previous + " then " + val, descending ? val < previous : val > previous);
+                    }
+
+                    previous = val;
+                }
+            }
+        };
+
+        reader.start();
+
+        for (Thread writer : writers) {
+            writer.start();
+        }
+
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        done.set(true);
+        reader.join();
+
+        assertNull(failure.get());
+    }
+
+    @Test
+    public void testConcurrentPoll() throws InterruptedException {
+        System.out.println("concurrentPoll");
+
+        final int n = 100000;
+        final ConcurrentHashMap<Integer, Boolean> polled = new ConcurrentHashMap<Integer, Boolean>();
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        List<Thread> threads = new ArrayList<Thread>();
+
+        treap.clear();
+
+        for (int i = 0; i < n; i++) {
+            treap.add(i);
+        }
+
+        // Every element must be polled exactly once, from either end
+        for (int t = 0; t < 4; t++) {
+            final boolean fromStart = (t % 2 == 0);
+
+            threads.add(new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        Integer val;
+
+                        while ((val = (fromStart ? treap.pollFirst() : treap.pollLast())) != null) {
+                            assertNull(polled.put(val, Boolean.TRUE));
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            });
+        }
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertNull(failure.get());
+        assertEquals(n, polled.size());
+        assertTrue(treap.isEmpty());
+        assertEquals(0, treap.size());
+    }
+
+    @Test
+    public void testConcurrentClear() throws InterruptedException {
+        System.out.println("concurrentClear");
+
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+        treap.clear();
+
+        Thread writer = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    for (int i = 0; i < 100000; i++) {
+                        treap.add(i);
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            }
+        };
+
+        writer.start();
+
+        while (writer.isAlive()) {
+            treap.clear();
+        }
+
+        writer.join();
+        assertNull(failure.get());
+
+        // Elements added during a clear either survive it or are counted as removed
+        assertEquals(new ArrayList<Integer>(treap).size(), treap.size());
+    }
+}
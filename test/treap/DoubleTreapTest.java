@@ -0,0 +1,187 @@
+package treap;
+
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.TreeSet;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class DoubleTreapTest {
+
+    private static final Random rand = new Random();
+    private DoubleTreap treap;
+    private TreeSet<Double> set;
+    private final int RANGE = 100;
+    private final int nTestRepetitions = 2 * RANGE;
+
+    public DoubleTreapTest() {
+    }
+
+    @Before
+    public void setUp() {
+        treap = new DoubleTreap();
+        set = new TreeSet<Double>();
+
+        int n = 100;
+
+        for (int i = 0; i < n; i++) {
+            double val = rand.nextInt(RANGE);
+
+            treap.add(val);
+            set.add(val);
+        }
+    }
+
+    @Test
+    public void testAdd() {
+        System.out.println("add");
+
+        for (int i = 0; i < nTestRepetitions; i++) {
+            double val = rand.nextInt(RANGE);
+
+            assertEquals(set.add(val), treap.add(val));
+            checkEquality(treap, set);
+        }
+    }
+
+    @Test
+    public void testContains() {
+        System.out.println("contains");
+
+        for (int i = 0; i < nTestRepetitions; i++) {
+            double val = rand.nextInt(RANGE);
+
+            assertEquals(set.contains(val), treap.contains(val));
+        }
+    }
+
+    @Test
+    public void testRemove() {
+        System.out.println("remove");
+
+        for (int i = 0; i < nTestRepetitions; i++) {
+            double val = rand.nextInt(RANGE);
+
+            assertEquals(set.remove(val), treap.remove(val));
+            checkEquality(treap, set);
+        }
+    }
+
+    @Test
+    public void testClear() {
+        System.out.println("clear");
+
+        treap.clear();
+        set.clear();
+        checkEquality(treap, set);
+    }
+
+    @Test
+    public void testIterator() {
+        System.out.println("iterator");
+
+        PrimitiveIterator.OfDouble it = treap.iterator();
+
+        for (Double expected : set) {
+            assertTrue(it.hasNext());
+            assertEquals(expected.doubleValue(), it.nextDouble());
+
+            if (rand.nextBoolean()) {
+                it.remove();
+                assertFalse(treap.contains(expected));
+            }
+        }
+
+        assertFalse(it.hasNext());
+    }
+
+    @Test
+    public void testNavigation() {
+        System.out.println("lower, floor, ceiling, higher");
+
+        for (double val = -1; val <= RANGE; val++) {
+            checkQuery(set.lower(val), treap, 0, val);
+            checkQuery(set.floor(val), treap, 1, val);
+            checkQuery(set.ceiling(val), treap, 2, val);
+            checkQuery(set.higher(val), treap, 3, val);
+        }
+    }
+
+    @Test
+    public void testFirstAndLast() {
+        System.out.println("first, last, pollFirst, pollLast");
+
+        while (!set.isEmpty()) {
+            assertEquals(set.first().doubleValue(), treap.first());
+            assertEquals(set.last().doubleValue(), treap.last());
+
+            if (rand.nextBoolean()) {
+                assertEquals(set.pollFirst().doubleValue(), treap.pollFirst());
+            } else {
+                assertEquals(set.pollLast().doubleValue(), treap.pollLast());
+            }
+
+            checkEquality(treap, set);
+        }
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void testPollFirstEmpty() {
+        System.out.println("pollFirst on empty treap");
+
+        new DoubleTreap().pollFirst();
+    }
+
+    @Test
+    public void testNaN() {
+        System.out.println("NaN");
+
+        assertFalse(treap.contains(Double.NaN));
+        assertFalse(treap.remove(Double.NaN));
+
+        try {
+            treap.add(Double.NaN);
+            fail("NaN was added.");
+        } catch (IllegalArgumentException ex) {
+        }
+
+        checkEquality(treap, set);
+    }
+
+    private void checkQuery(Double expected, DoubleTreap treap, int query, double val) {
+        try {
+            double result;
+
+            switch (query) {
+                case 0:
+                    result = treap.lower(val);
+                    break;
+                case 1:
+                    result = treap.floor(val);
+                    break;
+                case 2:
+                    result = treap.ceiling(val);
+                    break;
+                default:
+                    result = treap.higher(val);
+                    break;
+            }
+
+            assertNotNull(expected);
+            assertEquals(expected.doubleValue(), result);
+        } catch (NoSuchElementException ex) {
+            assertNull(expected);
+        }
+    }
+
+    private void checkEquality(DoubleTreap treap, TreeSet<Double> set) {
+        assertEquals(set.size(), treap.size());
+        assertEquals(set.isEmpty(), treap.isEmpty());
+
+        for (Double val : set) {
+            assertTrue(treap.contains(val));
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package treap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.Random;
+import java.util.TreeSet;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class FrozenTreapTest {
+
+    private final Random rand = new Random();
+    private final int RANGE = 100;
+    private final int nTestRepetitions = 2 * RANGE;
+    private TreeSet<Integer> set;
+    private FrozenTreap<Integer> frozen;
+
+    public FrozenTreapTest() {
+    }
+
+    @Before
+    public void setUp() {
+        Treap<Integer> treap = new Treap<Integer>();
+
+        for (int i = 0; i < 100; i++) {
+            treap.add(rand.nextInt(RANGE));
+        }
+
+        set = new TreeSet<Integer>(treap);
+        frozen = treap.freeze();
+    }
+
+    @Test
+    public void testNavigation() {
+        System.out.println("navigation");
+
+        assertEquals(set.size(), frozen.size());
+        assertEquals(set.first(), frozen.first());
+        assertEquals(set.last(), frozen.last());
+        assertEquals(new ArrayList<Integer>(set), new ArrayList<Integer>(frozen));
+        assertEquals(set, frozen);
+
+        for (int val = -1; val <= RANGE; val++) {
+            assertEquals(set.contains(val), frozen.contains(val));
+            assertEquals(set.lower(val), frozen.lower(val));
+            assertEquals(set.higher(val), frozen.higher(val));
+            assertEquals(set.floor(val), frozen.floor(val));
+            assertEquals(set.ceiling(val), frozen.ceiling(val));
+            assertEquals(set.headSet(val).size(), frozen.countLessThan(val));
+            assertEquals(new ArrayList<Integer>(set).indexOf(val), frozen.indexOf(val));
+        }
+    }
+
+    @Test
+    public void testGet() {
+        System.out.println("get");
+
+        int i = 0;
+
+        for (Integer element : set) {
+            assertEquals(element, frozen.get(i));
+            i++;
+        }
+    }
+
+    @Test
+    public void testViews() {
+        System.out.println("views");
+
+        assertEquals(new ArrayList<Integer>(set.descendingSet()), new ArrayList<Integer>(frozen.descendingSet()));
+
+        for (int i = 0; i < nTestRepetitions; i++) {
+            int from = rand.nextInt(RANGE);
+            int to = from + rand.nextInt(RANGE / 4);
+            boolean fromInclusive = rand.nextBoolean();
+            boolean toInclusive = rand.nextBoolean();
+
+            NavigableSet<Integer> expected = set.subSet(from, fromInclusive, to, toInclusive);
+            NavigableSet<Integer> result = frozen.subSet(from, fromInclusive, to, toInclusive);
+
+            assertEquals(new ArrayList<Integer>(expected), new ArrayList<Integer>(result));
+            assertEquals(new ArrayList<Integer>(expected.descendingSet()), new ArrayList<Integer>(result.descendingSet()));
+            assertEquals(expected.size(), result.size());
+        }
+
+        assertEquals(new ArrayList<Integer>(set.headSet(RANGE / 2)), new ArrayList<Integer>(frozen.headSet(RANGE / 2)));
+        assertEquals(new ArrayList<Integer>(set.tailSet(RANGE / 2)), new ArrayList<Integer>(frozen.tailSet(RANGE / 2)));
+    }
+
+    @Test
+    public void testSizes() {
+        System.out.println("sizes");
+
+        // Check trees that are full, one short of full and one past full
+        for (int n = 0; n <= 70; n++) {
+            Treap<Integer> treap = new Treap<Integer>(Collections.<Integer>reverseOrder());
+
+            for (int i = 0; i < n; i++) {
+                treap.add(2 * i);
+            }
+
+            FrozenTreap<Integer> result = treap.freeze();
+            assertEquals(new ArrayList<Integer>(treap), new ArrayList<Integer>(result));
+
+            for (int val = -1; val <= 2 * n; val++) {
+                assertEquals(treap.contains(val), result.contains(val));
+                assertEquals(treap.lower(val), result.lower(val));
+                assertEquals(treap.higher(val), result.higher(val));
+                assertEquals(treap.floor(val), result.floor(val));
+                assertEquals(treap.ceiling(val), result.ceiling(val));
+            }
+        }
+    }
+
+    @Test
+    public void testIndependentOfTreap() {
+        System.out.println("independent of treap");
+
+        Treap<Integer> treap = new Treap<Integer>(set);
+        FrozenTreap<Integer> copy = treap.freeze();
+
+        treap.add(RANGE);
+        treap.remove(set.first());
+
+        assertEquals(set, copy);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testAdd() {
+        System.out.println("add");
+
+        frozen.add(RANGE);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testIteratorRemove() {
+        System.out.println("iterator remove");
+
+        Iterator<Integer> it = frozen.iterator();
+        it.next();
+        it.remove();
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testSubSetClear() {
+        System.out.println("subSet clear");
+
+        frozen.subSet(set.first(), true, set.last(), true).clear();
+    }
+}
@@ -0,0 +1,171 @@
+package treap;
+
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.TreeSet;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class IntTreapTest {
+
+    private static final Random rand = new Random();
+    private IntTreap treap;
+    private TreeSet<Integer> set;
+    private final int RANGE = 100;
+    private final int nTestRepetitions = 2 * RANGE;
+
+    public IntTreapTest() {
+    }
+
+    @Before
+    public void setUp() {
+        treap = new IntTreap();
+        set = new TreeSet<Integer>();
+
+        int n = 100;
+
+        for (int i = 0; i < n; i++) {
+            int val = rand.nextInt(RANGE);
+
+            treap.add(val);
+            set.add(val);
+        }
+    }
+
+    @Test
+    public void testAdd() {
+        System.out.println("add");
+
+        for (int i = 0; i < nTestRepetitions; i++) {
+            int val = rand.nextInt(RANGE);
+
+            assertEquals(set.add(val), treap.add(val));
+            checkEquality(treap, set);
+        }
+    }
+
+    @Test
+    public void testContains() {
+        System.out.println("contains");
+
+        for (int i = 0; i < nTestRepetitions; i++) {
+            int val = rand.nextInt(RANGE);
+
+            assertEquals(set.contains(val), treap.contains(val));
+        }
+    }
+
+    @Test
+    public void testRemove() {
+        System.out.println("remove");
+
+        for (int i = 0; i < nTestRepetitions; i++) {
+            int val = rand.nextInt(RANGE);
+
+            assertEquals(set.remove(val), treap.remove(val));
+            checkEquality(treap, set);
+        }
+    }
+
+    @Test
+    public void testClear() {
+        System.out.println("clear");
+
+        treap.clear();
+        set.clear();
+        checkEquality(treap, set);
+    }
+
+    @Test
+    public void testIterator() {
+        System.out.println("iterator");
+
+        PrimitiveIterator.OfInt it = treap.iterator();
+
+        for (Integer expected : set) {
+            assertTrue(it.hasNext());
+            assertEquals(expected.intValue(), it.nextInt());
+
+            if (rand.nextBoolean()) {
+                it.remove();
+                assertFalse(treap.contains(expected));
+            }
+        }
+
+        assertFalse(it.hasNext());
+    }
+
+    @Test
+    public void testNavigation() {
+        System.out.println("lower, floor, ceiling, higher");
+
+        for (int val = -1; val <= RANGE; val++) {
+            checkQuery(set.lower(val), treap, 0, val);
+            checkQuery(set.floor(val), treap, 1, val);
+            checkQuery(set.ceiling(val), treap, 2, val);
+            checkQuery(set.higher(val), treap, 3, val);
+        }
+    }
+
+    @Test
+    public void testFirstAndLast() {
+        System.out.println("first, last, pollFirst, pollLast");
+
+        while (!set.isEmpty()) {
+            assertEquals(set.first().intValue(), treap.first());
+            assertEquals(set.last().intValue(), treap.last());
+
+            if (rand.nextBoolean()) {
+                assertEquals(set.pollFirst().intValue(), treap.pollFirst());
+            } else {
+                assertEquals(set.pollLast().intValue(), treap.pollLast());
+            }
+
+            checkEquality(treap, set);
+        }
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void testPollFirstEmpty() {
+        System.out.println("pollFirst on empty treap");
+
+        new IntTreap().pollFirst();
+    }
+
+    private void checkQuery(Integer expected, IntTreap treap, int query, int val) {
+        try {
+            int result;
+
+            switch (query) {
+                case 0:
+                    result = treap.lower(val);
+                    break;
+                case 1:
+                    result = treap.floor(val);
+                    break;
+                case 2:
+                    result = treap.ceiling(val);
+                    break;
+                default:
+                    result = treap.higher(val);
+                    break;
+            }
+
+            assertNotNull(expected);
+            assertEquals(expected.intValue(), result);
+        } catch (NoSuchElementException ex) {
+            assertNull(expected);
+        }
+    }
+
+    private void checkEquality(IntTreap treap, TreeSet<Integer> set) {
+        assertEquals(set.size(), treap.size());
+        assertEquals(set.isEmpty(), treap.isEmpty());
+
+        for (Integer val : set) {
+            assertTrue(treap.contains(val));
+        }
+    }
+}
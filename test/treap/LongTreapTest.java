@@ -0,0 +1,228 @@
+package treap;
+
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.TreeSet;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class LongTreapTest {
+
+    private static final Random rand = new Random();
+    private LongTreap treap;
+    private TreeSet<Long> set;
+    private final int RANGE = 100;
+    private final int nTestRepetitions = 2 * RANGE;
+
+    public LongTreapTest() {
+    }
+
+    @Before
+    public void setUp() {
+        treap = new LongTreap();
+        set = new TreeSet<Long>();
+
+        int n = 100;
+
+        for (int i = 0; i < n; i++) {
+            long val = rand.nextInt(RANGE);
+
+            treap.add(val);
+            set.add(val);
+        }
+    }
+
+    @Test
+    public void testAdd() {
+        System.out.println("add");
+
+        for (int i = 0; i < nTestRepetitions; i++) {
+            long val = rand.nextInt(RANGE);
+
+            assertEquals(set.add(val), treap.add(val));
+            checkEquality(treap, set);
+        }
+    }
+
+    @Test
+    public void testContains() {
+        System.out.println("contains");
+
+        for (int i = 0; i < nTestRepetitions; i++) {
+            long val = rand.nextInt(RANGE);
+
+            assertEquals(set.contains(val), treap.contains(val));
+        }
+    }
+
+    @Test
+    public void testRemove() {
+        System.out.println("remove");
+
+        for (int i = 0; i < nTestRepetitions; i++) {
+            long val = rand.nextInt(RANGE);
+
+            assertEquals(set.remove(val), treap.remove(val));
+            checkEquality(treap, set);
+        }
+    }
+
+    @Test
+    public void testClear() {
+        System.out.println("clear");
+
+        treap.clear();
+        set.clear();
+        checkEquality(treap, set);
+    }
+
+    @Test
+    public void testIterator() {
+        System.out.println("iterator");
+
+        PrimitiveIterator.OfLong it = treap.iterator();
+
+        for (Long expected : set) {
+            assertTrue(it.hasNext());
+            assertEquals(expected.longValue(), it.nextLong());
+
+            if (rand.nextBoolean()) {
+                it.remove();
+                assertFalse(treap.contains(expected));
+            }
+        }
+
+        assertFalse(it.hasNext());
+    }
+
+    @Test
+    public void testNavigation() {
+        System.out.println("lower, floor, ceiling, higher");
+
+        for (long val = -1; val <= RANGE; val++) {
+            checkQuery(set.lower(val), treap, 0, val);
+            checkQuery(set.floor(val), treap, 1, val);
+            checkQuery(set.ceiling(val), treap, 2, val);
+            checkQuery(set.higher(val), treap, 3, val);
+        }
+    }
+
+    @Test
+    public void testFirstAndLast() {
+        System.out.println("first, last, pollFirst, pollLast");
+
+        while (!set.isEmpty()) {
+            assertEquals(set.first().longValue(), treap.first());
+            assertEquals(set.last().longValue(), treap.last());
+
+            if (rand.nextBoolean()) {
+                assertEquals(set.pollFirst().longValue(), treap.pollFirst());
+            } else {
+                assertEquals(set.pollLast().longValue(), treap.pollLast());
+            }
+
+            checkEquality(treap, set);
+        }
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void testPollFirstEmpty() {
+        System.out.println("pollFirst on empty treap");
+
+        new LongTreap().pollFirst();
+    }
+
+    @Test
+    public void testFreeze() {
+        System.out.println("freeze");
+
+        FrozenLongTreap frozen = treap.freeze();
+        treap.add(RANGE);
+
+        assertEquals(set.size(), frozen.size());
+        assertEquals(set.first().longValue(), frozen.first());
+        assertEquals(set.last().longValue(), frozen.last());
+
+        PrimitiveIterator.OfLong it = frozen.iterator();
+        int index = 0;
+
+        for (Long val : set) {
+            assertEquals(val.longValue(), it.nextLong());
+            assertEquals(val.longValue(), frozen.get(index));
+            index++;
+        }
+
+        assertFalse(it.hasNext());
+
+        for (long val = -1; val <= RANGE; val++) {
+            assertEquals(set.contains(val), frozen.contains(val));
+            assertEquals(set.headSet(val).size(), frozen.countLessThan(val));
+            checkFrozenQuery(set.lower(val), frozen, 0, val);
+            checkFrozenQuery(set.floor(val), frozen, 1, val);
+            checkFrozenQuery(set.ceiling(val), frozen, 2, val);
+            checkFrozenQuery(set.higher(val), frozen, 3, val);
+        }
+    }
+
+    private void checkFrozenQuery(Long expected, FrozenLongTreap frozen, int query, long val) {
+        try {
+            long result;
+
+            switch (query) {
+                case 0:
+                    result = frozen.lower(val);
+                    break;
+                case 1:
+                    result = frozen.floor(val);
+                    break;
+                case 2:
+                    result = frozen.ceiling(val);
+                    break;
+                default:
+                    result = frozen.higher(val);
+                    break;
+            }
+
+            assertEquals(expected.longValue(), result);
+        } catch (NoSuchElementException e) {
+            assertNull(expected);
+        }
+    }
+
+    private void checkQuery(Long expected, LongTreap treap, int query, long val) {
+        try {
+            long result;
+
+            switch (query) {
+                case 0:
+                    result = treap.lower(val);
+                    break;
+                case 1:
+                    result = treap.floor(val);
+                    break;
+                case 2:
+                    result = treap.ceiling(val);
+                    break;
+                default:
+                    result = treap.higher(val);
+                    break;
+            }
+
+            assertNotNull(expected);
+            assertEquals(expected.longValue(), result);
+        } catch (NoSuchElementException ex) {
+            assertNull(expected);
+        }
+    }
+
+    private void checkEquality(LongTreap treap, TreeSet<Long> set) {
+        assertEquals(set.size(), treap.size());
+        assertEquals(set.isEmpty(), treap.isEmpty());
+
+        for (Long val : set) {
+            assertTrue(treap.contains(val));
+        }
+    }
+}
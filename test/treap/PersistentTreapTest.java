@@ -0,0 +1,171 @@
+package treap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeSet;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class PersistentTreapTest {
+
+    private static final Random rand = new Random();
+    private PersistentTreap<Integer> treap;
+    private TreeSet<Integer> set;
+    private final int RANGE = 100;
+    private final int nTestRepetitions = 2 * RANGE;
+
+    public PersistentTreapTest() {
+    }
+
+    @Before
+    public void setUp() {
+        treap = new PersistentTreap<Integer>();
+        set = new TreeSet<Integer>();
+
+        int n = 100;
+
+        for (int i = 0; i < n; i++) {
+            int val = rand.nextInt(RANGE);
+
+            treap = treap.add(val);
+            set.add(val);
+        }
+    }
+
+    @Test
+    public void testAdd() {
+        System.out.println("add");
+
+        for (int i = 0; i < nTestRepetitions; i++) {
+            int val = rand.nextInt(RANGE);
+
+            PersistentTreap<Integer> result = treap.add(val);
+            assertEquals(set.contains(val), result == treap);
+            set.add(val);
+            treap = result;
+            checkEquality(treap, set);
+        }
+    }
+
+    @Test
+    public void testRemove() {
+        System.out.println("remove");
+
+        for (int i = 0; i < nTestRepetitions; i++) {
+            int val = rand.nextInt(RANGE);
+
+            PersistentTreap<Integer> result = treap.remove(val);
+            assertEquals(!set.contains(val), result == treap);
+            set.remove(val);
+            treap = result;
+            checkEquality(treap, set);
+        }
+    }
+
+    @Test
+    public void testVersions() {
+        System.out.println("versions");
+
+        List<PersistentTreap<Integer>> versions = new ArrayList<PersistentTreap<Integer>>();
+        List<TreeSet<Integer>> expected = new ArrayList<TreeSet<Integer>>();
+
+        for (int i = 0; i < nTestRepetitions; i++) {
+            int val = rand.nextInt(RANGE);
+
+            versions.add(treap);
+            expected.add(new TreeSet<Integer>(set));
+
+            if (rand.nextBoolean()) {
+                treap = treap.add(val);
+                set.add(val);
+            } else {
+                treap = treap.remove(val);
+                set.remove(val);
+            }
+        }
+
+        // Older versions are unaffected by later changes
+        for (int i = 0; i < versions.size(); i++) {
+            checkEquality(versions.get(i), expected.get(i));
+        }
+
+        assertTrue(treap.clear().isEmpty());
+        checkEquality(treap, set);
+    }
+
+    @Test
+    public void testComparator() {
+        System.out.println("comparator");
+
+        PersistentTreap<Integer> reversed = new PersistentTreap<Integer>(Collections.<Integer>reverseOrder());
+        TreeSet<Integer> reversedSet = new TreeSet<Integer>(Collections.<Integer>reverseOrder());
+
+        for (int val : set) {
+            reversed = reversed.add(val);
+            reversedSet.add(val);
+        }
+
+        checkEquality(reversed, reversedSet);
+    }
+
+    @Test
+    public void testGet() {
+        System.out.println("get");
+
+        List<Integer> list = new ArrayList<Integer>(set);
+
+        for (int i = 0; i < list.size(); i++) {
+            assertEquals(list.get(i), treap.get(i));
+        }
+    }
+
+    @Test
+    public void testNavigation() {
+        System.out.println("lower, floor, ceiling, higher");
+
+        for (int val = -1; val <= RANGE; val++) {
+            assertEquals(set.lower(val), treap.lower(val));
+            assertEquals(set.floor(val), treap.floor(val));
+            assertEquals(set.ceiling(val), treap.ceiling(val));
+            assertEquals(set.higher(val), treap.higher(val));
+        }
+
+        assertEquals(set.first(), treap.first());
+        assertEquals(set.last(), treap.last());
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void testFirstEmpty() {
+        System.out.println("first on empty treap");
+
+        new PersistentTreap<Integer>().first();
+    }
+
+    @Test
+    public void testToString() {
+        System.out.println("toString");
+
+        assertEquals(set.toString(), treap.toString());
+    }
+
+    private void checkEquality(PersistentTreap<Integer> treap, TreeSet<Integer> set) {
+        assertEquals(set.size(), treap.size());
+        assertEquals(set.isEmpty(), treap.isEmpty());
+
+        List<Integer> elements = new ArrayList<Integer>();
+
+        for (Integer val : treap) {
+            elements.add(val);
+        }
+
+        assertEquals(new ArrayList<Integer>(set), elements);
+
+        for (int val = 0; val < RANGE; val++) {
+            assertEquals(set.contains(val), treap.contains(val));
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package treap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TreapListTest {
+
+    private final Random rand = new Random();
+    private final int nTestRepetitions = 1000;
+    private TreapList<Integer> treapList;
+    private List<Integer> list;
+
+    public TreapListTest() {
+    }
+
+    @Before
+    public void setUp() {
+        treapList = new TreapList<Integer>();
+        list = new ArrayList<Integer>();
+
+        for (int i = 0; i < 100; i++) {
+            int val = rand.nextInt(1000);
+            treapList.add(val);
+            list.add(val);
+        }
+    }
+
+    @Test
+    public void testConstruct() {
+        System.out.println("construct");
+
+        assertEquals(list, new TreapList<Integer>(list));
+        assertEquals(Collections.emptyList(), new TreapList<Integer>(Collections.<Integer>emptyList()));
+    }
+
+    @Test
+    public void testAddAndRemove() {
+        System.out.println("add and remove");
+
+        for (int i = 0; i < nTestRepetitions; i++) {
+            if (rand.nextBoolean() || list.isEmpty()) {
+                int index = rand.nextInt(list.size() + 1);
+                int val = rand.nextInt(1000);
+                list.add(index, val);
+                treapList.add(index, val);
+            } else {
+                int index = rand.nextInt(list.size());
+                assertEquals(list.remove(index), treapList.remove(index));
+            }
+
+            assertEquals(list.size(), treapList.size());
+        }
+
+        assertEquals(list, treapList);
+    }
+
+    @Test
+    public void testGetAndSet() {
+        System.out.println("get and set");
+
+        for (int i = 0; i < nTestRepetitions; i++) {
+            int index = rand.nextInt(list.size());
+            assertEquals(list.get(index), treapList.get(index));
+
+            int val = rand.nextInt(1000);
+            assertEquals(list.set(index, val), treapList.set(index, val));
+        }
+
+        assertEquals(list, treapList);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testGetOutOfBounds() {
+        System.out.println("get out of bounds");
+
+        treapList.get(treapList.size());
+    }
+
+    @Test
+    public void testAddAll() {
+        System.out.println("addAll");
+
+        List<Integer> extra = Arrays.asList(1, 2, 3, 4, 5);
+
+        for (int i = 0; i < 100; i++) {
+            int index = rand.nextInt(list.size() + 1);
+            list.addAll(index, extra);
+            treapList.addAll(index, extra);
+        }
+
+        assertEquals(list, treapList);
+        assertFalse(treapList.addAll(Collections.<Integer>emptyList()));
+    }
+
+    @Test
+    public void testReverse() {
+        System.out.println("reverse");
+
+        for (int i = 0; i < nTestRepetitions; i++) {
+            int from = rand.nextInt(list.size() + 1);
+            int to = from + rand.nextInt(list.size() - from + 1);
+
+            Collections.reverse(list.subList(from, to));
+            treapList.reverse(from, to);
+
+            // Mix in other operations, which have to handle pending reversals
+            int index = rand.nextInt(list.size());
+            assertEquals(list.get(index), treapList.get(index));
+
+            if (rand.nextBoolean()) {
+                list.add(index, i);
+                treapList.add(index, i);
+            } else {
+                assertEquals(list.remove(index), treapList.remove(index));
+                list.add(i);
+                treapList.add(i);
+            }
+        }
+
+        assertEquals(list, treapList);
+    }
+
+    @Test
+    public void testCutAndConcatenate() {
+        System.out.println("cut and concatenate");
+
+        for (int i = 0; i < nTestRepetitions; i++) {
+            int from = rand.nextInt(list.size() + 1);
+            int to = from + rand.nextInt(list.size() - from + 1);
+
+            List<Integer> range = new ArrayList<Integer>(list.subList(from, to));
+            list.subList(from, to).clear();
+            TreapList<Integer> cut = treapList.cut(from, to);
+
+            assertEquals(range, cut);
+            assertEquals(list, treapList);
+
+            // Put the range back at the end
+            list.addAll(range);
+            treapList.concatenate(cut);
+
+            assertTrue(cut.isEmpty());
+            assertEquals(list.size(), treapList.size());
+        }
+
+        assertEquals(list, treapList);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConcatenateSelf() {
+        System.out.println("concatenate self");
+
+        treapList.concatenate(treapList);
+    }
+
+    @Test
+    public void testSubListClear() {
+        System.out.println("subList clear");
+
+        for (int i = 0; i < 10; i++) {
+            int from = rand.nextInt(list.size() + 1);
+            int to = from + rand.nextInt(list.size() - from + 1);
+
+            list.subList(from, to).clear();
+            treapList.subList(from, to).clear();
+
+            assertEquals(list, treapList);
+        }
+    }
+
+    @Test
+    public void testIteratorRemove() {
+        System.out.println("iterator remove");
+
+        treapList.reverse(10, 90);
+        Collections.reverse(list.subList(10, 90));
+
+        Iterator<Integer> it = list.iterator();
+        Iterator<Integer> treapIt = treapList.iterator();
+
+        while (it.hasNext()) {
+            assertTrue(treapIt.hasNext());
+            assertEquals(it.next(), treapIt.next());
+
+            if (rand.nextBoolean()) {
+                it.remove();
+                treapIt.remove();
+            }
+        }
+
+        assertFalse(treapIt.hasNext());
+        assertEquals(list, treapList);
+    }
+
+    @Test(expected = ConcurrentModificationException.class)
+    public void testIteratorConcurrentModification() {
+        System.out.println("iterator concurrent modification");
+
+        Iterator<Integer> it = treapList.iterator();
+        it.next();
+        treapList.add(0, 1);
+        it.next();
+    }
+}
@@ -0,0 +1,296 @@
+package treap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.TreeMap;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TreapMapTest {
+
+    private final Random rand = new Random();
+    private final int RANGE = 100;
+    private final int nTestRepetitions = 1000;
+    private TreapMap<Integer, Integer> map;
+    private TreeMap<Integer, Integer> treeMap;
+
+    public TreapMapTest() {
+    }
+
+    @Before
+    public void setUp() {
+        map = new TreapMap<Integer, Integer>();
+        treeMap = new TreeMap<Integer, Integer>();
+
+        for (int i = 0; i < 50; i++) {
+            int key = rand.nextInt(RANGE);
+            int value = rand.nextInt();
+            map.put(key, value);
+            treeMap.put(key, value);
+        }
+    }
+
+    @Test
+    public void testConstruct() {
+        System.out.println("construct");
+
+        assertEquals(treeMap, new TreapMap<Integer, Integer>(treeMap));
+
+        TreeMap<Integer, Integer> reversed = new TreeMap<Integer, Integer>(Collections.<Integer>reverseOrder());
+        reversed.putAll(treeMap);
+        TreapMap<Integer, Integer> result = new TreapMap<Integer, Integer>(reversed);
+
+        assertEquals(new ArrayList<Integer>(reversed.keySet()), new ArrayList<Integer>(result.keySet()));
+    }
+
+    @Test
+    public void testPutGetRemove() {
+        System.out.println("put, get and remove");
+
+        for (int i = 0; i < nTestRepetitions; i++) {
+            int key = rand.nextInt(RANGE);
+
+            switch (rand.nextInt(3)) {
+                case 0:
+                    int value = rand.nextInt();
+                    assertEquals(treeMap.put(key, value), map.put(key, value));
+                    break;
+                case 1:
+                    assertEquals(treeMap.remove(key), map.remove(key));
+                    break;
+                default:
+                    assertEquals(treeMap.get(key), map.get(key));
+                    assertEquals(treeMap.containsKey(key), map.containsKey(key));
+                    break;
+            }
+
+            assertEquals(treeMap.size(), map.size());
+        }
+
+        checkMap(map, treeMap);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testPutNull() {
+        System.out.println("put null");
+
+        new TreapMap<Integer, Integer>().put(null, 1);
+    }
+
+    @Test
+    public void testCompute() {
+        System.out.println("compute, merge and friends");
+
+        for (int i = 0; i < nTestRepetitions; i++) {
+            int key = rand.nextInt(RANGE);
+            final int value = rand.nextInt(10);
+
+            switch (rand.nextInt(5)) {
+                case 0:
+                    // Remove the mapping if the sum becomes a multiple of 3
+                    assertEquals(treeMap.compute(key, (k, v) -> (v == null ? Integer.valueOf(value) : ((v + value) % 3 == 0 ? null : v + value))),
+                            map.compute(key, (k, v) -> (v == null ? Integer.valueOf(value) : ((v + value) % 3 == 0 ? null : v + value))));
+                    break;
+                case 1:
+                    assertEquals(treeMap.merge(key, value, (a, b) -> (a + b) % 4 == 0 ? null : a + b),
+                            map.merge(key, value, (a, b) -> (a + b) % 4 == 0 ? null : a + b));
+                    break;
+                case 2:
+                    assertEquals(treeMap.computeIfAbsent(key, k -> (value == 0 ? null : value)),
+                            map.computeIfAbsent(key, k -> (value == 0 ? null : value)));
+                    break;
+                case 3:
+                    assertEquals(treeMap.computeIfPresent(key, (k, v) -> (value == 0 ? null : v + value)),
+                            map.computeIfPresent(key, (k, v) -> (value == 0 ? null : v + value)));
+                    break;
+                default:
+                    assertEquals(treeMap.putIfAbsent(key, value), map.putIfAbsent(key, value));
+                    break;
+            }
+        }
+
+        checkMap(map, treeMap);
+    }
+
+    @Test(expected = ConcurrentModificationException.class)
+    public void testComputeConcurrentModification() {
+        System.out.println("compute concurrent modification");
+
+        map.computeIfAbsent(RANGE, k -> map.put(k + 1, 1));
+    }
+
+    @Test
+    public void testNavigation() {
+        System.out.println("navigation");
+
+        for (int i = 0; i < nTestRepetitions; i++) {
+            int key = rand.nextInt(RANGE + 10) - 5;
+
+            assertEquals(treeMap.lowerEntry(key), map.lowerEntry(key));
+            assertEquals(treeMap.floorEntry(key), map.floorEntry(key));
+            assertEquals(treeMap.ceilingEntry(key), map.ceilingEntry(key));
+            assertEquals(treeMap.higherEntry(key), map.higherEntry(key));
+            assertEquals(treeMap.lowerKey(key), map.lowerKey(key));
+            assertEquals(treeMap.floorKey(key), map.floorKey(key));
+            assertEquals(treeMap.ceilingKey(key), map.ceilingKey(key));
+            assertEquals(treeMap.higherKey(key), map.higherKey(key));
+        }
+
+        assertEquals(treeMap.firstEntry(), map.firstEntry());
+        assertEquals(treeMap.lastEntry(), map.lastEntry());
+        assertEquals(treeMap.firstKey(), map.firstKey());
+        assertEquals(treeMap.lastKey(), map.lastKey());
+
+        while (!treeMap.isEmpty()) {
+            if (rand.nextBoolean()) {
+                assertEquals(treeMap.pollFirstEntry(), map.pollFirstEntry());
+            } else {
+                assertEquals(treeMap.pollLastEntry(), map.pollLastEntry());
+            }
+        }
+
+        assertTrue(map.isEmpty());
+        assertNull(map.pollFirstEntry());
+        assertNull(map.firstEntry());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testExportedEntryImmutable() {
+        System.out.println("exported entry immutable");
+
+        map.firstEntry().setValue(0);
+    }
+
+    @Test
+    public void testEntrySetValue() {
+        System.out.println("entry setValue");
+
+        for (Map.Entry<Integer, Integer> entry : map.entrySet()) {
+            entry.setValue(entry.getKey() * 2);
+        }
+
+        for (Map.Entry<Integer, Integer> entry : map.entrySet()) {
+            assertEquals(Integer.valueOf(entry.getKey() * 2), map.get(entry.getKey()));
+        }
+    }
+
+    @Test
+    public void testIteratorRemove() {
+        System.out.println("iterator remove");
+
+        Iterator<Map.Entry<Integer, Integer>> it = treeMap.entrySet().iterator();
+        Iterator<Map.Entry<Integer, Integer>> mapIt = map.entrySet().iterator();
+
+        while (it.hasNext()) {
+            assertTrue(mapIt.hasNext());
+            assertEquals(it.next(), mapIt.next());
+
+            if (rand.nextBoolean()) {
+                it.remove();
+                mapIt.remove();
+            }
+        }
+
+        assertFalse(mapIt.hasNext());
+        checkMap(map, treeMap);
+    }
+
+    @Test
+    public void testViews() {
+        System.out.println("views");
+
+        checkMap(map.descendingMap(), treeMap.descendingMap());
+        assertEquals(new ArrayList<Integer>(treeMap.descendingKeySet()), new ArrayList<Integer>(map.descendingKeySet()));
+
+        for (int i = 0; i < 100; i++) {
+            int a = rand.nextInt(RANGE);
+            int b = rand.nextInt(RANGE);
+            int from = Math.min(a, b);
+            int to = Math.max(a, b);
+            boolean fromInclusive = rand.nextBoolean();
+            boolean toInclusive = rand.nextBoolean();
+
+            checkMap(map.subMap(from, fromInclusive, to, toInclusive), treeMap.subMap(from, fromInclusive, to, toInclusive));
+            checkMap(map.headMap(to, toInclusive), treeMap.headMap(to, toInclusive));
+            checkMap(map.tailMap(from, fromInclusive), treeMap.tailMap(from, fromInclusive));
+            checkMap(map.descendingMap().subMap(to, toInclusive, from, fromInclusive),
+                    treeMap.descendingMap().subMap(to, toInclusive, from, fromInclusive));
+            checkMap(map.tailMap(from, true).headMap(to, false), treeMap.tailMap(from, true).headMap(to, false));
+
+            assertEquals(new ArrayList<Integer>(treeMap.navigableKeySet().subSet(from, fromInclusive, to, toInclusive)),
+                    new ArrayList<Integer>(map.navigableKeySet().subSet(from, fromInclusive, to, toInclusive)));
+        }
+    }
+
+    @Test
+    public void testViewModification() {
+        System.out.println("view modification");
+
+        NavigableMap<Integer, Integer> view = map.subMap(20, true, 60, false);
+        NavigableMap<Integer, Integer> treeView = treeMap.subMap(20, true, 60, false);
+
+        for (int i = 0; i < nTestRepetitions; i++) {
+            int key = 20 + rand.nextInt(40);
+
+            if (rand.nextBoolean()) {
+                assertEquals(treeView.put(key, i), view.put(key, i));
+            } else {
+                assertEquals(treeView.remove(key), view.remove(key));
+            }
+        }
+
+        assertEquals(treeView.pollFirstEntry(), view.pollFirstEntry());
+        assertEquals(treeView.descendingMap().pollFirstEntry(), view.descendingMap().pollFirstEntry());
+        checkMap(map, treeMap);
+
+        view.clear();
+        treeView.clear();
+        checkMap(map, treeMap);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testViewPutOutOfRange() {
+        System.out.println("view put out of range");
+
+        map.headMap(50, false).put(50, 0);
+    }
+
+    @Test
+    public void testKeySet() {
+        System.out.println("keySet");
+
+        for (int i = 0; i < nTestRepetitions; i++) {
+            int key = rand.nextInt(RANGE);
+
+            assertEquals(treeMap.navigableKeySet().ceiling(key), map.navigableKeySet().ceiling(key));
+            assertEquals(treeMap.keySet().remove(key), map.keySet().remove(key));
+        }
+
+        assertEquals(treeMap.navigableKeySet().pollFirst(), map.navigableKeySet().pollFirst());
+        checkMap(map, treeMap);
+    }
+
+    private void checkMap(NavigableMap<Integer, Integer> actual, NavigableMap<Integer, Integer> expected) {
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected.isEmpty(), actual.isEmpty());
+        assertEquals(expected, actual);
+        assertEquals(new ArrayList<Map.Entry<Integer, Integer>>(expected.entrySet()), new ArrayList<Map.Entry<Integer, Integer>>(actual.entrySet()));
+        assertEquals(new ArrayList<Integer>(expected.values()), new ArrayList<Integer>(actual.values()));
+        assertEquals(expected.firstEntry(), actual.firstEntry());
+        assertEquals(expected.lastEntry(), actual.lastEntry());
+
+        for (int key = -1; key <= RANGE; key++) {
+            assertEquals(expected.get(key), actual.get(key));
+            assertEquals(expected.lowerKey(key), actual.lowerKey(key));
+            assertEquals(expected.floorKey(key), actual.floorKey(key));
+            assertEquals(expected.ceilingKey(key), actual.ceilingKey(key));
+            assertEquals(expected.higherKey(key), actual.higherKey(key));
+        }
+    }
+}
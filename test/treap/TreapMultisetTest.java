@@ -0,0 +1,225 @@
+package treap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TreapMultisetTest {
+
+    private final Random rand = new Random();
+    private final int RANGE = 100;
+    private final int nTestRepetitions = 1000;
+    private TreapMultiset<Integer> multiset;
+    private TreeMap<Integer, Integer> counts;
+
+    public TreapMultisetTest() {
+    }
+
+    @Before
+    public void setUp() {
+        multiset = new TreapMultiset<Integer>();
+        counts = new TreeMap<Integer, Integer>();
+
+        for (int i = 0; i < 50; i++) {
+            int key = rand.nextInt(RANGE);
+            int occurrences = 1 + rand.nextInt(5);
+            multiset.add(key, occurrences);
+            counts.merge(key, occurrences, Integer::sum);
+        }
+    }
+
+    @Test
+    public void testAddRemoveCount() {
+        System.out.println("add, remove and count");
+
+        for (int i = 0; i < nTestRepetitions; i++) {
+            int key = rand.nextInt(RANGE);
+            int occurrences = rand.nextInt(5);
+            int count = counts.getOrDefault(key, 0);
+
+            switch (rand.nextInt(4)) {
+                case 0:
+                    assertEquals(count, multiset.add(key, occurrences));
+
+                    if (occurrences > 0) {
+                        counts.put(key, count + occurrences);
+                    }
+                    break;
+                case 1:
+                    assertEquals(count, multiset.remove(key, occurrences));
+
+                    if (occurrences >= count) {
+                        counts.remove(key);
+                    } else {
+                        counts.put(key, count - occurrences);
+                    }
+                    break;
+                case 2:
+                    assertTrue(multiset.add(key));
+                    counts.put(key, count + 1);
+                    break;
+                default:
+                    assertEquals(count > 0, multiset.remove(key));
+
+                    if (count > 1) {
+                        counts.put(key, count - 1);
+                    } else {
+                        counts.remove(key);
+                    }
+                    break;
+            }
+
+            assertEquals(counts.getOrDefault(key, 0).intValue(), multiset.count(key));
+            assertEquals(counts.containsKey(key), multiset.contains(key));
+        }
+
+        checkMultiset();
+    }
+
+    @Test
+    public void testRankSelect() {
+        System.out.println("rank and select");
+
+        List<Integer> expanded = expand();
+
+        for (int i = 0; i < expanded.size(); i++) {
+            assertEquals(expanded.get(i), multiset.get(i));
+        }
+
+        for (int key = -1; key <= RANGE; key++) {
+            assertEquals(expanded.indexOf(key), multiset.indexOf(key));
+
+            int less = 0;
+
+            while (less < expanded.size() && expanded.get(less) < key) {
+                less++;
+            }
+
+            assertEquals(less, multiset.countLessThan(key));
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testGetOutOfBounds() {
+        System.out.println("get out of bounds");
+
+        multiset.get(multiset.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeOccurrences() {
+        System.out.println("negative occurrences");
+
+        multiset.add(1, -1);
+    }
+
+    @Test
+    public void testIteratorRemove() {
+        System.out.println("iterator remove");
+
+        List<Integer> expected = new ArrayList<Integer>();
+
+        for (Iterator<Integer> it = multiset.iterator(); it.hasNext();) {
+            Integer element = it.next();
+
+            if (rand.nextBoolean()) {
+                it.remove();
+                counts.put(element, counts.get(element) - 1);
+            } else {
+                expected.add(element);
+            }
+        }
+
+        counts.values().removeIf(count -> count == 0);
+        assertEquals(expected, new ArrayList<Integer>(multiset));
+        checkMultiset();
+    }
+
+    @Test
+    public void testElementSet() {
+        System.out.println("elementSet");
+
+        assertEquals(new ArrayList<Integer>(counts.keySet()), new ArrayList<Integer>(multiset.elementSet()));
+
+        Integer first = counts.firstKey();
+        assertTrue(multiset.elementSet().remove(first));
+        counts.remove(first);
+
+        for (Iterator<Integer> it = multiset.elementSet().iterator(); it.hasNext();) {
+            Integer element = it.next();
+
+            if (rand.nextBoolean()) {
+                it.remove();
+                counts.remove(element);
+            }
+        }
+
+        checkMultiset();
+    }
+
+    @Test
+    public void testEquals() {
+        System.out.println("equals");
+
+        List<Integer> expanded = expand();
+        Collections.shuffle(expanded, rand);
+        TreapMultiset<Integer> copy = new TreapMultiset<Integer>(expanded);
+
+        assertEquals(multiset, copy);
+        assertEquals(multiset.hashCode(), copy.hashCode());
+
+        copy.add(counts.firstKey());
+        assertFalse(multiset.equals(copy));
+    }
+
+    @Test
+    public void testManyOccurrences() {
+        System.out.println("many occurrences");
+
+        TreapMultiset<String> readings = new TreapMultiset<String>();
+        readings.add("a", 1000000);
+        readings.add("b", 2);
+
+        assertEquals(1000002, readings.size());
+        assertEquals(2, readings.distinctSize());
+        assertEquals("a", readings.get(999999));
+        assertEquals("b", readings.get(1000000));
+        assertEquals(1000000, readings.indexOf("b"));
+        assertEquals("[a x 1000000, b x 2]", readings.toString());
+    }
+
+    private List<Integer> expand() {
+        List<Integer> expanded = new ArrayList<Integer>();
+
+        for (Map.Entry<Integer, Integer> entry : counts.entrySet()) {
+            expanded.addAll(Collections.nCopies(entry.getValue(), entry.getKey()));
+        }
+
+        return expanded;
+    }
+
+    private void checkMultiset() {
+        List<Integer> expanded = expand();
+
+        assertEquals(expanded.size(), multiset.size());
+        assertEquals(counts.size(), multiset.distinctSize());
+        assertEquals(expanded.isEmpty(), multiset.isEmpty());
+        assertEquals(expanded, new ArrayList<Integer>(multiset));
+
+        if (!counts.isEmpty()) {
+            assertEquals(counts.firstKey(), multiset.first());
+            assertEquals(counts.lastKey(), multiset.last());
+        }
+
+        for (int key = -1; key <= RANGE; key++) {
+            assertEquals(counts.getOrDefault(key, 0).intValue(), multiset.count(key));
+        }
+    }
+}
@@ -1,295 +1,699 @@
 package treap;
 
-import java.util.Random;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Spliterator;
 import java.util.TreeSet;
-import java.util.Iterator;
-import org.junit.After;
-import org.junit.Before;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
-public class TreapTest {
-
-    private static final Random rand = new Random();
-    private Treap<Integer> treap;
-    private TreeSet<Integer> set;
-    private final int RANGE = 100;
-    private final int nTestRepetitions = 2 * RANGE;
+public class TreapTest extends TreapTestBase<Treap<Integer>> {
 
     public TreapTest() {
     }
 
-    @Before
-    public void setUp() {
-        treap = new Treap<Integer>();
-        set = new TreeSet<Integer>();
+    @Override
+    protected Treap<Integer> createTreap() {
+        return new Treap<Integer>();
+    }
 
-        int n = 100;
+    @Override
+    protected Treap<Integer> createTreap(Collection<Integer> c) {
+        return new Treap<Integer>(c);
+    }
 
-        for (int i = 0; i < n; i++) {
-            int val = rand.nextInt(RANGE);
+    @Test
+    public void testConstructFromSortedSet() {
+        System.out.println("construct from sorted set");
 
-            treap.add(val);
-            set.add(val);
+        TreeSet<Integer> reversed = new TreeSet<Integer>(Collections.reverseOrder());
+        reversed.addAll(Arrays.asList(3, 1, 4, 1, 5, 9, 2, 6));
+
+        Treap<Integer> result = new Treap<Integer>(reversed);
+        assertEquals(new ArrayList<Integer>(reversed), new ArrayList<Integer>(result));
+        assertEquals(reversed.comparator(), result.comparator());
+        assertEquals(reversed.contains(7), result.contains(7));
+        assertEquals(reversed.contains(5), result.contains(5));
+    }
+
+    @Test
+    public void testGet() {
+        System.out.println("get");
+
+        List<Integer> list = new ArrayList<Integer>(set);
+
+        for (int i = 0; i < list.size(); i++) {
+            assertEquals(list.get(i), treap.get(i));
         }
     }
 
-    @After
-    public void tearDown() {
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testGetOutOfBounds() {
+        System.out.println("get out of bounds");
+
+        treap.get(treap.size());
     }
 
     @Test
-    public void testAdd() {
-        System.out.println("add");
+    public void testIndexOf() {
+        System.out.println("indexOf");
+
+        List<Integer> list = new ArrayList<Integer>(set);
 
         for (int i = 0; i < nTestRepetitions; i++) {
             int val = rand.nextInt(RANGE);
 
-            boolean expResult = set.add(val);
-            boolean result = treap.add(val);
+            int expResult = list.indexOf(val);
+            int result = treap.indexOf(val);
             assertEquals(expResult, result);
-            checkEquality(treap, set);
         }
     }
 
     @Test
-    public void testContains() {
-        System.out.println("contains");
+    public void testCountLessThan() {
+        System.out.println("countLessThan");
 
         for (int i = 0; i < nTestRepetitions; i++) {
             int val = rand.nextInt(RANGE);
 
-            boolean expResult = set.contains(val);
-            boolean result = treap.contains(val);
+            int expResult = set.headSet(val).size();
+            int result = treap.countLessThan(val);
             assertEquals(expResult, result);
-            checkEquality(treap, set);
         }
     }
 
     @Test
-    public void testClear() {
-        System.out.println("clear");
+    public void testSplit() {
+        System.out.println("split");
 
-        treap.clear();
-        set.clear();
-        checkEquality(treap, set);
+        int val = rand.nextInt(RANGE);
+
+        Treap<Integer> greater = treap.split(val);
+        TreeSet<Integer> greaterSet = new TreeSet<Integer>(set.tailSet(val));
+        set.removeAll(greaterSet);
+
+        checkOrder(treap, set);
+        checkOrder(greater, greaterSet);
     }
 
     @Test
-    public void testRemove() {
-        System.out.println("remove");
+    public void testJoin() {
+        System.out.println("join");
 
-        for (int i = 0; i < nTestRepetitions; i++) {
-            int val = rand.nextInt(RANGE);
+        Treap<Integer> other = new Treap<Integer>();
 
-            boolean expResult = set.remove(val);
-            boolean result = treap.remove(val);
-            assertEquals(expResult, result);
-            checkEquality(treap, set);
+        for (int i = 0; i < 100; i++) {
+            int val = RANGE + rand.nextInt(RANGE);
+            other.add(val);
+            set.add(val);
         }
+
+        treap.join(other);
+
+        checkOrder(treap, set);
+        assertTrue(other.isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testJoinOverlapping() {
+        System.out.println("join overlapping");
+
+        Treap<Integer> other = new Treap<Integer>();
+        other.add(treap.first());
+        treap.join(other);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testJoinOtherOrder() {
+        System.out.println("join with another ordering");
+
+        // The elements are greater in this treap's order, but the orderings differ
+        Treap<Integer> other = new Treap<Integer>(Collections.<Integer>reverseOrder());
+        other.add(RANGE);
+        treap.join(other);
     }
 
     @Test
-    public void testIterator() {
-        System.out.println("iterator");
+    public void testCountRange() {
+        System.out.println("countRange");
 
-        Iterator<Integer> treapIt = treap.iterator();
-        Iterator<Integer> setIt = set.iterator();
+        for (int i = 0; i < nTestRepetitions; i++) {
+            int from = rand.nextInt(RANGE);
+            int to = from + rand.nextInt(RANGE / 4);
+            boolean fromInclusive = rand.nextBoolean();
+            boolean toInclusive = rand.nextBoolean();
 
-        while (treapIt.hasNext()) {
-            assertEquals(treapIt.hasNext(), setIt.hasNext());
-            assertEquals(treapIt.next(), setIt.next());
+            assertEquals(set.subSet(from, fromInclusive, to, toInclusive).size(), treap.countRange(from, fromInclusive, to, toInclusive));
+            assertEquals(set.subSet(from, to).size(), treap.countRange(from, to));
         }
+    }
 
-        assertEquals(treapIt.hasNext(), setIt.hasNext());
+    @Test(expected = IllegalArgumentException.class)
+    public void testCountRangeReversed() {
+        System.out.println("countRange reversed");
+
+        treap.countRange(2, 1);
     }
 
     @Test
-    public void testSize() {
-        System.out.println("size");
+    public void testRemoveRange() {
+        System.out.println("removeRange");
+
+        for (int i = 0; i < 20; i++) {
+            int from = rand.nextInt(RANGE);
+            int to = from + rand.nextInt(RANGE / 4);
+            boolean fromInclusive = rand.nextBoolean();
+            boolean toInclusive = rand.nextBoolean();
+
+            NavigableSet<Integer> range = set.subSet(from, fromInclusive, to, toInclusive);
+            int expected = range.size();
+            range.clear();
+
+            assertEquals(expected, treap.removeRange(from, fromInclusive, to, toInclusive));
+            checkOrder(treap, set);
+            assertEquals(set.headSet(to).size(), treap.countLessThan(to));
+        }
 
-        int expResult = set.size();
-        int result = treap.size();
-        assertEquals(expResult, result);
+        assertEquals(set.size(), treap.removeRange(-1, RANGE));
+        assertTrue(treap.isEmpty());
     }
 
     @Test
-    public void testLower() {
-        System.out.println("lower");
+    public void testExtractRange() {
+        System.out.println("extractRange");
+
+        for (int i = 0; i < 20; i++) {
+            int from = rand.nextInt(RANGE);
+            int to = from + rand.nextInt(RANGE / 4);
+            boolean fromInclusive = rand.nextBoolean();
+            boolean toInclusive = rand.nextBoolean();
+
+            NavigableSet<Integer> range = set.subSet(from, fromInclusive, to, toInclusive);
+            TreeSet<Integer> expected = new TreeSet<Integer>(range);
+            range.clear();
+
+            Treap<Integer> extracted = treap.extractRange(from, fromInclusive, to, toInclusive);
+            checkOrder(extracted, expected);
+            checkOrder(treap, set);
+
+            // The extracted treap is independent of the original
+            extracted.add(RANGE + i);
+            assertFalse(treap.contains(RANGE + i));
+        }
 
-        for (int i = 0; i < nTestRepetitions; i++) {
-            int val = rand.nextInt(RANGE);
+        // Expire everything below a cutoff
+        int cutoff = RANGE / 2;
+        Treap<Integer> expired = treap.extractRange(Integer.MIN_VALUE, cutoff);
+        checkOrder(expired, new TreeSet<Integer>(set.headSet(cutoff)));
+        set.headSet(cutoff).clear();
+        checkOrder(treap, set);
+    }
 
-            Integer expResult = set.lower(val);
-            Integer result = treap.lower(val);
-            assertEquals(expResult, result);
+    @Test
+    public void testAddBatch() {
+        System.out.println("addBatch");
+
+        for (int i = 0; i < 10; i++) {
+            List<Integer> batch = new ArrayList<Integer>();
+
+            for (int j = rand.nextInt(50); j > 0; j--) {
+                batch.add(rand.nextInt(2 * RANGE));
+            }
+
+            int oldSize = set.size();
+            set.addAll(batch);
+
+            assertEquals(set.size() - oldSize, treap.addBatch(batch));
+            checkOrder(treap, set);
         }
+
+        Treap<Integer> empty = new Treap<Integer>();
+        assertEquals(set.size(), empty.addBatch(set));
+        checkOrder(empty, set);
     }
 
     @Test
-    public void testFloor() {
-        System.out.println("floor");
+    public void testRemoveBatch() {
+        System.out.println("removeBatch");
 
-        for (int i = 0; i < nTestRepetitions; i++) {
-            int val = rand.nextInt(RANGE);
+        for (int i = 0; i < 10; i++) {
+            List<Integer> batch = new ArrayList<Integer>();
 
-            Integer expResult = set.floor(val);
-            Integer result = treap.floor(val);
-            assertEquals(expResult, result);
+            for (int j = rand.nextInt(50); j > 0; j--) {
+                batch.add(rand.nextInt(2 * RANGE));
+            }
+
+            int oldSize = set.size();
+            set.removeAll(batch);
+
+            assertEquals(oldSize - set.size(), treap.removeBatch(batch));
+            checkOrder(treap, set);
         }
+
+        assertEquals(set.size(), treap.removeBatch(new ArrayList<Integer>(set)));
+        assertTrue(treap.isEmpty());
     }
 
     @Test
-    public void testCeiling() {
-        System.out.println("ceiling");
+    public void testHashedPriorities() {
+        System.out.println("hashed priorities");
 
-        for (int i = 0; i < nTestRepetitions; i++) {
-            int val = rand.nextInt(RANGE);
+        List<Integer> elements = new ArrayList<Integer>(set);
+        Treap<Integer> a = new Treap<Integer>(null, 42);
+        Treap<Integer> b = new Treap<Integer>(null, 42);
 
-            Integer expResult = set.ceiling(val);
-            Integer result = treap.ceiling(val);
-            assertEquals(expResult, result);
+        Collections.shuffle(elements, rand);
+        a.addAll(elements);
+
+        // Add the elements in another order, with some extra ones removed in between
+        Collections.shuffle(elements, rand);
+
+        for (Integer element : elements) {
+            b.add(element);
+            b.add(RANGE + element);
+        }
+
+        for (Integer element : elements) {
+            b.remove(RANGE + element);
         }
+
+        checkOrder(a, set);
+        checkOrder(b, set);
+        assertTrue(a.sameShape(b));
+
+        Treap<Integer> batch = new Treap<Integer>(null, 42);
+        batch.addBatch(elements);
+        assertTrue(a.sameShape(batch));
+
+        Treap<Integer> greater = batch.split(RANGE / 2);
+        batch.join(greater);
+        assertTrue(a.sameShape(batch));
+
+        Treap<Integer> other = new Treap<Integer>(null, 7);
+        other.addAll(elements);
+        checkOrder(other, set);
+        assertEquals(a, other);
     }
 
     @Test
-    public void testHigher() {
-        System.out.println("higher");
+    public void testHashedPriorityTies() {
+        System.out.println("hashed priority ties");
 
-        for (int i = 0; i < nTestRepetitions; i++) {
-            int val = rand.nextInt(RANGE);
+        // All these keys have hash code 0, and therefore the same priority
+        List<Long> keys = new ArrayList<Long>();
 
-            Integer expResult = set.higher(val);
-            Integer result = treap.higher(val);
-            assertEquals(expResult, result);
+        for (long i = 0; i < 50; i++) {
+            keys.add((i << 32) | i);
+        }
+
+        Treap<Long> a = new Treap<Long>(null, 1);
+        Treap<Long> b = new Treap<Long>(null, 1);
+        a.addAll(keys);
+        Collections.shuffle(keys, rand);
+
+        for (Long key : keys) {
+            b.add(key);
         }
+
+        b.remove(keys.get(0));
+        b.add(keys.get(0));
+
+        assertTrue(a.sameShape(b));
+        assertEquals(keys.size(), a.stats().getHeight());
     }
 
     @Test
-    public void testPollFirst() {
-        System.out.println("pollFirst");
+    public void testEquals() {
+        System.out.println("equals");
 
-        for (int i = 0; i < treap.size(); i++) {
-            Integer expResult = set.pollFirst();
-            Integer result = treap.pollFirst();
-            assertEquals(expResult, result);
-            checkEquality(treap, set);
-        }
+        Treap<Integer> copy = new Treap<Integer>(set);
+
+        assertEquals(set, treap);
+        assertEquals(treap, set);
+        assertEquals(treap, copy);
+        assertEquals(set.hashCode(), treap.hashCode());
+
+        copy.add(RANGE);
+        assertFalse(treap.equals(copy));
+        assertFalse(copy.equals(treap));
+
+        copy.remove(RANGE);
+        copy.remove(copy.first());
+        copy.add(RANGE);
+        assertFalse(treap.equals(copy));
+        assertFalse(treap.equals(new ArrayList<Integer>(set)));
     }
 
     @Test
-    public void testPollLast() {
-        System.out.println("pollLast");
+    public void testCursor() {
+        System.out.println("cursor");
 
-        for (int i = 0; i < treap.size(); i++) {
-            Integer expResult = set.pollLast();
-            Integer result = treap.pollLast();
-            assertEquals(expResult, result);
-            checkEquality(treap, set);
+        Cursor<Integer> cursor = treap.cursor();
+
+        for (int i = 0; i < nTestRepetitions; i++) {
+            // Mostly take small steps, so that the climbs stay short
+            int val = (i % 10 == 0 || set.isEmpty() ? rand.nextInt(RANGE) : cursor.get() + rand.nextInt(11) - 5);
+
+            switch (rand.nextInt(7)) {
+                case 0:
+                    assertEquals(set.contains(val), cursor.contains(val));
+                    break;
+                case 1:
+                    assertEquals(set.lower(val), cursor.lower(val));
+                    break;
+                case 2:
+                    assertEquals(set.higher(val), cursor.higher(val));
+                    break;
+                case 3:
+                    assertEquals(set.floor(val), cursor.floor(val));
+                    break;
+                case 4:
+                    assertEquals(set.ceiling(val), cursor.ceiling(val));
+                    break;
+                case 5:
+                    assertEquals(set.add(val), cursor.add(val));
+                    assertEquals(Integer.valueOf(val), cursor.get());
+                    break;
+                default:
+                    assertEquals(set.remove(val), cursor.remove(val));
+                    break;
+            }
+
+            if (!set.isEmpty()) {
+                // The cursor ends up next to the searched key
+                Integer current = cursor.get();
+                assertTrue(set.contains(current));
+                assertTrue(current.equals(set.floor(val)) || current.equals(set.ceiling(val))
+                        || current.equals(set.lower(val)) || current.equals(set.higher(val)));
+            }
         }
+
+        checkOrder(treap, set);
     }
 
     @Test
-    public void testFirst() {
-        System.out.println("first");
+    public void testCursorSteps() {
+        System.out.println("cursor steps");
+
+        Cursor<Integer> cursor = treap.cursor();
+        List<Integer> elements = new ArrayList<Integer>();
+
+        for (Integer e = cursor.next(); e != null; e = cursor.next()) {
+            elements.add(e);
+        }
+
+        assertEquals(new ArrayList<Integer>(set), elements);
+        assertEquals(set.last(), cursor.get());
+
+        cursor = treap.cursor();
+        assertEquals(set.last(), cursor.previous());
+        assertEquals(set.lower(set.last()), cursor.previous());
 
-        int expResult = set.first();
-        int result = treap.first();
-        assertEquals(expResult, result);
+        // Modifying the treap directly resets the cursor
+        treap.remove(cursor.get());
+        assertEquals(set.first(), cursor.next());
     }
 
     @Test
-    public void testLast() {
-        System.out.println("last");
+    public void testCursorComparisons() {
+        System.out.println("cursor comparisons");
 
-        int expResult = set.last();
-        int result = treap.last();
-        assertEquals(expResult, result);
+        int n = 100000;
+        int[] comparisons = new int[1];
+        Comparator<Integer> counting = (a, b) -> {
+            comparisons[0]++;
+            return Integer.compare(a, b);
+        };
+
+        Treap<Integer> appended = new Treap<Integer>(counting);
+        Cursor<Integer> cursor = appended.cursor();
+
+        for (int i = 0; i < n; i++) {
+            assertTrue(cursor.add(i));
+        }
+
+        // Each append only compares the new key to the finger and its successor position
+        assertTrue(comparisons[0] <= 2 * n);
+        checkOrder(appended, new TreeSet<Integer>(appended));
+        assertEquals(n, appended.size());
+
+        comparisons[0] = 0;
+
+        for (int i = 0; i < n; i += 2) {
+            assertTrue(cursor.contains(i));
+        }
+
+        // A sorted probe sequence with small gaps costs a constant number of comparisons per probe
+        assertTrue(comparisons[0] < 10 * (n / 2));
     }
 
     @Test
-    public void testPerformance() {
-        System.out.println("performance: Treap vs TreeSet");
+    public void testSpliterator() {
+        System.out.println("spliterator");
 
-        int n = 100;
-        double[] values = new double[n];
+        Spliterator<Integer> spliterator = treap.spliterator();
 
-        for (int i= 0; i < n; i++) {
-            values[i] = rand.nextDouble();
+        assertTrue(spliterator.hasCharacteristics(Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.SORTED | Spliterator.DISTINCT));
+        assertNull(spliterator.getComparator());
+        assertEquals(set.size(), spliterator.getExactSizeIfKnown());
+
+        List<Integer> elements = new ArrayList<Integer>();
+        splitAndCollect(spliterator, elements);
+        assertEquals(new ArrayList<Integer>(set), elements);
+
+        List<Integer> advanced = new ArrayList<Integer>();
+        spliterator = treap.spliterator();
+        Spliterator<Integer> prefix = spliterator.trySplit();
+
+        while (prefix.tryAdvance(advanced::add)) {
+        }
+
+        while (spliterator.tryAdvance(advanced::add)) {
         }
 
-        long start = System.nanoTime();
-        Treap<Double> perfTreap = new Treap<Double>();
+        assertEquals(new ArrayList<Integer>(set), advanced);
+    }
+
+    @Test
+    public void testParallelStream() {
+        System.out.println("parallel stream");
 
-        for (int i= 0; i < n; i++) {
-            perfTreap.add(values[i]);
+        Treap<Integer> large = new Treap<Integer>();
+        long expected = 0;
+
+        for (int i = 0; i < 100000; i++) {
+            int val = rand.nextInt();
+
+            if (large.add(val)) {
+                expected += val;
+            }
         }
-        long treapConstruction = System.nanoTime() - start;
 
-        start = System.nanoTime();
-        TreeSet<Double> perfSet = new TreeSet<Double>();
+        assertEquals(expected, large.parallelStream().mapToLong(Integer::longValue).sum());
+        assertEquals(new ArrayList<Integer>(large), large.parallelStream().collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testSnapshot() throws IOException {
+        System.out.println("snapshot");
+
+        Path file = Files.createTempFile("treap", ".snapshot");
+
+        try {
+            treap.writeSnapshot(file, KeyCodec.integers(), false);
+            checkOrder(Treap.readSnapshot(file, KeyCodec.integers()), set);
+
+            treap.writeSnapshot(file, KeyCodec.integers(), true);
+            Treap<Integer> copy = Treap.readSnapshot(file, KeyCodec.integers());
+            checkOrder(copy, set);
+
+            // With the priorities, the copy has the same shape
+            assertEquals(treap.stats().getHeight(), copy.stats().getHeight());
+            assertEquals(treap.stats().getAverageDepth(), copy.stats().getAverageDepth(), 1e-9);
 
-        for (int i= 0; i < n; i++) {
-            perfSet.add(values[i]);
+            new Treap<Integer>().writeSnapshot(file, KeyCodec.integers(), true);
+            assertTrue(Treap.readSnapshot(file, KeyCodec.integers()).isEmpty());
+        } finally {
+            Files.delete(file);
         }
-        long setConstruction = System.nanoTime() - start;
+    }
+
+    @Test
+    public void testSnapshotHashedPriorities() throws IOException {
+        System.out.println("snapshot with hashed priorities");
+
+        Treap<Integer> hashed = new Treap<Integer>(null, 42);
+        hashed.addAll(set);
+
+        Path file = Files.createTempFile("treap", ".snapshot");
+
+        try {
+            for (boolean withPriorities : new boolean[]{false, true}) {
+                hashed.writeSnapshot(file, KeyCodec.integers(), withPriorities);
+                Treap<Integer> copy = Treap.readSnapshot(file, KeyCodec.integers());
+                assertTrue(hashed.sameShape(copy));
+
+                // Later changes keep both treaps in the same canonical shape
+                for (int i = 0; i < RANGE; i++) {
+                    int val = RANGE + rand.nextInt(RANGE);
+                    hashed.add(val);
+                    copy.add(val);
+                }
+
+                assertTrue(hashed.sameShape(copy));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testSnapshotLargeKeys() throws IOException {
+        System.out.println("snapshot with large keys");
 
-        System.out.println(String.format("  Construction: %f vs %f", treapConstruction * 10e-9, setConstruction * 10e-9));
+        Treap<String> strings = new Treap<String>(Collections.<String>reverseOrder());
+        StringBuilder sb = new StringBuilder();
 
-        start = System.nanoTime();
-        for (int i= 0; i < n; i++) {
-            perfTreap.contains(values[i]);
+        for (int i = 0; i < 20; i++) {
+            // Keys of up to 200 kB do not fit in the write buffer
+            sb.append(String.join("", Collections.nCopies(10000, "x" + i)));
+            strings.add(sb.toString());
+            strings.add("key " + i);
         }
-        long treapContains = System.nanoTime() - start;
 
-        start = System.nanoTime();
-        for (int i= 0; i < n; i++) {
-            perfSet.contains(values[i]);
+        Path file = Files.createTempFile("treap", ".snapshot");
+
+        try {
+            strings.writeSnapshot(file, KeyCodec.strings(), false);
+            Treap<String> copy = Treap.readSnapshot(file, KeyCodec.strings(), Collections.<String>reverseOrder());
+
+            assertEquals(new ArrayList<String>(strings), new ArrayList<String>(copy));
+            assertTrue(copy.contains("key 7"));
+        } finally {
+            Files.delete(file);
         }
-        long setContains = System.nanoTime() - start;
+    }
 
-        System.out.println(String.format("  Positive queries: %f vs %f", treapContains * 10e-9, setContains * 10e-9));
+    @Test(expected = IOException.class)
+    public void testSnapshotInvalid() throws IOException {
+        System.out.println("invalid snapshot");
 
-        double[] negativeQueryValues = new double[n];
+        Path file = Files.createTempFile("treap", ".snapshot");
 
-        for (int i= 0; i < n; i++) {
-            negativeQueryValues[i] = rand.nextDouble();
+        try {
+            Files.write(file, "not a snapshot at all".getBytes(StandardCharsets.UTF_8));
+            Treap.readSnapshot(file, KeyCodec.integers());
+        } finally {
+            Files.delete(file);
         }
+    }
 
-        start = System.nanoTime();
-        for (int i= 0; i < n; i++) {
-            perfTreap.contains(negativeQueryValues[i]);
+    private void splitAndCollect(Spliterator<Integer> spliterator, List<Integer> elements) {
+        long size = spliterator.estimateSize();
+        Spliterator<Integer> prefix = spliterator.trySplit();
+
+        if (prefix == null) {
+            assertTrue(size <= 1);
+            spliterator.forEachRemaining(elements::add);
+        } else {
+            assertEquals(size, prefix.estimateSize() + spliterator.estimateSize());
+            splitAndCollect(prefix, elements);
+            splitAndCollect(spliterator, elements);
         }
-        long treapContainsNeg = System.nanoTime() - start;
+    }
 
-        start = System.nanoTime();
-        for (int i= 0; i < n; i++) {
-            perfSet.contains(negativeQueryValues[i]);
+    @Test
+    public void testStats() {
+        System.out.println("stats");
+
+        treap.clear();
+        assertEquals(0, treap.stats().getHeight());
+        assertEquals(0, treap.stats().getAverageDepth(), 0);
+
+        treap.add(1);
+        assertEquals(1, treap.stats().getHeight());
+        assertEquals(0, treap.stats().getAverageDepth(), 0);
+
+        treap.add(2);
+        treap.add(3);
+        TreapStats stats = treap.stats();
+
+        // Three nodes form either a path or a root with two children
+        if (stats.getHeight() == 2) {
+            assertEquals(2.0 / 3, stats.getAverageDepth(), 1e-9);
+        } else {
+            assertEquals(3, stats.getHeight());
+            assertEquals(1, stats.getAverageDepth(), 1e-9);
         }
-        long setContainsNeg = System.nanoTime() - start;
 
-        System.out.println(String.format("  Negative queries: %f vs %f", treapContainsNeg * 10e-9, setContainsNeg * 10e-9));
+        int n = 10000;
 
-        start = System.nanoTime();
-        for (int i= 0; i < n; i++) {
-            perfTreap.remove(values[i]);
+        for (int i = 0; i < n; i++) {
+            treap.add(rand.nextInt());
+            treap.contains(rand.nextInt());
         }
-        long treapRemoval = System.nanoTime() - start;
 
-        start = System.nanoTime();
-        for (int i= 0; i < n; i++) {
-            perfSet.remove(values[i]);
+        stats = treap.stats();
+        assertTrue(stats.getHeight() >= 32 - Integer.numberOfLeadingZeros(treap.size()));
+        assertTrue(stats.getAverageDepth() < stats.getHeight());
+        assertTrue(stats.getAverageDepth() < 4 * Math.log(treap.size()));
+
+        long operations = 0;
+
+        for (long count : stats.getDepthHistogram()) {
+            operations += count;
         }
-        long setRemoval = System.nanoTime() - start;
 
-        System.out.println(String.format("  Removal: %f vs %f", treapRemoval * 10e-9, setRemoval * 10e-9));
-    }
+        assertEquals(stats.getOperations(), operations);
 
-    private void checkEquality(Treap<Integer> treap, TreeSet<Integer> set) {
-        assertEquals(treap.size(), set.size());
+        if (TreapStats.ENABLED) {
+            assertTrue(stats.getOperations() >= 2 * n);
+            assertTrue(stats.getComparisons() > 0);
+            assertTrue(stats.getRotations() > 0);
+        } else {
+            assertEquals(0, stats.getOperations());
+            assertEquals(0, stats.getComparisons());
+            assertEquals(0, stats.getRotations());
+        }
+    }
 
-        if (!treap.containsAll(set)) {
-            throw new AssertionError("Treap does not contain all elements contained in set.");
+    @Test
+    public void testStatsParallel() {
+        System.out.println("stats of parallel operations");
+
+        final AtomicLong calls = new AtomicLong();
+        Comparator<Integer> counting = new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                calls.incrementAndGet();
+                return a.compareTo(b);
+            }
+        };
+
+        Treap<Integer> a = new Treap<Integer>(counting);
+        Treap<Integer> b = new Treap<Integer>(counting);
+
+        for (int i = 0; i < 50000; i++) {
+            a.add(rand.nextInt());
+            b.add(rand.nextInt());
         }
+
+        // The union is large enough to run on several threads, none of whose comparisons may get lost
+        long before = a.stats().getComparisons();
+        calls.set(0);
+        a.addAll(b);
+
+        assertEquals(TreapStats.ENABLED ? calls.get() : 0, a.stats().getComparisons() - before);
     }
 }
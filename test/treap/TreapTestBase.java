@@ -0,0 +1,491 @@
+package treap;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeSet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests that every treap implementation behaves like a TreeSet. Subclasses
+ * provide the implementation under test.
+ *
+ * @param <T>
+ */
+public abstract class TreapTestBase<T extends NavigableSet<Integer>> {
+
+    protected static final Random rand = new Random();
+    protected T treap;
+    protected TreeSet<Integer> set;
+    protected final int RANGE = 100;
+    protected final int nTestRepetitions = 2 * RANGE;
+
+    protected abstract T createTreap();
+
+    protected abstract T createTreap(Collection<Integer> c);
+
+    @Before
+    public void setUp() {
+        treap = createTreap();
+        set = new TreeSet<Integer>();
+
+        int n = 100;
+
+        for (int i = 0; i < n; i++) {
+            int val = rand.nextInt(RANGE);
+
+            treap.add(val);
+            set.add(val);
+        }
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    @Test
+    public void testConstructFromCollection() {
+        System.out.println("construct from collection");
+
+        List<Integer> values = new ArrayList<Integer>();
+
+        for (int i = 0; i < 1000; i++) {
+            values.add(rand.nextInt(RANGE));
+        }
+
+        TreeSet<Integer> expected = new TreeSet<Integer>(values);
+        checkOrder(createTreap(values), expected);
+
+        Collections.sort(values);
+        checkOrder(createTreap(values), expected);
+        checkOrder(createTreap(expected), expected);
+        checkOrder(createTreap(Collections.<Integer>emptyList()), new TreeSet<Integer>());
+    }
+
+    @Test
+    public void testAdd() {
+        System.out.println("add");
+
+        for (int i = 0; i < nTestRepetitions; i++) {
+            int val = rand.nextInt(RANGE);
+
+            boolean expResult = set.add(val);
+            boolean result = treap.add(val);
+            assertEquals(expResult, result);
+            checkEquality(treap, set);
+        }
+    }
+
+    @Test
+    public void testContains() {
+        System.out.println("contains");
+
+        for (int i = 0; i < nTestRepetitions; i++) {
+            int val = rand.nextInt(RANGE);
+
+            boolean expResult = set.contains(val);
+            boolean result = treap.contains(val);
+            assertEquals(expResult, result);
+            checkEquality(treap, set);
+        }
+    }
+
+    @Test
+    public void testClear() {
+        System.out.println("clear");
+
+        treap.clear();
+        set.clear();
+        checkEquality(treap, set);
+    }
+
+    @Test
+    public void testRemove() {
+        System.out.println("remove");
+
+        for (int i = 0; i < nTestRepetitions; i++) {
+            int val = rand.nextInt(RANGE);
+
+            boolean expResult = set.remove(val);
+            boolean result = treap.remove(val);
+            assertEquals(expResult, result);
+            checkEquality(treap, set);
+        }
+    }
+
+    @Test
+    public void testIterator() {
+        System.out.println("iterator");
+
+        Iterator<Integer> treapIt = treap.iterator();
+        Iterator<Integer> setIt = set.iterator();
+
+        while (treapIt.hasNext()) {
+            assertEquals(treapIt.hasNext(), setIt.hasNext());
+            assertEquals(treapIt.next(), setIt.next());
+        }
+
+        assertEquals(treapIt.hasNext(), setIt.hasNext());
+    }
+
+    @Test
+    public void testIteratorRemove() {
+        System.out.println("iterator remove");
+
+        Iterator<Integer> treapIt = treap.iterator();
+        Iterator<Integer> setIt = set.iterator();
+
+        while (treapIt.hasNext()) {
+            assertEquals(treapIt.next(), setIt.next());
+
+            if (rand.nextBoolean()) {
+                treapIt.remove();
+                setIt.remove();
+                checkEquality(treap, set);
+            }
+        }
+
+        assertEquals(treapIt.hasNext(), setIt.hasNext());
+    }
+
+    @Test
+    public void testSize() {
+        System.out.println("size");
+
+        int expResult = set.size();
+        int result = treap.size();
+        assertEquals(expResult, result);
+    }
+
+    @Test
+    public void testLower() {
+        System.out.println("lower");
+
+        for (int i = 0; i < nTestRepetitions; i++) {
+            int val = rand.nextInt(RANGE);
+
+            Integer expResult = set.lower(val);
+            Integer result = treap.lower(val);
+            assertEquals(expResult, result);
+        }
+    }
+
+    @Test
+    public void testFloor() {
+        System.out.println("floor");
+
+        for (int i = 0; i < nTestRepetitions; i++) {
+            int val = rand.nextInt(RANGE);
+
+            Integer expResult = set.floor(val);
+            Integer result = treap.floor(val);
+            assertEquals(expResult, result);
+        }
+    }
+
+    @Test
+    public void testCeiling() {
+        System.out.println("ceiling");
+
+        for (int i = 0; i < nTestRepetitions; i++) {
+            int val = rand.nextInt(RANGE);
+
+            Integer expResult = set.ceiling(val);
+            Integer result = treap.ceiling(val);
+            assertEquals(expResult, result);
+        }
+    }
+
+    @Test
+    public void testHigher() {
+        System.out.println("higher");
+
+        for (int i = 0; i < nTestRepetitions; i++) {
+            int val = rand.nextInt(RANGE);
+
+            Integer expResult = set.higher(val);
+            Integer result = treap.higher(val);
+            assertEquals(expResult, result);
+        }
+    }
+
+    @Test
+    public void testPollFirst() {
+        System.out.println("pollFirst");
+
+        for (int i = 0; i < treap.size(); i++) {
+            Integer expResult = set.pollFirst();
+            Integer result = treap.pollFirst();
+            assertEquals(expResult, result);
+            checkEquality(treap, set);
+        }
+    }
+
+    @Test
+    public void testPollLast() {
+        System.out.println("pollLast");
+
+        for (int i = 0; i < treap.size(); i++) {
+            Integer expResult = set.pollLast();
+            Integer result = treap.pollLast();
+            assertEquals(expResult, result);
+            checkEquality(treap, set);
+        }
+    }
+
+    @Test
+    public void testFirst() {
+        System.out.println("first");
+
+        int expResult = set.first();
+        int result = treap.first();
+        assertEquals(expResult, result);
+    }
+
+    @Test
+    public void testLast() {
+        System.out.println("last");
+
+        int expResult = set.last();
+        int result = treap.last();
+        assertEquals(expResult, result);
+    }
+
+    @Test
+    public void testDescendingIterator() {
+        System.out.println("descendingIterator");
+
+        Iterator<Integer> treapIt = treap.descendingIterator();
+        Iterator<Integer> setIt = set.descendingIterator();
+
+        while (treapIt.hasNext()) {
+            assertEquals(treapIt.hasNext(), setIt.hasNext());
+            assertEquals(treapIt.next(), setIt.next());
+
+            if (rand.nextBoolean()) {
+                treapIt.remove();
+                setIt.remove();
+            }
+        }
+
+        assertEquals(treapIt.hasNext(), setIt.hasNext());
+        checkOrder(treap, set);
+    }
+
+    @Test
+    public void testDescendingSet() {
+        System.out.println("descendingSet");
+
+        checkNavigableSet(set.descendingSet(), treap.descendingSet());
+        checkNavigableSet(set.descendingSet().descendingSet(), treap.descendingSet().descendingSet());
+    }
+
+    @Test
+    public void testSubSet() {
+        System.out.println("subSet");
+
+        for (int i = 0; i < nTestRepetitions; i++) {
+            int from = rand.nextInt(RANGE);
+            int to = from + rand.nextInt(RANGE - from);
+            boolean fromInclusive = rand.nextBoolean();
+            boolean toInclusive = rand.nextBoolean();
+
+            checkNavigableSet(set.subSet(from, fromInclusive, to, toInclusive), treap.subSet(from, fromInclusive, to, toInclusive));
+            checkNavigableSet(set.subSet(from, fromInclusive, to, toInclusive).descendingSet(), treap.subSet(from, fromInclusive, to, toInclusive).descendingSet());
+        }
+    }
+
+    @Test
+    public void testHeadSet() {
+        System.out.println("headSet");
+
+        for (int i = 0; i < nTestRepetitions; i++) {
+            int to = rand.nextInt(RANGE);
+            boolean inclusive = rand.nextBoolean();
+
+            checkNavigableSet(set.headSet(to, inclusive), treap.headSet(to, inclusive));
+        }
+    }
+
+    @Test
+    public void testTailSet() {
+        System.out.println("tailSet");
+
+        for (int i = 0; i < nTestRepetitions; i++) {
+            int from = rand.nextInt(RANGE);
+            boolean inclusive = rand.nextBoolean();
+
+            checkNavigableSet(set.tailSet(from, inclusive), treap.tailSet(from, inclusive));
+        }
+    }
+
+    @Test
+    public void testNestedViews() {
+        System.out.println("nested views");
+
+        NavigableSet<Integer> expected = set.subSet(10, true, 90, false).descendingSet().headSet(30, true).tailSet(70, false);
+        NavigableSet<Integer> result = treap.subSet(10, true, 90, false).descendingSet().headSet(30, true).tailSet(70, false);
+        checkNavigableSet(expected, result);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSubSetOutOfRange() {
+        System.out.println("subSet out of range");
+
+        treap.subSet(10, true, 20, true).add(30);
+    }
+
+    @Test
+    public void testSubSetModification() {
+        System.out.println("subSet modification");
+
+        NavigableSet<Integer> expected = set.subSet(20, true, 60, false);
+        NavigableSet<Integer> result = treap.subSet(20, true, 60, false);
+
+        for (int i = 0; i < nTestRepetitions; i++) {
+            int val = 20 + rand.nextInt(40);
+
+            if (rand.nextBoolean()) {
+                assertEquals(expected.add(val), result.add(val));
+            } else {
+                assertEquals(expected.remove(val), result.remove(val));
+            }
+        }
+
+        Iterator<Integer> treapIt = result.iterator();
+        Iterator<Integer> setIt = expected.iterator();
+
+        while (treapIt.hasNext()) {
+            assertEquals(setIt.next(), treapIt.next());
+
+            if (rand.nextBoolean()) {
+                treapIt.remove();
+                setIt.remove();
+            }
+        }
+
+        assertEquals(expected.pollFirst(), result.pollFirst());
+        assertEquals(expected.pollLast(), result.pollLast());
+        checkOrder(treap, set);
+
+        result.clear();
+        expected.clear();
+        checkOrder(treap, set);
+    }
+
+    @Test
+    public void testAddAll() {
+        System.out.println("addAll");
+
+        for (int n : new int[]{100, 20000}) {
+            T other = randomTreap(n, 2 * n);
+            boolean expResult = set.addAll(other);
+            boolean result = treap.addAll(other);
+            assertEquals(expResult, result);
+            checkOrder(treap, set);
+        }
+    }
+
+    @Test
+    public void testRetainAll() {
+        System.out.println("retainAll");
+
+        for (int n : new int[]{100, 20000}) {
+            treap.addAll(randomTreap(n, 2 * n));
+            set.clear();
+            set.addAll(treap);
+
+            T other = randomTreap(n, 2 * n);
+            boolean expResult = set.retainAll(other);
+            boolean result = treap.retainAll(other);
+            assertEquals(expResult, result);
+            checkOrder(treap, set);
+        }
+    }
+
+    @Test
+    public void testRemoveAll() {
+        System.out.println("removeAll");
+
+        for (int n : new int[]{100, 20000}) {
+            treap.addAll(randomTreap(n, 2 * n));
+            set.clear();
+            set.addAll(treap);
+
+            T other = randomTreap(n, 2 * n);
+            boolean expResult = set.removeAll(other);
+            boolean result = treap.removeAll(other);
+            assertEquals(expResult, result);
+            checkOrder(treap, set);
+        }
+    }
+
+    protected T randomTreap(int n, int range) {
+        T result = createTreap();
+
+        for (int i = 0; i < n; i++) {
+            result.add(rand.nextInt(range));
+        }
+
+        return result;
+    }
+
+    protected void checkOrder(NavigableSet<Integer> treap, TreeSet<Integer> set) {
+        assertEquals(set.size(), treap.size());
+        assertEquals(new ArrayList<Integer>(set), new ArrayList<Integer>(treap));
+    }
+
+    protected void checkNavigableSet(NavigableSet<Integer> expected, NavigableSet<Integer> result) {
+        assertEquals(new ArrayList<Integer>(expected), new ArrayList<Integer>(result));
+        assertEquals(expected.size(), result.size());
+        assertEquals(expected.isEmpty(), result.isEmpty());
+
+        List<Integer> expectedDescending = new ArrayList<Integer>();
+        List<Integer> resultDescending = new ArrayList<Integer>();
+
+        for (Iterator<Integer> it = expected.descendingIterator(); it.hasNext();) {
+            expectedDescending.add(it.next());
+        }
+
+        for (Iterator<Integer> it = result.descendingIterator(); it.hasNext();) {
+            resultDescending.add(it.next());
+        }
+
+        assertEquals(expectedDescending, resultDescending);
+
+        if (expected.isEmpty()) {
+            try {
+                result.first();
+                fail("first() did not throw on an empty set.");
+            } catch (NoSuchElementException ex) {
+            }
+        } else {
+            assertEquals(expected.first(), result.first());
+            assertEquals(expected.last(), result.last());
+        }
+
+        for (int val = -1; val <= RANGE; val++) {
+            assertEquals(expected.contains(val), result.contains(val));
+            assertEquals(expected.lower(val), result.lower(val));
+            assertEquals(expected.floor(val), result.floor(val));
+            assertEquals(expected.ceiling(val), result.ceiling(val));
+            assertEquals(expected.higher(val), result.higher(val));
+        }
+    }
+
+    protected void checkEquality(NavigableSet<Integer> treap, TreeSet<Integer> set) {
+        assertEquals(treap.size(), set.size());
+
+        if (!treap.containsAll(set)) {
+            throw new AssertionError("Treap does not contain all elements contained in set.");
+        }
+    }
+}